@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prefix sums of {@link CompletionHistory.Series}, including buckets added
+ * out of order and buckets that fall out of the retention window
+ * @author Apon
+ */
+class CompletionHistorySeriesTest {
+
+    @Test
+    void countsThroughEachBucket() {
+        CompletionHistory.Series series = new CompletionHistory.Series(100);
+        assertEquals(0, series.countThrough(5));
+        series.add(5);
+        series.add(5);
+        series.add(7);
+        assertEquals(0, series.countThrough(4));
+        assertEquals(2, series.countThrough(5));
+        assertEquals(2, series.countThrough(6));
+        assertEquals(3, series.countThrough(7));
+        assertEquals(3, series.countThrough(1_000));
+    }
+
+    @Test
+    void acceptsBucketsBeforeTheFirst() {
+        CompletionHistory.Series series = new CompletionHistory.Series(100);
+        series.add(10);
+        series.add(8);
+        assertEquals(0, series.countThrough(7));
+        assertEquals(1, series.countThrough(8));
+        assertEquals(1, series.countThrough(9));
+        assertEquals(2, series.countThrough(10));
+    }
+
+    @Test
+    void dropsBucketsOutsideTheRetention() {
+        CompletionHistory.Series series = new CompletionHistory.Series(4);
+        for (long bucket = 0; bucket < 4; bucket++) {
+            series.add(bucket);
+        }
+        series.add(10);
+        // Dropped buckets still count towards every later total
+        assertEquals(4, series.countThrough(3));
+        assertEquals(4, series.countThrough(9));
+        assertEquals(5, series.countThrough(10));
+    }
+
+    @Test
+    void keepsTheTotalOfTransitionsOlderThanTheWindow() {
+        CompletionHistory.Series series = new CompletionHistory.Series(4);
+        series.add(10);
+        series.add(11);
+        series.add(2);
+        assertEquals(1, series.countThrough(9));
+        assertEquals(2, series.countThrough(10));
+        assertEquals(3, series.countThrough(11));
+    }
+
+    @Test
+    void rangesWithinTheWindowMatchAPlainCount() {
+        Random random = new Random(5);
+        int retention = 64;
+        CompletionHistory.Series series = new CompletionHistory.Series(retention);
+        int[] counts = new int[1_000];
+        long latest = 0;
+        for (int i = 0; i < 5_000; i++) {
+            // Mostly forwards, sometimes a little back, as a wall clock moves
+            latest = Math.min(counts.length - 1, latest + random.nextInt(3));
+            long bucket = Math.max(0, latest - random.nextInt(retention / 2));
+            series.add(bucket);
+            counts[(int) bucket]++;
+
+            long to = latest - random.nextInt(retention / 2);
+            long from = to - random.nextInt(retention / 2);
+            int expected = 0;
+            for (long b = Math.max(0, from + 1); b <= to; b++) {
+                expected += counts[(int) b];
+            }
+            assertEquals(expected, series.countThrough(to) - series.countThrough(from), "(" + from + ", " + to + "]");
+        }
+    }
+}
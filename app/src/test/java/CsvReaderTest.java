@@ -0,0 +1,116 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * RFC 4180 records, line endings and records that cross the read buffer
+ * @author Apon
+ */
+class CsvReaderTest {
+
+    @Test
+    void splitsPlainFields() throws IOException {
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("1", "2", "3")), readAll("a,b,c\n1,2,3\n"));
+    }
+
+    @Test
+    void keepsEmptyFields() throws IOException {
+        assertEquals(List.of(List.of("a", "", "b"), List.of("", ""), List.of("x", "")), readAll("a,,b\n,\nx,\n"));
+    }
+
+    @Test
+    void quotedFieldsHoldCommasQuotesAndLineBreaks() throws IOException {
+        String csv = "\"one, two\",\"say \"\"hi\"\"\",\"line 1\nline 2\r\nline 3\"\nnext,row\n";
+        assertEquals(List.of(List.of("one, two", "say \"hi\"", "line 1\nline 2\r\nline 3"), List.of("next", "row")),
+            readAll(csv));
+    }
+
+    @Test
+    void emptyQuotedFieldIsEmpty() throws IOException {
+        assertEquals(List.of(List.of("", "a")), readAll("\"\",a"));
+    }
+
+    @Test
+    void acceptsEveryLineEnding() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("b"), List.of("c"), List.of("d")), readAll("a\r\nb\rc\nd"));
+    }
+
+    @Test
+    void skipsBlankLines() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("b")), readAll("\n\r\na\n\n\r\n\nb\n\n"));
+    }
+
+    @Test
+    void lastRecordNeedsNoLineBreak() throws IOException {
+        assertEquals(List.of(List.of("a", "b")), readAll("a,b"));
+        assertEquals(List.of(List.of("a", "quoted")), readAll("a,\"quoted\""));
+        assertEquals(List.of(), readAll(""));
+    }
+
+    @Test
+    void keepsTextAfterAClosingQuote() throws IOException {
+        assertEquals(List.of(List.of("ab", "c")), readAll("\"a\"b,c\n"));
+    }
+
+    @Test
+    void readsRecordsAcrossTheBuffer() throws IOException {
+        // Longer than the 64K buffer, and read back in small chunks
+        StringBuilder longField = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            longField.append((char) ('a' + i % 26));
+            if (i % 1000 == 0) longField.append("\"\",\r\n");
+        }
+        String expected = longField.toString().replace("\"\"", "\"");
+        String csv = "head,\"" + longField + "\"\r\ntail,end\r\n";
+        assertEquals(List.of(List.of("head", expected), List.of("tail", "end")), readAll(new ChunkedReader(csv, 7)));
+    }
+
+    @Test
+    void countsCharactersConsumed() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader("ab,c\nde\n"))) {
+            reader.readRecord();
+            assertEquals(5, reader.getCharsRead());
+            reader.readRecord();
+            assertEquals(8, reader.getCharsRead());
+            assertNull(reader.readRecord());
+        }
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        return readAll(new StringReader(csv));
+    }
+
+    private static List<List<String>> readAll(Reader source) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(source)) {
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns at most a few characters per read, as a slow stream does
+     */
+    private static final class ChunkedReader extends StringReader {
+        private final int chunk;
+
+        ChunkedReader(String text, int chunk) {
+            super(text);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, chunk));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Task lines written by the codec read back to the same fields, and the
+ * reader's handling of deltas, unknown fields and malformed lines
+ * @author Apon
+ */
+class JsonLinesCodecTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void taskRoundTrips() throws IOException {
+        TodoListApp.Task task = new TodoListApp.Task("Say \"hi\"\\ to\nboth\tof them \u0001");
+        task.setPriority(TodoListApp.TaskPriority.URGENT);
+        task.setDueDate(new Date(1_750_000_000_000L));
+        task.setCategory("Work");
+        task.setTags(List.of("a", "b c"));
+        task.setTimeSpent(90_000);
+        task.setCreatedDate(new Date(1_700_000_000_000L));
+        task.setRecurring(true);
+        task.setRecurrencePattern("FREQ=WEEKLY;BYDAY=MO");
+
+        StringBuilder line = new StringBuilder();
+        JsonLinesCodec.encodeTask(line, "Event \"1\"", 42, task.getState(), true);
+        JsonLinesCodec.Record record = readOne(line.toString());
+
+        assertEquals(42, record.getId());
+        assertEquals("Event \"1\"", record.getEventName());
+        assertEquals(task.getText(), record.getText());
+        assertEquals("URGENT", record.getPriority());
+        assertTrue(record.isCompleted());
+        assertEquals(task.getDueDate(), record.getDueDate());
+        assertEquals("Work", record.getCategory());
+        assertEquals(List.of("a", "b c"), record.getTags());
+        assertEquals(90_000, record.getTimeSpent());
+        assertEquals(task.getCreatedDate(), record.getCreatedDate());
+        assertTrue(record.isRecurring());
+        assertEquals("FREQ=WEEKLY;BYDAY=MO", record.getRecurrencePattern());
+        assertFalse(record.isDeletion());
+
+        TodoListApp.Task imported = record.toTask();
+        assertEquals(task.getText(), imported.getText());
+        assertEquals(TodoListApp.TaskPriority.URGENT, imported.getPriority());
+        assertEquals(task.getDueDate(), imported.getDueDate());
+        assertEquals(task.getCreatedDate(), imported.getCreatedDate());
+    }
+
+    @Test
+    void missingFieldsKeepTheirDefaults() throws IOException {
+        JsonLinesCodec.Record record = readOne("{\"text\":\"bare\",\"due\":null,\"event\":null}");
+        assertEquals("bare", record.getText());
+        assertTrue(record.has("due"));
+        assertFalse(record.has("priority"));
+        assertEquals("MEDIUM", record.getPriority());
+        assertEquals("General", record.getCategory());
+        assertNull(record.getDueDate());
+        assertNull(record.getEventName());
+        assertEquals("upsert", record.getOp());
+    }
+
+    @Test
+    void skipsUnknownFieldsAndBlankLines() throws IOException {
+        String input = "\n{\"extra\":{\"nested\":[1,\"two\",{\"x\":null}]},\"text\":\"a\",\"flag\":true}\n\n"
+            + "  {\"text\":\"b\",\"score\":-1.5e3}\n";
+        List<JsonLinesCodec.Record> records = readAll(input);
+        assertEquals(2, records.size());
+        assertEquals("a", records.get(0).getText());
+        assertEquals("b", records.get(1).getText());
+    }
+
+    @Test
+    void unknownPriorityImportsAsMedium() throws IOException {
+        assertEquals(TodoListApp.TaskPriority.MEDIUM, readOne("{\"text\":\"a\",\"priority\":\"Whenever\"}").toTask().getPriority());
+        assertEquals(TodoListApp.TaskPriority.HIGH, readOne("{\"text\":\"a\",\"priority\":\" high \"}").toTask().getPriority());
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        assertThrows(IOException.class, () -> readAll("[1,2]\n"));
+        assertThrows(IOException.class, () -> readAll("{\"text\":\"unterminated}\n"));
+        assertThrows(IOException.class, () -> readAll("{\"text\" \"a\"}\n"));
+        assertThrows(IOException.class, () -> readAll("{\"text\":\"a\" \"b\":1}\n"));
+    }
+
+    @Test
+    void deltaLinesCarryTheirOpSeqAndId() throws IOException {
+        TodoListApp.Task task = new TodoListApp.Task("edited");
+        List<ChangeTracker.Change> changes = List.of(
+            new ChangeTracker.Change(3, 17, "E", task.getState()),
+            new ChangeTracker.Change(4, 18, "E", null));
+        Path file = directory.resolve("delta.jsonl");
+        assertEquals(2, JsonLinesCodec.writeChanges(changes, file));
+
+        List<JsonLinesCodec.Record> records = readAll(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertEquals("upsert", records.get(0).getOp());
+        assertEquals(3, records.get(0).getSeq());
+        assertEquals(17, records.get(0).getId());
+        assertEquals("edited", records.get(0).getText());
+
+        JsonLinesCodec.Record deletion = records.get(1);
+        assertTrue(deletion.isDeletion());
+        assertEquals(4, deletion.getSeq());
+        assertEquals(18, deletion.getId());
+        assertEquals("E", deletion.getEventName());
+        // A deletion names the task by ID only
+        assertFalse(deletion.has("text"));
+    }
+
+    private static JsonLinesCodec.Record readOne(String line) throws IOException {
+        List<JsonLinesCodec.Record> records = readAll(line + "\n");
+        assertEquals(1, records.size());
+        return records.get(0);
+    }
+
+    private static List<JsonLinesCodec.Record> readAll(String input) throws IOException {
+        List<JsonLinesCodec.Record> records = new ArrayList<>();
+        try (JsonLinesCodec.Reader reader = new JsonLinesCodec.Reader(new StringReader(input))) {
+            JsonLinesCodec.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
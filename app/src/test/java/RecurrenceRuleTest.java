@@ -0,0 +1,162 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing, occurrence generation and the next occurrence of a completed task
+ * @author Apon
+ */
+class RecurrenceRuleTest {
+
+    @Test
+    void parsesPlainPatterns() {
+        RecurrenceRule daily = RecurrenceRule.parse("Daily");
+        assertEquals(RecurrenceRule.Frequency.DAILY, daily.getFrequency());
+        assertEquals(1, daily.getInterval());
+        assertEquals("FREQ=WEEKLY;INTERVAL=2", RecurrenceRule.parse("Biweekly").toRRule());
+        assertEquals("FREQ=WEEKLY;BYDAY=MO,TU,WE,TH,FR", RecurrenceRule.parse("weekdays").toRRule());
+        assertEquals("FREQ=MONTHLY;INTERVAL=3", RecurrenceRule.parse("Every 3 months").toRRule());
+        assertEquals("FREQ=DAILY;INTERVAL=10", RecurrenceRule.parse("every 10 day").toRRule());
+    }
+
+    @Test
+    void parsesRRules() {
+        RecurrenceRule rule = RecurrenceRule.parse("RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;COUNT=5");
+        assertEquals(5, rule.getCount());
+        assertEquals("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;COUNT=5", rule.toRRule());
+        assertEquals(rule.toRRule(), RecurrenceRule.parse(rule.toRRule()).toRRule());
+        assertEquals("FREQ=MONTHLY;BYMONTHDAY=1,-1", RecurrenceRule.parse("freq=monthly;bymonthday=1,-1").toRRule());
+        assertEquals("FREQ=DAILY;COUNT=2", RecurrenceRule.parse("FREQ=DAILY;COUNT=7").withCount(2).toRRule());
+    }
+
+    @Test
+    void rejectsWhatItDoesNotUnderstand() {
+        assertNull(RecurrenceRule.parse(null));
+        assertNull(RecurrenceRule.parse(""));
+        assertNull(RecurrenceRule.parse("Now and then"));
+        assertNull(RecurrenceRule.parse("FREQ=HOURLY"));
+        assertNull(RecurrenceRule.parse("FREQ=DAILY;INTERVAL=0"));
+        assertNull(RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=1MO"));
+        assertNull(RecurrenceRule.parse("FREQ=MONTHLY;BYMONTHDAY=32"));
+        assertNull(RecurrenceRule.parse("FREQ=YEARLY;BYDAY=MO"));
+        assertNull(RecurrenceRule.parse("INTERVAL=2"));
+    }
+
+    @Test
+    void startsWithTheStartAndStopsAtTheCount() {
+        Date start = date(2025, 3, 10, 9, 30);
+        List<Date> occurrences = take(RecurrenceRule.parse("FREQ=DAILY;COUNT=3").iterator(start), 10);
+        assertEquals(List.of(start, date(2025, 3, 11, 9, 30), date(2025, 3, 12, 9, 30)), occurrences);
+    }
+
+    @Test
+    void stopsAtUntil() {
+        Date start = date(2025, 3, 10, 9, 0);
+        List<Date> occurrences = take(RecurrenceRule.parse("FREQ=WEEKLY;UNTIL=20250324").iterator(start), 10);
+        assertEquals(List.of(start, date(2025, 3, 17, 9, 0), date(2025, 3, 24, 9, 0)), occurrences);
+    }
+
+    @Test
+    void plainMonthlyClampsToShortMonths() {
+        List<Date> occurrences = take(RecurrenceRule.parse("Monthly").iterator(date(2025, 1, 31, 8, 0)), 4);
+        assertEquals(List.of(date(2025, 1, 31, 8, 0), date(2025, 2, 28, 8, 0), date(2025, 3, 31, 8, 0),
+            date(2025, 4, 30, 8, 0)), occurrences);
+    }
+
+    @Test
+    void explicitMonthlySkipsMissingDays() {
+        List<Date> occurrences = take(RecurrenceRule.parse("FREQ=MONTHLY").iterator(date(2025, 1, 31, 8, 0)), 4);
+        assertEquals(List.of(date(2025, 1, 31, 8, 0), date(2025, 3, 31, 8, 0), date(2025, 5, 31, 8, 0),
+            date(2025, 7, 31, 8, 0)), occurrences);
+    }
+
+    @Test
+    void weekdaysSkipTheWeekend() {
+        // 2025-03-07 is a Friday
+        List<Date> occurrences = take(RecurrenceRule.parse("Weekdays").iterator(date(2025, 3, 7, 9, 0)), 3);
+        assertEquals(List.of(date(2025, 3, 7, 9, 0), date(2025, 3, 10, 9, 0), date(2025, 3, 11, 9, 0)), occurrences);
+    }
+
+    @Test
+    void betweenReturnsOnlyTheRange() {
+        RecurrenceRule rule = RecurrenceRule.parse("Daily");
+        List<Date> inRange = new ArrayList<>();
+        for (Date occurrence : rule.between(date(2020, 1, 1, 12, 0), date(2025, 6, 1, 0, 0), date(2025, 6, 4, 0, 0))) {
+            inRange.add(occurrence);
+        }
+        assertEquals(List.of(date(2025, 6, 1, 12, 0), date(2025, 6, 2, 12, 0), date(2025, 6, 3, 12, 0)), inRange);
+    }
+
+    @Test
+    void nextIsStrictlyAfter() {
+        RecurrenceRule rule = RecurrenceRule.parse("Weekly");
+        Date start = date(2025, 3, 3, 10, 0);
+        assertEquals(date(2025, 3, 10, 10, 0), rule.next(start, start));
+        assertEquals(date(2025, 3, 10, 10, 0), rule.next(start, date(2025, 3, 5, 0, 0)));
+        assertNull(RecurrenceRule.parse("FREQ=WEEKLY;COUNT=2").next(start, date(2025, 3, 10, 10, 0)));
+    }
+
+    @Test
+    void nextOccurrenceSkipsMissedOnesAndResetsTheCopy() {
+        TodoListApp.Task task = new TodoListApp.Task("Water the plants");
+        task.setDueDate(date(2025, 3, 1, 18, 0));
+        task.setRecurring(true);
+        task.setRecurrencePattern("Daily");
+        task.setCompleted(true);
+        task.setTimeSpent(60_000);
+
+        TodoListApp.Task next = RecurrenceRule.nextOccurrence(task, date(2025, 3, 5, 20, 0));
+        assertNotNull(next);
+        assertEquals("Water the plants", next.getText());
+        assertEquals(date(2025, 3, 6, 18, 0), next.getDueDate());
+        assertFalse(next.isCompleted());
+        assertEquals(0, next.getTimeSpent());
+        assertEquals("Daily", next.getRecurrencePattern());
+    }
+
+    @Test
+    void nextOccurrenceCountsDown() {
+        TodoListApp.Task task = new TodoListApp.Task("Course");
+        task.setDueDate(date(2025, 3, 3, 9, 0));
+        task.setRecurring(true);
+        task.setRecurrencePattern("FREQ=WEEKLY;COUNT=3");
+
+        TodoListApp.Task second = RecurrenceRule.nextOccurrence(task, date(2025, 3, 3, 10, 0));
+        assertEquals(date(2025, 3, 10, 9, 0), second.getDueDate());
+        assertEquals("FREQ=WEEKLY;COUNT=2", second.getRecurrencePattern());
+        TodoListApp.Task third = RecurrenceRule.nextOccurrence(second, date(2025, 3, 10, 10, 0));
+        assertEquals("FREQ=WEEKLY;COUNT=1", third.getRecurrencePattern());
+        assertNull(RecurrenceRule.nextOccurrence(third, date(2025, 3, 17, 10, 0)));
+    }
+
+    @Test
+    void nextOccurrenceNeedsARecurringTask() {
+        TodoListApp.Task task = new TodoListApp.Task("Once");
+        task.setRecurrencePattern("Daily");
+        assertNull(RecurrenceRule.nextOccurrence(task, new Date()));
+        task.setRecurring(true);
+        task.setRecurrencePattern("Sometimes");
+        assertNull(RecurrenceRule.nextOccurrence(task, new Date()));
+    }
+
+    private static Date date(int year, int month, int day, int hour, int minute) {
+        return Date.from(LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static List<Date> take(Iterator<Date> occurrences, int max) {
+        List<Date> taken = new ArrayList<>();
+        while (taken.size() < max && occurrences.hasNext()) {
+            taken.add(occurrences.next());
+        }
+        return taken;
+    }
+}
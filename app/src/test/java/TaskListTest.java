@@ -0,0 +1,171 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TaskList against the List contract, checked step by step against an
+ * ArrayList, and its moves between lists
+ * @author Apon
+ */
+class TaskListTest {
+
+    @Test
+    void behavesLikeAnArrayList() {
+        Random random = new Random(7);
+        TaskList list = new TaskList("E", false);
+        List<TodoListApp.Task> model = new ArrayList<>();
+        List<TodoListApp.Task> pool = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pool.add(new TodoListApp.Task("t" + i));
+        }
+        for (int step = 0; step < 20_000; step++) {
+            TodoListApp.Task task = pool.get(random.nextInt(pool.size()));
+            int op = random.nextInt(10);
+            if (op < 3) {
+                list.add(task);
+                model.remove(task);
+                model.add(task);
+            } else if (op < 5) {
+                int index = random.nextInt(model.size() + 1);
+                list.add(index, task);
+                addModel(model, index, task);
+            } else if (op < 6 && !model.isEmpty()) {
+                int index = random.nextInt(model.size());
+                TodoListApp.Task previous = model.get(index);
+                assertSame(previous, list.set(index, task));
+                if (previous != task) {
+                    model.remove(task);
+                    model.set(model.indexOf(previous), task);
+                }
+            } else if (op < 8 && !model.isEmpty()) {
+                int index = random.nextInt(model.size());
+                assertSame(model.remove(index), list.remove(index));
+            } else {
+                assertEquals(model.remove(task), list.remove(task));
+            }
+            if (step % 97 == 0) assertSameTasks(model, list);
+        }
+        assertSameTasks(model, list);
+    }
+
+    @Test
+    void findsTasksByIdentity() {
+        TaskList list = new TaskList("E", false);
+        TodoListApp.Task a = new TodoListApp.Task("same");
+        TodoListApp.Task b = new TodoListApp.Task("same");
+        list.add(a);
+        assertTrue(list.contains(a));
+        assertFalse(list.contains(b));
+        assertEquals(-1, list.indexOf(b));
+        assertFalse(list.remove(b));
+        assertFalse(list.remove("same"));
+        assertEquals(1, list.size());
+    }
+
+    @Test
+    void addingATaskHeldByAnotherListMovesIt() {
+        TaskList pending = new TaskList("E", false);
+        TaskList completed = new TaskList("E", true);
+        TodoListApp.Task a = new TodoListApp.Task("a");
+        TodoListApp.Task b = new TodoListApp.Task("b");
+        pending.add(a);
+        pending.add(b);
+        completed.add(a);
+        assertEquals(List.of(b), new ArrayList<>(pending));
+        assertEquals(List.of(a), new ArrayList<>(completed));
+        completed.set(0, b);
+        assertTrue(pending.isEmpty());
+        assertEquals(List.of(b), new ArrayList<>(completed));
+        assertFalse(completed.contains(a));
+    }
+
+    @Test
+    void rejectsIndexesOutOfRange() {
+        TaskList list = new TaskList("E", false);
+        list.add(new TodoListApp.Task("a"));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(2, new TodoListApp.Task("b")));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.set(1, new TodoListApp.Task("b")));
+    }
+
+    @Test
+    void iteratorRemovesAndFailsFast() {
+        TaskList list = new TaskList("E", false);
+        List<TodoListApp.Task> kept = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            TodoListApp.Task task = new TodoListApp.Task("t" + i);
+            list.add(task);
+            if (i % 3 == 0) kept.add(task);
+        }
+        int index = 0;
+        for (Iterator<TodoListApp.Task> it = list.iterator(); it.hasNext(); index++) {
+            it.next();
+            // Removing most tasks compacts the slots mid-iteration
+            if (index % 3 != 0) it.remove();
+        }
+        assertSameTasks(kept, list);
+
+        Iterator<TodoListApp.Task> it = list.iterator();
+        it.next();
+        list.add(new TodoListApp.Task("late"));
+        assertThrows(ConcurrentModificationException.class, it::next);
+        assertThrows(IllegalStateException.class, () -> list.iterator().remove());
+    }
+
+    @Test
+    void sortsAndClears() {
+        TaskList list = new TaskList("E", false);
+        for (String text : new String[] { "c", "a", "d", "b" }) {
+            list.add(new TodoListApp.Task(text));
+        }
+        list.remove(2);
+        list.sort(Comparator.comparing(TodoListApp.Task::getText));
+        List<String> texts = new ArrayList<>();
+        for (TodoListApp.Task task : list) {
+            texts.add(task.getText());
+        }
+        assertEquals(List.of("a", "b", "c"), texts);
+
+        TodoListApp.Task first = list.get(0);
+        list.clear();
+        assertEquals(0, list.size());
+        assertFalse(list.contains(first));
+        list.add(first);
+        assertEquals(0, list.indexOf(first));
+    }
+
+    // A task already held moves to before the task now at the index
+    private static void addModel(List<TodoListApp.Task> model, int index, TodoListApp.Task task) {
+        TodoListApp.Task before = index < model.size() ? model.get(index) : null;
+        if (before == task) return;
+        model.remove(task);
+        if (before == null) {
+            model.add(task);
+        } else {
+            model.add(model.indexOf(before), task);
+        }
+    }
+
+    private static void assertSameTasks(List<TodoListApp.Task> expected, TaskList actual) {
+        assertEquals(expected.size(), actual.size());
+        int index = 0;
+        for (TodoListApp.Task task : actual) {
+            assertSame(expected.get(index), task);
+            assertSame(task, actual.get(index));
+            assertEquals(index, actual.indexOf(task));
+            index++;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Timeouts fire on the tick they are due in, not before, and exactly once
+ * @author Apon
+ */
+class TimingWheelTest {
+
+    @Test
+    void firesOnceDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 420);
+        assertEquals(2, wheel.size());
+        assertEquals(List.of(), wheel.advance(199));
+        assertEquals(List.of("a"), wheel.advance(200));
+        assertEquals(List.of(), wheel.advance(300));
+        assertEquals(List.of("b"), wheel.advance(400));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 1_000);
+        wheel.schedule("late", 10);
+        assertEquals(List.of(), wheel.advance(1_050));
+        assertEquals(List.of("late"), wheel.advance(1_100));
+    }
+
+    @Test
+    void laterTurnsStayInTheBucket() {
+        // Eight buckets of 100 ms: 150 and 950 share a bucket a turn apart
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("now", 150);
+        wheel.schedule("next turn", 950);
+        assertEquals(List.of("now"), wheel.advance(100));
+        assertEquals(List.of(), wheel.advance(899));
+        assertEquals(List.of("next turn"), wheel.advance(900));
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        TimingWheel.Timeout<String> a = wheel.schedule("a", 300);
+        TimingWheel.Timeout<String> b = wheel.schedule("b", 300);
+        TimingWheel.Timeout<String> c = wheel.schedule("c", 300);
+        assertTrue(wheel.cancel(b));
+        assertFalse(wheel.cancel(b));
+        assertFalse(wheel.cancel(null));
+        assertEquals(2, wheel.size());
+        List<String> fired = wheel.advance(300);
+        Collections.sort(fired);
+        assertEquals(List.of("a", "c"), fired);
+        assertFalse(wheel.cancel(a));
+        assertFalse(wheel.cancel(c));
+        assertEquals("a", a.getPayload());
+        assertEquals(300, a.getDeadline());
+    }
+
+    @Test
+    void longPauseFiresEverythingDue() {
+        Random random = new Random(3);
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 16, 0);
+        List<Long> due = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            long deadline = 10 + random.nextInt(100_000);
+            wheel.schedule(deadline, deadline);
+            if (deadline < 50_000) due.add(deadline);
+        }
+        List<Long> fired = wheel.advance(49_999);
+        Collections.sort(fired);
+        Collections.sort(due);
+        assertEquals(due, fired);
+        assertEquals(1_000 - due.size(), wheel.size());
+        assertEquals(1_000 - due.size(), wheel.advance(1_000_000).size());
+    }
+
+    @Test
+    void neverFiresEarly() {
+        Random random = new Random(11);
+        TimingWheel<Long> wheel = new TimingWheel<>(50, 32, 0);
+        for (int i = 0; i < 500; i++) {
+            long deadline = random.nextInt(20_000);
+            wheel.schedule(deadline, deadline);
+        }
+        int fired = 0;
+        for (long now = 0; now <= 20_000; now += 1 + random.nextInt(400)) {
+            for (long deadline : wheel.advance(now)) {
+                // A deadline fires with the tick it falls in
+                assertTrue(deadline / 50 <= now / 50, deadline + " fired at " + now);
+                fired++;
+            }
+        }
+        fired += wheel.advance(20_050).size();
+        assertEquals(500, fired);
+    }
+
+    @Test
+    void rejectsABadTick() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, 8, 0));
+    }
+}
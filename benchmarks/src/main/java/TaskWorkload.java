@@ -0,0 +1,245 @@
+import benchmarks.Workload;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link Workload} on the app's own classes, in the unnamed package like
+ * them. Tasks are held and indexed as the app holds them: in a
+ * {@link TaskRepository} written by the benchmark thread, with the
+ * same listeners the app registers for searching, sorting and statistics.
+ * @author Apon
+ */
+public class TaskWorkload implements Workload {
+
+    private static final String EVENT = "Benchmark";
+    private static final String IMPORTED_EVENT = "Imported";
+    private static final String[] WORDS = {
+        "review", "draft", "call", "email", "report", "budget", "meeting", "plan",
+        "design", "fix", "deploy", "write", "read", "order", "book", "pay"
+    };
+    private static final String[] CATEGORIES = {
+        "General", "Work", "Personal", "Shopping", "Health", "Finance", "Travel", "Home"
+    };
+    private static final int TAG_COUNT = 50;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final BlockExporter.Progress NO_PROGRESS = new BlockExporter.Progress() {
+        @Override
+        public void update(long tasksWritten, long totalTasks) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    // Snapshots are published on demand, as the app publishes once per EDT turn, not per add
+    private final TaskRepository repository = new TaskRepository(TaskRepository.callerRuns());
+    private final List<TaskChangeListener> listeners = new ArrayList<>();
+    private final TagIndex tagIndex = new TagIndex();
+    private final TaskSorter taskSorter = new TaskSorter();
+    private TaskStore store;
+
+    @Override
+    public void setUp(int tasks, Path directory) throws IOException {
+        TaskIds.open(directory.resolve(TodoListApp.TASK_IDS_FILE).toFile());
+        store = new TaskStore(directory.toFile());
+        store.setTagInterner(tagIndex::internAll);
+        listeners.add(new TaskRegistry());
+        listeners.add(tagIndex);
+        listeners.add(taskSorter);
+        listeners.add(new TaskStatistics());
+        taskSorter.setOrder(Arrays.asList(TaskSorter.SortKey.PRIORITY, TaskSorter.SortKey.DUE_DATE));
+
+        // Same seed, same workspace on every run
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        repository.addEvent(EVENT, "");
+        TaskList pending = repository.getTasks(EVENT, false);
+        TaskList completed = repository.getTasks(EVENT, true);
+        TodoListApp.TaskPriority[] priorities = TodoListApp.TaskPriority.values();
+        for (int i = 0; i < tasks; i++) {
+            TodoListApp.Task task = new TodoListApp.Task(WORDS[random.nextInt(WORDS.length)] + " "
+                + WORDS[random.nextInt(WORDS.length)] + " " + i);
+            task.setPriority(priorities[random.nextInt(priorities.length)]);
+            task.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            if (random.nextInt(10) < 6) {
+                task.setDueDate(new Date(now + (random.nextInt(60) - 30) * DAY_MILLIS));
+            }
+            List<String> tags = new ArrayList<>();
+            for (int t = random.nextInt(4); t > 0; t--) {
+                tags.add("tag" + random.nextInt(TAG_COUNT));
+            }
+            task.setTags(tagIndex.internAll(tags));
+            task.setCompleted(random.nextInt(5) == 0);
+            (task.isCompleted() ? completed : pending).add(task);
+            fireTaskAdded(EVENT, task);
+        }
+        save();
+    }
+
+    @Override
+    public int load() throws IOException {
+        // Whatever was held for the event leaves the indexes first
+        fireEventTasksRemoved(EVENT);
+        int loaded = 0;
+        for (boolean completed : new boolean[] { false, true }) {
+            TaskList tasks = repository.getTasks(EVENT, completed);
+            tasks.clear();
+            for (TodoListApp.Task task : store.load(EVENT, completed)) {
+                tasks.add(task);
+                fireTaskAdded(EVENT, task);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void save() throws IOException {
+        store.save(EVENT, repository.getTasks(EVENT, false), repository.getTasks(EVENT, true));
+    }
+
+    @Override
+    public int search(String searchText) {
+        TaskSearch search = new TaskSearch(searchText, tagIndex);
+        int matches = 0;
+        for (boolean completed : new boolean[] { false, true }) {
+            for (TodoListApp.Task task : taskSorter.sorted(EVENT, completed, repository.getTasks(EVENT, completed))) {
+                if (search.matches(task)) matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public int filter(String filter) {
+        int shown = 0;
+        for (TodoListApp.Task task : taskSorter.sorted(EVENT, false, repository.getTasks(EVENT, false))) {
+            if (TaskSearch.showsPending(filter, task)) shown++;
+        }
+        if (TaskSearch.showsCompleted(filter)) {
+            shown += taskSorter.sorted(EVENT, true, repository.getTasks(EVENT, true)).size();
+        }
+        return shown;
+    }
+
+    @Override
+    public String statistics() {
+        TaskStatistics statistics = new TaskStatistics();
+        for (boolean completed : new boolean[] { false, true }) {
+            for (TodoListApp.Task task : repository.getTasks(EVENT, completed)) {
+                statistics.taskAdded(EVENT, task);
+            }
+        }
+        StringBuilder report = new StringBuilder();
+        statistics.appendReport(report, 1, EVENT, System.currentTimeMillis());
+        return report.toString();
+    }
+
+    @Override
+    public long export(String format, Path file) throws IOException {
+        List<EventSnapshot> snapshots = Collections.singletonList(EventSnapshot.capture(EVENT,
+            repository.getTasks(EVENT, false), repository.getTasks(EVENT, true)));
+        BlockExporter exporter;
+        switch (format) {
+            case "jsonl": exporter = new JsonLinesCodec(); break;
+            case "csv": exporter = new CsvExporter(); break;
+            default: throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        return exporter.export(snapshots, file, NO_PROGRESS);
+    }
+
+    @Override
+    public void writeImportFiles(Path csv, Path jsonLines) throws IOException {
+        List<EventSnapshot> snapshots = Collections.singletonList(EventSnapshot.capture(IMPORTED_EVENT,
+            repository.getTasks(EVENT, false), repository.getTasks(EVENT, true)));
+        new CsvExporter().export(snapshots, csv, NO_PROGRESS);
+        new JsonLinesCodec().export(snapshots, jsonLines, NO_PROGRESS);
+    }
+
+    @Override
+    public int importFile(Path file) throws IOException {
+        // Tasks already held are fingerprinted first, then each row is checked against them
+        long held = 0;
+        for (String eventName : repository.getEventNames()) {
+            held += repository.getTasks(eventName, false).size() + repository.getTasks(eventName, true).size();
+        }
+        LongHashSet fingerprints = new LongHashSet((int) Math.min(Integer.MAX_VALUE / 2, held + Files.size(file) / 100));
+        for (String eventName : repository.getEventNames()) {
+            for (boolean completed : new boolean[] { false, true }) {
+                for (TodoListApp.Task task : repository.getTasks(eventName, completed)) {
+                    fingerprints.add(TaskFingerprint.of(eventName, task.getState()));
+                }
+            }
+        }
+        int imported = 0;
+        if (file.getFileName().toString().endsWith(".jsonl")) {
+            try (JsonLinesCodec.Reader reader = new JsonLinesCodec.Reader(
+                    new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+                JsonLinesCodec.Record record;
+                while ((record = reader.next()) != null) {
+                    if (record.isDeletion() || record.getEventName() == null || record.getEventName().isEmpty()) {
+                        continue;
+                    }
+                    if (admit(fingerprints, record.getEventName(), record.toTask(), record.getTags())) imported++;
+                }
+            }
+        } else {
+            try (CsvTaskReader reader = new CsvTaskReader(
+                    new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+                CsvTaskReader.Row row;
+                while ((row = reader.next()) != null) {
+                    if (admit(fingerprints, row.getEventName(), row.getTask(), row.getTags())) imported++;
+                }
+            }
+        }
+        return imported;
+    }
+
+    @Override
+    public void removeImported() {
+        if (!repository.containsEvent(IMPORTED_EVENT)) return;
+        fireEventTasksRemoved(IMPORTED_EVENT);
+        repository.removeEvent(IMPORTED_EVENT);
+    }
+
+    // Add a row that is no duplicate, as the import does on the EDT
+    private boolean admit(LongHashSet fingerprints, String eventName, TodoListApp.Task task, List<String> tags) {
+        if (!fingerprints.add(TaskFingerprint.of(eventName, task.getState()))) return false;
+        if (!repository.containsEvent(eventName)) {
+            repository.addEvent(eventName, "");
+        }
+        if (!tags.isEmpty()) {
+            task.setTags(tagIndex.internAll(tags));
+        }
+        repository.getTasks(eventName, task.isCompleted()).add(task);
+        fireTaskAdded(eventName, task);
+        return true;
+    }
+
+    private void fireEventTasksRemoved(String eventName) {
+        for (boolean completed : new boolean[] { false, true }) {
+            for (TodoListApp.Task task : repository.getTasks(eventName, completed)) {
+                for (TaskChangeListener listener : listeners) {
+                    listener.taskRemoved(eventName, task);
+                }
+            }
+        }
+    }
+
+    private void fireTaskAdded(String eventName, TodoListApp.Task task) {
+        for (TaskChangeListener listener : listeners) {
+            listener.taskAdded(eventName, task);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exporting an event, and importing an export of it under another event
+ * name so that every row is added rather than skipped as a duplicate
+ * @author Apon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Djava.awt.headless=true" })
+public class ExchangeBenchmark {
+
+    private Path importCsv;
+    private Path importJsonLines;
+
+    @Setup(Level.Trial)
+    public void writeImportFiles(WorkspaceState state) throws IOException {
+        importCsv = state.directory.resolve("import.csv");
+        importJsonLines = state.directory.resolve("import.jsonl");
+        state.workload.writeImportFiles(importCsv, importJsonLines);
+    }
+
+    // Each import starts from the workspace without the imported event
+    @TearDown(Level.Invocation)
+    public void removeImported(WorkspaceState state) {
+        state.workload.removeImported();
+    }
+
+    @Benchmark
+    public long exportJsonLines(WorkspaceState state) throws IOException {
+        return state.workload.export("jsonl", state.directory.resolve("export.jsonl"));
+    }
+
+    @Benchmark
+    public long exportCsv(WorkspaceState state) throws IOException {
+        return state.workload.export("csv", state.directory.resolve("export.csv"));
+    }
+
+    @Benchmark
+    public int importCsv(WorkspaceState state) throws IOException {
+        return state.workload.importFile(importCsv);
+    }
+
+    @Benchmark
+    public int importJsonLines(WorkspaceState state) throws IOException {
+        return state.workload.importFile(importJsonLines);
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searching and filtering an event's tasks, and aggregating statistics
+ * @author Apon
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Djava.awt.headless=true" })
+public class QueryBenchmark {
+
+    @Benchmark
+    public int searchText(WorkspaceState state) {
+        return state.workload.search("review");
+    }
+
+    @Benchmark
+    public int searchTag(WorkspaceState state) {
+        return state.workload.search("#tag7 budget");
+    }
+
+    @Benchmark
+    public int filterHighPriority(WorkspaceState state) {
+        return state.workload.filter("High Priority");
+    }
+
+    @Benchmark
+    public int filterOverdue(WorkspaceState state) {
+        return state.workload.filter("Overdue");
+    }
+
+    @Benchmark
+    public String statistics(WorkspaceState state) {
+        return state.workload.statistics();
+    }
+}
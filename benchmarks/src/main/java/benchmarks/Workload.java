@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The app's hot paths, without its window, on one generated event. JMH only
+ * runs benchmarks in a named package, and code in a named package cannot
+ * refer to the app's classes in the unnamed package, so the benchmarks reach
+ * them through this interface; TaskWorkload implements it next to the app.
+ * @author Apon
+ */
+public interface Workload {
+
+    /**
+     * Generate the tasks, index them and save the event
+     * @param tasks number of tasks, a fifth of them completed
+     * @param directory an empty data directory
+     */
+    void setUp(int tasks, Path directory) throws IOException;
+
+    /**
+     * Read the event back from its files and index it again, as loadTasksFromFile
+     * @return number of tasks loaded
+     */
+    int load() throws IOException;
+
+    /**
+     * Write the event's files, as autoSaveCurrentEvent
+     */
+    void save() throws IOException;
+
+    /**
+     * Match the event's tasks in display order, as performSearch without the rows
+     * @param searchText what was typed in the search box
+     * @return number of matching tasks
+     */
+    int search(String searchText);
+
+    /**
+     * Pick the event's tasks in display order, as applyFilter without the rows
+     * @param filter the filter menu's item
+     * @return number of tasks shown
+     */
+    int filter(String filter);
+
+    /**
+     * Aggregate the counts of every task from scratch, as indexing on load
+     * does, and read them for the statistics report, as showStatistics
+     * @return the report
+     */
+    String statistics();
+
+    /**
+     * Snapshot the event and write it, as exportData
+     * @param format jsonl or csv
+     * @param file the file to write
+     * @return number of tasks written
+     */
+    long export(String format, Path file) throws IOException;
+
+    /**
+     * Export the event under another name, so that importing the files adds
+     * every row instead of skipping them as duplicates
+     * @param csv the CSV file to write
+     * @param jsonLines the JSON Lines file to write
+     */
+    void writeImportFiles(Path csv, Path jsonLines) throws IOException;
+
+    /**
+     * Import a CSV or JSON Lines file, as importData: parse it, skip the rows
+     * matching a task already held, and add the rest to the lists and indexes
+     * @param file the file to read, JSON Lines if it ends in .jsonl
+     * @return number of tasks imported
+     */
+    int importFile(Path file) throws IOException;
+
+    /**
+     * Drop the event created by {@link #importFile(Path)}
+     */
+    void removeImported();
+
+    /**
+     * @return a new workload; the implementation is looked up by name
+     */
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("TaskWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("TaskWorkload not found", e);
+        }
+    }
+}
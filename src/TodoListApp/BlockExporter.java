@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes event snapshots to a file, one text record per task. Tasks are cut
+ * into blocks that are encoded to UTF-8 in parallel and written to a file
+ * channel in their original order through a large buffer. Only a bounded
+ * number of encoded blocks is held in memory at once. Subclasses supply the
+ * record format, and may skip tasks the format has no record for.
+ * @author Apon
+ */
+public abstract class BlockExporter {
+
+    private static final int BLOCK_SIZE = 5000;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Progress callbacks, called from the exporting thread
+     */
+    public interface Progress {
+        void update(long tasksWritten, long totalTasks);
+        boolean isCancelled();
+    }
+
+    /**
+     * UTF-8 bytes of an encoded block and the number of records in it
+     */
+    private static class Encoded {
+        final byte[] bytes;
+        final int records;
+
+        Encoded(byte[] bytes, int records) {
+            this.bytes = bytes;
+            this.records = records;
+        }
+    }
+
+    /**
+     * A run of tasks from one list of one event
+     */
+    private static class Block {
+        final EventSnapshot snapshot;
+        final List<TaskState> tasks;
+        final boolean completed;
+        final int from; // list index of the first task
+
+        Block(EventSnapshot snapshot, List<TaskState> tasks, boolean completed, int from) {
+            this.snapshot = snapshot;
+            this.tasks = tasks;
+            this.completed = completed;
+            this.from = from;
+        }
+    }
+
+    /**
+     * Export the snapshots, events in order and pending before completed tasks
+     * within each event. A cancelled export deletes the partial file.
+     * @param snapshots the events to export
+     * @param file the destination, replaced if it exists
+     * @param progress progress and cancellation
+     * @return number of records written
+     * @throws IOException if the file cannot be written
+     * @throws CancellationException if cancelled
+     */
+    public long export(List<EventSnapshot> snapshots, Path file, Progress progress) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        long total = 0;
+        for (EventSnapshot snapshot : snapshots) {
+            addBlocks(blocks, snapshot, false);
+            addBlocks(blocks, snapshot, true);
+            total += snapshot.size();
+        }
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService encoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "export-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Encoded>> inFlight = new ArrayDeque<>();
+        Deque<Integer> inFlightSizes = new ArrayDeque<>();
+        long done = 0;
+        long records = 0;
+        boolean finished = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            if (header() != null) {
+                write(channel, buffer, header().getBytes(StandardCharsets.UTF_8));
+            }
+
+            int next = 0;
+            int window = threads * 2;
+            while (next < blocks.size() || !inFlight.isEmpty()) {
+                while (next < blocks.size() && inFlight.size() < window) {
+                    Block block = blocks.get(next++);
+                    inFlight.add(encoders.submit(() -> encode(block)));
+                    inFlightSizes.add(block.tasks.size());
+                }
+                if (progress.isCancelled()) throw new CancellationException();
+                Encoded encoded = await(inFlight.poll());
+                write(channel, buffer, encoded.bytes);
+                records += encoded.records;
+                done += inFlightSizes.poll();
+                progress.update(done, total);
+            }
+            if (footer() != null) {
+                write(channel, buffer, footer().getBytes(StandardCharsets.UTF_8));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            finished = true;
+        } finally {
+            encoders.shutdownNow();
+            if (!finished) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return records;
+    }
+
+    private static void addBlocks(List<Block> blocks, EventSnapshot snapshot, boolean completed) {
+        List<TaskState> tasks = completed ? snapshot.getCompleted() : snapshot.getPending();
+        for (int from = 0; from < tasks.size(); from += BLOCK_SIZE) {
+            blocks.add(new Block(snapshot, tasks.subList(from, Math.min(tasks.size(), from + BLOCK_SIZE)), completed, from));
+        }
+    }
+
+    private static Encoded await(Future<Encoded> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            throw new IOException("Encoding failed", e.getCause());
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer direct = ByteBuffer.wrap(bytes);
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private Encoded encode(Block block) {
+        StringBuilder out = new StringBuilder(block.tasks.size() * 128);
+        int records = 0;
+        int index = block.from;
+        for (TaskState task : block.tasks) {
+            long id = block.snapshot.getId(block.completed, index++);
+            if (encode(out, block.snapshot.getEventName(), id, task, block.completed)) records++;
+        }
+        return new Encoded(out.toString().getBytes(StandardCharsets.UTF_8), records);
+    }
+
+    /**
+     * @return text written before any task, including its line terminator, or null for none
+     */
+    protected String header() {
+        return null;
+    }
+
+    /**
+     * @return text written after every task, including its line terminator, or null for none
+     */
+    protected String footer() {
+        return null;
+    }
+
+    /**
+     * Append one task record, including its line terminator. Called from
+     * several threads at once.
+     * @param out the block being encoded
+     * @param eventName the task's event
+     * @param id the task's ID
+     * @param task the task
+     * @param completed true for a task from the completed list
+     * @return false if the format has no record for the task and nothing was appended
+     */
+    protected abstract boolean encode(StringBuilder out, String eventName, long id, TaskState task, boolean completed);
+}
@@ -0,0 +1,323 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Change data capture for incremental exports. Every task carries a
+ * modification sequence number, stamped from one workspace-wide counter when
+ * the task is added or updated and saved with it in the event files.
+ *
+ * Only tasks changed after the watermark of the last delta export, and
+ * tombstones for tasks deleted since, are indexed by sequence number, so a
+ * delta is a range read whose cost depends on the number of changes and not
+ * on the size of the workspace. Tombstones are appended to a log as they
+ * happen so deletions survive a restart. Until the first delta export, which
+ * is a full one, nothing is indexed; indexing starts when that export takes
+ * its snapshots, so changes made while it is written reach the next delta.
+ * @author Apon
+ */
+public class ChangeTracker implements TaskChangeListener {
+
+    /**
+     * One changed or deleted task as of {@link #capture()}
+     */
+    public static final class Change {
+        private final long seq;
+        private final long id;
+        private final String eventName;
+        private final TaskState state; // null for a deletion
+
+        Change(long seq, long id, String eventName, TaskState state) {
+            this.seq = seq;
+            this.id = id;
+            this.eventName = eventName;
+            this.state = state;
+        }
+
+        public long getSeq() { return seq; }
+        public long getId() { return id; }
+        public String getEventName() { return eventName; }
+        public boolean isDeletion() { return state == null; }
+        public TaskState getState() { return state; }
+    }
+
+    /**
+     * Changes between two watermarks, in sequence order
+     */
+    public static final class Delta {
+        private final long fromSeq;
+        private final long toSeq;
+        private final List<Change> changes;
+
+        Delta(long fromSeq, long toSeq, List<Change> changes) {
+            this.fromSeq = fromSeq;
+            this.toSeq = toSeq;
+            this.changes = changes;
+        }
+
+        public long getFromSeq() { return fromSeq; }
+        public long getToSeq() { return toSeq; }
+        public List<Change> getChanges() { return changes; }
+    }
+
+    private static class Entry {
+        final String eventName;
+        final TodoListApp.Task task;
+
+        Entry(String eventName, TodoListApp.Task task) {
+            this.eventName = eventName;
+            this.task = task;
+        }
+    }
+
+    private File watermarkFile;
+    private File tombstoneFile;
+    private final TreeMap<Long, Entry> changed = new TreeMap<>();
+    private final TreeMap<Long, Change> deleted = new TreeMap<>();
+    private long watermark = -1;
+    // Changes after this sequence number are indexed; -1 until tracking starts
+    private long trackedFrom = -1;
+    private long sequence;
+    private boolean recording = true;
+    private PrintWriter tombstoneLog;
+
+    /**
+     * @param watermarkFile holds the sequence number of the last delta export
+     * @param tombstoneFile log of deletions since that export
+     */
+    public ChangeTracker(File watermarkFile, File tombstoneFile) {
+        this.watermarkFile = watermarkFile;
+        this.tombstoneFile = tombstoneFile;
+        readWatermark();
+        readTombstones();
+    }
+
+    /**
+     * Loading tasks from disk is not a change; the app switches recording off
+     * while it reads event files so loaded tasks keep their stored numbers
+     * @param recording false to index tasks without stamping them
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * @return true once a delta export has been committed
+     */
+    public boolean hasWatermark() {
+        return watermark >= 0;
+    }
+
+    /**
+     * Start indexing changes, if not yet started, as a full export that will
+     * set the first watermark takes its snapshots. Call on the thread that
+     * owns the tasks, together with the capture.
+     * @return the sequence number the snapshots are taken at
+     */
+    public long startTracking() {
+        if (trackedFrom < 0) trackedFrom = sequence;
+        return sequence;
+    }
+
+    /**
+     * @return the last sequence number handed out
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return number of changes and deletions waiting for the next delta export
+     */
+    public int getPendingCount() {
+        return changed.size() + deleted.size();
+    }
+
+    /**
+     * Copy the changes since the watermark. Must be called on the thread that
+     * owns the tasks; the result holds only immutable states.
+     * @return the delta up to the current sequence number
+     */
+    public Delta capture() {
+        List<Change> changes = new ArrayList<>(getPendingCount());
+        Iterator<Map.Entry<Long, Entry>> live = changed.entrySet().iterator();
+        Iterator<Change> gone = deleted.values().iterator();
+        Map.Entry<Long, Entry> nextLive = live.hasNext() ? live.next() : null;
+        Change nextGone = gone.hasNext() ? gone.next() : null;
+        // Merge both indexes in sequence order
+        while (nextLive != null || nextGone != null) {
+            if (nextGone == null || (nextLive != null && nextLive.getKey() < nextGone.getSeq())) {
+                TodoListApp.Task task = nextLive.getValue().task;
+                changes.add(new Change(nextLive.getKey(), task.getId(), nextLive.getValue().eventName,
+                    task.getState()));
+                nextLive = live.hasNext() ? live.next() : null;
+            } else {
+                changes.add(nextGone);
+                nextGone = gone.hasNext() ? gone.next() : null;
+            }
+        }
+        return new Delta(Math.max(0, watermark), sequence, changes);
+    }
+
+    /**
+     * Record that everything up to a sequence number has been exported, and
+     * forget those changes
+     * @param toSeq the delta's upper bound
+     * @throws IOException if the watermark cannot be stored
+     */
+    public void commit(long toSeq) throws IOException {
+        File temp = new File(watermarkFile.getPath() + ".tmp");
+        Files.write(temp.toPath(), Long.toString(toSeq).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), watermarkFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        watermark = toSeq;
+        trackedFrom = Math.max(trackedFrom, toSeq);
+        changed.headMap(toSeq, true).clear();
+        deleted.headMap(toSeq, true).clear();
+        rewriteTombstones();
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        if (recording) {
+            task.setModSeq(++sequence);
+        } else if (task.getModSeq() == 0) {
+            // Stored before sequence numbers existed; covered by the first full export
+            return;
+        } else {
+            sequence = Math.max(sequence, task.getModSeq());
+        }
+        index(eventName, task);
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        unindex(task);
+        if (!recording || trackedFrom < 0) return;
+        Change tombstone = new Change(++sequence, task.getId(), eventName, null);
+        deleted.put(tombstone.getSeq(), tombstone);
+        try {
+            if (tombstoneLog == null) {
+                tombstoneLog = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tombstoneFile, true), StandardCharsets.UTF_8)));
+            }
+            tombstoneLog.println(formatTombstone(tombstone));
+            tombstoneLog.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing change tombstones: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        if (!recording) return;
+        unindex(task);
+        task.setModSeq(++sequence);
+        index(eventName, task);
+    }
+
+    /**
+     * Continue with the watermark and tombstones of another directory, as
+     * when a follower takes over the data directory. Tasks are not indexed
+     * again; the caller adds them once more.
+     * @param watermarkFile holds the sequence number of the last delta export
+     * @param tombstoneFile log of deletions since that export
+     */
+    public void moveTo(File watermarkFile, File tombstoneFile) {
+        close();
+        this.watermarkFile = watermarkFile;
+        this.tombstoneFile = tombstoneFile;
+        changed.clear();
+        deleted.clear();
+        watermark = -1;
+        trackedFrom = -1;
+        readWatermark();
+        readTombstones();
+    }
+
+    /**
+     * Close the tombstone log
+     */
+    public void close() {
+        if (tombstoneLog != null) {
+            tombstoneLog.close();
+            tombstoneLog = null;
+        }
+    }
+
+    private void index(String eventName, TodoListApp.Task task) {
+        if (trackedFrom >= 0 && task.getModSeq() > trackedFrom) {
+            changed.put(task.getModSeq(), new Entry(eventName, task));
+        }
+    }
+
+    private void unindex(TodoListApp.Task task) {
+        Entry entry = changed.get(task.getModSeq());
+        if (entry != null && entry.task == task) {
+            changed.remove(task.getModSeq());
+        }
+    }
+
+    private void readWatermark() {
+        if (!watermarkFile.exists()) return;
+        try {
+            watermark = Long.parseLong(new String(Files.readAllBytes(watermarkFile.toPath()), StandardCharsets.UTF_8).trim());
+            trackedFrom = watermark;
+            sequence = Math.max(sequence, watermark);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading export watermark: " + e.getMessage());
+        }
+    }
+
+    private void readTombstones() {
+        if (!tombstoneFile.exists()) return;
+        try {
+            for (String line : Files.readAllLines(tombstoneFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length < 3) continue; // cut short by a crash
+                try {
+                    long seq = Long.parseLong(fields[0]);
+                    sequence = Math.max(sequence, seq);
+                    if (seq > watermark) {
+                        deleted.put(seq, new Change(seq, Long.parseLong(fields[1]), TaskCodec.unescape(fields[2]), null));
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip a damaged line
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading change tombstones: " + e.getMessage());
+        }
+    }
+
+    private void rewriteTombstones() throws IOException {
+        close();
+        if (deleted.isEmpty()) {
+            Files.deleteIfExists(tombstoneFile.toPath());
+            return;
+        }
+        File temp = new File(tombstoneFile.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))) {
+            for (Change tombstone : deleted.values()) {
+                out.println(formatTombstone(tombstone));
+            }
+        }
+        Files.move(temp.toPath(), tombstoneFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String formatTombstone(Change tombstone) {
+        return tombstone.getSeq() + "\t" + tombstone.getId() + "\t" + TaskCodec.escape(tombstone.getEventName());
+    }
+}
@@ -0,0 +1,978 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Undo/redo history of typed task commands. A command finds its task by its
+ * persisted ID and records the event, list (pending or completed) and index
+ * to put it back in place, and an edit only stores the fields it changed, so
+ * entries are a few dozen bytes and hold no references to live tasks.
+ *
+ * The undo and redo stacks are ring buffers bounded by bytes; pushing past
+ * the bound drops the oldest entries. Every push, undo and redo is appended to
+ * a journal on disk, which is replayed and compacted at startup so the history
+ * survives a restart. The journal starts with a format number; one written
+ * in another format is dropped rather than misread.
+ *
+ * Updates recorded in the running session also keep the task's immutable
+ * before and after {@link TaskState}. While the task still holds one of them,
+ * undo and redo swap the state back instead of replaying the field delta.
+ *
+ * Bulk changes go through a {@link Transaction}, which applies its mutations
+ * immediately, rolls all of them back if one fails, and records the whole
+ * batch as a single undo entry.
+ * @author Apon
+ */
+public class CommandLog {
+
+    private static final int MAX_HISTORY_BYTES = 1 << 20;
+    // Journal header: a magic number, then the format. Format 2 writes strings
+    // as a length and UTF-8 bytes instead of writeUTF, which stops at 64 KB;
+    // format 3 keys updates on the task ID instead of its creation time.
+    private static final int JOURNAL_MAGIC = 0x54444F55;
+    private static final byte JOURNAL_FORMAT = 3;
+    private static final int JOURNAL_HEADER_BYTES = 5;
+
+    // Journal record types
+    private static final byte OP_PUSH = 1;
+    private static final byte OP_UNDO = 2;
+    private static final byte OP_REDO = 3;
+    private static final byte OP_DROP_UNDO = 4;
+    private static final byte OP_DROP_REDO = 5;
+
+    // Command types
+    private static final byte ADD_TASK = 1;
+    private static final byte DELETE_TASK = 2;
+    private static final byte UPDATE_TASK = 3;
+    private static final byte BATCH = 4;
+
+    // Field positions in a stored task line
+    private static final int FIELD_TIME_SPENT = 5;
+    private static final int FIELD_ID = 10;
+
+    /**
+     * Access to the task lists the commands are applied to
+     */
+    public interface Target {
+        /**
+         * @return the event's pending or completed list, or null if the event is gone
+         */
+        List<TodoListApp.Task> getTasks(String eventName, boolean completed);
+        TodoListApp.Task parseTask(String line);
+        String formatTask(TodoListApp.Task task);
+        /**
+         * @return the loaded task with an ID, or null
+         */
+        TodoListApp.Task findTask(long id);
+        void taskAdded(String eventName, TodoListApp.Task task);
+        void taskRemoved(String eventName, TodoListApp.Task task);
+        void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task);
+    }
+
+    /**
+     * A reversible change to one event's task lists
+     */
+    public abstract static class Command {
+        protected final String eventName;
+
+        Command(String eventName) {
+            this.eventName = eventName;
+        }
+
+        public String getEventName() { return eventName; }
+
+        /**
+         * @return every event the command changes
+         */
+        public Collection<String> getEventNames() {
+            return Collections.singletonList(eventName);
+        }
+
+        /**
+         * @return false if the tasks no longer look as the command expects
+         */
+        abstract boolean apply(Target target);
+
+        abstract boolean revert(Target target);
+
+        abstract void write(DataOutput out) throws IOException;
+
+        static Command read(DataInput in) throws IOException {
+            byte type = in.readByte();
+            String eventName = readString(in);
+            switch (type) {
+                case ADD_TASK:
+                    return new AddTask(eventName, in.readBoolean(), in.readInt(), readString(in));
+                case DELETE_TASK:
+                    return new DeleteTask(eventName, in.readBoolean(), in.readInt(), readString(in));
+                case UPDATE_TASK:
+                    return UpdateTask.readBody(eventName, in);
+                case BATCH:
+                    return Batch.readBody(in);
+                default:
+                    throw new IOException("Unknown command type " + type);
+            }
+        }
+    }
+
+    /**
+     * A task inserted at a position
+     */
+    public static class AddTask extends Command {
+        private final boolean completed;
+        private final int index;
+        private final String line;
+
+        public AddTask(String eventName, boolean completed, int index, String line) {
+            super(eventName);
+            this.completed = completed;
+            this.index = index;
+            this.line = line;
+        }
+
+        @Override
+        boolean apply(Target target) {
+            return insert(target, eventName, completed, index, line);
+        }
+
+        @Override
+        boolean revert(Target target) {
+            return remove(target, eventName, completed, line);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(ADD_TASK);
+            writeString(out, eventName);
+            out.writeBoolean(completed);
+            out.writeInt(index);
+            writeString(out, line);
+        }
+    }
+
+    /**
+     * A task removed from a position
+     */
+    public static class DeleteTask extends Command {
+        private final boolean completed;
+        private final int index;
+        private final String line;
+
+        public DeleteTask(String eventName, boolean completed, int index, String line) {
+            super(eventName);
+            this.completed = completed;
+            this.index = index;
+            this.line = line;
+        }
+
+        @Override
+        boolean apply(Target target) {
+            return remove(target, eventName, completed, line);
+        }
+
+        @Override
+        boolean revert(Target target) {
+            return insert(target, eventName, completed, index, line);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(DELETE_TASK);
+            writeString(out, eventName);
+            out.writeBoolean(completed);
+            out.writeInt(index);
+            writeString(out, line);
+        }
+    }
+
+    /**
+     * Changed fields of a task, optionally moving it between the pending and
+     * completed lists. Only the changed fields are stored, with their old and
+     * new values; time spent is never part of the delta so undoing an edit
+     * keeps tracked time.
+     */
+    public static class UpdateTask extends Command {
+        private final long id;
+        private final boolean fromCompleted;
+        private final int fromIndex;
+        private final boolean toCompleted;
+        private final int toIndex;
+        private final byte[] fields;
+        private final String[] oldValues;
+        private final String[] newValues;
+        // Shared states of the running session, not persisted
+        private TaskState beforeState;
+        private TaskState afterState;
+
+        private UpdateTask(String eventName, long id, boolean fromCompleted, int fromIndex,
+                           boolean toCompleted, int toIndex, byte[] fields, String[] oldValues, String[] newValues) {
+            super(eventName);
+            this.id = id;
+            this.fromCompleted = fromCompleted;
+            this.fromIndex = fromIndex;
+            this.toCompleted = toCompleted;
+            this.toIndex = toIndex;
+            this.fields = fields;
+            this.oldValues = oldValues;
+            this.newValues = newValues;
+        }
+
+        /**
+         * @param beforeLine the task as stored before the change
+         * @param afterLine the task as stored after the change
+         * @return the command, or null if nothing changed
+         */
+        public static UpdateTask between(String eventName, String beforeLine, boolean fromCompleted, int fromIndex,
+                                         String afterLine, boolean toCompleted, int toIndex) {
+            String[] before = beforeLine.split("\t", -1);
+            String[] after = afterLine.split("\t", -1);
+            List<Integer> changed = new ArrayList<>();
+            for (int i = 0; i < Math.min(before.length, after.length); i++) {
+                if (i != FIELD_TIME_SPENT && !before[i].equals(after[i])) changed.add(i);
+            }
+            if (changed.isEmpty() && fromCompleted == toCompleted && fromIndex == toIndex) return null;
+            byte[] fields = new byte[changed.size()];
+            String[] oldValues = new String[changed.size()];
+            String[] newValues = new String[changed.size()];
+            for (int i = 0; i < fields.length; i++) {
+                int field = changed.get(i);
+                fields[i] = (byte) field;
+                oldValues[i] = before[field];
+                newValues[i] = after[field];
+            }
+            return new UpdateTask(eventName, idOf(after), fromCompleted, fromIndex,
+                toCompleted, toIndex, fields, oldValues, newValues);
+        }
+
+        /**
+         * Keep the task's states so undo and redo can swap them back
+         * @param before the task's state before the change
+         * @param after the task's state after the change
+         * @return this command
+         */
+        public UpdateTask withStates(TaskState before, TaskState after) {
+            this.beforeState = before;
+            this.afterState = after;
+            return this;
+        }
+
+        @Override
+        boolean apply(Target target) {
+            return move(target, fromCompleted, oldValues, beforeState,
+                toCompleted, toIndex, newValues, afterState);
+        }
+
+        @Override
+        boolean revert(Target target) {
+            return move(target, toCompleted, newValues, afterState,
+                fromCompleted, fromIndex, oldValues, beforeState);
+        }
+
+        private boolean move(Target target, boolean sourceCompleted, String[] expected, TaskState expectedState,
+                             boolean destCompleted, int destIndex, String[] values, TaskState valuesState) {
+            List<TodoListApp.Task> source = target.getTasks(eventName, sourceCompleted);
+            List<TodoListApp.Task> dest = target.getTasks(eventName, destCompleted);
+            if (source == null || dest == null) return false;
+            TodoListApp.Task task = target.findTask(id);
+            int index = task != null ? indexOf(source, task) : -1;
+            if (index < 0) return false;
+            TodoListApp.Task before = new TodoListApp.Task(task);
+
+            // A task still holding the recorded state is restored by swapping the state back
+            if (expectedState != null && task.getState() == expectedState) {
+                // Tracked time is kept, as in the field delta
+                task.setState(valuesState.withTimeSpent(task.getTimeSpent()));
+                relocate(source, index, dest, destIndex, sourceCompleted != destCompleted);
+                target.taskUpdated(eventName, before, task);
+                return true;
+            }
+
+            String[] stored = target.formatTask(task).split("\t", -1);
+            for (int i = 0; i < fields.length; i++) {
+                if (!stored[fields[i]].equals(expected[i])) return false;
+            }
+            for (int i = 0; i < fields.length; i++) {
+                stored[fields[i]] = values[i];
+            }
+            task.copyFrom(target.parseTask(String.join("\t", stored)));
+            task.setCompleted(destCompleted);
+            relocate(source, index, dest, destIndex, sourceCompleted != destCompleted);
+            target.taskUpdated(eventName, before, task);
+            return true;
+        }
+
+        private static void relocate(List<TodoListApp.Task> source, int index, List<TodoListApp.Task> dest,
+                                     int destIndex, boolean changedList) {
+            if (!changedList && index == destIndex) return;
+            TodoListApp.Task task = source.remove(index);
+            dest.add(Math.min(Math.max(destIndex, 0), dest.size()), task);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(UPDATE_TASK);
+            writeString(out, eventName);
+            out.writeLong(id);
+            out.writeBoolean(fromCompleted);
+            out.writeInt(fromIndex);
+            out.writeBoolean(toCompleted);
+            out.writeInt(toIndex);
+            out.writeByte(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                out.writeByte(fields[i]);
+                writeString(out, oldValues[i]);
+                writeString(out, newValues[i]);
+            }
+        }
+
+        static UpdateTask readBody(String eventName, DataInput in) throws IOException {
+            long id = in.readLong();
+            boolean fromCompleted = in.readBoolean();
+            int fromIndex = in.readInt();
+            boolean toCompleted = in.readBoolean();
+            int toIndex = in.readInt();
+            int count = in.readByte();
+            byte[] fields = new byte[count];
+            String[] oldValues = new String[count];
+            String[] newValues = new String[count];
+            for (int i = 0; i < count; i++) {
+                fields[i] = in.readByte();
+                oldValues[i] = readString(in);
+                newValues[i] = readString(in);
+            }
+            return new UpdateTask(eventName, id, fromCompleted, fromIndex, toCompleted, toIndex,
+                fields, oldValues, newValues);
+        }
+    }
+
+    /**
+     * Commands applied together and undone together, possibly across events
+     */
+    public static class Batch extends Command {
+        private final List<Command> commands;
+
+        Batch(List<Command> commands) {
+            super("");
+            this.commands = commands;
+        }
+
+        @Override
+        public Collection<String> getEventNames() {
+            Set<String> names = new LinkedHashSet<>();
+            for (Command command : commands) {
+                names.addAll(command.getEventNames());
+            }
+            return names;
+        }
+
+        @Override
+        boolean apply(Target target) {
+            for (int i = 0; i < commands.size(); i++) {
+                if (!commands.get(i).apply(target)) {
+                    // All or nothing: take back what was already applied
+                    for (int j = i - 1; j >= 0; j--) {
+                        commands.get(j).revert(target);
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean revert(Target target) {
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                if (!commands.get(i).revert(target)) {
+                    for (int j = i + 1; j < commands.size(); j++) {
+                        commands.get(j).apply(target);
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(BATCH);
+            writeString(out, eventName);
+            out.writeInt(commands.size());
+            for (Command command : commands) {
+                command.write(out);
+            }
+        }
+
+        static Batch readBody(DataInput in) throws IOException {
+            int count = in.readInt();
+            List<Command> commands = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                commands.add(Command.read(in));
+            }
+            return new Batch(commands);
+        }
+    }
+
+    /**
+     * A group of task mutations that is applied atomically and undone as one
+     * step. Each mutation takes effect and notifies the target immediately;
+     * persisting and refreshing the touched events is left to the caller,
+     * once, after {@link #commit()}.
+     */
+    public class Transaction {
+        private final Target target;
+        private final List<Command> commands = new ArrayList<>();
+        private boolean open = true;
+
+        Transaction(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * Change a task's fields; a change to its completion moves it to the
+         * other list, at its former place there if still free, else at the end
+         * @param eventName the task's event
+         * @param task the task
+         * @param change the mutation to apply
+         * @return false if the task is no longer in the event
+         */
+        public boolean update(String eventName, TodoListApp.Task task, Consumer<TodoListApp.Task> change) {
+            checkOpen();
+            List<TodoListApp.Task> source = target.getTasks(eventName, task.isCompleted());
+            int fromIndex = source != null ? indexOf(source, task) : -1;
+            if (fromIndex < 0) return false;
+            boolean fromCompleted = task.isCompleted();
+            TodoListApp.Task before = new TodoListApp.Task(task);
+            change.accept(task);
+            int toIndex = fromIndex;
+            if (task.isCompleted() != fromCompleted) {
+                List<TodoListApp.Task> dest = target.getTasks(eventName, task.isCompleted());
+                source.remove(fromIndex);
+                if (dest instanceof TaskList) {
+                    // Reopening returns the task to its former place if it is still free
+                    ((TaskList) dest).addBack(task);
+                } else {
+                    dest.add(task);
+                }
+                toIndex = dest.indexOf(task);
+            }
+            target.taskUpdated(eventName, before, task);
+            UpdateTask command = UpdateTask.between(eventName, target.formatTask(before), fromCompleted, fromIndex,
+                target.formatTask(task), task.isCompleted(), toIndex);
+            if (command != null) commands.add(command.withStates(before.getState(), task.getState()));
+            return true;
+        }
+
+        /**
+         * @param eventName the task's event
+         * @param task the task to delete
+         * @return false if the task is no longer in the event
+         */
+        public boolean remove(String eventName, TodoListApp.Task task) {
+            checkOpen();
+            List<TodoListApp.Task> tasks = target.getTasks(eventName, task.isCompleted());
+            int index = tasks != null ? indexOf(tasks, task) : -1;
+            if (index < 0) return false;
+            tasks.remove(index);
+            target.taskRemoved(eventName, task);
+            commands.add(new DeleteTask(eventName, task.isCompleted(), index, target.formatTask(task)));
+            return true;
+        }
+
+        /**
+         * Append a task to its list in an event
+         * @param eventName the event
+         * @param task the new task
+         * @return false if the event does not exist
+         */
+        public boolean add(String eventName, TodoListApp.Task task) {
+            checkOpen();
+            List<TodoListApp.Task> tasks = target.getTasks(eventName, task.isCompleted());
+            if (tasks == null) return false;
+            tasks.add(task);
+            target.taskAdded(eventName, task);
+            commands.add(new AddTask(eventName, task.isCompleted(), tasks.size() - 1, target.formatTask(task)));
+            return true;
+        }
+
+        /**
+         * Move a task to the end of the same list in another event
+         * @return false if the task is no longer in its event or the target event does not exist
+         */
+        public boolean move(String eventName, TodoListApp.Task task, String toEvent) {
+            checkOpen();
+            if (eventName.equals(toEvent) || target.getTasks(toEvent, task.isCompleted()) == null) return false;
+            if (!remove(eventName, task)) return false;
+            return add(toEvent, task);
+        }
+
+        /**
+         * @return number of mutations applied so far
+         */
+        public int size() {
+            return commands.size();
+        }
+
+        /**
+         * Record the mutations as one undo entry
+         * @return the events that were changed
+         */
+        public Collection<String> commit() {
+            checkOpen();
+            open = false;
+            if (commands.isEmpty()) return Collections.emptyList();
+            Command command = commands.size() == 1 ? commands.get(0) : new Batch(new ArrayList<>(commands));
+            record(command);
+            return command.getEventNames();
+        }
+
+        /**
+         * Undo every mutation applied so far, newest first
+         * @return the events that were changed back
+         */
+        public Collection<String> rollback() {
+            checkOpen();
+            open = false;
+            Batch batch = new Batch(new ArrayList<>(commands));
+            batch.revert(target);
+            return batch.getEventNames();
+        }
+
+        private void checkOpen() {
+            if (!open) throw new IllegalStateException("Transaction already finished");
+        }
+    }
+
+    /**
+     * Length-framed entries in a circular byte buffer. Each entry is written as
+     * length, payload, length so it can be popped from the newest end and
+     * dropped from the oldest end in constant time.
+     */
+    private static class ByteRing {
+        private final byte[] buffer;
+        private int head; // start of the oldest entry
+        private int used;
+        private int count;
+
+        ByteRing(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        int size() { return count; }
+        int bytes() { return used; }
+
+        /**
+         * @return number of oldest entries dropped to make room, or -1 if the
+         *         entry is larger than the whole buffer and was not stored
+         */
+        int push(byte[] entry) {
+            int needed = entry.length + 8;
+            if (needed > buffer.length) return -1;
+            int dropped = 0;
+            while (buffer.length - used < needed) {
+                dropOldest();
+                dropped++;
+            }
+            int tail = (head + used) % buffer.length;
+            tail = writeInt(tail, entry.length);
+            tail = copyIn(tail, entry);
+            writeInt(tail, entry.length);
+            used += needed;
+            count++;
+            return dropped;
+        }
+
+        byte[] pop() {
+            if (count == 0) return null;
+            int end = (head + used) % buffer.length;
+            int length = readInt(Math.floorMod(end - 4, buffer.length));
+            int start = Math.floorMod(end - 4 - length, buffer.length);
+            byte[] entry = copyOut(start, length);
+            used -= length + 8;
+            count--;
+            return entry;
+        }
+
+        void dropOldest() {
+            int length = readInt(head);
+            head = (head + length + 8) % buffer.length;
+            used -= length + 8;
+            count--;
+        }
+
+        void clear() {
+            head = 0;
+            used = 0;
+            count = 0;
+        }
+
+        /**
+         * @return entries, oldest first
+         */
+        List<byte[]> entries() {
+            List<byte[]> entries = new ArrayList<>(count);
+            int position = head;
+            for (int i = 0; i < count; i++) {
+                int length = readInt(position);
+                entries.add(copyOut((position + 4) % buffer.length, length));
+                position = (position + length + 8) % buffer.length;
+            }
+            return entries;
+        }
+
+        private int writeInt(int position, int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[position] = (byte) (value >>> shift);
+                position = (position + 1) % buffer.length;
+            }
+            return position;
+        }
+
+        private int readInt(int position) {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (buffer[(position + i) % buffer.length] & 0xff);
+            }
+            return value;
+        }
+
+        private int copyIn(int position, byte[] data) {
+            int first = Math.min(data.length, buffer.length - position);
+            System.arraycopy(data, 0, buffer, position, first);
+            System.arraycopy(data, first, buffer, 0, data.length - first);
+            return (position + data.length) % buffer.length;
+        }
+
+        private byte[] copyOut(int position, int length) {
+            byte[] data = new byte[length];
+            int first = Math.min(length, buffer.length - position);
+            System.arraycopy(buffer, position, data, 0, first);
+            System.arraycopy(buffer, 0, data, first, length - first);
+            return data;
+        }
+    }
+
+    private File journalFile;
+    private final ByteRing undo = new ByteRing(MAX_HISTORY_BYTES);
+    private final ByteRing redo = new ByteRing(MAX_HISTORY_BYTES);
+    // Commands of the running session, newest last, in step with the rings; null after a restart
+    private final Deque<Command> undoCommands = new LinkedList<>();
+    private final Deque<Command> redoCommands = new LinkedList<>();
+    private DataOutputStream journal;
+    private long journalBytes;
+
+    /**
+     * Open the history, restoring it from an existing journal
+     * @param journalFile the journal
+     */
+    public CommandLog(File journalFile) {
+        this.journalFile = journalFile;
+        replay();
+        compact();
+    }
+
+    /**
+     * Start a group of mutations that is recorded as one undo entry
+     * @param target the task lists to change
+     * @return the open transaction
+     */
+    public Transaction begin(Target target) {
+        return new Transaction(target);
+    }
+
+    public boolean canUndo() { return undo.size() > 0; }
+    public boolean canRedo() { return redo.size() > 0; }
+
+    /**
+     * Record a command that has just been performed; clears the redo history
+     * @param command the command, ignored if null
+     */
+    public void record(Command command) {
+        if (command == null) return;
+        byte[] encoded = encode(command);
+        push(undo, undoCommands, encoded, command);
+        redo.clear();
+        redoCommands.clear();
+        append(OP_PUSH, encoded);
+    }
+
+    /**
+     * Revert the most recent command
+     * @return the events it changed, or null if there was nothing to undo or
+     *         the tasks no longer match it (the entry is then discarded)
+     */
+    public Collection<String> undo(Target target) {
+        byte[] encoded = undo.pop();
+        if (encoded == null) return null;
+        Command command = undoCommands.pollLast();
+        if (command == null) command = decode(encoded);
+        if (command == null || !command.revert(target)) {
+            append(OP_DROP_UNDO, null);
+            return null;
+        }
+        push(redo, redoCommands, encoded, command);
+        append(OP_UNDO, null);
+        return command.getEventNames();
+    }
+
+    /**
+     * Re-apply the most recently undone command
+     * @return the events it changed, or null if there was nothing to redo or
+     *         the tasks no longer match it (the entry is then discarded)
+     */
+    public Collection<String> redo(Target target) {
+        byte[] encoded = redo.pop();
+        if (encoded == null) return null;
+        Command command = redoCommands.pollLast();
+        if (command == null) command = decode(encoded);
+        if (command == null || !command.apply(target)) {
+            append(OP_DROP_REDO, null);
+            return null;
+        }
+        push(undo, undoCommands, encoded, command);
+        append(OP_REDO, null);
+        return command.getEventNames();
+    }
+
+    /**
+     * Continue in another journal, as when a follower takes over the data
+     * directory. The history of this session replaces what the file held.
+     * @param journalFile the journal
+     */
+    public void moveTo(File journalFile) {
+        close();
+        this.journalFile = journalFile;
+        compact();
+    }
+
+    /**
+     * Flush and close the journal
+     */
+    public void close() {
+        closeJournal();
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error closing undo history: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    private static void push(ByteRing ring, Deque<Command> commands, byte[] encoded, Command command) {
+        int dropped = ring.push(encoded);
+        if (dropped < 0) return;
+        for (int i = 0; i < dropped && !commands.isEmpty(); i++) {
+            commands.pollFirst();
+        }
+        // Entries replayed from the journal have no command of this session
+        while (commands.size() < ring.size() - 1) {
+            commands.addFirst(null);
+        }
+        commands.addLast(command);
+    }
+
+    private void append(byte op, byte[] payload) {
+        try {
+            if (journal == null) {
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+            }
+            journal.writeByte(op);
+            journalBytes++;
+            if (payload != null) {
+                journal.writeInt(payload.length);
+                journal.write(payload);
+                journalBytes += 4 + payload.length;
+            }
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing undo history: " + e.getMessage());
+        }
+        // Rewrite once most of the journal describes history that is gone
+        if (journalBytes > 4L * (undo.bytes() + redo.bytes()) + 64 * 1024) {
+            compact();
+        }
+    }
+
+    private void replay() {
+        if (!journalFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readByte() != JOURNAL_FORMAT) {
+                System.err.println("Undo history is in an older format and was dropped");
+                return;
+            }
+            while (true) {
+                byte op = in.readByte();
+                switch (op) {
+                    case OP_PUSH:
+                        byte[] encoded = new byte[in.readInt()];
+                        in.readFully(encoded);
+                        undo.push(encoded);
+                        redo.clear();
+                        break;
+                    case OP_UNDO:
+                        byte[] undone = undo.pop();
+                        if (undone != null) redo.push(undone);
+                        break;
+                    case OP_REDO:
+                        byte[] redone = redo.pop();
+                        if (redone != null) undo.push(redone);
+                        break;
+                    case OP_DROP_UNDO:
+                        undo.pop();
+                        break;
+                    case OP_DROP_REDO:
+                        redo.pop();
+                        break;
+                    default:
+                        throw new IOException("Unknown journal record " + op);
+                }
+            }
+        } catch (EOFException e) {
+            // End of journal, or a record cut short by a crash
+        } catch (IOException e) {
+            System.err.println("Error reading undo history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite the journal as the pushes and undos that rebuild the current
+     * stacks
+     */
+    private void compact() {
+        closeJournal();
+        File temp = new File(journalFile.getPath() + ".tmp");
+        long written = JOURNAL_HEADER_BYTES;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(JOURNAL_MAGIC);
+            out.writeByte(JOURNAL_FORMAT);
+            for (byte[] encoded : undo.entries()) {
+                out.writeByte(OP_PUSH);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+                written += 5 + encoded.length;
+            }
+            // Redo entries are pushed in history order, then undone again
+            List<byte[]> redoEntries = redo.entries();
+            for (int i = redoEntries.size() - 1; i >= 0; i--) {
+                out.writeByte(OP_PUSH);
+                out.writeInt(redoEntries.get(i).length);
+                out.write(redoEntries.get(i));
+                written += 5 + redoEntries.get(i).length;
+            }
+            for (int i = 0; i < redoEntries.size(); i++) {
+                out.writeByte(OP_UNDO);
+                written++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error compacting undo history: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            journalBytes = written;
+        } catch (IOException e) {
+            System.err.println("Error compacting undo history: " + e.getMessage());
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(Command command) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            command.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Command decode(byte[] encoded) {
+        try {
+            return Command.read(new DataInputStream(new ByteArrayInputStream(encoded)));
+        } catch (IOException e) {
+            System.err.println("Error decoding undo entry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean insert(Target target, String eventName, boolean completed, int index, String line) {
+        List<TodoListApp.Task> tasks = target.getTasks(eventName, completed);
+        if (tasks == null) return false;
+        TodoListApp.Task task = target.parseTask(line);
+        task.setCompleted(completed);
+        tasks.add(Math.min(Math.max(index, 0), tasks.size()), task);
+        target.taskAdded(eventName, task);
+        return true;
+    }
+
+    private static boolean remove(Target target, String eventName, boolean completed, String line) {
+        List<TodoListApp.Task> tasks = target.getTasks(eventName, completed);
+        if (tasks == null) return false;
+        String[] expected = line.split("\t", -1);
+        TodoListApp.Task task = target.findTask(idOf(expected));
+        int index = task != null ? indexOf(tasks, task) : -1;
+        if (index < 0 || !sameTask(target.formatTask(task).split("\t", -1), expected)) return false;
+        target.taskRemoved(eventName, tasks.remove(index));
+        return true;
+    }
+
+    private static int indexOf(List<TodoListApp.Task> tasks, TodoListApp.Task task) {
+        // A TaskList answers from the task's tracked position
+        return tasks.indexOf(task);
+    }
+
+    // Tracked time is left out, as it is of an edit's field delta
+    private static boolean sameTask(String[] a, String[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (i != FIELD_TIME_SPENT && !a[i].equals(b[i])) return false;
+        }
+        return true;
+    }
+
+    private static long idOf(String[] fields) {
+        try {
+            return fields.length > FIELD_ID ? Long.parseLong(fields[FIELD_ID]) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
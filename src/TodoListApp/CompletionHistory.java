@@ -0,0 +1,391 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+/**
+ * Append-only log of task state transitions with pre-aggregated hourly, daily
+ * and weekly rollups per event and for the whole workspace. Each rollup is a
+ * prefix-sum array over consecutive buckets, so the number of transitions in
+ * any range is the difference of two array reads. Hourly rollups only keep the
+ * last month; daily and weekly rollups keep everything.
+ *
+ * Log records are 13 bytes (type, time, event id); event names are written
+ * once into the same log when first used. The log is flushed once per batch
+ * of transitions, and replayed once at startup to rebuild the rollups.
+ * @author Apon
+ */
+public class CompletionHistory implements TaskChangeListener {
+
+    public enum Transition { CREATED, COMPLETED, REOPENED, DELETED }
+
+    public enum Granularity {
+        HOUR(60 * 60 * 1000L, 24 * 31),
+        DAY(24 * 60 * 60 * 1000L, Integer.MAX_VALUE),
+        WEEK(7 * 24 * 60 * 60 * 1000L, Integer.MAX_VALUE);
+
+        private final long millis;
+        private final int retention;
+
+        Granularity(long millis, int retention) {
+            this.millis = millis;
+            this.retention = retention;
+        }
+
+        public long getMillis() { return millis; }
+    }
+
+    private static final byte RECORD_EVENT_NAME = -1;
+    // Buckets a series keeps at most, some 2900 years of days
+    private static final int MAX_BUCKETS = 1 << 20;
+
+    // Epoch day 0 was a Thursday; shift so weeks start on Monday
+    private static final long WEEK_ALIGNMENT = 3 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * Prefix sums over consecutive buckets of one granularity
+     */
+    static class Series {
+        private final int retention;
+        private long origin;
+        private int[] cumulative = new int[8];
+        private int length;
+        private int base; // transitions in buckets dropped from the front
+
+        Series(int retention) {
+            this.retention = Math.min(retention, MAX_BUCKETS);
+        }
+
+        void add(long bucket) {
+            if (length == 0) {
+                origin = bucket;
+            } else if (bucket < origin) {
+                if (origin + length - 1 - bucket >= retention) {
+                    // Older than any bucket kept: counts only towards the transitions before them
+                    base++;
+                    for (int i = 0; i < length; i++) {
+                        cumulative[i]++;
+                    }
+                    return;
+                }
+                // Clock moved backwards past the start of the series
+                int shift = (int) (origin - bucket);
+                ensureCapacity(length + shift);
+                System.arraycopy(cumulative, 0, cumulative, shift, length);
+                java.util.Arrays.fill(cumulative, 0, shift, base);
+                length += shift;
+                origin -= shift;
+            } else if (bucket - origin >= retention) {
+                // Drop the buckets that fall out of the window before growing into it
+                long drop = bucket - origin - retention + 1;
+                if (drop >= length) {
+                    base = cumulative[length - 1];
+                    length = 0;
+                    origin = bucket;
+                } else {
+                    base = cumulative[(int) drop - 1];
+                    System.arraycopy(cumulative, (int) drop, cumulative, 0, length - (int) drop);
+                    length -= (int) drop;
+                    origin += drop;
+                }
+            }
+            int index = (int) (bucket - origin);
+            if (index >= length) {
+                ensureCapacity(index + 1);
+                int last = length > 0 ? cumulative[length - 1] : base;
+                java.util.Arrays.fill(cumulative, length, index + 1, last);
+                length = index + 1;
+            }
+            // Appending to the current bucket touches a single slot
+            for (int i = index; i < length; i++) {
+                cumulative[i]++;
+            }
+            trim();
+        }
+
+        int countThrough(long bucket) {
+            if (length == 0 || bucket < origin) return base;
+            long index = Math.min(bucket - origin, length - 1);
+            return cumulative[(int) index];
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > cumulative.length) {
+                cumulative = java.util.Arrays.copyOf(cumulative, Math.max(capacity, cumulative.length * 2));
+            }
+        }
+
+        private void trim() {
+            if (length <= retention) return;
+            int drop = length - retention;
+            base = cumulative[drop - 1];
+            System.arraycopy(cumulative, drop, cumulative, 0, retention);
+            length = retention;
+            origin += drop;
+        }
+    }
+
+    private static class Rollups {
+        private final Map<Transition, Series[]> series = new EnumMap<>(Transition.class);
+
+        void add(Transition transition, long[] buckets) {
+            Series[] byGranularity = series.computeIfAbsent(transition, t -> {
+                Series[] created = new Series[Granularity.values().length];
+                for (Granularity granularity : Granularity.values()) {
+                    created[granularity.ordinal()] = new Series(granularity.retention);
+                }
+                return created;
+            });
+            for (int i = 0; i < buckets.length; i++) {
+                byGranularity[i].add(buckets[i]);
+            }
+        }
+
+        Series get(Transition transition, Granularity granularity) {
+            Series[] byGranularity = series.get(transition);
+            return byGranularity != null ? byGranularity[granularity.ordinal()] : null;
+        }
+    }
+
+    private File logFile;
+    private final Map<String, Integer> eventIds = new HashMap<>();
+    private final List<String> eventNames = new ArrayList<>();
+    private Rollups total = new Rollups();
+    private final Map<String, Rollups> byEvent = new HashMap<>();
+    private final Executor flusher;
+    private DataOutputStream log;
+    private boolean flushScheduled;
+    private boolean recording = true;
+
+    /**
+     * Open the history, rebuilding the rollups from an existing log. Every
+     * transition is flushed as it is recorded.
+     * @param logFile the append-only log
+     */
+    public CompletionHistory(File logFile) {
+        this(logFile, Runnable::run);
+    }
+
+    /**
+     * Open the history, rebuilding the rollups from an existing log
+     * @param logFile the append-only log
+     * @param flusher runs the flush once a batch of transitions is recorded,
+     *                as the EDT does after the event that made them
+     */
+    public CompletionHistory(File logFile, Executor flusher) {
+        this.logFile = logFile;
+        this.flusher = flusher;
+        replay();
+    }
+
+    /**
+     * Loading tasks from disk is not a transition; the app switches recording
+     * off while it reads event files
+     * @param recording false to ignore task change events
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Number of transitions in a time range, answered from the rollups
+     * @param eventName the event, or null for the whole workspace
+     * @param transition the transition to count
+     * @param granularity bucket size; the range is widened to whole buckets
+     * @param fromMillis range start, inclusive
+     * @param toMillis range end, inclusive
+     * @return the number of transitions
+     */
+    public int count(String eventName, Transition transition, Granularity granularity, long fromMillis, long toMillis) {
+        Series series = seriesFor(eventName, transition, granularity);
+        if (series == null) return 0;
+        return series.countThrough(bucket(toMillis, granularity)) - series.countThrough(bucket(fromMillis, granularity) - 1);
+    }
+
+    /**
+     * Per-bucket counts for charting
+     * @param eventName the event, or null for the whole workspace
+     * @param transition the transition to count
+     * @param granularity bucket size
+     * @param fromMillis time inside the first bucket
+     * @param buckets number of buckets
+     * @return transitions per bucket, oldest first
+     */
+    public int[] series(String eventName, Transition transition, Granularity granularity, long fromMillis, int buckets) {
+        int[] counts = new int[buckets];
+        Series series = seriesFor(eventName, transition, granularity);
+        if (series == null) return counts;
+        long first = bucket(fromMillis, granularity);
+        int previous = series.countThrough(first - 1);
+        for (int i = 0; i < buckets; i++) {
+            int through = series.countThrough(first + i);
+            counts[i] = through - previous;
+            previous = through;
+        }
+        return counts;
+    }
+
+    /**
+     * @param millis a time
+     * @param granularity bucket size
+     * @return start of the local-time bucket holding the time
+     */
+    public static long bucketStart(long millis, Granularity granularity) {
+        long offset = TimeZone.getDefault().getOffset(millis);
+        long shift = granularity == Granularity.WEEK ? WEEK_ALIGNMENT : 0;
+        return bucket(millis, granularity) * granularity.millis - offset - shift;
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        record(eventName, Transition.CREATED);
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        record(eventName, Transition.DELETED);
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        if (!before.isCompleted() && task.isCompleted()) {
+            record(eventName, Transition.COMPLETED);
+        } else if (before.isCompleted() && !task.isCompleted()) {
+            record(eventName, Transition.REOPENED);
+        }
+    }
+
+    /**
+     * Continue with another log, rebuilding the rollups from it, as when a
+     * follower takes over the data directory whose log already holds every
+     * transition it has seen
+     * @param logFile the append-only log
+     */
+    public void moveTo(File logFile) {
+        close();
+        this.logFile = logFile;
+        eventIds.clear();
+        eventNames.clear();
+        total = new Rollups();
+        byEvent.clear();
+        replay();
+    }
+
+    /**
+     * Write out the transitions recorded so far
+     */
+    public void flush() {
+        flushScheduled = false;
+        if (log == null) return;
+        try {
+            log.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing completion history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flush and close the log
+     */
+    public void close() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.err.println("Error closing completion history: " + e.getMessage());
+            }
+            log = null;
+        }
+    }
+
+    private void record(String eventName, Transition transition) {
+        if (!recording) return;
+        long now = System.currentTimeMillis();
+        Integer existing = eventIds.get(eventName);
+        int eventId = existing != null ? existing : defineEvent(eventName);
+        aggregate(eventId, transition, now);
+        try {
+            if (log == null) {
+                log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+            }
+            if (existing == null) {
+                // New name: write its definition before the first record using it
+                log.writeByte(RECORD_EVENT_NAME);
+                log.writeInt(eventId);
+                log.writeUTF(eventName);
+            }
+            log.writeByte(transition.ordinal());
+            log.writeLong(now);
+            log.writeInt(eventId);
+        } catch (IOException e) {
+            System.err.println("Error writing completion history: " + e.getMessage());
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.execute(this::flush);
+        }
+    }
+
+    private void aggregate(int eventId, Transition transition, long millis) {
+        long[] buckets = new long[Granularity.values().length];
+        for (Granularity granularity : Granularity.values()) {
+            buckets[granularity.ordinal()] = bucket(millis, granularity);
+        }
+        total.add(transition, buckets);
+        byEvent.computeIfAbsent(eventNames.get(eventId), k -> new Rollups()).add(transition, buckets);
+    }
+
+    private void replay() {
+        if (!logFile.exists()) return;
+        Transition[] transitions = Transition.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                byte type = in.readByte();
+                if (type == RECORD_EVENT_NAME) {
+                    in.readInt();
+                    defineEvent(in.readUTF());
+                } else {
+                    long millis = in.readLong();
+                    int id = in.readInt();
+                    if (type >= 0 && type < transitions.length && id < eventNames.size()) {
+                        aggregate(id, transitions[type], millis);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            // End of log, or a record cut short by a crash
+        } catch (IOException e) {
+            System.err.println("Error reading completion history: " + e.getMessage());
+        }
+    }
+
+    private int defineEvent(String eventName) {
+        int id = eventNames.size();
+        eventNames.add(eventName);
+        eventIds.put(eventName, id);
+        return id;
+    }
+
+    private Series seriesFor(String eventName, Transition transition, Granularity granularity) {
+        Rollups rollups = eventName == null ? total : byEvent.get(eventName);
+        return rollups != null ? rollups.get(transition, granularity) : null;
+    }
+
+    private static long bucket(long millis, Granularity granularity) {
+        long local = millis + TimeZone.getDefault().getOffset(millis);
+        if (granularity == Granularity.WEEK) local += WEEK_ALIGNMENT;
+        return Math.floorDiv(local, granularity.millis);
+    }
+}
@@ -0,0 +1,55 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Writes event snapshots as CSV with every task field
+ * @author Apon
+ */
+public class CsvExporter extends BlockExporter {
+
+    public static final String HEADER =
+        "Event,Task,Priority,Status,Due Date,Category,Tags,Time Spent (ms),Created,Recurring,Recurrence";
+
+    // Immutable and thread-safe, shared by all encoding threads
+    private static final DateTimeFormatter DATE_TIME =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    @Override
+    protected String header() {
+        return HEADER + "\n";
+    }
+
+    @Override
+    protected boolean encode(StringBuilder out, String eventName, long id, TaskState task, boolean completed) {
+        quote(out, eventName).append(',');
+        quote(out, task.getText()).append(',');
+        quote(out, task.getPriority().getName()).append(',');
+        quote(out, completed ? "Completed" : "Pending").append(',');
+        quote(out, formatDate(task.getDueDate())).append(',');
+        quote(out, task.getCategory()).append(',');
+        quote(out, String.join(",", task.getTags())).append(',');
+        out.append(task.getTimeSpent()).append(',');
+        quote(out, formatDate(task.getCreatedDate())).append(',');
+        out.append(task.isRecurring()).append(',');
+        quote(out, task.getRecurrencePattern()).append('\n');
+        return true;
+    }
+
+    private static String formatDate(Date date) {
+        return date != null ? DATE_TIME.format(Instant.ofEpochMilli(date.getTime())) : "";
+    }
+
+    private static StringBuilder quote(StringBuilder out, String value) {
+        out.append('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') out.append('"');
+                out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+}
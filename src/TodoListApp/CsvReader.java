@@ -0,0 +1,131 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader. Records are read in a single pass over a
+ * fixed character buffer by a small state machine, so quoted fields may hold
+ * commas, doubled quotes and line breaks, and memory use does not depend on
+ * the file size. Records end at CRLF, LF or CR.
+ * @author Apon
+ */
+public class CsvReader implements Closeable {
+
+    private enum State { FIELD_START, UNQUOTED, QUOTED, QUOTE_IN_QUOTED }
+
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private long charsRead;
+    private final StringBuilder field = new StringBuilder();
+    private boolean skipLineFeed;
+
+    /**
+     * @param reader the source, read in large blocks so it need not be buffered
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the fields of the next record, or null at the end of the input.
+     *         Blank lines are skipped.
+     * @throws IOException if the source cannot be read
+     */
+    @SuppressWarnings("fallthrough") // FIELD_START hands an ordinary character on to UNQUOTED
+    public List<String> readRecord() throws IOException {
+        List<String> record = new ArrayList<>();
+        State state = State.FIELD_START;
+        field.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) {
+                // End of input closes an unterminated last record
+                if (state == State.FIELD_START && record.isEmpty()) return null;
+                record.add(field.toString());
+                return record;
+            }
+            char c = buffer[position++];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') continue;
+            }
+            switch (state) {
+                case FIELD_START:
+                    if (c == '"') {
+                        state = State.QUOTED;
+                        break;
+                    }
+                    state = State.UNQUOTED;
+                    // fall through: the character starts an unquoted field
+                case UNQUOTED:
+                    if (c == ',') {
+                        record.add(field.toString());
+                        field.setLength(0);
+                        state = State.FIELD_START;
+                    } else if (c == '\r' || c == '\n') {
+                        skipLineFeed = c == '\r';
+                        if (record.isEmpty() && field.length() == 0) {
+                            // Blank line
+                            state = State.FIELD_START;
+                            break;
+                        }
+                        record.add(field.toString());
+                        return record;
+                    } else {
+                        field.append(c);
+                    }
+                    break;
+                case QUOTED:
+                    if (c == '"') {
+                        state = State.QUOTE_IN_QUOTED;
+                    } else {
+                        field.append(c);
+                    }
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if (c == '"') {
+                        // Doubled quote inside a quoted field
+                        field.append('"');
+                        state = State.QUOTED;
+                    } else if (c == ',') {
+                        record.add(field.toString());
+                        field.setLength(0);
+                        state = State.FIELD_START;
+                    } else if (c == '\r' || c == '\n') {
+                        skipLineFeed = c == '\r';
+                        record.add(field.toString());
+                        return record;
+                    } else {
+                        // Lenient: text after a closing quote is kept
+                        field.append(c);
+                        state = State.UNQUOTED;
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return characters consumed so far, for progress reporting
+     */
+    public long getCharsRead() {
+        return charsRead - (limit - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        position = 0;
+        limit = n;
+        charsRead += n;
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads tasks from CSV as written by {@link CsvExporter} or a spreadsheet.
+ * Columns are found by their header, ignoring case, spaces and punctuation;
+ * without a header match the first four columns are event, task, priority
+ * and status. Missing fields keep the task's defaults, and rows without an
+ * event are skipped.
+ * @author Apon
+ */
+public class CsvTaskReader implements Closeable {
+
+    private static final DateTimeFormatter CSV_DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter CSV_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    /**
+     * One parsed row; the tags are left to the caller, which shares their strings
+     */
+    public static final class Row {
+        private final String eventName;
+        private final TodoListApp.Task task;
+        private final List<String> tags;
+
+        Row(String eventName, TodoListApp.Task task, List<String> tags) {
+            this.eventName = eventName;
+            this.task = task;
+            this.tags = tags;
+        }
+
+        public String getEventName() { return eventName; }
+        public TodoListApp.Task getTask() { return task; }
+        public List<String> getTags() { return tags; }
+    }
+
+    private final CsvReader reader;
+    private final boolean empty;
+    private final int eventColumn;
+    private final int textColumn;
+    private final int priorityColumn;
+    private final int statusColumn;
+    private final int dueColumn;
+    private final int categoryColumn;
+    private final int tagsColumn;
+    private final int timeColumn;
+    private final int createdColumn;
+    private final int recurringColumn;
+    private final int recurrenceColumn;
+
+    /**
+     * Read the header
+     * @param source the CSV text
+     * @throws IOException if the source cannot be read
+     */
+    public CsvTaskReader(Reader source) throws IOException {
+        reader = new CsvReader(source);
+        List<String> header = reader.readRecord();
+        empty = header == null;
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; header != null && i < header.size(); i++) {
+            columns.put(columnKey(header.get(i)), i);
+        }
+        eventColumn = columns.getOrDefault("event", 0);
+        textColumn = columns.getOrDefault("task", 1);
+        priorityColumn = columns.getOrDefault("priority", 2);
+        statusColumn = columns.getOrDefault("status", 3);
+        dueColumn = columns.getOrDefault("duedate", -1);
+        categoryColumn = columns.getOrDefault("category", -1);
+        tagsColumn = columns.getOrDefault("tags", -1);
+        timeColumn = columns.getOrDefault("timespentms", columns.getOrDefault("timespent", -1));
+        createdColumn = columns.getOrDefault("created", -1);
+        recurringColumn = columns.getOrDefault("recurring", -1);
+        recurrenceColumn = columns.getOrDefault("recurrence", -1);
+    }
+
+    /**
+     * @return the next row with an event, or null at the end of the input
+     * @throws IOException if the source cannot be read
+     */
+    public Row next() throws IOException {
+        if (empty) return null;
+        List<String> row;
+        while ((row = reader.readRecord()) != null) {
+            if (row.size() <= Math.max(eventColumn, textColumn) || row.get(eventColumn).isEmpty()) {
+                continue;
+            }
+            TodoListApp.Task task = new TodoListApp.Task(row.get(textColumn));
+            try {
+                task.setPriority(TodoListApp.TaskPriority.valueOf(field(row, priorityColumn).trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                task.setPriority(TodoListApp.TaskPriority.MEDIUM);
+            }
+            task.setCompleted("Completed".equalsIgnoreCase(field(row, statusColumn).trim()));
+            task.setDueDate(parseDate(field(row, dueColumn)));
+            if (!field(row, categoryColumn).isEmpty()) {
+                task.setCategory(field(row, categoryColumn));
+            }
+            try {
+                if (!field(row, timeColumn).isEmpty()) {
+                    task.setTimeSpent(Long.parseLong(field(row, timeColumn).trim()));
+                }
+            } catch (NumberFormatException e) {
+                // Keep zero
+            }
+            Date created = parseDate(field(row, createdColumn));
+            if (created != null) {
+                task.setCreatedDate(created);
+            }
+            task.setRecurring(Boolean.parseBoolean(field(row, recurringColumn).trim()));
+            task.setRecurrencePattern(field(row, recurrenceColumn));
+
+            List<String> tags = new ArrayList<>();
+            for (String tag : field(row, tagsColumn).split(",")) {
+                if (!tag.trim().isEmpty()) tags.add(tag.trim());
+            }
+            return new Row(row.get(eventColumn), task, tags);
+        }
+        return null;
+    }
+
+    /**
+     * @return characters consumed so far, for progress
+     */
+    public long getCharsRead() {
+        return reader.getCharsRead();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Normalise a CSV header for lookup: "Due Date" and "due_date" both become "duedate"
+     */
+    private static String columnKey(String header) {
+        StringBuilder key = new StringBuilder();
+        for (char c : header.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) key.append(Character.toLowerCase(c));
+        }
+        return key.toString();
+    }
+
+    private static String field(List<String> row, int column) {
+        return column >= 0 && column < row.size() ? row.get(column) : "";
+    }
+
+    /**
+     * @param value "yyyy-MM-dd" or "yyyy-MM-dd HH:mm" in local time, or blank
+     * @return the date, or null if blank or not understood
+     */
+    static Date parseDate(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) return null;
+        try {
+            LocalDateTime dateTime = trimmed.length() > 10
+                ? LocalDateTime.parse(trimmed, CSV_DATE_TIME)
+                : LocalDate.parse(trimmed, CSV_DATE).atStartOfDay();
+            return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
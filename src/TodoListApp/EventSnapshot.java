@@ -0,0 +1,249 @@
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable view of one event's tasks at a point in time. Capturing copies
+ * only references to the tasks' immutable {@link TaskState}s, so it is cheap
+ * on the EDT and the snapshot can then be read from any thread while the
+ * live task lists keep changing. The tasks' IDs are kept alongside; the
+ * {@link WorkspaceSnapshot} indexes them, updated from {@link #diff} with
+ * only the blocks that changed.
+ *
+ * States are held in the {@link TaskList}'s blocks of slots. Capturing again
+ * after a change copies only the blocks the lists stamped since the previous
+ * snapshot and shares the others with it, so publishing one edit in an event
+ * of n tasks costs O(n / {@link TaskList#BLOCK_SLOTS} + BLOCK_SLOTS) rather
+ * than O(n). Lists that are not TaskLists are copied whole.
+ * @author Apon
+ */
+public final class EventSnapshot {
+
+    /**
+     * Receives the tasks of the blocks that differ between two snapshots
+     */
+    interface Changes {
+        /**
+         * A task in a block of the newer snapshot that the older one lacks
+         */
+        void present(long id, TaskState state, boolean completed);
+
+        /**
+         * A task in a block of the older snapshot that the newer one lacks;
+         * it may be present again elsewhere
+         */
+        void gone(long id);
+    }
+
+    private static final Part EMPTY = new Part(0, new long[0], new TaskState[0][], new long[0][], new int[1]);
+
+    /**
+     * One list's states and IDs, by block of slots with the tombstones left out
+     */
+    private static final class Part extends AbstractList<TaskState> implements RandomAccess {
+        private final long generation; // of the TaskList captured, 0 if none
+        private final long[] stamps;
+        private final TaskState[][] states;
+        private final long[][] ids;
+        private final int[] starts; // list index of each block's first task, then the size
+
+        Part(long generation, long[] stamps, TaskState[][] states, long[][] ids, int[] starts) {
+            this.generation = generation;
+            this.stamps = stamps;
+            this.states = states;
+            this.ids = ids;
+            this.starts = starts;
+        }
+
+        static Part capture(List<TodoListApp.Task> tasks, Part previous) {
+            if (tasks == null) return EMPTY;
+            if (!(tasks instanceof TaskList)) {
+                TaskState[] states = new TaskState[tasks.size()];
+                long[] ids = new long[tasks.size()];
+                int i = 0;
+                for (TodoListApp.Task task : tasks) {
+                    states[i] = task.getState();
+                    ids[i++] = task.getId();
+                }
+                return new Part(0, new long[1], new TaskState[][] { states }, new long[][] { ids },
+                    new int[] { 0, states.length });
+            }
+            TaskList list = (TaskList) tasks;
+            int slotCount = list.slotCount();
+            int blocks = (slotCount + TaskList.BLOCK_SLOTS - 1) / TaskList.BLOCK_SLOTS;
+            boolean sharing = previous != null && previous.generation == list.generation();
+            long[] stamps = new long[blocks];
+            TaskState[][] states = new TaskState[blocks][];
+            long[][] ids = new long[blocks][];
+            int[] starts = new int[blocks + 1];
+            for (int block = 0; block < blocks; block++) {
+                stamps[block] = list.blockStamp(block);
+                if (sharing && block < previous.stamps.length && previous.stamps[block] == stamps[block]) {
+                    states[block] = previous.states[block];
+                    ids[block] = previous.ids[block];
+                } else {
+                    int from = block * TaskList.BLOCK_SLOTS;
+                    int to = Math.min(slotCount, from + TaskList.BLOCK_SLOTS);
+                    int count = 0;
+                    for (int slot = from; slot < to; slot++) {
+                        if (list.slot(slot) != null) count++;
+                    }
+                    states[block] = new TaskState[count];
+                    ids[block] = new long[count];
+                    int i = 0;
+                    for (int slot = from; slot < to; slot++) {
+                        TodoListApp.Task task = list.slot(slot);
+                        if (task != null) {
+                            states[block][i] = task.getState();
+                            ids[block][i++] = task.getId();
+                        }
+                    }
+                }
+                starts[block + 1] = starts[block] + states[block].length;
+            }
+            return new Part(list.generation(), stamps, states, ids, starts);
+        }
+
+        @Override
+        public TaskState get(int index) {
+            int block = block(index);
+            return states[block][index - starts[block]];
+        }
+
+        long id(int index) {
+            int block = block(index);
+            return ids[block][index - starts[block]];
+        }
+
+        static void diff(Part previous, Part next, boolean completed, Changes changes) {
+            for (int block = 0; block < previous.states.length; block++) {
+                if (block < next.states.length && next.states[block] == previous.states[block]) continue;
+                for (long id : previous.ids[block]) {
+                    changes.gone(id);
+                }
+            }
+            for (int block = 0; block < next.states.length; block++) {
+                if (block < previous.states.length && next.states[block] == previous.states[block]) continue;
+                for (int i = 0; i < next.states[block].length; i++) {
+                    changes.present(next.ids[block][i], next.states[block][i], completed);
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return starts[states.length];
+        }
+
+        // Walks the blocks rather than searching them for every index
+        @Override
+        public Iterator<TaskState> iterator() {
+            return new Iterator<TaskState>() {
+                private int block;
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    while (block < states.length && next == states[block].length) {
+                        block++;
+                        next = 0;
+                    }
+                    return block < states.length;
+                }
+
+                @Override
+                public TaskState next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return states[block][next++];
+                }
+            };
+        }
+
+        // The last block starting at or before the index, which holds it
+        private int block(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            int low = 0;
+            int high = states.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (starts[middle] <= index) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final String eventName;
+    private final Part pending;
+    private final Part completed;
+
+    private EventSnapshot(String eventName, Part pending, Part completed) {
+        this.eventName = eventName;
+        this.pending = pending;
+        this.completed = completed;
+    }
+
+    /**
+     * Capture an event's lists. Must be called on the thread that owns them
+     * or under the event's read lock, see {@link TaskRepository#snapshot(String)}.
+     * @param eventName the event
+     * @param pending the pending tasks, may be null
+     * @param completed the completed tasks, may be null
+     * @return the snapshot
+     */
+    public static EventSnapshot capture(String eventName, List<TodoListApp.Task> pending,
+                                        List<TodoListApp.Task> completed) {
+        return capture(eventName, pending, completed, null);
+    }
+
+    /**
+     * Capture an event's lists again, sharing the blocks that did not change
+     * since an earlier snapshot of the same lists
+     * @param eventName the event
+     * @param pending the pending tasks, may be null
+     * @param completed the completed tasks, may be null
+     * @param previous the earlier snapshot, or null
+     * @return the snapshot
+     */
+    public static EventSnapshot capture(String eventName, List<TodoListApp.Task> pending,
+                                        List<TodoListApp.Task> completed, EventSnapshot previous) {
+        return new EventSnapshot(eventName, Part.capture(pending, previous != null ? previous.pending : null),
+            Part.capture(completed, previous != null ? previous.completed : null));
+    }
+
+    public String getEventName() { return eventName; }
+    public List<TaskState> getPending() { return pending; }
+    public List<TaskState> getCompleted() { return completed; }
+
+    public int size() {
+        return pending.size() + completed.size();
+    }
+
+    /**
+     * @param completed true for the completed list
+     * @param index position in that list
+     * @return the ID of the task there
+     */
+    public long getId(boolean completed, int index) {
+        return completed ? this.completed.id(index) : pending.id(index);
+    }
+
+    /**
+     * Report the tasks of the blocks that differ between two snapshots of
+     * the same event; blocks they share are skipped
+     * @param previous the older snapshot, or null for none
+     * @param next the newer snapshot, or null for none
+     * @param changes receives the tasks
+     */
+    static void diff(EventSnapshot previous, EventSnapshot next, Changes changes) {
+        Part.diff(previous != null ? previous.pending : EMPTY, next != null ? next.pending : EMPTY, false, changes);
+        Part.diff(previous != null ? previous.completed : EMPTY, next != null ? next.completed : EMPTY, true, changes);
+    }
+}
@@ -0,0 +1,183 @@
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Writes dated and recurring tasks as an iCalendar (RFC 5545) file so they
+ * show up in calendar tools. Each task becomes a VTODO, or a VEVENT for
+ * calendars that do not show to-dos. Tasks with neither a due date nor a
+ * recurrence are skipped. Encoding runs through the {@link BlockExporter}
+ * pipeline, so only a bounded number of blocks is held in memory however
+ * many tasks are exported.
+ * @author Apon
+ */
+public class IcsExporter extends BlockExporter {
+
+    public enum Component { VTODO, VEVENT }
+
+    private static final String CRLF = "\r\n";
+    private static final int MAX_LINE_OCTETS = 75;
+
+    // Immutable and thread-safe, shared by all encoding threads
+    private static final DateTimeFormatter UTC_DATE_TIME =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter LOCAL_DATE =
+        DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneId.systemDefault());
+
+    private final Component component;
+    private final String calendarName;
+    private final String stamp;
+
+    /**
+     * @param component the component written for each task
+     * @param calendarName shown by calendar tools, or null
+     */
+    public IcsExporter(Component component, String calendarName) {
+        this.component = component;
+        this.calendarName = calendarName;
+        this.stamp = UTC_DATE_TIME.format(Instant.now());
+    }
+
+    @Override
+    protected String header() {
+        StringBuilder out = new StringBuilder();
+        line(out, "BEGIN:VCALENDAR");
+        line(out, "VERSION:2.0");
+        line(out, "PRODID:-//Apon//To Do List//EN");
+        line(out, "CALSCALE:GREGORIAN");
+        if (calendarName != null) {
+            line(out, "X-WR-CALNAME:" + escape(calendarName));
+        }
+        return out.toString();
+    }
+
+    @Override
+    protected String footer() {
+        return "END:VCALENDAR" + CRLF;
+    }
+
+    @Override
+    protected boolean encode(StringBuilder out, String eventName, long id, TaskState task, boolean completed) {
+        String rule = task.isRecurring() ? toRRule(task.getRecurrencePattern()) : null;
+        Date due = task.getDueDate();
+        if (due == null && rule == null) return false;
+        // A recurrence needs a start; undated recurring tasks repeat from their creation
+        Date start = due != null ? due : task.getCreatedDate();
+
+        line(out, "BEGIN:" + component);
+        line(out, "UID:" + uid(eventName, task));
+        line(out, "DTSTAMP:" + stamp);
+        line(out, "CREATED:" + UTC_DATE_TIME.format(task.getCreatedDate().toInstant()));
+        line(out, "SUMMARY:" + escape(task.getText()));
+        line(out, "DESCRIPTION:" + escape("Event: " + eventName));
+        StringBuilder categories = new StringBuilder(escape(task.getCategory()));
+        for (String tag : task.getTags()) {
+            categories.append(',').append(escape(tag));
+        }
+        line(out, "CATEGORIES:" + categories);
+        line(out, "PRIORITY:" + priority(task.getPriority()));
+        if (component == Component.VTODO) {
+            line(out, "DTSTART" + dateValue(start));
+            if (due != null) {
+                line(out, "DUE" + dateValue(due));
+            }
+            line(out, "STATUS:" + (completed ? "COMPLETED" : "NEEDS-ACTION"));
+        } else {
+            line(out, "DTSTART" + dateValue(start));
+            line(out, "TRANSP:TRANSPARENT");
+        }
+        if (rule != null) {
+            line(out, "RRULE:" + rule);
+        }
+        line(out, "END:" + component);
+        return true;
+    }
+
+    /**
+     * Map a recurrence pattern to an RRULE value, see {@link RecurrenceRule}.
+     * RRULE text beyond what the rule engine understands is passed through,
+     * as calendar applications may still understand it.
+     * @param pattern the task's recurrence pattern
+     * @return the RRULE value without the "RRULE:" prefix, or null if not understood
+     */
+    static String toRRule(String pattern) {
+        RecurrenceRule rule = RecurrenceRule.parse(pattern);
+        if (rule != null) return rule.toRRule();
+        if (pattern == null) return null;
+        String normalized = pattern.trim().toUpperCase(Locale.ROOT);
+        if (normalized.startsWith("RRULE:")) {
+            normalized = normalized.substring(6).trim();
+        }
+        return normalized.startsWith("FREQ=") ? normalized : null;
+    }
+
+    // Stable across exports as long as the task's text is unchanged, so re-importing updates events
+    private static String uid(String eventName, TaskState task) {
+        int hash = (eventName + '\u0000' + task.getText()).hashCode();
+        return task.getCreatedDate().getTime() + "-" + Integer.toHexString(hash) + "@to-do-list";
+    }
+
+    private static int priority(TodoListApp.TaskPriority priority) {
+        switch (priority) {
+            case URGENT: return 1;
+            case HIGH: return 3;
+            case MEDIUM: return 5;
+            default: return 9;
+        }
+    }
+
+    /**
+     * @return ";VALUE=DATE:yyyyMMdd" for a time at local midnight, which the
+     *         date picker produces, otherwise ":yyyyMMddTHHmmssZ" in UTC
+     */
+    private static String dateValue(Date date) {
+        ZonedDateTime local = date.toInstant().atZone(ZoneId.systemDefault());
+        if (local.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+            return ";VALUE=DATE:" + LOCAL_DATE.format(local);
+        }
+        return ":" + UTC_DATE_TIME.format(date.toInstant());
+    }
+
+    private static String escape(String value) {
+        if (value == null) return "";
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case ';': out.append("\\;"); break;
+                case ',': out.append("\\,"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': break;
+                default: out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Append a content line folded at 75 octets, never inside a UTF-8 sequence
+     */
+    private static void line(StringBuilder out, String content) {
+        int octets = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            boolean pair = Character.isHighSurrogate(c) && i + 1 < content.length();
+            int size = pair ? 4 : c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            if (octets + size > MAX_LINE_OCTETS) {
+                // The leading space of a continuation line counts towards its length
+                out.append(CRLF).append(' ');
+                octets = 1;
+            }
+            out.append(c);
+            if (pair) out.append(content.charAt(++i));
+            octets += size;
+        }
+        out.append(CRLF);
+    }
+}
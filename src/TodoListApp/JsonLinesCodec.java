@@ -0,0 +1,424 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * JSON Lines (NDJSON) format for tasks: one JSON object per line holding the
+ * task's ID, its event and every field, with tags as an array and dates as
+ * epoch milliseconds. Writing goes through the parallel {@link BlockExporter}
+ * pipeline; reading is a pull parser that fills one {@link Record} at a time
+ * straight from a character buffer without building a document tree.
+ *
+ * Delta exports use the same lines with an {@code op} of "upsert" or
+ * "delete" and the change's {@code seq}; a line without {@code op} is an upsert.
+ * Changes are matched to earlier lines by {@code id}, which survives edits
+ * and moves between events; a deletion carries only the ID and event.
+ * @author Apon
+ */
+public class JsonLinesCodec extends BlockExporter {
+
+    @Override
+    protected boolean encode(StringBuilder out, String eventName, long id, TaskState task, boolean completed) {
+        encodeTask(out, eventName, id, task, completed);
+        out.append('\n');
+        return true;
+    }
+
+    /**
+     * Write a delta as one line per change, in sequence order
+     * @param changes the captured changes
+     * @param path the file to create or replace
+     * @return number of changes written
+     * @throws IOException if the file cannot be written
+     */
+    public static long writeChanges(List<ChangeTracker.Change> changes, Path path) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (ChangeTracker.Change change : changes) {
+                line.setLength(0);
+                encodeChange(line, change);
+                out.append(line);
+            }
+        }
+        return changes.size();
+    }
+
+    static void encodeChange(StringBuilder out, ChangeTracker.Change change) {
+        out.append("{\"op\":\"").append(change.isDeletion() ? "delete" : "upsert");
+        out.append("\",\"seq\":").append(change.getSeq());
+        out.append(",\"id\":").append(change.getId()).append(',');
+        if (change.isDeletion()) {
+            // The ID finds the task again, whatever was edited since the consumer saw it
+            out.append("\"event\":");
+            string(out, change.getEventName());
+        } else {
+            fields(out, change.getEventName(), change.getState(), change.getState().isCompleted());
+        }
+        out.append("}\n");
+    }
+
+    /**
+     * One task as an object led by its ID, without a line break, as the
+     * {@link TodoCli} and the {@link TaskApi} return tasks
+     */
+    static void encodeTask(StringBuilder out, String eventName, long id, TaskState task, boolean completed) {
+        out.append("{\"id\":").append(id).append(',');
+        fields(out, eventName, task, completed);
+        out.append('}');
+    }
+
+    private static void fields(StringBuilder out, String eventName, TaskState task, boolean completed) {
+        out.append("\"event\":");
+        string(out, eventName);
+        out.append(",\"text\":");
+        string(out, task.getText());
+        out.append(",\"priority\":\"").append(task.getPriority().name()).append('"');
+        out.append(",\"completed\":").append(completed);
+        out.append(",\"due\":");
+        if (task.getDueDate() != null) {
+            out.append(task.getDueDate().getTime());
+        } else {
+            out.append("null");
+        }
+        out.append(",\"category\":");
+        string(out, task.getCategory());
+        out.append(",\"tags\":[");
+        for (int i = 0; i < task.getTags().size(); i++) {
+            if (i > 0) out.append(',');
+            string(out, task.getTags().get(i));
+        }
+        out.append("],\"timeSpent\":").append(task.getTimeSpent());
+        out.append(",\"created\":").append(task.getCreatedDate().getTime());
+        out.append(",\"recurring\":").append(task.isRecurring());
+        out.append(",\"recurrence\":");
+        string(out, task.getRecurrencePattern());
+    }
+
+    static void string(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Fields of one task line. Missing fields keep their defaults.
+     */
+    public static class Record {
+        private final Set<String> fields = new HashSet<>();
+        private String op = "upsert";
+        private long seq;
+        private long id;
+        private String eventName;
+        private String text = "";
+        private String priority = "MEDIUM";
+        private boolean completed;
+        private Date dueDate;
+        private String category = "General";
+        private final List<String> tags = new ArrayList<>();
+        private long timeSpent;
+        private Date createdDate;
+        private boolean recurring;
+        private String recurrencePattern = "";
+
+        public String getOp() { return op; }
+        public long getSeq() { return seq; }
+        public long getId() { return id; }
+        /**
+         * @return true if the line held the field, false if it has its default
+         */
+        public boolean has(String field) { return fields.contains(field); }
+        public boolean isDeletion() { return "delete".equals(op); }
+        public String getEventName() { return eventName; }
+        public String getText() { return text; }
+        public String getPriority() { return priority; }
+        public boolean isCompleted() { return completed; }
+        public Date getDueDate() { return dueDate; }
+        public String getCategory() { return category; }
+        public List<String> getTags() { return tags; }
+        public long getTimeSpent() { return timeSpent; }
+        public Date getCreatedDate() { return createdDate; }
+        public boolean isRecurring() { return recurring; }
+        public String getRecurrencePattern() { return recurrencePattern; }
+
+        /**
+         * @return a new task with the line's fields, as imported; the tags
+         *         are left to the caller, which shares their strings
+         */
+        public TodoListApp.Task toTask() {
+            TodoListApp.Task task = new TodoListApp.Task(text);
+            try {
+                task.setPriority(TodoListApp.TaskPriority.valueOf(priority.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                task.setPriority(TodoListApp.TaskPriority.MEDIUM);
+            }
+            task.setCompleted(completed);
+            task.setDueDate(dueDate);
+            if (!category.isEmpty()) {
+                task.setCategory(category);
+            }
+            task.setTimeSpent(Math.max(0, timeSpent));
+            if (createdDate != null) {
+                task.setCreatedDate(createdDate);
+            }
+            task.setRecurring(recurring);
+            task.setRecurrencePattern(recurrencePattern);
+            return task;
+        }
+    }
+
+    /**
+     * Pull parser over a stream of task lines
+     */
+    public static class Reader implements Closeable {
+        private final java.io.Reader source;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        private long charsRead;
+        private long line;
+        private final StringBuilder text = new StringBuilder();
+
+        public Reader(java.io.Reader source) {
+            this.source = source;
+        }
+
+        /**
+         * @return the next task, or null at the end of the input. Blank lines are skipped.
+         * @throws IOException if the source cannot be read or a line is not a JSON object
+         */
+        public Record next() throws IOException {
+            int c = skipWhitespace();
+            if (c < 0) return null;
+            line++;
+            if (c != '{') throw error("expected '{'");
+            Record record = new Record();
+            c = skipWhitespace();
+            if (c == '}') return record;
+            while (true) {
+                if (c != '"') throw error("expected a field name");
+                String name = readString();
+                expect(':');
+                readField(record, name);
+                record.fields.add(name);
+                c = skipWhitespace();
+                if (c == '}') return record;
+                if (c != ',') throw error("expected ',' or '}'");
+                c = skipWhitespace();
+            }
+        }
+
+        /**
+         * @return characters consumed so far, for progress reporting
+         */
+        public long getCharsRead() {
+            return charsRead - (limit - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        private void readField(Record record, String name) throws IOException {
+            switch (name) {
+                case "op": record.op = orEmpty(readNullableString()); break;
+                case "seq": record.seq = readLong(skipWhitespace()); break;
+                case "id": record.id = readLong(skipWhitespace()); break;
+                case "event": record.eventName = readNullableString(); break;
+                case "text": record.text = orEmpty(readNullableString()); break;
+                case "priority": record.priority = orEmpty(readNullableString()); break;
+                case "completed": record.completed = readBoolean(); break;
+                case "due": record.dueDate = readDate(); break;
+                case "category": record.category = orEmpty(readNullableString()); break;
+                case "tags":
+                    expect('[');
+                    int c = skipWhitespace();
+                    while (c != ']') {
+                        if (c != '"') throw error("expected a tag string");
+                        record.tags.add(readString());
+                        c = skipWhitespace();
+                        if (c == ',') c = skipWhitespace();
+                    }
+                    break;
+                case "timeSpent": record.timeSpent = readLong(skipWhitespace()); break;
+                case "created": record.createdDate = readDate(); break;
+                case "recurring": record.recurring = readBoolean(); break;
+                case "recurrence": record.recurrencePattern = orEmpty(readNullableString()); break;
+                default: skipValue(skipWhitespace());
+            }
+        }
+
+        private String readNullableString() throws IOException {
+            int c = skipWhitespace();
+            if (c == 'n') {
+                literal("ull");
+                return null;
+            }
+            if (c != '"') throw error("expected a string");
+            return readString();
+        }
+
+        // Reads the rest of a string whose opening quote was consumed
+        private String readString() throws IOException {
+            text.setLength(0);
+            while (true) {
+                int c = read();
+                if (c < 0 || c == '\n') throw error("unterminated string");
+                if (c == '"') return text.toString();
+                if (c != '\\') {
+                    text.append((char) c);
+                    continue;
+                }
+                c = read();
+                switch (c) {
+                    case '"': case '\\': case '/': text.append((char) c); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) throw error("bad unicode escape");
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                        break;
+                    default: throw error("bad escape");
+                }
+            }
+        }
+
+        private boolean readBoolean() throws IOException {
+            int c = skipWhitespace();
+            if (c == 't') {
+                literal("rue");
+                return true;
+            }
+            if (c == 'f') {
+                literal("alse");
+                return false;
+            }
+            throw error("expected true or false");
+        }
+
+        private Date readDate() throws IOException {
+            int c = skipWhitespace();
+            if (c == 'n') {
+                literal("ull");
+                return null;
+            }
+            return new Date(readLong(c));
+        }
+
+        private long readLong(int first) throws IOException {
+            boolean negative = first == '-';
+            int c = negative ? read() : first;
+            if (c < '0' || c > '9') throw error("expected a number");
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                c = peek();
+                if (c >= '0' && c <= '9') position++;
+            }
+            return negative ? -value : value;
+        }
+
+        // Skips a value of a field this version does not know
+        private void skipValue(int c) throws IOException {
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                int depth = 1;
+                while (depth > 0) {
+                    int next = read();
+                    if (next < 0) throw error("unterminated value");
+                    if (next == '"') readString();
+                    else if (next == '{' || next == '[') depth++;
+                    else if (next == '}' || next == ']') depth--;
+                }
+            } else {
+                // Number, true, false or null
+                while (true) {
+                    int next = peek();
+                    if (next < 0 || next == ',' || next == '}' || next == ']' || Character.isWhitespace(next)) break;
+                    position++;
+                }
+            }
+        }
+
+        private void literal(String rest) throws IOException {
+            for (int i = 0; i < rest.length(); i++) {
+                if (read() != rest.charAt(i)) throw error("bad literal");
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            if (skipWhitespace() != expected) throw error("expected '" + expected + "'");
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+            return c;
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position++];
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position];
+        }
+
+        private boolean fill() throws IOException {
+            int n = source.read(buffer, 0, buffer.length);
+            if (n <= 0) return false;
+            position = 0;
+            limit = n;
+            charsRead += n;
+            return true;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Line " + line + ": " + message);
+        }
+
+        private static String orEmpty(String value) {
+            return value != null ? value : "";
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+
+/**
+ * Writes reminders as lines of text, for headless use and testing.
+ * @author Apon
+ */
+public class LogReminderSink implements ReminderSink {
+
+    private final PrintStream out;
+
+    /**
+     * @param out where the lines go
+     */
+    public LogReminderSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void remind(ReminderService.Reminder reminder) {
+        String due = new SimpleDateFormat("dd/MM/yyyy HH:mm").format(reminder.getDueDate());
+        synchronized (out) {
+            out.println("Reminder: " + reminder.getText() + " [" + reminder.getEventName() + "] due " + due);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Map from primitive long keys to objects with open addressing and linear
+ * probing. Keys and values sit in two parallel arrays with no boxing or
+ * entry objects. Removal shifts the following entries back, so lookups never
+ * have to skip deleted markers. Not thread-safe.
+ * @author Apon
+ * @param <V> the value type
+ */
+public class LongHashMap<V> {
+
+    // A null value marks an empty slot; null values cannot be stored
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongHashMap() {
+        keys = new long[16];
+        values = new Object[16];
+        resizeAt = 12;
+    }
+
+    /**
+     * @return the value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) return (V) values[index];
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key
+     * @param value the value, not null
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("null value");
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeAt) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V removed = (V) values[index];
+                shiftBack(index);
+                size--;
+                return removed;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // Close the gap at a removed slot by moving back entries that probed past it
+    private void shiftBack(int gap) {
+        int mask = keys.length - 1;
+        int index = (gap + 1) & mask;
+        while (values[index] != null) {
+            int home = mix(keys[index]) & mask;
+            // Move the entry if the gap lies cyclically between its home slot and its slot
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        resizeAt = keys.length / 4 * 3;
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int index = mix(oldKeys[i]) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Set of primitive longs with open addressing and linear probing. Values are
+ * stored in a single array with no boxing, so a few million entries take
+ * tens of megabytes rather than hundreds. Not thread-safe.
+ * @author Apon
+ */
+public class LongHashSet {
+
+    // 0 marks an empty slot; the value 0 itself is tracked separately
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+    private int resizeAt;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expected number of values to hold without resizing
+     */
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) Math.min(1 << 30, expected * 4L / 3 + 1)) - 1) << 1;
+        slots = new long[capacity];
+        resizeAt = capacity / 4 * 3;
+    }
+
+    /**
+     * @param value the value to add
+     * @return false if the value was already present
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != 0) {
+            if (slots[index] == value) return false;
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        if (++size > resizeAt) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) return containsZero;
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != 0) {
+            if (slots[index] == value) return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        resizeAt = slots.length / 4 * 3;
+        int mask = slots.length - 1;
+        for (long value : old) {
+            if (value == 0) continue;
+            int index = mix(value) & mask;
+            while (slots[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            slots[index] = value;
+        }
+    }
+
+    // Spread the high bits into the low bits used for the slot index
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
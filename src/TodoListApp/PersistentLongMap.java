@@ -0,0 +1,283 @@
+import java.util.function.Consumer;
+
+/**
+ * Immutable map from primitive long keys to objects, as a hash array mapped
+ * trie: each level of the tree is indexed by the next five bits of the key
+ * and holds only the children that exist, found through a bitmap. A change
+ * copies the path from the root to one leaf, O(log32 n), and shares the rest
+ * of the tree with the map it was made from, so older versions stay valid
+ * and cost nothing to keep.
+ *
+ * Changes are made through an {@link Editor}, which copies each node at most
+ * once and then changes its own copies in place, so a batch of k changes
+ * copies at most k paths and a bulk load costs O(n).
+ * @author Apon
+ * @param <V> the value type
+ */
+public final class PersistentLongMap<V> {
+
+    private static final PersistentLongMap<Object> EMPTY = new PersistentLongMap<>(null, 0);
+
+    /**
+     * A level of the trie. A slot holds a value, with its key alongside, or
+     * a node one level down.
+     */
+    private static final class Node {
+        final Object owner; // the editor that may change the node in place, or null
+        int bitmap;
+        long[] keys;
+        Object[] slots;
+
+        Node(Object owner, int bitmap, long[] keys, Object[] slots) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.keys = keys;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * Makes one new version from a map. Not thread-safe, and not usable
+     * after {@link #done()}.
+     * @param <V> the value type
+     */
+    public static final class Editor<V> {
+        private Object owner = new Object();
+        private Node root;
+        private int size;
+
+        private Editor(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * @return the value, or null if the key is absent
+         */
+        public V get(long key) {
+            return PersistentLongMap.get(root, key);
+        }
+
+        /**
+         * @param key the key
+         * @param value the value, not null
+         */
+        public void put(long key, V value) {
+            if (value == null) throw new IllegalArgumentException("null value");
+            checkOpen();
+            root = root == null ? leafNode(key, value) : put(root, 0, key, value);
+        }
+
+        /**
+         * @param key the key to remove, if present
+         */
+        public void remove(long key) {
+            checkOpen();
+            if (root != null) root = remove(root, 0, key);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return the new version; the editor cannot be used any more
+         */
+        public PersistentLongMap<V> done() {
+            checkOpen();
+            owner = null;
+            return new PersistentLongMap<>(root, size);
+        }
+
+        private Node leafNode(long key, Object value) {
+            size++;
+            return new Node(owner, bit(key, 0), new long[] { key }, new Object[] { value });
+        }
+
+        private Node put(Node node, int shift, long key, Object value) {
+            int bit = bit(key, shift);
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            if ((node.bitmap & bit) == 0) {
+                size++;
+                return resized(node, node.bitmap | bit, insert(node.keys, index, key), insert(node.slots, index, value));
+            }
+            Object slot = node.slots[index];
+            Object next;
+            if (slot instanceof Node) {
+                next = put((Node) slot, shift + 5, key, value);
+            } else if (node.keys[index] == key) {
+                next = value;
+            } else {
+                // Two keys meet in this slot: push both one level down
+                next = pair(shift + 5, node.keys[index], slot, key, value);
+                size++;
+            }
+            if (next == slot) return node;
+            Node copy = editable(node);
+            copy.slots[index] = next;
+            return copy;
+        }
+
+        private Node pair(int shift, long key1, Object value1, long key2, Object value2) {
+            int bit1 = bit(key1, shift);
+            int bit2 = bit(key2, shift);
+            if (bit1 == bit2) {
+                return new Node(owner, bit1, new long[1], new Object[] { pair(shift + 5, key1, value1, key2, value2) });
+            }
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                ? new Node(owner, bit1 | bit2, new long[] { key1, key2 }, new Object[] { value1, value2 })
+                : new Node(owner, bit1 | bit2, new long[] { key2, key1 }, new Object[] { value2, value1 });
+        }
+
+        // Returns null once the node is empty
+        private Node remove(Node node, int shift, long key) {
+            int bit = bit(key, shift);
+            if ((node.bitmap & bit) == 0) return node;
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            Object slot = node.slots[index];
+            if (slot instanceof Node) {
+                Node child = remove((Node) slot, shift + 5, key);
+                if (child == slot) return node;
+                if (child != null) {
+                    Node copy = editable(node);
+                    if (child.slots.length == 1 && !(child.slots[0] instanceof Node)) {
+                        // A lone value moves up into this level
+                        copy.keys[index] = child.keys[0];
+                        copy.slots[index] = child.slots[0];
+                    } else {
+                        copy.slots[index] = child;
+                    }
+                    return copy;
+                }
+            } else if (node.keys[index] != key) {
+                return node;
+            } else {
+                size--;
+            }
+            if (node.bitmap == bit) return null;
+            return resized(node, node.bitmap & ~bit, delete(node.keys, index), delete(node.slots, index));
+        }
+
+        private Node editable(Node node) {
+            checkOpen();
+            if (node.owner == owner) return node;
+            return new Node(owner, node.bitmap, node.keys.clone(), node.slots.clone());
+        }
+
+        private Node resized(Node node, int bitmap, long[] keys, Object[] slots) {
+            checkOpen();
+            if (node.owner != owner) return new Node(owner, bitmap, keys, slots);
+            node.bitmap = bitmap;
+            node.keys = keys;
+            node.slots = slots;
+            return node;
+        }
+
+        private void checkOpen() {
+            if (owner == null) throw new IllegalStateException("Editor already done");
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PersistentLongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    /**
+     * @return the value, or null if the key is absent
+     */
+    public V get(long key) {
+        return get(root, key);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return an editor that starts from this map and leaves it unchanged
+     */
+    public Editor<V> edit() {
+        return new Editor<>(root, size);
+    }
+
+    /**
+     * Visit every value, in no particular order
+     * @param action called with each value
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        if (root != null) forEachValue(root, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEachValue(Node node, Consumer<? super V> action) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Node) {
+                forEachValue((Node) slot, action);
+            } else {
+                action.accept((V) slot);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V get(Node node, long key) {
+        int shift = 0;
+        while (node != null) {
+            int bit = bit(key, shift);
+            if ((node.bitmap & bit) == 0) return null;
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            Object slot = node.slots[index];
+            if (!(slot instanceof Node)) return node.keys[index] == key ? (V) slot : null;
+            node = (Node) slot;
+            shift += 5;
+        }
+        return null;
+    }
+
+    // Two different keys part at the latest in bits 60 to 63, the thirteenth level
+    private static int bit(long key, int shift) {
+        return 1 << ((int) (key >>> shift) & 31);
+    }
+
+    private static long[] insert(long[] array, int index, long value) {
+        long[] copy = new long[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Object[] insert(Object[] array, int index, Object value) {
+        Object[] copy = new Object[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static long[] delete(long[] array, int index) {
+        long[] copy = new long[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    private static Object[] delete(Object[] array, int index) {
+        Object[] copy = new Object[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+}
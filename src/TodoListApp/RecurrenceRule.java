@@ -0,0 +1,450 @@
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A task's recurrence pattern, parsed: a subset of iCalendar RRULE with
+ * FREQ (DAILY, WEEKLY, MONTHLY, YEARLY), INTERVAL, BYDAY without ordinals,
+ * BYMONTHDAY, COUNT and UNTIL, plus the plain patterns "Daily", "Weekly",
+ * "Weekdays", "Biweekly", "Monthly", "Yearly" and "Every N days" (weeks,
+ * months, years).
+ *
+ * Occurrences are generated lazily, one period at a time, in the local time
+ * zone at the start's time of day. The start is always the first
+ * occurrence. As in RFC 5545, a date that does not exist in a period, like
+ * the 31st in a 30-day month, is skipped rather than moved by an explicit
+ * FREQ= rule; the plain monthly and yearly patterns fall back to the last
+ * day of a short month instead, as users of "Monthly" expect. Range scans
+ * over unbounded rules jump straight to the period containing the range,
+ * so they cost the same however far the range lies from the start.
+ * Immutable.
+ * @author Apon
+ */
+public final class RecurrenceRule {
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY, YEARLY }
+
+    private static final Pattern EVERY_N = Pattern.compile("every\\s+(\\d+)\\s+(day|week|month|year)s?");
+    private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    // Periods in a row without an occurrence before a rule is taken to have none left
+    private static final int MAX_EMPTY_PERIODS = 1000;
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Set<DayOfWeek> byDay;
+    private final int[] byMonthDay;
+    private final int count; // 0 when unbounded
+    private final Instant until; // null when unbounded
+    // Plain patterns: the start's day of the month is clamped to short months
+    private final boolean clampDay;
+
+    private RecurrenceRule(Frequency frequency, int interval, Set<DayOfWeek> byDay, int[] byMonthDay,
+                           int count, Instant until, boolean clampDay) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.byMonthDay = byMonthDay;
+        this.count = count;
+        this.until = until;
+        this.clampDay = clampDay;
+    }
+
+    /**
+     * @param pattern a task's recurrence pattern
+     * @return the rule, or null if the pattern is empty or not understood
+     */
+    public static RecurrenceRule parse(String pattern) {
+        if (pattern == null) return null;
+        String normalized = pattern.trim().toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("rrule:")) {
+            normalized = normalized.substring(6).trim();
+        }
+        if (normalized.startsWith("freq=")) {
+            return parseRRule(normalized.toUpperCase(Locale.ROOT), false);
+        }
+        switch (normalized) {
+            case "daily": case "every day": return parseRRule("FREQ=DAILY", true);
+            case "weekly": case "every week": return parseRRule("FREQ=WEEKLY", true);
+            case "weekdays": case "every weekday": return parseRRule("FREQ=WEEKLY;BYDAY=MO,TU,WE,TH,FR", true);
+            case "biweekly": case "fortnightly": return parseRRule("FREQ=WEEKLY;INTERVAL=2", true);
+            case "monthly": case "every month": return parseRRule("FREQ=MONTHLY", true);
+            case "yearly": case "annually": case "every year": return parseRRule("FREQ=YEARLY", true);
+            default:
+                Matcher matcher = EVERY_N.matcher(normalized);
+                if (!matcher.matches()) return null;
+                String frequency = matcher.group(2).equals("day") ? "DAILY"
+                    : matcher.group(2).toUpperCase(Locale.ROOT) + "LY";
+                return parseRRule("FREQ=" + frequency + ";INTERVAL=" + matcher.group(1), true);
+        }
+    }
+
+    private static RecurrenceRule parseRRule(String rule, boolean clampDay) {
+        Frequency frequency = null;
+        int interval = 1;
+        Set<DayOfWeek> byDay = EnumSet.noneOf(DayOfWeek.class);
+        int[] byMonthDay = new int[0];
+        int count = 0;
+        Instant until = null;
+        try {
+            for (String part : rule.split(";")) {
+                if (part.isEmpty()) continue;
+                int equals = part.indexOf('=');
+                if (equals < 0) return null;
+                String name = part.substring(0, equals);
+                String value = part.substring(equals + 1);
+                switch (name) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(value);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        if (interval < 1) return null;
+                        break;
+                    case "BYDAY":
+                        for (String code : value.split(",")) {
+                            int day = Arrays.asList(DAY_CODES).indexOf(code);
+                            if (day < 0) return null; // ordinals like 1MO are not supported
+                            byDay.add(DayOfWeek.of(day + 1));
+                        }
+                        break;
+                    case "BYMONTHDAY":
+                        String[] days = value.split(",");
+                        byMonthDay = new int[days.length];
+                        for (int i = 0; i < days.length; i++) {
+                            byMonthDay[i] = Integer.parseInt(days[i]);
+                            if (byMonthDay[i] == 0 || Math.abs(byMonthDay[i]) > 31) return null;
+                        }
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        if (count < 1) return null;
+                        break;
+                    case "UNTIL":
+                        until = parseUntil(value);
+                        break;
+                    case "WKST":
+                        if (!value.equals("MO")) return null;
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (IllegalArgumentException | java.time.DateTimeException e) {
+            return null;
+        }
+        if (frequency == null) return null;
+        if (frequency == Frequency.YEARLY && !byDay.isEmpty()) return null;
+        return new RecurrenceRule(frequency, interval, byDay, byMonthDay, count, until, clampDay);
+    }
+
+    // A date alone means the end of that day in local time
+    private static Instant parseUntil(String value) {
+        if (value.length() == 8) {
+            return LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE).atTime(LocalTime.MAX)
+                .atZone(ZoneId.systemDefault()).toInstant();
+        }
+        if (value.endsWith("Z")) {
+            return LocalDateTime.parse(value, UNTIL_FORMAT).toInstant(ZoneOffset.UTC);
+        }
+        return LocalDateTime.parse(value, DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss"))
+            .atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    public Frequency getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public int getCount() { return count; }
+
+    /**
+     * @param count occurrences in all, counting the start; 0 for unbounded
+     * @return this rule with another count
+     */
+    public RecurrenceRule withCount(int count) {
+        return new RecurrenceRule(frequency, interval, byDay, byMonthDay, count, until, clampDay);
+    }
+
+    /**
+     * @return the rule as an RRULE value, without the "RRULE:" prefix
+     */
+    public String toRRule() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency);
+        if (interval > 1) rule.append(";INTERVAL=").append(interval);
+        if (!byDay.isEmpty()) {
+            rule.append(";BYDAY=");
+            for (DayOfWeek day : byDay) {
+                if (rule.charAt(rule.length() - 1) != '=') rule.append(',');
+                rule.append(DAY_CODES[day.getValue() - 1]);
+            }
+        }
+        if (byMonthDay.length > 0) {
+            rule.append(";BYMONTHDAY=");
+            for (int i = 0; i < byMonthDay.length; i++) {
+                if (i > 0) rule.append(',');
+                rule.append(byMonthDay[i]);
+            }
+        }
+        if (count > 0) rule.append(";COUNT=").append(count);
+        if (until != null) rule.append(";UNTIL=").append(UNTIL_FORMAT.format(until.atOffset(ZoneOffset.UTC)));
+        return rule.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toRRule();
+    }
+
+    /**
+     * All occurrences in order, generated as they are asked for
+     * @param start the first occurrence
+     * @return the occurrences, starting with the start
+     */
+    public Iterator<Date> iterator(Date start) {
+        return new Occurrences(start, null, null);
+    }
+
+    /**
+     * Occurrences within a range, generated as they are asked for
+     * @param start the first occurrence of the series
+     * @param from inclusive lower bound
+     * @param to exclusive upper bound, or null for none
+     * @return the occurrences in the range, in order
+     */
+    public Iterable<Date> between(Date start, Date from, Date to) {
+        return () -> new Occurrences(start, from, to);
+    }
+
+    /**
+     * @param start the first occurrence of the series
+     * @param after a time
+     * @return the first occurrence after the time, or null if the series ends before
+     */
+    public Date next(Date start, Date after) {
+        Iterator<Date> occurrences = new Occurrences(start, new Date(after.getTime() + 1), null);
+        return occurrences.hasNext() ? occurrences.next() : null;
+    }
+
+    /**
+     * The next occurrence of a recurring task that has just been completed: a
+     * pending copy due at the first occurrence after both its due date and
+     * now, so occurrences missed while it was overdue are skipped. Undated
+     * tasks recur from their creation time.
+     * @param task the completed task
+     * @param now the current time
+     * @return the new task, or null if the task does not recur or its series has ended
+     */
+    public static TodoListApp.Task nextOccurrence(TodoListApp.Task task, Date now) {
+        if (!task.isRecurring()) return null;
+        RecurrenceRule rule = parse(task.getRecurrencePattern());
+        if (rule == null) return null;
+        Date start = task.getDueDate() != null ? task.getDueDate() : task.getCreatedDate();
+        Date after = new Date(Math.max(start.getTime(), now.getTime()));
+        Date due;
+        String pattern = task.getRecurrencePattern();
+        if (rule.getCount() == 0) {
+            due = rule.next(start, after);
+        } else {
+            // The count is of occurrences left, so the new task's rule counts down
+            due = null;
+            int index = 0;
+            for (Iterator<Date> occurrences = rule.iterator(start); occurrences.hasNext(); index++) {
+                Date occurrence = occurrences.next();
+                if (occurrence.after(after)) {
+                    due = occurrence;
+                    pattern = rule.withCount(rule.getCount() - index).toRRule();
+                    break;
+                }
+            }
+        }
+        if (due == null) return null;
+        TodoListApp.Task next = new TodoListApp.Task(task.getText());
+        next.setState(task.getState().withCompleted(false).withTimeSpent(0).withDueDate(due)
+            .withCreatedDate(now).withRecurrencePattern(pattern));
+        return next;
+    }
+
+    /**
+     * Lazily expands the rule period by period. Each period is one interval
+     * of days, weeks (Monday to Sunday), months or years from the start's.
+     */
+    private final class Occurrences implements Iterator<Date> {
+        private final ZonedDateTime start;
+        private final Instant from;
+        private final Instant to;
+        private final List<ZonedDateTime> buffer = new ArrayList<>();
+        private int buffered; // next buffered candidate to look at
+        private long period;
+        private int emitted;
+        private int emptyPeriods;
+        private Date next;
+        private boolean done;
+
+        Occurrences(Date start, Date from, Date to) {
+            this.start = start.toInstant().atZone(ZoneId.systemDefault());
+            this.from = from != null ? from.toInstant() : null;
+            this.to = to != null ? to.toInstant() : null;
+            if (count == 0 && this.from != null && this.from.isAfter(this.start.toInstant())) {
+                // Nothing is counted, so the periods before the range can be skipped unseen
+                period = Math.max(0, periodsUntil(this.from.atZone(this.start.getZone())) - 1);
+                emitted = 1;
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Date next() {
+            if (next == null) throw new NoSuchElementException();
+            Date result = next;
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            next = null;
+            while (!done) {
+                ZonedDateTime candidate = nextCandidate();
+                if (candidate == null) break;
+                Instant instant = candidate.toInstant();
+                if ((until != null && instant.isAfter(until)) || (to != null && !instant.isBefore(to))) {
+                    break;
+                }
+                emitted++;
+                boolean last = count > 0 && emitted >= count;
+                if (from == null || !instant.isBefore(from)) {
+                    next = Date.from(instant);
+                    done = last;
+                    return;
+                }
+                if (last) break;
+            }
+            done = true;
+        }
+
+        // Next candidate after the start in rule order, the start itself first
+        private ZonedDateTime nextCandidate() {
+            if (emitted == 0) return start;
+            while (buffered >= buffer.size()) {
+                if (emptyPeriods > MAX_EMPTY_PERIODS) return null;
+                buffer.clear();
+                buffered = 0;
+                expand(period++, buffer);
+                buffer.removeIf(candidate -> !candidate.isAfter(start));
+                emptyPeriods = buffer.isEmpty() ? emptyPeriods + 1 : 0;
+            }
+            return buffer.get(buffered++);
+        }
+
+        private long periodsUntil(ZonedDateTime time) {
+            long units;
+            switch (frequency) {
+                case DAILY:
+                    units = ChronoUnit.DAYS.between(start.toLocalDate(), time.toLocalDate());
+                    break;
+                case WEEKLY:
+                    units = ChronoUnit.WEEKS.between(weekStart(start.toLocalDate()), weekStart(time.toLocalDate()));
+                    break;
+                case MONTHLY:
+                    units = ChronoUnit.MONTHS.between(start.toLocalDate().withDayOfMonth(1),
+                        time.toLocalDate().withDayOfMonth(1));
+                    break;
+                default:
+                    units = time.getYear() - start.getYear();
+            }
+            return units / interval;
+        }
+
+        // Candidates of one period in order, possibly including ones before the start
+        private void expand(long period, List<ZonedDateTime> out) {
+            LocalDate first = start.toLocalDate();
+            long units = period * interval;
+            switch (frequency) {
+                case DAILY: {
+                    LocalDate day = first.plusDays(units);
+                    if (matchesDay(day) && matchesMonthDay(day)) add(day, out);
+                    break;
+                }
+                case WEEKLY: {
+                    LocalDate monday = weekStart(first).plusWeeks(units);
+                    for (int i = 0; i < 7; i++) {
+                        LocalDate day = monday.plusDays(i);
+                        boolean onDay = byDay.isEmpty() ? day.getDayOfWeek() == first.getDayOfWeek()
+                            : byDay.contains(day.getDayOfWeek());
+                        if (onDay && matchesMonthDay(day)) add(day, out);
+                    }
+                    break;
+                }
+                case MONTHLY: {
+                    LocalDate month = first.withDayOfMonth(1).plusMonths(units);
+                    expandMonth(month, first.getDayOfMonth(), out);
+                    break;
+                }
+                default: {
+                    LocalDate month = first.withDayOfMonth(1).plusYears(units);
+                    expandMonth(month, first.getDayOfMonth(), out);
+                }
+            }
+        }
+
+        private void expandMonth(LocalDate month, int defaultDay, List<ZonedDateTime> out) {
+            int length = month.lengthOfMonth();
+            for (int day = 1; day <= length; day++) {
+                LocalDate date = month.withDayOfMonth(day);
+                boolean onDay;
+                if (byMonthDay.length > 0) {
+                    onDay = matchesMonthDay(date) && matchesDay(date);
+                } else if (!byDay.isEmpty()) {
+                    onDay = byDay.contains(date.getDayOfWeek());
+                } else if (clampDay) {
+                    onDay = day == Math.min(defaultDay, length);
+                } else {
+                    onDay = day == defaultDay;
+                }
+                if (onDay) add(date, out);
+            }
+        }
+
+        private void add(LocalDate day, List<ZonedDateTime> out) {
+            out.add(ZonedDateTime.of(day, start.toLocalTime(), start.getZone()));
+        }
+    }
+
+    private boolean matchesDay(LocalDate day) {
+        return byDay.isEmpty() || byDay.contains(day.getDayOfWeek());
+    }
+
+    private boolean matchesMonthDay(LocalDate day) {
+        if (byMonthDay.length == 0) return true;
+        int length = day.lengthOfMonth();
+        for (int monthDay : byMonthDay) {
+            if (monthDay == day.getDayOfMonth() || length + monthDay + 1 == day.getDayOfMonth()) return true;
+        }
+        return false;
+    }
+
+    private static LocalDate weekStart(LocalDate day) {
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Reminds of pending tasks shortly before they are due. Reminders sit in a
+ * {@link TimingWheel} keyed by due date, so any number of them costs one
+ * scheduler thread and O(1) per schedule or cancel. Kept current from task
+ * change events: a task is rescheduled when its due date changes, and its
+ * reminder is cancelled when it is completed or removed. Tasks whose due
+ * date has already passed are not reminded of.
+ *
+ * Delivery goes through a {@link ReminderSink}, and the clock is
+ * replaceable, so the service runs headless as well.
+ * @author Apon
+ */
+public class ReminderService implements TaskChangeListener {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 4096;
+
+    /**
+     * A reminder as delivered to the sink; a copy of the task's fields at
+     * the time it was scheduled
+     */
+    public static final class Reminder {
+        private final String eventName;
+        private final long taskId;
+        private final String text;
+        private final Date dueDate;
+        private final TodoListApp.TaskPriority priority;
+
+        Reminder(String eventName, TodoListApp.Task task) {
+            this.eventName = eventName;
+            this.taskId = task.getId();
+            this.text = task.getText();
+            this.dueDate = task.getDueDate();
+            this.priority = task.getPriority();
+        }
+
+        public String getEventName() { return eventName; }
+        public long getTaskId() { return taskId; }
+        public String getText() { return text; }
+        public Date getDueDate() { return new Date(dueDate.getTime()); }
+        public TodoListApp.TaskPriority getPriority() { return priority; }
+    }
+
+    private final ReminderSink sink;
+    private final long leadMillis;
+    private final LongSupplier clock;
+    private final TimingWheel<Reminder> wheel;
+    // Only touched from task change events
+    private final Map<TodoListApp.Task, TimingWheel.Timeout<Reminder>> scheduled = new IdentityHashMap<>();
+    private ScheduledFuture<?> ticker;
+
+    /**
+     * @param sink where reminders go
+     * @param leadMillis how long before the due date to remind
+     */
+    public ReminderService(ReminderSink sink, long leadMillis) {
+        this(sink, leadMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param sink where reminders go
+     * @param leadMillis how long before the due date to remind
+     * @param clock the current time in milliseconds since the epoch
+     */
+    public ReminderService(ReminderSink sink, long leadMillis, LongSupplier clock) {
+        this.sink = sink;
+        this.leadMillis = leadMillis;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, clock.getAsLong());
+    }
+
+    /**
+     * Start delivering reminders from a scheduler thread
+     * @param scheduler runs the wheel once a tick
+     */
+    public void start(ScheduledExecutorService scheduler) {
+        ticker = scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (ticker != null) ticker.cancel(false);
+    }
+
+    /**
+     * Deliver the reminders due by now. Called by the scheduler, or directly
+     * when driven by a test clock.
+     */
+    public void tick() {
+        for (Reminder reminder : wheel.advance(clock.getAsLong())) {
+            try {
+                sink.remind(reminder);
+            } catch (RuntimeException e) {
+                // A failing sink must not stop the scheduler
+                System.err.println("Error delivering reminder: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return number of reminders waiting
+     */
+    public int getPendingCount() {
+        return wheel.size();
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        schedule(eventName, task);
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        wheel.cancel(scheduled.remove(task));
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        // Text and priority changes are picked up too, so the reminder shows current fields
+        if (before.isCompleted() == task.isCompleted() && before.getText().equals(task.getText())
+                && before.getPriority() == task.getPriority() && sameTime(before.getDueDate(), task.getDueDate())) {
+            return;
+        }
+        wheel.cancel(scheduled.remove(task));
+        schedule(eventName, task);
+    }
+
+    private void schedule(String eventName, TodoListApp.Task task) {
+        Date due = task.getDueDate();
+        if (task.isCompleted() || due == null || due.getTime() <= clock.getAsLong()) return;
+        scheduled.put(task, wheel.schedule(new Reminder(eventName, task), due.getTime() - leadMillis));
+    }
+
+    private static boolean sameTime(Date a, Date b) {
+        return a == null ? b == null : b != null && a.getTime() == b.getTime();
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Where the {@link ReminderService} delivers due-date reminders. Called on
+ * the reminder thread; implementations that touch Swing move to the EDT
+ * themselves.
+ * @author Apon
+ */
+public interface ReminderSink {
+
+    /**
+     * @param reminder the reminder that is due
+     */
+    void remind(ReminderService.Reminder reminder);
+}
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Named saved searches that are materialized once and then kept current from
+ * task change events, so opening a view costs only the size of its result.
+ * Matches are kept ordered by due date; views limited to overdue or due-soon
+ * tasks hold every pending dated match and cut the ordered set at the current
+ * time when read.
+ * @author Apon
+ */
+public class SavedViews implements TaskChangeListener {
+
+    public enum Status { ANY, PENDING, COMPLETED }
+
+    public enum DueWindow { ANY, OVERDUE, DUE_SOON, HAS_DUE_DATE }
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Criteria of a saved view. All non-empty criteria must match.
+     */
+    public static class View {
+        private final String name;
+        private final TodoListApp.TaskPriority minPriority;
+        private final Status status;
+        private final DueWindow dueWindow;
+        private final String text;
+        private final String category;
+        private final List<String> tags;
+
+        public View(String name, TodoListApp.TaskPriority minPriority, Status status, DueWindow dueWindow,
+                    String text, String category, List<String> tags) {
+            this.name = name;
+            this.minPriority = minPriority;
+            this.status = status;
+            this.dueWindow = dueWindow;
+            this.text = text.trim().toLowerCase(Locale.ROOT);
+            this.category = category.trim();
+            this.tags = new ArrayList<>(tags);
+        }
+
+        public String getName() { return name; }
+        public TodoListApp.TaskPriority getMinPriority() { return minPriority; }
+        public Status getStatus() { return status; }
+        public DueWindow getDueWindow() { return dueWindow; }
+        public String getText() { return text; }
+        public String getCategory() { return category; }
+        public List<String> getTags() { return tags; }
+
+        /**
+         * Test everything except the time-dependent part of the due window
+         * @param task the task to test
+         * @return true if the task belongs in the materialized set
+         */
+        boolean matches(TodoListApp.Task task) {
+            if (minPriority != null && task.getPriority().ordinal() < minPriority.ordinal()) return false;
+            if (status == Status.PENDING && task.isCompleted()) return false;
+            if (status == Status.COMPLETED && !task.isCompleted()) return false;
+            if (dueWindow != DueWindow.ANY && task.getDueDate() == null) return false;
+            if ((dueWindow == DueWindow.OVERDUE || dueWindow == DueWindow.DUE_SOON) && task.isCompleted()) return false;
+            if (!category.isEmpty() && !category.equalsIgnoreCase(task.getCategory())) return false;
+            if (!text.isEmpty() && !task.getText().toLowerCase(Locale.ROOT).contains(text)) return false;
+            for (String tag : tags) {
+                boolean found = false;
+                for (String taskTag : task.getTags()) {
+                    if (taskTag.equalsIgnoreCase(tag)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return a single line holding the view definition
+         */
+        String toLine() {
+            return TaskCodec.escape(name) + "\t"
+                + (minPriority != null ? minPriority.name() : "") + "\t"
+                + status.name() + "\t"
+                + dueWindow.name() + "\t"
+                + TaskCodec.escape(text) + "\t"
+                + TaskCodec.escape(category) + "\t"
+                + TaskCodec.escape(String.join(",", tags));
+        }
+
+        /**
+         * @param line a line written by {@link #toLine()}
+         * @return the view, or null if the line is malformed
+         */
+        static View fromLine(String line) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length < 7) return null;
+            try {
+                List<String> tags = new ArrayList<>();
+                for (String tag : TaskCodec.unescape(fields[6]).split(",")) {
+                    if (!tag.isEmpty()) tags.add(tag);
+                }
+                return new View(TaskCodec.unescape(fields[0]),
+                    fields[1].isEmpty() ? null : TodoListApp.TaskPriority.valueOf(fields[1]),
+                    Status.valueOf(fields[2]),
+                    DueWindow.valueOf(fields[3]),
+                    TaskCodec.unescape(fields[4]),
+                    TaskCodec.unescape(fields[5]),
+                    tags);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A task held by a view together with its event
+     */
+    public static class Member {
+        private final TodoListApp.Task task;
+        private final String eventName;
+        private final long dueKey;
+        private final long sequence;
+
+        Member(TodoListApp.Task task, String eventName, long sequence) {
+            this.task = task;
+            this.eventName = eventName;
+            this.dueKey = task.getDueDate() != null ? task.getDueDate().getTime() : Long.MAX_VALUE;
+            this.sequence = sequence;
+        }
+
+        // Search key used to cut the due date ordering
+        private Member(long dueKey, long sequence) {
+            this.task = null;
+            this.eventName = null;
+            this.dueKey = dueKey;
+            this.sequence = sequence;
+        }
+
+        public TodoListApp.Task getTask() { return task; }
+        public String getEventName() { return eventName; }
+    }
+
+    private static class Materialized {
+        final View view;
+        final Map<TodoListApp.Task, Member> members = new IdentityHashMap<>();
+        final NavigableSet<Member> byDue = new TreeSet<>((a, b) -> a.dueKey != b.dueKey
+            ? Long.compare(a.dueKey, b.dueKey)
+            : Long.compare(a.sequence, b.sequence));
+
+        Materialized(View view) {
+            this.view = view;
+        }
+
+        NavigableSet<Member> current(long now) {
+            switch (view.getDueWindow()) {
+                case OVERDUE:
+                    return byDue.headSet(new Member(now, Long.MIN_VALUE), false);
+                case DUE_SOON:
+                    return byDue.headSet(new Member(now + DAY_IN_MILLIS, Long.MAX_VALUE), true);
+                default:
+                    return byDue;
+            }
+        }
+    }
+
+    private final Map<String, Materialized> views = new LinkedHashMap<>();
+    private long nextSequence;
+    private Runnable changeCallback;
+
+    /**
+     * @param callback run whenever the membership of any view changes
+     */
+    public void setChangeCallback(Runnable callback) {
+        this.changeCallback = callback;
+    }
+
+    /**
+     * Register a view, replacing any view of the same name. The caller feeds
+     * existing tasks through {@link #populate(String, String, TodoListApp.Task)}.
+     * @param view the view definition
+     */
+    public void add(View view) {
+        views.put(view.getName(), new Materialized(view));
+        fireChanged();
+    }
+
+    /**
+     * Offer an existing task to a newly added view
+     * @param viewName the view being materialized
+     * @param eventName the task's event
+     * @param task the task
+     */
+    public void populate(String viewName, String eventName, TodoListApp.Task task) {
+        Materialized materialized = views.get(viewName);
+        if (materialized != null && materialized.view.matches(task)) {
+            insert(materialized, eventName, task);
+        }
+    }
+
+    public void remove(String viewName) {
+        if (views.remove(viewName) != null) fireChanged();
+    }
+
+    public boolean contains(String viewName) {
+        return views.containsKey(viewName);
+    }
+
+    public View getView(String viewName) {
+        Materialized materialized = views.get(viewName);
+        return materialized != null ? materialized.view : null;
+    }
+
+    public Collection<View> getViews() {
+        List<View> result = new ArrayList<>();
+        for (Materialized materialized : views.values()) {
+            result.add(materialized.view);
+        }
+        return result;
+    }
+
+    /**
+     * @param viewName the view
+     * @param now current time in milliseconds
+     * @return the matching tasks ordered by due date
+     */
+    public List<Member> results(String viewName, long now) {
+        Materialized materialized = views.get(viewName);
+        if (materialized == null) return new ArrayList<>();
+        return new ArrayList<>(materialized.current(now));
+    }
+
+    /**
+     * @param viewName the view
+     * @param now current time in milliseconds
+     * @return number of matching tasks: constant time, except for overdue and
+     *         due-soon views, which walk the tasks in the window, O(k)
+     */
+    public int count(String viewName, long now) {
+        Materialized materialized = views.get(viewName);
+        if (materialized == null) return 0;
+        return materialized.current(now).size();
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        boolean changed = false;
+        for (Materialized materialized : views.values()) {
+            if (materialized.view.matches(task)) {
+                changed |= insert(materialized, eventName, task);
+            }
+        }
+        if (changed) fireChanged();
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        boolean changed = false;
+        for (Materialized materialized : views.values()) {
+            changed |= delete(materialized, task);
+        }
+        if (changed) fireChanged();
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        boolean changed = false;
+        for (Materialized materialized : views.values()) {
+            // Re-insert so the due date ordering and event name stay current
+            changed |= delete(materialized, task);
+            if (materialized.view.matches(task)) {
+                changed |= insert(materialized, eventName, task);
+            }
+        }
+        if (changed) fireChanged();
+    }
+
+    private boolean insert(Materialized materialized, String eventName, TodoListApp.Task task) {
+        if (materialized.members.containsKey(task)) return false;
+        Member member = new Member(task, eventName, nextSequence++);
+        materialized.members.put(task, member);
+        materialized.byDue.add(member);
+        return true;
+    }
+
+    private boolean delete(Materialized materialized, TodoListApp.Task task) {
+        Member member = materialized.members.remove(task);
+        if (member == null) return false;
+        materialized.byDue.remove(member);
+        return true;
+    }
+
+    private void fireChanged() {
+        if (changeCallback != null) changeCallback.run();
+    }
+}
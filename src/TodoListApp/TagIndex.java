@@ -0,0 +1,262 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tag to task index across all events, maintained from task change events.
+ * Tags are interned in a shared dictionary (case-insensitive, first spelling
+ * wins) and every indexed task gets a dense integer id, so the postings of a
+ * tag are a {@link BitSet} and multi-tag selection is a bitwise AND.
+ * @author Apon
+ */
+public class TagIndex implements TaskChangeListener {
+
+    private static final int[] NO_TAGS = new int[0];
+
+    // Shared tag dictionary
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final List<String> tagNames = new ArrayList<>();
+    private final List<BitSet> postings = new ArrayList<>();
+    private int[] tagCounts = new int[16];
+
+    // Dense task ids, recycled when tasks leave the index
+    private final Map<TodoListApp.Task, Integer> taskIds = new IdentityHashMap<>();
+    private final List<TodoListApp.Task> tasksById = new ArrayList<>();
+    private final List<String> eventsById = new ArrayList<>();
+    private final List<int[]> tagsById = new ArrayList<>();
+    private final BitSet freeIds = new BitSet();
+
+    /**
+     * Return the canonical instance of a tag, adding it to the dictionary
+     * @param tag raw tag text
+     * @return the shared tag string, or null if the tag is blank
+     */
+    public String intern(String tag) {
+        if (tag == null) return null;
+        String trimmed = tag.trim();
+        if (trimmed.isEmpty()) return null;
+        return tagNames.get(tagId(trimmed));
+    }
+
+    /**
+     * Intern a list of tags, dropping blanks and duplicates
+     * @param tags raw tags
+     * @return a new list holding only canonical tag strings
+     */
+    public List<String> internAll(Collection<String> tags) {
+        List<String> result = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            String canonical = intern(tag);
+            if (canonical != null && !result.contains(canonical)) {
+                result.add(canonical);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        if (taskIds.containsKey(task)) {
+            taskUpdated(eventName, task, task);
+            return;
+        }
+        int id = freeIds.isEmpty() ? tasksById.size() : freeIds.nextSetBit(0);
+        if (id == tasksById.size()) {
+            tasksById.add(task);
+            eventsById.add(eventName);
+            tagsById.add(NO_TAGS);
+        } else {
+            freeIds.clear(id);
+            tasksById.set(id, task);
+            eventsById.set(id, eventName);
+        }
+        taskIds.put(task, id);
+        int[] tags = tagIdsOf(task);
+        tagsById.set(id, tags);
+        for (int tag : tags) {
+            postings.get(tag).set(id);
+            tagCounts[tag]++;
+        }
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        Integer id = taskIds.remove(task);
+        if (id == null) return;
+        for (int tag : tagsById.get(id)) {
+            postings.get(tag).clear(id);
+            tagCounts[tag]--;
+        }
+        tasksById.set(id, null);
+        eventsById.set(id, null);
+        tagsById.set(id, NO_TAGS);
+        freeIds.set(id);
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        Integer id = taskIds.get(task);
+        if (id == null) {
+            taskAdded(eventName, task);
+            return;
+        }
+        eventsById.set(id, eventName);
+        int[] oldTags = tagsById.get(id);
+        int[] newTags = tagIdsOf(task);
+        for (int tag : oldTags) {
+            if (!containsTag(newTags, tag)) {
+                postings.get(tag).clear(id);
+                tagCounts[tag]--;
+            }
+        }
+        for (int tag : newTags) {
+            if (!containsTag(oldTags, tag)) {
+                postings.get(tag).set(id);
+                tagCounts[tag]++;
+            }
+        }
+        tagsById.set(id, newTags);
+    }
+
+    /**
+     * Select the tasks carrying every one of the given tags
+     * @param tags the tags to intersect; an empty selection matches every task
+     * @return a fresh bit set of task ids
+     */
+    public BitSet select(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            BitSet all = new BitSet(tasksById.size());
+            all.set(0, tasksById.size());
+            all.andNot(freeIds);
+            return all;
+        }
+        // Start from the rarest tag so every AND works on the smallest set
+        int[] ids = new int[tags.size()];
+        int n = 0;
+        for (String tag : tags) {
+            Integer id = tag == null ? null : tagIds.get(key(tag));
+            if (id == null) return new BitSet();
+            ids[n++] = id;
+        }
+        int rarest = ids[0];
+        for (int i = 1; i < n; i++) {
+            if (tagCounts[ids[i]] < tagCounts[rarest]) rarest = ids[i];
+        }
+        BitSet result = (BitSet) postings.get(rarest).clone();
+        for (int i = 0; i < n && !result.isEmpty(); i++) {
+            if (ids[i] != rarest) result.and(postings.get(ids[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Tag cloud over the whole workspace
+     * @return tag to task count, most used first
+     */
+    public Map<String, Integer> facetCounts() {
+        return facetCounts(null);
+    }
+
+    /**
+     * Tag cloud restricted to a selection, used for drill-down browsing
+     * @param within selected task ids, or null for every task
+     * @return tag to task count, most used first; tags with no tasks are left out
+     */
+    public Map<String, Integer> facetCounts(BitSet within) {
+        List<Integer> used = new ArrayList<>();
+        int[] counts = new int[tagNames.size()];
+        for (int tag = 0; tag < tagNames.size(); tag++) {
+            if (tagCounts[tag] == 0) continue;
+            if (within == null) {
+                counts[tag] = tagCounts[tag];
+            } else {
+                BitSet both = (BitSet) postings.get(tag).clone();
+                both.and(within);
+                counts[tag] = both.cardinality();
+            }
+            if (counts[tag] > 0) used.add(tag);
+        }
+        used.sort((a, b) -> counts[a] != counts[b]
+                ? Integer.compare(counts[b], counts[a])
+                : tagNames.get(a).compareToIgnoreCase(tagNames.get(b)));
+        Map<String, Integer> facets = new LinkedHashMap<>();
+        for (int tag : used) {
+            facets.put(tagNames.get(tag), counts[tag]);
+        }
+        return facets;
+    }
+
+    /**
+     * @param id a task id from a selection
+     * @return the indexed task, or null if the id is free
+     */
+    public TodoListApp.Task taskAt(int id) {
+        return id < tasksById.size() ? tasksById.get(id) : null;
+    }
+
+    /**
+     * @param id a task id from a selection
+     * @return the event owning the task, or null if the id is free
+     */
+    public String eventAt(int id) {
+        return id < eventsById.size() ? eventsById.get(id) : null;
+    }
+
+    /**
+     * @param task an indexed task
+     * @return its id, or -1 if the task is not indexed
+     */
+    public int idOf(TodoListApp.Task task) {
+        Integer id = taskIds.get(task);
+        return id != null ? id : -1;
+    }
+
+    private int[] tagIdsOf(TodoListApp.Task task) {
+        List<String> tags = task.getTags();
+        if (tags == null || tags.isEmpty()) return NO_TAGS;
+        int[] ids = new int[tags.size()];
+        int n = 0;
+        for (String tag : tags) {
+            if (tag == null || tag.trim().isEmpty()) continue;
+            int id = tagId(tag.trim());
+            if (!containsTag(ids, n, id)) ids[n++] = id;
+        }
+        return n == ids.length ? ids : java.util.Arrays.copyOf(ids, n);
+    }
+
+    private int tagId(String trimmedTag) {
+        String key = key(trimmedTag);
+        Integer id = tagIds.get(key);
+        if (id == null) {
+            id = tagNames.size();
+            tagIds.put(key, id);
+            tagNames.add(trimmedTag);
+            postings.add(new BitSet());
+            if (id == tagCounts.length) {
+                tagCounts = java.util.Arrays.copyOf(tagCounts, id * 2);
+            }
+        }
+        return id;
+    }
+
+    private static String key(String tag) {
+        return tag.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsTag(int[] tags, int tag) {
+        return containsTag(tags, tags.length, tag);
+    }
+
+    private static boolean containsTag(int[] tags, int length, int tag) {
+        for (int i = 0; i < length; i++) {
+            if (tags[i] == tag) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,632 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP API for other tools, on the JDK's built-in server with one
+ * virtual thread per request. Bound to the loopback address only, and only
+ * requests addressed to localhost or 127.0.0.1 are answered, so a web page
+ * cannot reach it by rebinding its own host name. Changes must be sent as
+ * JSON, which a page cannot post to another origin without asking first.
+ * <pre>
+ *   GET    /api/events                 events with their task counts
+ *   POST   /api/events                 {"event":NAME} creates an event
+ *   GET    /api/tasks                  a page of matching tasks; parameters event,
+ *                                      status (pending|completed|all), priority,
+ *                                      category, tag, q, dueBefore, dueAfter,
+ *                                      cursor and limit
+ *   POST   /api/tasks                  a task object creates a task
+ *   GET    /api/tasks/{id}             one task
+ *   PATCH  /api/tasks/{id}             changes the fields given; "event" moves it
+ *   DELETE /api/tasks/{id}             deletes the task
+ *   POST   /api/tasks/bulk             JSON Lines of changes applied all or nothing:
+ *                                      "op":"upsert" adds, or changes the task with
+ *                                      the given "id"; "op":"delete" deletes one
+ * </pre>
+ * Tasks use the fields of {@link JsonLinesCodec} led by their ID, and dates
+ * are epoch milliseconds or, in query parameters, yyyy-MM-dd[THH:mm].
+ *
+ * A task list is paged by position in the listed events' lists rather than
+ * by number of matches: the cursor is where the scan starts, found without
+ * reading the tasks before it, and a page returns the cursor of the next one,
+ * or null after the last. A page stops after limit matches or after reading
+ * MAX_SCAN tasks, so it may hold fewer matches than asked for, even none,
+ * and still have a next page.
+ *
+ * Reads are served from the repository's {@link WorkspaceSnapshot} without
+ * locks or a trip to the writer, and responses carry the snapshot version as
+ * an ETag so unchanged results cost a 304. Changes are handed to the writer
+ * and go through a {@link CommandLog.Transaction}, so they reach the
+ * listeners, undo history and event files like edits in the app, and a
+ * bulk request is a single undo step.
+ * @author Apon
+ */
+public class TaskApi {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_SCAN = 100000;
+    private static final int MAX_BULK = 10000;
+
+    /**
+     * What the API needs from the app; called on the repository's writer
+     */
+    public interface Backend {
+        /**
+         * @return a transaction over the repository's task lists
+         */
+        CommandLog.Transaction begin();
+
+        /**
+         * @return the loaded task with an ID, or null
+         */
+        TodoListApp.Task findTask(long id);
+
+        /**
+         * @return false if the event already exists
+         */
+        boolean addEvent(String eventName);
+
+        /**
+         * Stop the task's timer before it is completed or moved
+         * @return the time to add to the task
+         */
+        long stopTracking(TodoListApp.Task task);
+
+        /**
+         * Save and redraw the events a change touched
+         */
+        void changed(Collection<String> eventNames);
+    }
+
+    /**
+     * A request that cannot be served, with its HTTP status
+     */
+    static final class ApiException extends Exception {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final TaskRepository repository;
+    private final Backend backend;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param repository the tasks served
+     * @param backend applies changes in the app
+     */
+    public TaskApi(TaskRepository repository, Backend backend) {
+        this.repository = repository;
+        this.backend = backend;
+    }
+
+    /**
+     * Start serving on the loopback address
+     * @param port the port, or 0 for any free one
+     * @throws IOException if the port cannot be bound
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return the port served on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            checkHost(exchange);
+            if (method.equals("POST") || method.equals("PATCH")) {
+                checkContentType(exchange);
+            }
+            if (path.equals("/api/events")) {
+                if (method.equals("GET")) {
+                    listEvents(exchange);
+                } else if (method.equals("POST")) {
+                    addEvent(exchange);
+                } else {
+                    throw notAllowed();
+                }
+            } else if (path.equals("/api/tasks")) {
+                if (method.equals("GET")) {
+                    listTasks(exchange);
+                } else if (method.equals("POST")) {
+                    addTask(exchange);
+                } else {
+                    throw notAllowed();
+                }
+            } else if (path.equals("/api/tasks/bulk")) {
+                if (!method.equals("POST")) throw notAllowed();
+                bulk(exchange);
+            } else if (path.startsWith("/api/tasks/")) {
+                long id = parseId(path.substring("/api/tasks/".length()));
+                switch (method) {
+                    case "GET": getTask(exchange, id); break;
+                    case "PATCH": updateTask(exchange, id); break;
+                    case "DELETE": deleteTask(exchange, id); break;
+                    default: throw notAllowed();
+                }
+            } else {
+                throw new ApiException(404, "No such resource: " + path);
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (Exception e) {
+            sendError(exchange, 500, e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void checkHost(HttpExchange exchange) throws ApiException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        String port = ":" + getPort();
+        if (!("localhost" + port).equalsIgnoreCase(host) && !("127.0.0.1" + port).equals(host)) {
+            throw new ApiException(403, "Unexpected host: " + host);
+        }
+    }
+
+    private static void checkContentType(HttpExchange exchange) throws ApiException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String mediaType = contentType != null ? contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT) : "";
+        if (!mediaType.equals("application/json")) {
+            throw new ApiException(415, "Content-Type must be application/json");
+        }
+    }
+
+    private void listEvents(HttpExchange exchange) throws IOException {
+        WorkspaceSnapshot snapshot = repository.current();
+        if (notModified(exchange, snapshot)) return;
+        StringBuilder out = new StringBuilder(128 * (snapshot.getEvents().size() + 1));
+        out.append("{\"version\":").append(snapshot.getVersion()).append(",\"events\":[");
+        boolean first = true;
+        for (EventSnapshot event : snapshot.getEvents()) {
+            if (!first) out.append(',');
+            first = false;
+            out.append("{\"event\":");
+            JsonLinesCodec.string(out, event.getEventName());
+            out.append(",\"date\":");
+            JsonLinesCodec.string(out, repository.getDate(event.getEventName()));
+            out.append(",\"category\":");
+            JsonLinesCodec.string(out, repository.getCategory(event.getEventName()));
+            out.append(",\"pending\":").append(event.getPending().size());
+            out.append(",\"completed\":").append(event.getCompleted().size()).append('}');
+        }
+        out.append("]}");
+        send(exchange, 200, snapshot, out);
+    }
+
+    private void addEvent(HttpExchange exchange) throws Exception {
+        JsonLinesCodec.Record record = readOne(exchange);
+        String eventName = eventName(record);
+        boolean added = repository.write(() -> backend.addEvent(eventName));
+        if (!added) throw new ApiException(409, "Event already exists: " + eventName);
+        StringBuilder out = new StringBuilder("{\"event\":");
+        JsonLinesCodec.string(out, eventName);
+        send(exchange, 201, null, out.append('}'));
+    }
+
+    private void listTasks(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, String> params = queryParameters(exchange);
+        String eventName = params.get("event");
+        TaskQuery query = new TaskQuery(status(params.getOrDefault("status", "all")),
+            params.containsKey("priority") ? priority(params.get("priority")) : null,
+            params.get("category"), params.get("tag"), params.get("q"),
+            params.containsKey("dueBefore") ? date(params.get("dueBefore")) : null,
+            params.containsKey("dueAfter") ? date(params.get("dueAfter")) : null);
+        long cursor = params.containsKey("cursor") ? Math.max(0, number(params.get("cursor"))) : 0;
+        int limit = params.containsKey("limit") ? (int) Math.min(MAX_LIMIT, Math.max(0, number(params.get("limit")))) : DEFAULT_LIMIT;
+
+        WorkspaceSnapshot snapshot = repository.current();
+        if (notModified(exchange, snapshot)) return;
+        List<EventSnapshot> events;
+        if (eventName != null) {
+            EventSnapshot event = snapshot.getEvent(eventName);
+            if (event == null) throw new ApiException(404, "No such event: " + eventName);
+            events = Collections.singletonList(event);
+        } else {
+            events = snapshot.getEvents();
+        }
+
+        // Lists wholly before the cursor are skipped by size; the scan reads
+        // from the cursor until the page is full or MAX_SCAN tasks were read
+        StringBuilder page = new StringBuilder(256 * Math.min(limit, 64));
+        long position = 0;
+        int matches = 0;
+        int scanned = 0;
+        long next = -1;
+        scan:
+        for (EventSnapshot event : events) {
+            for (boolean completed : new boolean[] { false, true }) {
+                if (!query.includes(completed)) continue;
+                List<TaskState> tasks = completed ? event.getCompleted() : event.getPending();
+                if (position + tasks.size() <= cursor) {
+                    position += tasks.size();
+                    continue;
+                }
+                for (int i = (int) Math.max(0, cursor - position); i < tasks.size(); i++) {
+                    if (matches == limit || scanned == MAX_SCAN) {
+                        next = position + i;
+                        break scan;
+                    }
+                    TaskState task = tasks.get(i);
+                    scanned++;
+                    if (!query.matches(task, completed)) continue;
+                    if (page.length() > 0) page.append(',');
+                    JsonLinesCodec.encodeTask(page, event.getEventName(), event.getId(completed, i), task, completed);
+                    matches++;
+                }
+                position += tasks.size();
+            }
+        }
+        StringBuilder out = new StringBuilder(page.length() + 96);
+        out.append("{\"version\":").append(snapshot.getVersion());
+        out.append(",\"cursor\":").append(cursor);
+        out.append(",\"next\":").append(next >= 0 ? Long.toString(next) : "null");
+        out.append(",\"limit\":").append(limit);
+        out.append(",\"tasks\":[").append(page).append("]}");
+        send(exchange, 200, snapshot, out);
+    }
+
+    private void getTask(HttpExchange exchange, long id) throws IOException, ApiException {
+        WorkspaceSnapshot snapshot = repository.current();
+        WorkspaceSnapshot.Location task = snapshot.find(id);
+        if (task == null) throw new ApiException(404, "No such task: " + id);
+        if (notModified(exchange, snapshot)) return;
+        StringBuilder out = new StringBuilder(256);
+        JsonLinesCodec.encodeTask(out, task.getEventName(), id, task.getState(), task.isCompleted());
+        send(exchange, 200, snapshot, out);
+    }
+
+    private void addTask(HttpExchange exchange) throws Exception {
+        JsonLinesCodec.Record record = readOne(exchange);
+        StringBuilder out = new StringBuilder(256);
+        Change change = new Change(record);
+        String eventName = eventName(record);
+        change.validate(true);
+        transaction(transaction -> {
+            TodoListApp.Task task = change.add(transaction, eventName);
+            encode(out, eventName, task);
+        });
+        send(exchange, 201, null, out);
+    }
+
+    private void updateTask(HttpExchange exchange, long id) throws Exception {
+        Change change = new Change(readOne(exchange));
+        change.validate(false);
+        StringBuilder out = new StringBuilder(512);
+        transaction(transaction -> {
+            TodoListApp.Task task = find(id);
+            String eventName = change.update(transaction, task);
+            encode(out, eventName, task);
+            TodoListApp.Task next = change.next;
+            if (next != null) {
+                // The next occurrence of a completed recurring task follows it
+                out.insert(0, "{\"task\":").append(",\"next\":");
+                encode(out, eventName, next);
+                out.append('}');
+            }
+        });
+        send(exchange, 200, null, out);
+    }
+
+    private void deleteTask(HttpExchange exchange, long id) throws Exception {
+        transaction(transaction -> {
+            TodoListApp.Task task = find(id);
+            transaction.remove(task.list.getEventName(), task);
+        });
+        send(exchange, 204, null, null);
+    }
+
+    private void bulk(HttpExchange exchange) throws Exception {
+        List<JsonLinesCodec.Record> records = new ArrayList<>();
+        try (JsonLinesCodec.Reader reader = new JsonLinesCodec.Reader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            JsonLinesCodec.Record record;
+            while ((record = reader.next()) != null) {
+                if (records.size() == MAX_BULK) {
+                    throw new ApiException(413, "More than " + MAX_BULK + " changes");
+                }
+                records.add(record);
+            }
+        } catch (IOException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+        List<Change> changes = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Change change = new Change(records.get(i));
+            try {
+                if (!change.record.isDeletion()) {
+                    if (change.record.getId() == 0) eventName(change.record);
+                    change.validate(change.record.getId() == 0);
+                } else if (change.record.getId() == 0) {
+                    throw new ApiException(400, "Missing \"id\"");
+                }
+            } catch (ApiException e) {
+                throw new ApiException(e.status, "Line " + (i + 1) + ": " + e.getMessage());
+            }
+            changes.add(change);
+        }
+
+        StringBuilder out = new StringBuilder(64 + 32 * changes.size());
+        transaction(transaction -> {
+            out.append("{\"applied\":").append(changes.size()).append(",\"ids\":[");
+            for (int i = 0; i < changes.size(); i++) {
+                Change change = changes.get(i);
+                long id = change.record.getId();
+                try {
+                    if (change.record.isDeletion()) {
+                        TodoListApp.Task task = find(id);
+                        transaction.remove(task.list.getEventName(), task);
+                    } else if (id == 0) {
+                        id = change.add(transaction, change.record.getEventName().trim()).getId();
+                    } else {
+                        change.update(transaction, find(id));
+                    }
+                } catch (ApiException e) {
+                    throw new ApiException(e.status, "Line " + (i + 1) + ": " + e.getMessage());
+                }
+                if (i > 0) out.append(',');
+                out.append(id);
+            }
+            out.append("]}");
+        });
+        send(exchange, 200, null, out);
+    }
+
+    /**
+     * Work done inside a transaction on the writer
+     */
+    private interface Work {
+        void run(CommandLog.Transaction transaction) throws ApiException;
+    }
+
+    // Run on the writer as one undo step; a failure leaves the tasks as they were
+    private void transaction(Work work) throws Exception {
+        repository.write(() -> {
+            CommandLog.Transaction transaction = backend.begin();
+            try {
+                work.run(transaction);
+            } catch (ApiException | RuntimeException e) {
+                backend.changed(transaction.rollback());
+                throw e;
+            }
+            backend.changed(transaction.commit());
+            return null;
+        });
+    }
+
+    // Writer only
+    private TodoListApp.Task find(long id) throws ApiException {
+        TodoListApp.Task task = backend.findTask(id);
+        if (task == null || task.list == null) throw new ApiException(404, "No such task: " + id);
+        return task;
+    }
+
+    /**
+     * Field changes from a request, checked before they reach the writer
+     */
+    private final class Change {
+        final JsonLinesCodec.Record record;
+        TodoListApp.TaskPriority priority;
+        // The next occurrence spawned by completing a recurring task
+        TodoListApp.Task next;
+
+        Change(JsonLinesCodec.Record record) {
+            this.record = record;
+        }
+
+        void validate(boolean adding) throws ApiException {
+            if (adding || record.has("text")) {
+                if (record.getText().trim().isEmpty()) throw new ApiException(400, "Task text is empty");
+            }
+            if (record.has("priority")) {
+                priority = priority(record.getPriority());
+            }
+            if (record.has("recurrence") && !record.getRecurrencePattern().isEmpty()
+                    && RecurrenceRule.parse(record.getRecurrencePattern()) == null) {
+                throw new ApiException(400, "Not a recurrence pattern: " + record.getRecurrencePattern());
+            }
+        }
+
+        TaskState apply(TaskState state) {
+            if (record.has("text")) state = state.withText(record.getText().trim());
+            if (priority != null) state = state.withPriority(priority);
+            if (record.has("due")) state = state.withDueDate(record.getDueDate());
+            if (record.has("category")) state = state.withCategory(record.getCategory());
+            if (record.has("tags")) state = state.withTags(record.getTags());
+            if (record.has("recurrence")) {
+                state = state.withRecurrencePattern(record.getRecurrencePattern())
+                    .withRecurring(!record.getRecurrencePattern().isEmpty());
+            }
+            if (record.has("completed")) state = state.withCompleted(record.isCompleted());
+            return state;
+        }
+
+        // Writer only
+        TodoListApp.Task add(CommandLog.Transaction transaction, String eventName) throws ApiException {
+            TodoListApp.Task task = new TodoListApp.Task(record.getText().trim());
+            task.setState(apply(task.getState()));
+            if (!transaction.add(eventName, task)) throw new ApiException(404, "No such event: " + eventName);
+            return task;
+        }
+
+        // Writer only; returns the event the task ends up in
+        String update(CommandLog.Transaction transaction, TodoListApp.Task task) throws ApiException {
+            String eventName = task.list.getEventName();
+            String toEvent = record.has("event") ? eventName(record) : eventName;
+            if (!toEvent.equals(eventName) && !repository.containsEvent(toEvent)) {
+                throw new ApiException(404, "No such event: " + toEvent);
+            }
+            boolean wasCompleted = task.isCompleted();
+            TaskState changed = apply(task.getState());
+            boolean stopping = (changed.isCompleted() && !wasCompleted) || !toEvent.equals(eventName);
+            transaction.update(eventName, task, t -> {
+                // Completing or moving a task stops its timer
+                long tracked = stopping ? backend.stopTracking(t) : 0;
+                t.setState(changed.withTimeSpent(changed.getTimeSpent() + tracked));
+            });
+            if (!toEvent.equals(eventName)) {
+                transaction.move(eventName, task, toEvent);
+            }
+            if (task.isCompleted() && !wasCompleted) {
+                next = RecurrenceRule.nextOccurrence(task, new Date());
+                if (next != null) transaction.add(toEvent, next);
+            }
+            return toEvent;
+        }
+    }
+
+    private static void encode(StringBuilder out, String eventName, TodoListApp.Task task) {
+        JsonLinesCodec.encodeTask(out, eventName, task.getId(), task.getState(), task.isCompleted());
+    }
+
+    private static JsonLinesCodec.Record readOne(HttpExchange exchange) throws ApiException {
+        try (JsonLinesCodec.Reader reader = new JsonLinesCodec.Reader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            JsonLinesCodec.Record record = reader.next();
+            if (record == null) throw new ApiException(400, "Missing request body");
+            if (reader.next() != null) throw new ApiException(400, "Expected a single object");
+            return record;
+        } catch (IOException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+    }
+
+    private static String eventName(JsonLinesCodec.Record record) throws ApiException {
+        String name = record.getEventName() != null ? record.getEventName().trim() : "";
+        if (name.isEmpty()) throw new ApiException(400, "Missing \"event\"");
+        return name;
+    }
+
+    private static boolean notModified(HttpExchange exchange, WorkspaceSnapshot snapshot) throws IOException {
+        if (!etag(snapshot).equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) return false;
+        exchange.getResponseHeaders().set("ETag", etag(snapshot));
+        exchange.sendResponseHeaders(304, -1);
+        return true;
+    }
+
+    private static String etag(WorkspaceSnapshot snapshot) {
+        return "\"" + snapshot.getVersion() + "\"";
+    }
+
+    private static void send(HttpExchange exchange, int status, WorkspaceSnapshot snapshot, CharSequence body) throws IOException {
+        if (snapshot != null) exchange.getResponseHeaders().set("ETag", etag(snapshot));
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        JsonLinesCodec.string(out, message);
+        if (status == 405) exchange.getResponseHeaders().set("Allow", "GET, POST, PATCH, DELETE");
+        send(exchange, status, null, out.append('}'));
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static ApiException notAllowed() {
+        return new ApiException(405, "Method not allowed");
+    }
+
+    private static long parseId(String value) throws ApiException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No such task: " + value);
+        }
+    }
+
+    private static long number(String value) throws ApiException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+
+    private static TaskQuery.Status status(String value) throws ApiException {
+        try {
+            return TaskQuery.Status.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Unknown status: " + value);
+        }
+    }
+
+    private static TodoListApp.TaskPriority priority(String value) throws ApiException {
+        try {
+            return TodoListApp.TaskPriority.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Unknown priority: " + value);
+        }
+    }
+
+    private static Date date(String value) throws ApiException {
+        try {
+            LocalDateTime time = value.contains("T") ? LocalDateTime.parse(value) : LocalDate.parse(value).atStartOfDay();
+            return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Not a date: " + value);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Receives every task mutation made through {@link TodoListApp} so that derived
+ * data (indexes, counters, views) can be kept current incrementally instead of
+ * rescanning every event.
+ * @author Apon
+ */
+public interface TaskChangeListener {
+
+    /**
+     * A task was added to an event
+     * @param eventName the owning event
+     * @param task the new task
+     */
+    void taskAdded(String eventName, TodoListApp.Task task);
+
+    /**
+     * A task was removed from an event
+     * @param eventName the event the task belonged to
+     * @param task the removed task
+     */
+    void taskRemoved(String eventName, TodoListApp.Task task);
+
+    /**
+     * A task was edited or moved between the todo and completed lists
+     * @param eventName the owning event
+     * @param before a detached copy of the task taken before the change
+     * @param task the live task after the change
+     */
+    void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task);
+}
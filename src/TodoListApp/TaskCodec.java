@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * The line format of event files and undo history: one task per line,
+ * fields separated by tabs, with tabs, newlines and backslashes escaped.
+ * Fields in order: text, priority, due date, category, tags, time spent,
+ * created date, recurring, recurrence pattern, modification sequence number
+ * and ID. Kept apart from the UI so headless tools read and write the same
+ * files.
+ * @author Apon
+ */
+public final class TaskCodec {
+
+    private TaskCodec() {
+    }
+
+    /**
+     * Parse one stored line. The modification sequence number and the ID are
+     * missing from lines saved by older versions, and a line without tabs is
+     * a task saved by versions that only stored the text.
+     * @param line the stored line
+     * @param tagInterner shares tag strings between tasks, or null
+     * @return the parsed task
+     */
+    public static TodoListApp.Task parse(String line, UnaryOperator<List<String>> tagInterner) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 9) {
+            return new TodoListApp.Task(line);
+        }
+        TodoListApp.Task task = new TodoListApp.Task(unescape(fields[0]));
+
+        try {
+            task.setPriority(TodoListApp.TaskPriority.valueOf(fields[1]));
+        } catch (IllegalArgumentException e) {
+            task.setPriority(TodoListApp.TaskPriority.MEDIUM);
+        }
+        if (!fields[2].isEmpty()) {
+            task.setDueDate(new Date(Long.parseLong(fields[2])));
+        }
+        task.setCategory(unescape(fields[3]));
+        if (!fields[4].isEmpty()) {
+            List<String> tags = new ArrayList<>();
+            for (String tag : unescape(fields[4]).split(",")) {
+                tags.add(tag);
+            }
+            task.setTags(tagInterner != null ? tagInterner.apply(tags) : tags);
+        }
+        task.setTimeSpent(Long.parseLong(fields[5]));
+        task.setCreatedDate(new Date(Long.parseLong(fields[6])));
+        task.setRecurring(Boolean.parseBoolean(fields[7]));
+        task.setRecurrencePattern(unescape(fields[8]));
+        if (fields.length > 9 && !fields[9].isEmpty()) {
+            task.setModSeq(Long.parseLong(fields[9]));
+        }
+        if (fields.length > 10 && !fields[10].isEmpty()) {
+            task.restoreId(Long.parseLong(fields[10]));
+        }
+        return task;
+    }
+
+    /**
+     * @param task the task to store
+     * @param withModSeq true for event files; undo history leaves the
+     *        modification sequence number empty
+     * @return the line holding every field
+     */
+    public static String format(TodoListApp.Task task, boolean withModSeq) {
+        StringBuilder line = new StringBuilder();
+        line.append(escape(task.getText())).append('\t');
+        line.append(task.getPriority().name()).append('\t');
+        line.append(task.getDueDate() != null ? String.valueOf(task.getDueDate().getTime()) : "").append('\t');
+        line.append(escape(task.getCategory())).append('\t');
+        line.append(escape(String.join(",", task.getTags()))).append('\t');
+        line.append(task.getTimeSpent()).append('\t');
+        line.append(task.getCreatedDate().getTime()).append('\t');
+        line.append(task.isRecurring()).append('\t');
+        line.append(escape(task.getRecurrencePattern())).append('\t');
+        if (withModSeq) {
+            line.append(task.getModSeq());
+        }
+        line.append('\t').append(task.getId());
+        return line.toString();
+    }
+
+    public static String escape(String value) {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    public static String unescape(String value) {
+        if (value.indexOf('\\') < 0) return value;
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(next); break;
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
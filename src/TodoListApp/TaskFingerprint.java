@@ -0,0 +1,61 @@
+import java.util.Date;
+
+/**
+ * 64-bit content fingerprint of a task for duplicate detection: its event,
+ * text, due date and category. The due date counts to the minute, the
+ * precision CSV exports keep. Two tasks with equal fields always have the
+ * same fingerprint; unequal tasks collide with a probability around one in
+ * 2^64 per pair, which is negligible even for millions of tasks.
+ * @author Apon
+ */
+public final class TaskFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private TaskFingerprint() {
+    }
+
+    /**
+     * @param eventName the task's event
+     * @param task the task
+     * @return the fingerprint
+     */
+    public static long of(String eventName, TaskState task) {
+        return of(eventName, task.getText(), task.getDueDate(), task.getCategory());
+    }
+
+    /**
+     * @param eventName the task's event
+     * @param text the task text
+     * @param dueDate the due date, or null
+     * @param category the category
+     * @return the fingerprint
+     */
+    public static long of(String eventName, String text, Date dueDate, String category) {
+        long hash = FNV_OFFSET;
+        hash = add(hash, eventName);
+        hash = add(hash, text);
+        long due = dueDate != null ? Math.floorDiv(dueDate.getTime(), 60_000L) : Long.MIN_VALUE;
+        for (int shift = 0; shift < 64; shift += 16) {
+            hash = (hash ^ ((due >>> shift) & 0xffff)) * FNV_PRIME;
+        }
+        hash = add(hash, category);
+        // Murmur3 finalizer, so nearby inputs spread over all 64 bits
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static long add(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Field separator, so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0x1f) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hands out task IDs: positive longs that only ever increase, also across
+ * restarts, so an ID is never reused for another task. Ranges of IDs are
+ * reserved by writing their upper bound to a file before any of them is
+ * handed out; after a crash the unused rest of a range is skipped.
+ *
+ * Processes sharing a data directory, like the app and the command line
+ * tool, reserve under a file lock and continue after each other's ranges.
+ * Short runs that add a task or two reserve small ranges, so they do not
+ * use up IDs they never hand out.
+ *
+ * Until {@link #open(File)} is called IDs are only unique within the running
+ * process. Safe to use from any thread.
+ * @author Apon
+ */
+public final class TaskIds {
+
+    private static final long RESERVATION = 1 << 16;
+
+    private static File file;
+    private static long reservation = RESERVATION;
+    private static long next = 1;
+    private static long reservedUntil = Long.MAX_VALUE;
+
+    private TaskIds() {
+    }
+
+    /**
+     * Continue after the last range reserved in a file
+     * @param reservationFile holds the end of the reserved range
+     */
+    public static void open(File reservationFile) {
+        open(reservationFile, RESERVATION);
+    }
+
+    /**
+     * Continue after the last range reserved in a file
+     * @param reservationFile holds the end of the reserved range
+     * @param rangeSize how many IDs to reserve at a time
+     */
+    public static synchronized void open(File reservationFile, long rangeSize) {
+        if (rangeSize < 1) throw new IllegalArgumentException("rangeSize must be positive");
+        file = reservationFile;
+        reservation = rangeSize;
+        if (file.exists()) {
+            try {
+                next = Math.max(next, Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim()));
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Error reading task ID reservation: " + e.getMessage());
+            }
+        }
+        reservedUntil = next;
+    }
+
+    /**
+     * @return a new ID
+     */
+    public static synchronized long next() {
+        if (next >= reservedUntil) {
+            reserve(next + reservation);
+        }
+        return next++;
+    }
+
+    /**
+     * Record that an ID read from disk is in use, so it is never handed out
+     * @param id the stored ID
+     */
+    public static synchronized void observe(long id) {
+        if (id >= next) {
+            next = id + 1;
+            if (next > reservedUntil) {
+                reserve(next + reservation);
+            }
+        }
+    }
+
+    private static void reserve(long until) {
+        reservedUntil = until;
+        if (file == null) return;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Held until the channel closes
+            channel.lock();
+            // Another process may have reserved past this one since
+            ByteBuffer buffer = ByteBuffer.allocate(32);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            }
+            String stored = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+            if (!stored.isEmpty() && Long.parseLong(stored) > next) {
+                next = Long.parseLong(stored);
+                reservedUntil = next + reservation;
+            }
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(Long.toString(reservedUntil).getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(false);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error saving task ID reservation: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,502 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Ordered task list of one event, pending or completed, with positional
+ * reads, appends and removals in O(log n). Tasks sit in slots in list
+ * order; removing a task leaves an empty slot (a tombstone) instead of
+ * shifting the rest, and a Fenwick tree over the occupied slots turns a
+ * list index into a slot and back. Each task records the slot it occupies,
+ * so {@code indexOf} and {@code remove(Object)} need no scan. Tombstones are
+ * compacted away once they outnumber the tasks. Inserting in the middle
+ * reuses the tombstone just before the position if there is one, and
+ * otherwise compacts the slots around the new task, which is O(n).
+ *
+ * Slots are grouped in blocks of {@link #BLOCK_SLOTS}, each stamped when one
+ * of its slots or their tasks changes, so an {@link EventSnapshot} can share
+ * the blocks that did not change with the snapshot before it. Compaction
+ * renumbers the slots and starts a new generation, which shares nothing.
+ *
+ * A task can be in at most one list at a time, so adding or setting a task
+ * that is already held, here or in another list, moves it: the index is
+ * resolved first and the task then leaves its old place. Tasks are matched
+ * by identity, as {@link TodoListApp.Task} does not override {@code equals}.
+ * Changes take the write lock given by the {@link TaskRepository}, if any;
+ * reads are not locked, so other threads read through the repository.
+ * @author Apon
+ */
+public class TaskList extends AbstractList<TodoListApp.Task> {
+
+    private static final int MIN_COMPACT = 64;
+    // Slots per snapshot block: a change recaptures at most this many tasks
+    static final int BLOCK_SLOTS = 1024;
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    private final String eventName;
+    private final boolean completed;
+    private final Lock writeLock;
+    private final Runnable onChange;
+    private TodoListApp.Task[] slots = new TodoListApp.Task[16];
+    private long[] slotIds = new long[16]; // kept after removal, to recognise a returning task
+    private int[] tree = new int[17]; // Fenwick tree over occupied slots, 1-based
+    private int used; // slots handed out, occupied or not
+    private int size;
+    private int compactions;
+    // Slot layout, a new one after compaction or clear; unique across lists
+    private long generation = GENERATIONS.incrementAndGet();
+    private long[] blockStamps = new long[1];
+    private long stamps;
+
+    /**
+     * @param eventName the owning event
+     * @param completed true for the completed list
+     */
+    public TaskList(String eventName, boolean completed) {
+        this(eventName, completed, null, null);
+    }
+
+    /**
+     * @param eventName the owning event
+     * @param completed true for the completed list
+     * @param writeLock held during every change, or null
+     * @param onChange told after the list or one of its tasks changes, or null
+     */
+    public TaskList(String eventName, boolean completed, Lock writeLock, Runnable onChange) {
+        this.eventName = eventName;
+        this.completed = completed;
+        this.writeLock = writeLock;
+        this.onChange = onChange;
+    }
+
+    public String getEventName() { return eventName; }
+    public boolean isCompleted() { return completed; }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TodoListApp.Task get(int index) {
+        checkIndex(index, size);
+        return slots[select(index)];
+    }
+
+    /**
+     * Replace the task at an index. If the new task is held elsewhere in this
+     * list it moves into the replaced task's place, so the list shrinks by one.
+     */
+    @Override
+    public TodoListApp.Task set(int index, TodoListApp.Task task) {
+        checkIndex(index, size);
+        lock();
+        try {
+            TodoListApp.Task previous = slots[select(index)];
+            if (previous == task) return previous;
+            // Leaving may compact and renumber the slots, so use the replaced task's slot after it
+            detachFromOther(task);
+            int slot = previous.slot;
+            previous.list = null;
+            place(task, slot);
+            return previous;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public boolean add(TodoListApp.Task task) {
+        lock();
+        try {
+            detachFromOther(task);
+            append(task);
+            return true;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Insert a task before the one at an index; O(n) unless a tombstone
+     * precedes that task. A task already in this list moves there.
+     */
+    @Override
+    public void add(int index, TodoListApp.Task task) {
+        checkIndex(index, size + 1);
+        lock();
+        try {
+            TodoListApp.Task before = index < size ? slots[select(index)] : null;
+            if (before == task) return;
+            detachFromOther(task);
+            if (before == null) {
+                append(task);
+                return;
+            }
+            int slot = before.slot;
+            if (slot > 0 && slots[slot - 1] == null) {
+                // Reuse the tombstone just before the task now at the index
+                fill(task, slot - 1);
+                return;
+            }
+            compact(slot, task);
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Reorder the tasks within the slots they occupy, O(n log n). The
+     * default would set each task while it is still held at another index.
+     */
+    @Override
+    public void sort(Comparator<? super TodoListApp.Task> comparator) {
+        TodoListApp.Task[] sorted = toArray(new TodoListApp.Task[0]);
+        Arrays.sort(sorted, comparator);
+        lock();
+        try {
+            int i = 0;
+            for (int slot = 0; slot < used; slot++) {
+                if (slots[slot] != null) place(sorted[i++], slot);
+            }
+            modCount++;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Put a task back where it was when it last left this list, if that slot
+     * is still free, otherwise at the end. Used when a completed task is
+     * reopened so it regains its place among the pending tasks.
+     * @param task the task
+     */
+    public void addBack(TodoListApp.Task task) {
+        if (task.list == this) return;
+        int slot = task.formerSlot;
+        lock();
+        try {
+            if (task.formerList == this && slot < used && slots[slot] == null && slotIds[slot] == task.getId()) {
+                detachFromOther(task);
+                fill(task, slot);
+            } else {
+                add(task);
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public TodoListApp.Task remove(int index) {
+        checkIndex(index, size);
+        lock();
+        try {
+            int slot = select(index);
+            TodoListApp.Task task = slots[slot];
+            vacate(slot);
+            return task;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof TodoListApp.Task) || ((TodoListApp.Task) o).list != this) return false;
+        lock();
+        try {
+            vacate(((TodoListApp.Task) o).slot);
+            return true;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof TodoListApp.Task) || ((TodoListApp.Task) o).list != this) return -1;
+        return prefix(((TodoListApp.Task) o).slot) - 1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof TodoListApp.Task && ((TodoListApp.Task) o).list == this;
+    }
+
+    @Override
+    public void clear() {
+        lock();
+        try {
+            for (int i = 0; i < used; i++) {
+                if (slots[i] != null) slots[i].list = null;
+            }
+            slots = new TodoListApp.Task[16];
+            slotIds = new long[16];
+            tree = new int[17];
+            used = 0;
+            size = 0;
+            newGeneration();
+            modCount++;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Iterates the slots directly, so a full pass is O(n) and not O(n log n)
+     */
+    @Override
+    public Iterator<TodoListApp.Task> iterator() {
+        return new Iterator<TodoListApp.Task>() {
+            private int slot = nextOccupied(0);
+            private int nextIndex;
+            private int last = -1;
+            private int expectedModCount = modCount;
+            private int expectedCompactions = compactions;
+
+            @Override
+            public boolean hasNext() {
+                return slot < used;
+            }
+
+            @Override
+            public TodoListApp.Task next() {
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (slot >= used) throw new NoSuchElementException();
+                last = slot;
+                slot = nextOccupied(slot + 1);
+                nextIndex++;
+                return slots[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) throw new IllegalStateException();
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                lock();
+                try {
+                    vacate(last);
+                } finally {
+                    unlock();
+                }
+                last = -1;
+                nextIndex--;
+                if (compactions != expectedCompactions) {
+                    // Slots were renumbered; find the next task by its index
+                    slot = nextIndex < size ? select(nextIndex) : used;
+                    expectedCompactions = compactions;
+                }
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    private void lock() {
+        if (writeLock != null) writeLock.lock();
+    }
+
+    private void unlock() {
+        if (onChange != null) onChange.run();
+        if (writeLock != null) writeLock.unlock();
+    }
+
+    /**
+     * Called by a task held in this list when its fields change
+     * @param slot the task's slot
+     */
+    void changed(int slot) {
+        touch(slot);
+        if (onChange != null) onChange.run();
+    }
+
+    /**
+     * @return the slot layout's generation, see {@link EventSnapshot}
+     */
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * @return number of slots handed out, occupied or not
+     */
+    int slotCount() {
+        return used;
+    }
+
+    /**
+     * @param slot a slot below {@link #slotCount()}
+     * @return the task there, or null for a tombstone
+     */
+    TodoListApp.Task slot(int slot) {
+        return slots[slot];
+    }
+
+    /**
+     * @param block a block of {@link #BLOCK_SLOTS} slots
+     * @return a stamp that changes whenever the block does
+     */
+    long blockStamp(int block) {
+        return block < blockStamps.length ? blockStamps[block] : 0;
+    }
+
+    // Mark a slot's block changed
+    private void touch(int slot) {
+        int block = slot / BLOCK_SLOTS;
+        if (block >= blockStamps.length) {
+            blockStamps = Arrays.copyOf(blockStamps, Math.max(block + 1, blockStamps.length * 2));
+        }
+        blockStamps[block] = ++stamps;
+    }
+
+    private void newGeneration() {
+        generation = GENERATIONS.incrementAndGet();
+        blockStamps = new long[1];
+    }
+
+    private int nextOccupied(int from) {
+        while (from < used && slots[from] == null) from++;
+        return from;
+    }
+
+    private void place(TodoListApp.Task task, int slot) {
+        slots[slot] = task;
+        slotIds[slot] = task.getId();
+        task.list = this;
+        task.slot = slot;
+        touch(slot);
+    }
+
+    private void append(TodoListApp.Task task) {
+        ensureSlot();
+        place(task, used);
+        fenwickAdd(used++, 1);
+        size++;
+        modCount++;
+    }
+
+    private void fill(TodoListApp.Task task, int slot) {
+        place(task, slot);
+        fenwickAdd(slot, 1);
+        size++;
+        modCount++;
+    }
+
+    private void vacate(int slot) {
+        TodoListApp.Task task = slots[slot];
+        slots[slot] = null;
+        touch(slot);
+        task.list = null;
+        task.formerList = this;
+        task.formerSlot = slot;
+        fenwickAdd(slot, -1);
+        size--;
+        modCount++;
+        if (used - size > MIN_COMPACT && used - size > size) {
+            compact(-1, null);
+        }
+    }
+
+    // A task moving here from another list leaves that list first
+    private void detachFromOther(TodoListApp.Task task) {
+        if (task.list != null) {
+            task.list.remove(task);
+        }
+    }
+
+    private void ensureSlot() {
+        if (used == slots.length) {
+            if (used - size > used / 4) {
+                compact(-1, null);
+            } else {
+                resize(slots.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the occupied slots contiguously, optionally inserting a task
+     * before the slot {@code insertAt}. Invalidates all tombstones.
+     */
+    private void compact(int insertAt, TodoListApp.Task inserted) {
+        int count = size + (inserted != null ? 1 : 0);
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, count) * 2 - 1) * 2);
+        TodoListApp.Task[] old = slots;
+        int oldUsed = used;
+        slots = new TodoListApp.Task[capacity];
+        slotIds = new long[capacity];
+        used = 0;
+        newGeneration();
+        for (int i = 0; i < oldUsed; i++) {
+            if (i == insertAt) place(inserted, used++);
+            if (old[i] != null) place(old[i], used++);
+        }
+        size = used;
+        rebuildTree();
+        compactions++;
+        modCount++;
+    }
+
+    private void resize(int capacity) {
+        slots = Arrays.copyOf(slots, capacity);
+        slotIds = Arrays.copyOf(slotIds, capacity);
+        rebuildTree();
+    }
+
+    // Linear-time Fenwick construction
+    private void rebuildTree() {
+        tree = new int[slots.length + 1];
+        for (int i = 1; i <= slots.length; i++) {
+            tree[i] += i <= used && slots[i - 1] != null ? 1 : 0;
+            int parent = i + (i & -i);
+            if (parent <= slots.length) tree[parent] += tree[i];
+        }
+    }
+
+    private void fenwickAdd(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Number of occupied slots in [0, slot]
+    private int prefix(int slot) {
+        int sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    // Slot of the task at a list index, by descending the tree
+    private int select(int index) {
+        int position = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        // The 1-based position after the last one whose prefix stays below index + 1 holds the
+        // task, which is the 0-based slot numbered position
+        return position;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + bound);
+        }
+    }
+}
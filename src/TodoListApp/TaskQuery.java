@@ -0,0 +1,65 @@
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Filter on task fields shared by the command line tool and the HTTP API.
+ * Unset criteria match every task; set ones must all match.
+ * @author Apon
+ */
+public final class TaskQuery {
+
+    public enum Status { PENDING, COMPLETED, ALL }
+
+    private final Status status;
+    private final TodoListApp.TaskPriority priority;
+    private final String category;
+    private final String tag;
+    private final String search;
+    private final Date dueBefore;
+    private final Date dueAfter;
+
+    /**
+     * @param status the list to look in
+     * @param priority the exact priority, or null
+     * @param category the category, ignoring case, or null
+     * @param tag a tag the task must have, or null
+     * @param search text the task must contain, ignoring case, or null
+     * @param dueBefore the task must be due before this time, or null
+     * @param dueAfter the task must be due at or after this time, or null
+     */
+    public TaskQuery(Status status, TodoListApp.TaskPriority priority, String category, String tag,
+                     String search, Date dueBefore, Date dueAfter) {
+        this.status = status;
+        this.priority = priority;
+        this.category = category;
+        this.tag = tag;
+        this.search = search != null ? search.toLowerCase(Locale.ROOT) : null;
+        this.dueBefore = dueBefore;
+        this.dueAfter = dueAfter;
+    }
+
+    /**
+     * @param completed true for the completed list
+     * @return false if no task in the list can match, so it need not be read
+     */
+    public boolean includes(boolean completed) {
+        return status == Status.ALL || (status == Status.COMPLETED) == completed;
+    }
+
+    /**
+     * @param task the task's fields
+     * @param completed true if it is in the completed list
+     * @return true if the task matches
+     */
+    public boolean matches(TaskState task, boolean completed) {
+        if (!includes(completed)) return false;
+        if (priority != null && task.getPriority() != priority) return false;
+        if (category != null && !category.equalsIgnoreCase(task.getCategory())) return false;
+        if (tag != null && !task.getTags().contains(tag)) return false;
+        if (search != null && !task.getText().toLowerCase(Locale.ROOT).contains(search)) return false;
+        Date due = task.getDueDate();
+        if (dueBefore != null && (due == null || !due.before(dueBefore))) return false;
+        if (dueAfter != null && (due == null || due.before(dueAfter))) return false;
+        return true;
+    }
+}
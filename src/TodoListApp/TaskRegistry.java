@@ -0,0 +1,40 @@
+/**
+ * Finds tasks by ID in constant time. Kept current from task change events
+ * like the other indexes; a task's event and list come from the
+ * {@link TaskList} that holds it.
+ * @author Apon
+ */
+public class TaskRegistry implements TaskChangeListener {
+
+    private final LongHashMap<TodoListApp.Task> tasks = new LongHashMap<>();
+
+    /**
+     * @param id a task ID
+     * @return the task, or null if no task with the ID is loaded
+     */
+    public TodoListApp.Task find(long id) {
+        return tasks.get(id);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        tasks.put(task.getId(), task);
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        // A reloaded copy may already have taken the ID over
+        if (tasks.get(task.getId()) == task) {
+            tasks.remove(task.getId());
+        }
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        // IDs never change
+    }
+}
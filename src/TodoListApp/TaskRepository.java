@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Owns the events and their task lists, independent of the UI, and makes
+ * them safe to read from any thread.
+ *
+ * There is a single writer: one thread, the EDT in the app, makes every
+ * change. Other threads read through {@link #read} or {@link #snapshot},
+ * which hold the event's read lock, and hand changes to the writer with
+ * {@link #write}. Events share a fixed set of striped read/write locks, so
+ * readers of different events rarely meet. The task lists take their
+ * event's write lock while they change, so the writer itself needs no
+ * locking for single list operations and reads its own data freely; a
+ * change that must look atomic to readers, like moving a task between the
+ * pending and completed list, holds {@link #writeLock(String)} around it.
+ * Task fields are immutable states swapped in one volatile write.
+ *
+ * Readers that need every event, like exports and statistics, take the
+ * {@link #current()} {@link WorkspaceSnapshot} instead, which costs one
+ * volatile read and no locks. It is maintained read-copy-update style:
+ * the lists report each change, and once per batch of changes the writer
+ * recaptures only the changed blocks of the changed events and publishes a
+ * new version, sharing the rest with the previous one. Old versions stay
+ * valid for as long as a reader holds them and are reclaimed by the garbage
+ * collector once none does, which takes the place of RCU's grace periods.
+ *
+ * Task change listeners are only called from the writer, so the indexes
+ * need no locks of their own.
+ * @author Apon
+ */
+public class TaskRepository {
+
+    private static final int STRIPES = 16;
+
+    /**
+     * Thread that makes all changes
+     */
+    public interface Writer {
+        boolean isWriterThread();
+        void execute(Runnable task);
+    }
+
+    /**
+     * An event's lists and details
+     */
+    public static final class Event {
+        private final String name;
+        private final long order; // of addition, among all events
+        private final TaskList pending;
+        private final TaskList completed;
+        private volatile String date;
+        private volatile String category;
+
+        // Changed since the last published version; writer only
+        private boolean dirty;
+
+        Event(String name, long order, String date, ReadWriteLock lock, TaskRepository owner) {
+            this.name = name;
+            this.order = order;
+            this.pending = new TaskList(name, false, lock.writeLock(), () -> owner.markChanged(this));
+            this.completed = new TaskList(name, true, lock.writeLock(), () -> owner.markChanged(this));
+            this.date = date;
+        }
+
+        public String getName() { return name; }
+        public TaskList getPending() { return pending; }
+        public TaskList getCompleted() { return completed; }
+        public TaskList getTasks(boolean completed) { return completed ? this.completed : pending; }
+        public List<TaskList> getLists() { return Arrays.asList(pending, completed); }
+        public String getDate() { return date; }
+        public String getCategory() { return category; }
+    }
+
+    private final Writer writer;
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    // Guards the event map itself; events are kept in the order they were added
+    private final ReentrantReadWriteLock eventsLock = new ReentrantReadWriteLock();
+    private final Map<String, Event> events = new LinkedHashMap<>();
+
+    private long nextOrder;
+
+    private volatile WorkspaceSnapshot published = WorkspaceSnapshot.EMPTY;
+    // Writer only: whether anything changed since the last publication, the
+    // events changed or removed since, and whether a publication has been
+    // handed to the writer already
+    private boolean changed;
+    private final List<Event> dirtyEvents = new ArrayList<>();
+    private final List<String> removedEvents = new ArrayList<>();
+    private boolean publishScheduled;
+
+    /**
+     * @param writer the thread allowed to change the repository
+     */
+    public TaskRepository(Writer writer) {
+        this.writer = writer;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * A writer for single-threaded use, which runs changes on the caller
+     * @return the writer
+     */
+    public static Writer callerRuns() {
+        return CALLER_RUNS;
+    }
+
+    // Publishes on demand, in current(), as there is no later turn of the writer to wait for
+    private static final Writer CALLER_RUNS = new Writer() {
+        @Override
+        public boolean isWriterThread() {
+            return true;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    /**
+     * Add an empty event. Writer only.
+     * @param eventName the event
+     * @param date its date, may be empty
+     * @return the new event, or null if it already exists
+     */
+    public Event addEvent(String eventName, String date) {
+        checkWriter();
+        eventsLock.writeLock().lock();
+        try {
+            if (events.containsKey(eventName)) return null;
+            Event event = new Event(eventName, nextOrder++, date, stripe(eventName), this);
+            events.put(eventName, event);
+            markChanged(event);
+            return event;
+        } finally {
+            eventsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an event with its tasks. Writer only.
+     * @param eventName the event
+     * @return the removed event, or null if there was none
+     */
+    public Event removeEvent(String eventName) {
+        checkWriter();
+        eventsLock.writeLock().lock();
+        try {
+            Event removed = events.remove(eventName);
+            if (removed != null) {
+                removedEvents.add(eventName);
+                markChanged(null);
+            }
+            return removed;
+        } finally {
+            eventsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param eventName the event
+     * @return the event, or null if it does not exist
+     */
+    public Event getEvent(String eventName) {
+        eventsLock.readLock().lock();
+        try {
+            return events.get(eventName);
+        } finally {
+            eventsLock.readLock().unlock();
+        }
+    }
+
+    public boolean containsEvent(String eventName) {
+        return getEvent(eventName) != null;
+    }
+
+    /**
+     * @return the event names in the order they were added
+     */
+    public List<String> getEventNames() {
+        eventsLock.readLock().lock();
+        try {
+            return new ArrayList<>(events.keySet());
+        } finally {
+            eventsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * An event's pending or completed list. Other threads must only use it
+     * inside {@link #read}.
+     * @param eventName the event
+     * @param completed true for the completed list
+     * @return the list, or null if the event does not exist
+     */
+    public TaskList getTasks(String eventName, boolean completed) {
+        Event event = getEvent(eventName);
+        return event != null ? event.getTasks(completed) : null;
+    }
+
+    /**
+     * @return the event's date, or null if the event does not exist
+     */
+    public String getDate(String eventName) {
+        Event event = getEvent(eventName);
+        return event != null ? event.date : null;
+    }
+
+    /**
+     * Writer only
+     */
+    public void setDate(String eventName, String date) {
+        checkWriter();
+        Event event = getEvent(eventName);
+        if (event != null) event.date = date;
+    }
+
+    /**
+     * @return the event's category, or null if it has none or does not exist
+     */
+    public String getCategory(String eventName) {
+        Event event = getEvent(eventName);
+        return event != null ? event.category : null;
+    }
+
+    /**
+     * Writer only
+     */
+    public void setCategory(String eventName, String category) {
+        checkWriter();
+        Event event = getEvent(eventName);
+        if (event != null) event.category = category;
+    }
+
+    /**
+     * Read an event from any thread while the writer is kept out of it
+     * @param eventName the event
+     * @param reader gets the event, or null if it does not exist
+     * @return what the reader returns
+     */
+    public <T> T read(String eventName, Function<Event, T> reader) {
+        Lock lock = stripe(eventName).readLock();
+        lock.lock();
+        try {
+            return reader.apply(getEvent(eventName));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param eventName the event
+     * @return a consistent snapshot of the event's tasks, or null if it does not exist
+     */
+    public EventSnapshot snapshot(String eventName) {
+        return read(eventName, event -> event != null
+            ? EventSnapshot.capture(eventName, event.pending, event.completed, published.getEvent(eventName)) : null);
+    }
+
+    /**
+     * The latest published snapshot of all events. Constant time from any
+     * thread; on the writer it first publishes the writer's own changes, so
+     * the writer always sees them.
+     * @return the snapshot
+     */
+    public WorkspaceSnapshot current() {
+        if (changed && writer.isWriterThread()) {
+            publish();
+        }
+        return published;
+    }
+
+    // Writer only: note a change to an event, or to the set of events when null
+    private void markChanged(Event event) {
+        if (event != null && !event.dirty) {
+            event.dirty = true;
+            dirtyEvents.add(event);
+        }
+        changed = true;
+        if (!publishScheduled && writer != CALLER_RUNS) {
+            // Once per batch: the writer runs this after the change that
+            // triggered it has completed
+            publishScheduled = true;
+            writer.execute(() -> {
+                publishScheduled = false;
+                if (changed) publish();
+            });
+        }
+    }
+
+    // Writer only: recapture the changed events and publish a new version,
+    // in time proportional to the changes rather than to the workspace
+    private void publish() {
+        WorkspaceSnapshot.Builder next = published.edit();
+        for (String eventName : removedEvents) {
+            next.remove(eventName);
+        }
+        removedEvents.clear();
+        eventsLock.readLock().lock();
+        try {
+            for (Event event : dirtyEvents) {
+                event.dirty = false;
+                // Removed again since it changed
+                if (events.get(event.name) != event) continue;
+                next.put(event.order, EventSnapshot.capture(event.name, event.pending, event.completed,
+                    next.get(event.name)));
+            }
+        } finally {
+            eventsLock.readLock().unlock();
+        }
+        dirtyEvents.clear();
+        changed = false;
+        published = next.build();
+    }
+
+    /**
+     * The lock the writer holds around a change spanning both of an event's
+     * lists, so readers see it whole
+     * @param eventName the event
+     * @return the event's write lock
+     */
+    public Lock writeLock(String eventName) {
+        return stripe(eventName).writeLock();
+    }
+
+    /**
+     * Run a change on the writer and wait for it
+     * @param change the change
+     * @return what the change returns
+     * @throws Exception what the change throws
+     */
+    public <T> T write(Callable<T> change) throws Exception {
+        if (writer.isWriterThread()) {
+            return change.call();
+        }
+        FutureTask<T> task = new FutureTask<>(change);
+        writer.execute(task);
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Hand a change to the writer without waiting for it
+     * @param change the change
+     */
+    public void execute(Runnable change) {
+        writer.execute(change);
+    }
+
+    /**
+     * @return true if the calling thread may change the repository
+     */
+    public boolean isWriterThread() {
+        return writer.isWriterThread();
+    }
+
+    private void checkWriter() {
+        if (!writer.isWriterThread()) {
+            throw new IllegalStateException("Repository changed outside the writer thread: "
+                + Thread.currentThread().getName());
+        }
+    }
+
+    private ReentrantReadWriteLock stripe(String eventName) {
+        int h = eventName.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Which tasks of an event the search box and the filter menu show. Words
+ * starting with '#' are answered from the {@link TagIndex}; the other words
+ * are looked for, as one phrase, in the text, category, priority and tags.
+ * Kept apart from the task panels, so it also runs headless.
+ * @author Apon
+ */
+public final class TaskSearch {
+
+    private final TagIndex tagIndex;
+    private final String text;
+    // Ids selected from the tag index, or null when no tag was given
+    private final BitSet tagged;
+
+    /**
+     * @param searchText what was typed in the search box
+     * @param tagIndex the tag index of the tasks searched
+     */
+    public TaskSearch(String searchText, TagIndex tagIndex) {
+        this.tagIndex = tagIndex;
+        List<String> tagTerms = new ArrayList<>();
+        StringBuilder textTerms = new StringBuilder();
+        for (String word : searchText.trim().toLowerCase().split("\\s+")) {
+            if (word.startsWith("#") && word.length() > 1) {
+                tagTerms.add(word.substring(1));
+            } else if (!word.isEmpty()) {
+                if (textTerms.length() > 0) textTerms.append(' ');
+                textTerms.append(word);
+            }
+        }
+        this.text = textTerms.toString();
+        this.tagged = tagTerms.isEmpty() ? null : tagIndex.select(tagTerms);
+    }
+
+    /**
+     * @param task the task to test
+     * @return true if the task should be shown in the search results
+     */
+    public boolean matches(TodoListApp.Task task) {
+        if (tagged != null) {
+            int id = tagIndex.idOf(task);
+            if (id < 0 || !tagged.get(id)) return false;
+        }
+        if (text.isEmpty()) return true;
+        if (task.getText().toLowerCase().contains(text) ||
+            task.getCategory().toLowerCase().contains(text) ||
+            task.getPriority().getName().toLowerCase().contains(text)) {
+            return true;
+        }
+        for (String tag : task.getTags()) {
+            if (tag.toLowerCase().contains(text)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param filter the filter menu's item
+     * @param task a pending task
+     * @return true if the filter shows the task
+     */
+    public static boolean showsPending(String filter, TodoListApp.Task task) {
+        switch (filter) {
+            case "All":
+                return true;
+            case "High Priority":
+                return task.getPriority() == TodoListApp.TaskPriority.HIGH || task.getPriority() == TodoListApp.TaskPriority.URGENT;
+            case "Overdue":
+                return task.isOverdue();
+            case "Due Soon":
+                return task.isDueSoon();
+            default:
+                // "Completed" shows no pending task
+                return false;
+        }
+    }
+
+    /**
+     * @param filter the filter menu's item
+     * @return true if the filter shows the completed tasks
+     */
+    public static boolean showsCompleted(String filter) {
+        return "All".equals(filter) || "Completed".equals(filter);
+    }
+}
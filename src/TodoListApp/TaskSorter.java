@@ -0,0 +1,356 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Keeps the todo and completed lists of each displayed event in a
+ * user-selected multi-key order. Each task's sort keys are precomputed into a
+ * {@code long[]} so comparisons never touch dates or strings, ties fall back to
+ * insertion order so the sort is stable, and a single edit is applied by
+ * removing and binary-inserting one entry instead of re-sorting the list.
+ *
+ * Sorted entries are held in blocks of at most {@code 2 * BLOCK_SIZE}, so an
+ * edit shifts the entries of one block rather than of the whole list: it costs
+ * O(log n + BLOCK_SIZE), and the next positional read O(n / BLOCK_SIZE) to
+ * recount where each block starts. Iteration walks the blocks.
+ * @author Apon
+ */
+public class TaskSorter implements TaskChangeListener {
+
+    private static final int BLOCK_SIZE = 512;
+
+    public enum SortKey {
+        PRIORITY("Priority"),
+        DUE_DATE("Due Date"),
+        CREATED_DATE("Created Date"),
+        TEXT("Text"),
+        TIME_SPENT("Time Spent");
+
+        private final String name;
+
+        SortKey(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+    }
+
+    private static class Entry {
+        final TodoListApp.Task task;
+        final long[] keys;
+        final String text;
+        final long sequence;
+        SortedList list;
+
+        Entry(TodoListApp.Task task, List<SortKey> order, long sequence) {
+            this.task = task;
+            this.keys = new long[order.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyOf(task, order.get(i));
+            }
+            this.text = order.contains(SortKey.TEXT) ? task.getText().toLowerCase(Locale.ROOT) : null;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * A run of entries in sort order
+     */
+    private static class Block {
+        Entry[] entries;
+        int size;
+
+        Block(Entry[] entries, int size) {
+            this.entries = entries;
+            this.size = size;
+        }
+
+        Entry last() {
+            return entries[size - 1];
+        }
+    }
+
+    /**
+     * One list's tasks in sort order, as a read-only list over its blocks
+     */
+    private static class SortedList extends AbstractList<TodoListApp.Task> implements RandomAccess {
+        private final Comparator<Entry> comparator;
+        private final List<Block> blocks = new ArrayList<>();
+        private int size;
+        private int[] starts; // list index of each block's first entry, null after a change
+
+        SortedList(Comparator<Entry> comparator, List<Entry> sorted) {
+            this.comparator = comparator;
+            for (int from = 0; from < sorted.size(); from += BLOCK_SIZE) {
+                int to = Math.min(sorted.size(), from + BLOCK_SIZE);
+                Entry[] entries = new Entry[2 * BLOCK_SIZE];
+                for (int i = from; i < to; i++) {
+                    entries[i - from] = sorted.get(i);
+                }
+                blocks.add(new Block(entries, to - from));
+            }
+            size = sorted.size();
+        }
+
+        void insert(Entry entry) {
+            if (blocks.isEmpty()) blocks.add(new Block(new Entry[2 * BLOCK_SIZE], 0));
+            int b = Math.min(blockFor(entry), blocks.size() - 1);
+            Block block = blocks.get(b);
+            int index = Arrays.binarySearch(block.entries, 0, block.size, entry, comparator);
+            if (index < 0) index = -index - 1;
+            System.arraycopy(block.entries, index, block.entries, index + 1, block.size - index);
+            block.entries[index] = entry;
+            if (++block.size == block.entries.length) {
+                // Split a full block in two halves
+                Entry[] upper = new Entry[2 * BLOCK_SIZE];
+                System.arraycopy(block.entries, BLOCK_SIZE, upper, 0, BLOCK_SIZE);
+                Arrays.fill(block.entries, BLOCK_SIZE, block.entries.length, null);
+                block.size = BLOCK_SIZE;
+                blocks.add(b + 1, new Block(upper, BLOCK_SIZE));
+            }
+            size++;
+            starts = null;
+            modCount++;
+        }
+
+        void delete(Entry entry) {
+            int b = blockFor(entry);
+            if (b == blocks.size()) return;
+            Block block = blocks.get(b);
+            int index = Arrays.binarySearch(block.entries, 0, block.size, entry, comparator);
+            if (index < 0 || block.entries[index] != entry) return;
+            System.arraycopy(block.entries, index + 1, block.entries, index, block.size - index - 1);
+            block.entries[--block.size] = null;
+            if (block.size == 0) blocks.remove(b);
+            size--;
+            starts = null;
+            modCount++;
+        }
+
+        // The first block whose last entry does not sort before the entry, or the block count
+        private int blockFor(Entry entry) {
+            int low = 0;
+            int high = blocks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(blocks.get(mid).last(), entry) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public TodoListApp.Task get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            int[] starts = this.starts;
+            if (starts == null) {
+                starts = new int[blocks.size()];
+                for (int b = 1; b < starts.length; b++) {
+                    starts[b] = starts[b - 1] + blocks.get(b - 1).size;
+                }
+                this.starts = starts;
+            }
+            int b = Arrays.binarySearch(starts, index);
+            if (b < 0) b = -b - 2;
+            return blocks.get(b).entries[index - starts[b]].task;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<TodoListApp.Task> iterator() {
+            return new Iterator<TodoListApp.Task>() {
+                private final int expectedModCount = modCount;
+                private int block;
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    while (block < blocks.size() && next == blocks.get(block).size) {
+                        block++;
+                        next = 0;
+                    }
+                    return block < blocks.size();
+                }
+
+                @Override
+                public TodoListApp.Task next() {
+                    if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return blocks.get(block).entries[next++].task;
+                }
+            };
+        }
+    }
+
+    private List<SortKey> order = new ArrayList<>();
+    private final Comparator<Entry> comparator = this::compare;
+    private final Map<String, SortedList[]> lists = new HashMap<>();
+    private final Map<TodoListApp.Task, Entry> entries = new IdentityHashMap<>();
+    private long nextSequence;
+
+    /**
+     * Change the sort order. Sorted lists are rebuilt lazily the next time
+     * each event is displayed.
+     * @param keys sort keys, most significant first; empty keeps insertion order
+     */
+    public void setOrder(List<SortKey> keys) {
+        List<SortKey> distinct = new ArrayList<>();
+        for (SortKey key : keys) {
+            if (key != null && !distinct.contains(key)) distinct.add(key);
+        }
+        if (distinct.equals(order)) return;
+        order = distinct;
+        lists.clear();
+        entries.clear();
+    }
+
+    public List<SortKey> getOrder() {
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * @param eventName the event being displayed
+     * @param completed true for the completed list
+     * @param source the event's task list in insertion order
+     * @return the tasks in the current sort order (read only)
+     */
+    public List<TodoListApp.Task> sorted(String eventName, boolean completed, List<TodoListApp.Task> source) {
+        if (source == null) return Collections.emptyList();
+        if (order.isEmpty()) return Collections.unmodifiableList(source);
+
+        SortedList[] pair = lists.computeIfAbsent(eventName, k -> new SortedList[2]);
+        int slot = completed ? 1 : 0;
+        SortedList list = pair[slot];
+        if (list == null || list.size() != source.size()) {
+            // First display since the order changed, or the source was swapped out
+            if (list != null) {
+                for (TodoListApp.Task task : list) {
+                    entries.remove(task);
+                }
+            }
+            List<Entry> sorted = new ArrayList<>(source.size());
+            for (TodoListApp.Task task : source) {
+                sorted.add(new Entry(task, order, nextSequence++));
+            }
+            sorted.sort(comparator);
+            list = new SortedList(comparator, sorted);
+            for (Entry entry : sorted) {
+                entry.list = list;
+                entries.put(entry.task, entry);
+            }
+            pair[slot] = list;
+        }
+        return list;
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        SortedList list = listFor(eventName, task.isCompleted());
+        if (list == null || entries.containsKey(task)) return;
+        Entry entry = new Entry(task, order, nextSequence++);
+        insert(list, entry);
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        Entry entry = entries.remove(task);
+        if (entry != null) {
+            delete(entry);
+        }
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        Entry old = entries.remove(task);
+        long sequence = nextSequence++;
+        if (old != null) {
+            delete(old);
+            // An edit keeps the task's place among equal keys
+            if (before.isCompleted() == task.isCompleted()) sequence = old.sequence;
+        }
+        SortedList list = listFor(eventName, task.isCompleted());
+        if (list != null) {
+            insert(list, new Entry(task, order, sequence));
+        }
+    }
+
+    private SortedList listFor(String eventName, boolean completed) {
+        if (order.isEmpty()) return null;
+        SortedList[] pair = lists.get(eventName);
+        return pair != null ? pair[completed ? 1 : 0] : null;
+    }
+
+    private void insert(SortedList list, Entry entry) {
+        list.insert(entry);
+        entry.list = list;
+        entries.put(entry.task, entry);
+    }
+
+    private void delete(Entry entry) {
+        entry.list.delete(entry);
+    }
+
+    private int compare(Entry a, Entry b) {
+        for (int i = 0; i < a.keys.length; i++) {
+            int result = Long.compare(a.keys[i], b.keys[i]);
+            if (result == 0 && order.get(i) == SortKey.TEXT) {
+                // Equal packed prefixes fall back to the full text
+                result = a.text.compareTo(b.text);
+            }
+            if (result != 0) return result;
+        }
+        return Long.compare(a.sequence, b.sequence);
+    }
+
+    private static long keyOf(TodoListApp.Task task, SortKey key) {
+        switch (key) {
+            case PRIORITY:
+                // Most urgent first
+                return -task.getPriority().ordinal();
+            case DUE_DATE:
+                return task.getDueDate() != null ? task.getDueDate().getTime() : Long.MAX_VALUE;
+            case CREATED_DATE:
+                return task.getCreatedDate() != null ? task.getCreatedDate().getTime() : 0;
+            case TEXT:
+                return textPrefix(task.getText());
+            case TIME_SPENT:
+                // Most time spent first
+                return -task.getTimeSpent();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Pack the first four characters of the lower-cased text into a long so
+     * most text comparisons are a single primitive compare
+     */
+    private static long textPrefix(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        long prefix = 0;
+        for (int i = 0; i < 4; i++) {
+            prefix <<= 16;
+            if (i < lower.length()) prefix |= lower.charAt(i);
+        }
+        // Flip the sign bit so signed comparison matches unsigned char order
+        return prefix ^ Long.MIN_VALUE;
+    }
+}
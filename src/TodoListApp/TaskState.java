@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable field values of a task. A {@link TodoListApp.Task} holds one
+ * state and every setter swaps in a new state from a {@code withX} method,
+ * which shares all unchanged fields with the old one. Keeping the state of a
+ * task before an edit is therefore a single reference, and restoring it is a
+ * pointer swap.
+ * @author Apon
+ */
+public final class TaskState {
+
+    private final String text;
+    private final boolean completed;
+    private final TodoListApp.TaskPriority priority;
+    private final Date dueDate;
+    private final String category;
+    private final List<String> tags;
+    private final long timeSpent; // in milliseconds
+    private final Date createdDate;
+    private final boolean recurring;
+    private final String recurrencePattern;
+
+    private TaskState(String text, boolean completed, TodoListApp.TaskPriority priority, Date dueDate,
+                      String category, List<String> tags, long timeSpent, Date createdDate,
+                      boolean recurring, String recurrencePattern) {
+        this.text = text;
+        this.completed = completed;
+        this.priority = priority;
+        this.dueDate = dueDate;
+        this.category = category;
+        this.tags = tags;
+        this.timeSpent = timeSpent;
+        this.createdDate = createdDate;
+        this.recurring = recurring;
+        this.recurrencePattern = recurrencePattern;
+    }
+
+    /**
+     * @param text the task text
+     * @return a pending, medium priority task created now
+     */
+    public static TaskState create(String text) {
+        return new TaskState(text, false, TodoListApp.TaskPriority.MEDIUM, null, "General",
+            Collections.emptyList(), 0, new Date(), false, "");
+    }
+
+    public String getText() { return text; }
+    public boolean isCompleted() { return completed; }
+    public TodoListApp.TaskPriority getPriority() { return priority; }
+    public Date getDueDate() { return dueDate; }
+    public String getCategory() { return category; }
+    public List<String> getTags() { return tags; }
+    public long getTimeSpent() { return timeSpent; }
+    public Date getCreatedDate() { return createdDate; }
+    public boolean isRecurring() { return recurring; }
+    public String getRecurrencePattern() { return recurrencePattern; }
+
+    // Each wither returns this state unchanged when the value is the same
+
+    public TaskState withText(String text) {
+        if (Objects.equals(text, this.text)) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withCompleted(boolean completed) {
+        if (completed == this.completed) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withPriority(TodoListApp.TaskPriority priority) {
+        if (priority == this.priority) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withDueDate(Date dueDate) {
+        if (Objects.equals(dueDate, this.dueDate)) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withCategory(String category) {
+        if (Objects.equals(category, this.category)) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    /**
+     * @param tags the new tags, copied into an unmodifiable list
+     */
+    public TaskState withTags(List<String> tags) {
+        if (tags.equals(this.tags)) return this;
+        return new TaskState(text, completed, priority, dueDate, category,
+            Collections.unmodifiableList(new ArrayList<>(tags)), timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withTimeSpent(long timeSpent) {
+        if (timeSpent == this.timeSpent) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withCreatedDate(Date createdDate) {
+        if (Objects.equals(createdDate, this.createdDate)) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withRecurring(boolean recurring) {
+        if (recurring == this.recurring) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+
+    public TaskState withRecurrencePattern(String recurrencePattern) {
+        if (Objects.equals(recurrencePattern, this.recurrencePattern)) return this;
+        return new TaskState(text, completed, priority, dueDate, category, tags, timeSpent,
+            createdDate, recurring, recurrencePattern);
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running task counts per event and for the whole workspace, updated from
+ * task change events so statistics and progress never rescan the task lists.
+ * Counts by status, priority and category are plain counters. Due dates of
+ * pending tasks are kept in an ordered multiset with cursors at "now" and
+ * "now + 1 day": reading the overdue buckets only walks the due dates passed
+ * since the previous read, and a mutation adjusts the cursors directly.
+ * @author Apon
+ */
+public class TaskStatistics implements TaskChangeListener {
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Counters for one event or for the whole workspace
+     */
+    public static class Counts {
+        private int pending;
+        private int completed;
+        private final int[] pendingByPriority = new int[TodoListApp.TaskPriority.values().length];
+        private final int[] completedByPriority = new int[TodoListApp.TaskPriority.values().length];
+        private final Map<String, int[]> byCategory = new HashMap<>();
+
+        // Pending tasks with a due date, due time -> number of tasks
+        private final TreeMap<Long, Integer> pendingDue = new TreeMap<>();
+        private int pendingDated;
+        private final DueCursor overdueCursor = new DueCursor(0);
+        private final DueCursor dueSoonCursor = new DueCursor(DAY_IN_MILLIS + 1);
+
+        public int getTotal() { return pending + completed; }
+        public int getPending() { return pending; }
+        public int getCompleted() { return completed; }
+
+        public int getPending(TodoListApp.TaskPriority priority) {
+            return pendingByPriority[priority.ordinal()];
+        }
+
+        public int getCompleted(TodoListApp.TaskPriority priority) {
+            return completedByPriority[priority.ordinal()];
+        }
+
+        /**
+         * @return pending high and urgent priority tasks
+         */
+        public int getHighPriorityPending() {
+            return getPending(TodoListApp.TaskPriority.HIGH) + getPending(TodoListApp.TaskPriority.URGENT);
+        }
+
+        /**
+         * @return category to {pending, completed}, in category name order
+         */
+        public Map<String, int[]> getByCategory() {
+            Map<String, int[]> sorted = new LinkedHashMap<>();
+            byCategory.keySet().stream().sorted(String.CASE_INSENSITIVE_ORDER)
+                .forEach(category -> sorted.put(category, byCategory.get(category).clone()));
+            return sorted;
+        }
+
+        /**
+         * @param now current time in milliseconds
+         * @return pending tasks whose due date has passed
+         */
+        public int getOverdue(long now) {
+            return overdueCursor.countBefore(pendingDue, now);
+        }
+
+        /**
+         * @param now current time in milliseconds
+         * @return pending tasks due within the next day that are not yet overdue
+         */
+        public int getDueSoon(long now) {
+            return dueSoonCursor.countBefore(pendingDue, now) - getOverdue(now);
+        }
+
+        /**
+         * @param now current time in milliseconds
+         * @return pending tasks due more than a day from now
+         */
+        public int getDueLater(long now) {
+            return pendingDated - dueSoonCursor.countBefore(pendingDue, now);
+        }
+
+        /**
+         * @return pending tasks without a due date
+         */
+        public int getNoDueDate() {
+            return pending - pendingDated;
+        }
+
+        private void apply(TodoListApp.Task task, int delta) {
+            int priority = task.getPriority().ordinal();
+            int[] category = byCategory.computeIfAbsent(task.getCategory(), k -> new int[2]);
+            if (task.isCompleted()) {
+                completed += delta;
+                completedByPriority[priority] += delta;
+                category[1] += delta;
+            } else {
+                pending += delta;
+                pendingByPriority[priority] += delta;
+                category[0] += delta;
+                if (task.getDueDate() != null) {
+                    long due = task.getDueDate().getTime();
+                    pendingDue.merge(due, delta, Integer::sum);
+                    if (pendingDue.get(due) == 0) pendingDue.remove(due);
+                    pendingDated += delta;
+                    overdueCursor.adjust(due, delta);
+                    dueSoonCursor.adjust(due, delta);
+                }
+            }
+            if (category[0] == 0 && category[1] == 0) {
+                byCategory.remove(task.getCategory());
+            }
+        }
+    }
+
+    /**
+     * Number of due dates earlier than a moving boundary of now + offset
+     */
+    private static class DueCursor {
+        private final long offset;
+        private long boundary = Long.MIN_VALUE;
+        private int count;
+
+        DueCursor(long offset) {
+            this.offset = offset;
+        }
+
+        int countBefore(TreeMap<Long, Integer> dueDates, long now) {
+            long target = now + offset;
+            if (target > boundary) {
+                for (int n : dueDates.subMap(boundary, true, target, false).values()) count += n;
+            } else if (target < boundary) {
+                for (int n : dueDates.subMap(target, true, boundary, false).values()) count -= n;
+            }
+            boundary = target;
+            return count;
+        }
+
+        void adjust(long due, int delta) {
+            if (due < boundary) count += delta;
+        }
+    }
+
+    private final Counts total = new Counts();
+    private final Map<String, Counts> byEvent = new HashMap<>();
+
+    /**
+     * @return counters for the whole workspace
+     */
+    public Counts getTotal() {
+        return total;
+    }
+
+    /**
+     * @param eventName the event
+     * @return counters for the event, empty if it holds no tasks
+     */
+    public Counts getEvent(String eventName) {
+        Counts counts = byEvent.get(eventName);
+        return counts != null ? counts : new Counts();
+    }
+
+    /**
+     * Append the counts part of the statistics report: totals, pending tasks
+     * by due date, tasks by priority and category, and the selected event
+     * @param stats receives the report
+     * @param totalEvents number of events in the workspace
+     * @param selectedEvent the event to report on as well, or null
+     * @param now the current time in milliseconds
+     */
+    public void appendReport(StringBuilder stats, int totalEvents, String selectedEvent, long now) {
+        int totalTasks = total.getPending();
+        int totalCompleted = total.getCompleted();
+        
+        stats.append("Total Events: ").append(totalEvents).append("\n");
+        stats.append("Total Tasks: ").append(totalTasks + totalCompleted).append("\n");
+        stats.append("Pending Tasks: ").append(totalTasks).append("\n");
+        stats.append("Completed Tasks: ").append(totalCompleted).append("\n");
+        stats.append("High Priority Tasks: ").append(total.getHighPriorityPending()).append("\n");
+        stats.append("Overdue Tasks: ").append(total.getOverdue(now)).append("\n\n");
+        
+        if (totalTasks + totalCompleted > 0) {
+            double completionRate = (totalCompleted * 100.0) / (totalTasks + totalCompleted);
+            stats.append("Completion Rate: ").append(String.format("%.1f%%", completionRate)).append("\n\n");
+        }
+        
+        stats.append("--- Pending by Due Date ---\n");
+        stats.append(String.format("%-14s %6d%n", "Overdue", total.getOverdue(now)));
+        stats.append(String.format("%-14s %6d%n", "Due in 24h", total.getDueSoon(now)));
+        stats.append(String.format("%-14s %6d%n", "Due later", total.getDueLater(now)));
+        stats.append(String.format("%-14s %6d%n", "No due date", total.getNoDueDate()));
+        stats.append("\n");
+        
+        stats.append("--- By Priority (pending/done) ---\n");
+        for (TodoListApp.TaskPriority priority : TodoListApp.TaskPriority.values()) {
+            stats.append(String.format("%-14s %6d / %d%n", priority.getName(),
+                total.getPending(priority), total.getCompleted(priority)));
+        }
+        stats.append("\n");
+        
+        stats.append("--- By Category (pending/done) ---\n");
+        for (Map.Entry<String, int[]> category : total.getByCategory().entrySet()) {
+            stats.append(String.format("%-14s %6d / %d%n", category.getKey(),
+                category.getValue()[0], category.getValue()[1]));
+        }
+        
+        if (selectedEvent != null) {
+            Counts eventCounts = getEvent(selectedEvent);
+            stats.append("\n--- Event: ").append(selectedEvent).append(" ---\n");
+            stats.append("Pending: ").append(eventCounts.getPending())
+                .append(", Completed: ").append(eventCounts.getCompleted())
+                .append(", Overdue: ").append(eventCounts.getOverdue(now)).append("\n");
+        }
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        apply(eventName, task, 1);
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        apply(eventName, task, -1);
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        apply(eventName, before, -1);
+        apply(eventName, task, 1);
+    }
+
+    private void apply(String eventName, TodoListApp.Task task, int delta) {
+        total.apply(task, delta);
+        Counts counts = byEvent.computeIfAbsent(eventName, k -> new Counts());
+        counts.apply(task, delta);
+        if (counts.getTotal() == 0) {
+            byEvent.remove(eventName);
+        }
+    }
+}
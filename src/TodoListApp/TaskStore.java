@@ -0,0 +1,328 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes events in the data directory: each event is a file of
+ * pending tasks, plus one of completed tasks with the COMPLETED_ prefix, one
+ * {@link TaskCodec} line per task. Used by the app and by the headless
+ * {@link TodoCli}, so both agree on the layout.
+ *
+ * Event files are named by a hash of the event name, not the name itself,
+ * so any name can be stored, and sit two directory levels deep under
+ * events/ by the first two pairs of hex digits, e.g. events/3f/a2/3fa2...txt.
+ * No directory grows large however many events there are. The index file
+ * maps names to file keys; it is an append-only log of additions and
+ * removals, replayed on first use and rewritten when mostly removals.
+ * Events stored flat in the data directory by older versions, named after
+ * the event, are moved into the layout on first use.
+ *
+ * Files are written to a temporary file and moved into place, so a reader
+ * in another process never sees half a file.
+ * @author Apon
+ */
+public class TaskStore {
+
+    private static final String EXTENSION = ".txt";
+    private static final String COMPLETED_PREFIX = "COMPLETED_";
+    private static final String EVENTS_DIRECTORY = "events";
+    static final String INDEX_FILE = "events.idx";
+    // Hex digits of the name's hash in a file key
+    private static final int KEY_LENGTH = 16;
+
+    private final File directory;
+    private UnaryOperator<List<String>> tagInterner;
+    // Event name -> file key, in the order events were first saved; null until first used
+    private Map<String, String> keys;
+    private final Set<String> usedKeys = new HashSet<>();
+    private int indexLines;
+
+    /**
+     * @param directory the data directory
+     */
+    public TaskStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The data directory used when none is given: "To Do List" in the user's
+     * Documents folder, created if missing, or in the home directory if that
+     * fails
+     * @return the data directory
+     */
+    public static File defaultDirectory() {
+        String userHome = System.getProperty("user.home");
+        File documentsDir = new File(userHome, "Documents");
+        File todoDataDir = new File(documentsDir, "To Do List");
+        
+        // Create directory if it doesn't exist
+        if (!todoDataDir.exists()) {
+            boolean created = todoDataDir.mkdirs();
+            if (created) {
+                System.err.println("Created data directory: " + todoDataDir.getAbsolutePath());
+            } else {
+                System.err.println("Failed to create data directory: " + todoDataDir.getAbsolutePath());
+                // Fallback to user home directory
+                todoDataDir = new File(userHome, "To Do List");
+                todoDataDir.mkdirs();
+            }
+        }
+        
+        return todoDataDir;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param tagInterner shares tag strings between loaded tasks, or null
+     */
+    public void setTagInterner(UnaryOperator<List<String>> tagInterner) {
+        this.tagInterner = tagInterner;
+    }
+
+    /**
+     * @return the names of the stored events, in the order they were first saved
+     * @throws IOException if the index cannot be read
+     */
+    public synchronized List<String> listEvents() throws IOException {
+        return new ArrayList<>(index().keySet());
+    }
+
+    /**
+     * @param eventName the event
+     * @param completed true for the completed tasks
+     * @return the file holding the event's pending or completed tasks, or
+     *         null if the event has never been saved
+     * @throws IOException if the index cannot be read
+     */
+    public synchronized File eventFile(String eventName, boolean completed) throws IOException {
+        String key = index().get(eventName);
+        return key != null ? file(key, completed) : null;
+    }
+
+    /**
+     * @param eventName the event
+     * @return true if the event has been saved
+     * @throws IOException if the index cannot be read
+     */
+    public synchronized boolean exists(String eventName) throws IOException {
+        return index().containsKey(eventName);
+    }
+
+    /**
+     * @param eventName the event
+     * @param completed true for the completed tasks
+     * @return the tasks in stored order, or null if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    public List<TodoListApp.Task> load(String eventName, boolean completed) throws IOException {
+        File file = eventFile(eventName, completed);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        List<TodoListApp.Task> tasks = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), Charset.defaultCharset())) {
+            if (!line.trim().isEmpty()) {
+                TodoListApp.Task task = TaskCodec.parse(line, tagInterner);
+                if (completed) task.setCompleted(true);
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Write both of an event's files
+     * @param eventName the event
+     * @param pending its pending tasks
+     * @param completed its completed tasks
+     * @throws IOException if a file cannot be written
+     */
+    public void save(String eventName, Collection<TodoListApp.Task> pending,
+            Collection<TodoListApp.Task> completed) throws IOException {
+        String key = register(eventName);
+        write(file(key, false), pending);
+        write(file(key, true), completed);
+    }
+
+    /**
+     * Delete both of an event's files
+     * @param eventName the event
+     * @throws IOException if the index cannot be updated
+     */
+    public synchronized void delete(String eventName) throws IOException {
+        String key = index().get(eventName);
+        if (key == null) return;
+        file(key, false).delete();
+        file(key, true).delete();
+        keys.remove(eventName);
+        usedKeys.remove(key);
+        appendIndex("-\t" + TaskCodec.escape(eventName));
+    }
+
+    /**
+     * @return the event names and their file keys, read on first use
+     */
+    private Map<String, String> index() throws IOException {
+        if (keys != null) return keys;
+        Map<String, String> read = new LinkedHashMap<>();
+        int lines = 0;
+        Path indexPath = new File(directory, INDEX_FILE).toPath();
+        if (Files.exists(indexPath)) {
+            for (String line : Files.readAllLines(indexPath, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3 && fields[0].equals("+")) {
+                    read.put(TaskCodec.unescape(fields[2]), fields[1]);
+                } else if (fields.length == 2 && fields[0].equals("-")) {
+                    read.remove(TaskCodec.unescape(fields[1]));
+                } else {
+                    continue;
+                }
+                lines++;
+            }
+        }
+        keys = read;
+        usedKeys.addAll(read.values());
+        indexLines = lines;
+        if (indexLines > 2 * keys.size() + 64) {
+            rewriteIndex();
+        }
+        migrateFlatFiles();
+        return keys;
+    }
+
+    /**
+     * Move events stored flat by older versions into the layout
+     */
+    private void migrateFlatFiles() throws IOException {
+        List<String> flatNames = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory.toPath())) {
+            paths.forEach(path -> {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(EXTENSION) && !fileName.startsWith(COMPLETED_PREFIX)) {
+                    flatNames.add(fileName.substring(0, fileName.length() - EXTENSION.length()));
+                }
+            });
+        }
+        for (String eventName : flatNames) {
+            // An event registered before an interrupted migration keeps its
+            // key; its pending file moves last, so it is found again
+            String key = register(eventName);
+            for (boolean completed : new boolean[] { true, false }) {
+                Path flat = new File(directory, (completed ? COMPLETED_PREFIX : "") + eventName + EXTENSION).toPath();
+                if (Files.exists(flat)) {
+                    move(flat, file(key, completed).toPath());
+                }
+            }
+        }
+        if (!flatNames.isEmpty()) {
+            System.err.println("Moved " + flatNames.size() + " events into " + new File(directory, EVENTS_DIRECTORY));
+        }
+    }
+
+    /**
+     * @return the event's file key, assigned and logged if it has none yet
+     */
+    private synchronized String register(String eventName) throws IOException {
+        String key = index().get(eventName);
+        if (key != null) return key;
+        String hash = hash(eventName);
+        key = hash;
+        // Names whose hashes collide get a numbered key
+        for (int n = 1; usedKeys.contains(key); n++) {
+            key = hash + "-" + n;
+        }
+        appendIndex("+\t" + key + "\t" + TaskCodec.escape(eventName));
+        keys.put(eventName, key);
+        usedKeys.add(key);
+        return key;
+    }
+
+    private void appendIndex(String line) throws IOException {
+        Files.write(new File(directory, INDEX_FILE).toPath(), List.of(line), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        indexLines++;
+    }
+
+    // Replace the log with one addition per live event
+    private void rewriteIndex() throws IOException {
+        Path target = new File(directory, INDEX_FILE).toPath();
+        Path temp = target.resolveSibling(INDEX_FILE + ".tmp");
+        List<String> lines = new ArrayList<>(keys.size());
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            lines.add("+\t" + entry.getValue() + "\t" + TaskCodec.escape(entry.getKey()));
+        }
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        move(temp, target);
+        indexLines = lines.size();
+    }
+
+    /**
+     * @return the file of an event's pending or completed tasks under its shard directory
+     */
+    private File file(String key, boolean completed) {
+        File shard = new File(new File(new File(directory, EVENTS_DIRECTORY), key.substring(0, 2)), key.substring(2, 4));
+        return new File(shard, (completed ? COMPLETED_PREFIX : "") + key + EXTENSION);
+    }
+
+    /**
+     * @return the first {@link #KEY_LENGTH} hex digits of the SHA-256 of the name
+     */
+    private static String hash(String eventName) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(eventName.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(KEY_LENGTH);
+            for (int i = 0; i < KEY_LENGTH / 2; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void write(File file, Collection<TodoListApp.Task> tasks) throws IOException {
+        Path target = file.toPath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, Charset.defaultCharset())) {
+            if (tasks != null) {
+                for (TodoListApp.Task task : tasks) {
+                    writer.write(TaskCodec.format(task, true));
+                    writer.newLine();
+                }
+            }
+        }
+        move(temp, target);
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start/pause/stop time tracking for tasks. Sessions are timed with the
+ * monotonic {@link System#nanoTime()} clock and share a single ticker thread
+ * that refreshes the display every second and checkpoints the time of open
+ * sessions to disk every few seconds, so a crash loses at most one checkpoint
+ * interval. Tracked time is folded into {@code Task.timeSpent} when a session
+ * is paused or stopped.
+ *
+ * Totals per event and per category are maintained from task change events
+ * and only the open sessions are added at query time.
+ * @author Apon
+ */
+public class TimeTracker implements TaskChangeListener {
+
+    public enum State { STOPPED, RUNNING, PAUSED }
+
+    private static final long CHECKPOINT_SECONDS = 5;
+
+    /**
+     * An open session. The ticker thread only reads the immutable task key and
+     * the volatile timing fields.
+     */
+    private static class Session {
+        final String eventName;
+        final String taskKey;
+        volatile long startNanos;
+        volatile long foldedMillis; // already added to the task, excluded from checkpoints
+        volatile long pausedMillis; // tracked before the current run
+        volatile boolean running;
+
+        Session(String eventName, String taskKey) {
+            this.eventName = eventName;
+            this.taskKey = taskKey;
+        }
+
+        long elapsedMillis(long nowNanos) {
+            long current = running ? TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos) : 0;
+            return pausedMillis + current;
+        }
+    }
+
+    /**
+     * Time recovered from a checkpoint after an unclean exit
+     */
+    public static class Recovered {
+        private final String eventName;
+        private final String taskKey;
+        private final long millis;
+
+        Recovered(String eventName, String taskKey, long millis) {
+            this.eventName = eventName;
+            this.taskKey = taskKey;
+            this.millis = millis;
+        }
+
+        public String getEventName() { return eventName; }
+        public String getTaskKey() { return taskKey; }
+        public long getMillis() { return millis; }
+    }
+
+    private File checkpointFile;
+    private final Map<TodoListApp.Task, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Long> eventTime = new HashMap<>();
+    private final Map<String, Long> categoryTime = new HashMap<>();
+    private final Map<TodoListApp.Task, String> taskEvents = new IdentityHashMap<>();
+    private ScheduledExecutorService ticker;
+    private long ticks;
+
+    /**
+     * @param checkpointFile where open sessions are checkpointed
+     */
+    public TimeTracker(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Start the shared ticker thread
+     * @param onTick run on the ticker thread once a second while sessions are running
+     */
+    public void start(Runnable onTick) {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "time-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            boolean running = false;
+            for (Session session : sessions.values()) {
+                running |= session.running;
+            }
+            if (running) onTick.run();
+            if (++ticks % CHECKPOINT_SECONDS == 0) checkpoint();
+        }, 1, 1, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::checkpoint, "time-tracker-shutdown"));
+    }
+
+    /**
+     * Stable key identifying a task across restarts
+     * @param task the task
+     * @return the task ID
+     */
+    public static String keyOf(TodoListApp.Task task) {
+        return Long.toString(task.getId());
+    }
+
+    public State getState(TodoListApp.Task task) {
+        Session session = sessions.get(task);
+        if (session == null) return State.STOPPED;
+        return session.running ? State.RUNNING : State.PAUSED;
+    }
+
+    /**
+     * @return tasks with an open session, running or paused
+     */
+    public Set<TodoListApp.Task> getTrackedTasks() {
+        return java.util.Collections.unmodifiableSet(sessions.keySet());
+    }
+
+    /**
+     * Start or resume tracking a task
+     * @param eventName the task's event
+     * @param task the task
+     */
+    public void startTracking(String eventName, TodoListApp.Task task) {
+        Session session = sessions.computeIfAbsent(task, t -> new Session(eventName, keyOf(t)));
+        if (!session.running) {
+            session.startNanos = System.nanoTime();
+            session.running = true;
+        }
+    }
+
+    /**
+     * Pause tracking; the session stays open and can be resumed
+     * @param task the task
+     * @return milliseconds to add to the task's time spent
+     */
+    public long pause(TodoListApp.Task task) {
+        Session session = sessions.get(task);
+        if (session == null || !session.running) return 0;
+        long now = System.nanoTime();
+        session.pausedMillis = session.elapsedMillis(now);
+        session.running = false;
+        return fold(session);
+    }
+
+    /**
+     * Stop tracking and close the session
+     * @param task the task
+     * @return milliseconds to add to the task's time spent
+     */
+    public long stop(TodoListApp.Task task) {
+        Session session = sessions.remove(task);
+        if (session == null) return 0;
+        session.pausedMillis = session.elapsedMillis(System.nanoTime());
+        session.running = false;
+        return fold(session);
+    }
+
+    /**
+     * @param task the task
+     * @return time spent including the open session, in milliseconds
+     */
+    public long getTimeSpent(TodoListApp.Task task) {
+        Session session = sessions.get(task);
+        long open = session != null ? session.elapsedMillis(System.nanoTime()) - session.foldedMillis : 0;
+        return task.getTimeSpent() + open;
+    }
+
+    /**
+     * @param eventName the event
+     * @return total time spent on the event's tasks, in milliseconds
+     */
+    public long getEventTime(String eventName) {
+        long total = eventTime.getOrDefault(eventName, 0L);
+        long now = System.nanoTime();
+        for (Session session : sessions.values()) {
+            if (session.eventName.equals(eventName)) {
+                total += session.elapsedMillis(now) - session.foldedMillis;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return category to total time spent in milliseconds, most time first
+     */
+    public Map<String, Long> getCategoryTimes() {
+        Map<String, Long> totals = new HashMap<>(categoryTime);
+        long now = System.nanoTime();
+        for (Map.Entry<TodoListApp.Task, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            totals.merge(entry.getKey().getCategory(), session.elapsedMillis(now) - session.foldedMillis, Long::sum);
+        }
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+            .filter(e -> e.getValue() > 0)
+            .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+            .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+        return sorted;
+    }
+
+    /**
+     * Read time left in the checkpoint by a previous run that did not stop
+     * its sessions, and clear the checkpoint
+     * @return recovered time per task
+     */
+    public synchronized List<Recovered> recover() {
+        List<Recovered> recovered = new ArrayList<>();
+        if (!checkpointFile.exists()) return recovered;
+        try {
+            for (String line : Files.readAllLines(checkpointFile.toPath())) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length == 3) {
+                    recovered.add(new Recovered(TaskCodec.unescape(fields[0]),
+                        TaskCodec.unescape(fields[1]), Long.parseLong(fields[2])));
+                }
+            }
+            Files.delete(checkpointFile.toPath());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading time tracking checkpoint: " + e.getMessage());
+        }
+        return recovered;
+    }
+
+    /**
+     * Checkpoint into another file, as when a follower takes over the data
+     * directory. Time the previous owner left there is read first, before
+     * the open sessions of this instance are written over it.
+     * @param checkpointFile where open sessions are checkpointed
+     * @return time recovered from the new file, per task
+     */
+    public synchronized List<Recovered> moveTo(File checkpointFile) {
+        File previous = this.checkpointFile;
+        this.checkpointFile = checkpointFile;
+        List<Recovered> recovered = recover();
+        try {
+            Files.deleteIfExists(previous.toPath());
+        } catch (IOException e) {
+            System.err.println("Error deleting time tracking checkpoint: " + e.getMessage());
+        }
+        checkpoint();
+        return recovered;
+    }
+
+    /**
+     * Write the unsaved time of every open session. Runs on the ticker thread.
+     */
+    public synchronized void checkpoint() {
+        long now = System.nanoTime();
+        StringBuilder content = new StringBuilder();
+        for (Session session : sessions.values()) {
+            long unsaved = session.elapsedMillis(now) - session.foldedMillis;
+            if (unsaved > 0) {
+                content.append(TaskCodec.escape(session.eventName)).append('\t')
+                    .append(TaskCodec.escape(session.taskKey)).append('\t')
+                    .append(unsaved).append('\n');
+            }
+        }
+        try {
+            if (content.length() == 0) {
+                Files.deleteIfExists(checkpointFile.toPath());
+                return;
+            }
+            File temp = new File(checkpointFile.getPath() + ".tmp");
+            try (PrintWriter writer = new PrintWriter(temp)) {
+                writer.print(content);
+            }
+            Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error writing time tracking checkpoint: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        taskEvents.put(task, eventName);
+        addTime(eventName, task.getCategory(), task.getTimeSpent());
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        taskEvents.remove(task);
+        addTime(eventName, task.getCategory(), -task.getTimeSpent());
+        // A task leaving its event, deleted or moved, stops its timer; the
+        // time goes into the task and out of the checkpoint
+        if (sessions.containsKey(task)) {
+            task.setTimeSpent(task.getTimeSpent() + stop(task));
+            checkpoint();
+        }
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        String previousEvent = taskEvents.put(task, eventName);
+        addTime(previousEvent != null ? previousEvent : eventName, before.getCategory(), -before.getTimeSpent());
+        addTime(eventName, task.getCategory(), task.getTimeSpent());
+    }
+
+    private long fold(Session session) {
+        long unsaved = session.pausedMillis - session.foldedMillis;
+        session.foldedMillis = session.pausedMillis;
+        return unsaved;
+    }
+
+    private void addTime(String eventName, String category, long millis) {
+        if (millis == 0) return;
+        eventTime.merge(eventName, millis, Long::sum);
+        categoryTime.merge(category, millis, Long::sum);
+    }
+
+    /**
+     * @param millis a duration
+     * @return the duration as "1h 05m", "4m 10s" or "12s"
+     */
+    public static String format(long millis) {
+        long seconds = millis / 1000;
+        if (seconds >= 3600) return String.format("%dh %02dm", seconds / 3600, (seconds % 3600) / 60);
+        if (seconds >= 60) return String.format("%dm %02ds", seconds / 60, seconds % 60);
+        return seconds + "s";
+    }
+}
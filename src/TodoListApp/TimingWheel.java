@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel for many timeouts on a coarse clock. Each timeout goes
+ * into the bucket of the tick it is due in, modulo the wheel size, on a
+ * doubly linked list, so scheduling and cancelling are O(1) regardless of
+ * how many timeouts are pending. Advancing the wheel visits one bucket per
+ * elapsed tick and fires the entries due by then; entries due on a later
+ * turn of the wheel stay in the bucket.
+ *
+ * The wheel keeps no thread: the owner calls {@link #advance(long)} from a
+ * periodic task. Safe to use from any thread.
+ * @author Apon
+ * @param <T> the payload type
+ */
+public final class TimingWheel<T> {
+
+    /**
+     * A scheduled timeout, used to cancel it
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadline;
+        private final long tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private boolean linked;
+
+        private Timeout(T payload, long deadline, long tick) {
+            this.payload = payload;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+
+        public T getPayload() { return payload; }
+        public long getDeadline() { return deadline; }
+    }
+
+    private final long tickMillis;
+    private final Timeout<T>[] heads;
+    private final int mask;
+    private long lastTick; // every tick up to and including this one has been processed
+    private int size;
+
+    /**
+     * @param tickMillis length of a tick
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param startMillis the current time
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis " + tickMillis);
+        this.tickMillis = tickMillis;
+        int buckets = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.heads = (Timeout<T>[]) new Timeout<?>[buckets];
+        this.mask = buckets - 1;
+        this.lastTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * @param payload what {@link #advance(long)} returns when the timeout is due
+     * @param deadline when, in the clock's milliseconds; a time already past
+     *        fires on the next advance
+     * @return the timeout
+     */
+    public synchronized Timeout<T> schedule(T payload, long deadline) {
+        long tick = Math.max(Math.floorDiv(deadline, tickMillis), lastTick + 1);
+        Timeout<T> timeout = new Timeout<>(payload, deadline, tick);
+        int bucket = (int) (tick & mask);
+        timeout.next = heads[bucket];
+        if (timeout.next != null) timeout.next.prev = timeout;
+        heads[bucket] = timeout;
+        timeout.linked = true;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @param timeout a timeout from this wheel
+     * @return false if it already fired or was cancelled
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || !timeout.linked) return false;
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Fire every timeout due by the given time
+     * @param nowMillis the current time
+     * @return the payloads of the fired timeouts, in no particular order
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long now = Math.floorDiv(nowMillis, tickMillis);
+        List<T> fired = new ArrayList<>();
+        if (now <= lastTick) return fired;
+        // After a long pause every bucket is visited once, not once per missed tick
+        long from = Math.max(lastTick + 1, now - mask);
+        for (long tick = from; tick <= now; tick++) {
+            Timeout<T> timeout = heads[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.tick <= now) {
+                    unlink(timeout);
+                    fired.add(timeout.payload);
+                }
+                timeout = next;
+            }
+        }
+        lastTick = now;
+        return fired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            heads[(int) (timeout.tick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+        size--;
+    }
+}
@@ -0,0 +1,100 @@
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JWindow;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Shows reminders as small windows stacked in the bottom right corner of
+ * the app's screen, each closing on a click or after a few seconds.
+ * @author Apon
+ */
+public class ToastReminderSink implements ReminderSink {
+
+    private static final int SHOW_MILLIS = 8000;
+    private static final int MARGIN = 12;
+
+    // EDT only
+    private java.awt.Window owner;
+    private final List<JWindow> open = new ArrayList<>();
+
+    /**
+     * Attach the toasts to a window once it is fully constructed; until then
+     * they show on the default screen. EDT only.
+     * @param owner the app window the toasts belong to
+     */
+    public void setOwner(java.awt.Window owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public void remind(ReminderService.Reminder reminder) {
+        SwingUtilities.invokeLater(() -> show(reminder));
+    }
+
+    private void show(ReminderService.Reminder reminder) {
+        JWindow toast = new JWindow(owner);
+        JPanel panel = new JPanel(new BorderLayout(0, 4));
+        panel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createMatteBorder(0, 4, 0, 0, TodoListApp.colorOf(reminder.getPriority())),
+            BorderFactory.createEmptyBorder(8, 10, 8, 10)));
+        panel.setBackground(new Color(50, 50, 50));
+        JLabel title = new JLabel(reminder.getText());
+        title.setForeground(Color.WHITE);
+        title.setFont(title.getFont().deriveFont(java.awt.Font.BOLD));
+        JLabel detail = new JLabel(reminder.getEventName() + " - due "
+            + new SimpleDateFormat("dd/MM/yyyy HH:mm").format(reminder.getDueDate()));
+        detail.setForeground(new Color(200, 200, 200));
+        panel.add(title, BorderLayout.NORTH);
+        panel.add(detail, BorderLayout.SOUTH);
+        toast.add(panel);
+        toast.pack();
+        toast.setAlwaysOnTop(true);
+
+        Timer timer = new Timer(SHOW_MILLIS, e -> close(toast));
+        timer.setRepeats(false);
+        panel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                timer.stop();
+                close(toast);
+            }
+        });
+        open.add(toast);
+        layout();
+        toast.setVisible(true);
+        timer.start();
+    }
+
+    private void close(JWindow toast) {
+        if (open.remove(toast)) {
+            toast.dispose();
+            layout();
+        }
+    }
+
+    // Stack the open toasts upwards from the bottom right corner, newest at the bottom
+    private void layout() {
+        GraphicsConfiguration config = owner != null ? owner.getGraphicsConfiguration()
+            : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        Rectangle screen = config.getBounds();
+        int y = screen.y + screen.height - MARGIN;
+        for (int i = open.size() - 1; i >= 0; i--) {
+            JWindow toast = open.get(i);
+            y -= toast.getHeight();
+            toast.setLocation(screen.x + screen.width - toast.getWidth() - MARGIN, y);
+            y -= MARGIN / 2;
+        }
+    }
+}
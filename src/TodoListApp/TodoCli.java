@@ -0,0 +1,375 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line tool for scripts and cron jobs, working on the same data
+ * directory as the app without starting it. Never loads AWT, so it runs on
+ * headless machines, and only reads the events a command needs.
+ *
+ * Usage: {@code java TodoCli [--data DIR] COMMAND [OPTIONS]}
+ * <pre>
+ *   events                                      one line per event with its task counts
+ *   list [--event E] [--status pending|completed|all] [--priority P]
+ *        [--category C] [--tag T] [--search TEXT] [--due-before DATE]
+ *        [--due-after DATE] [--limit N]         matching tasks
+ *   add --event E --text T [--priority P] [--due DATE] [--category C]
+ *       [--tags A,B] [--repeat PATTERN]         the added task
+ *   complete --event E (--id N | --text T)      the completed task, and the
+ *                                               next occurrence of a recurring one
+ *   export --format jsonl|csv|ics [--event E] [--out FILE]
+ * </pre>
+ * Dates are yyyy-MM-dd or yyyy-MM-ddTHH:mm in local time. Results are JSON
+ * Lines on standard output, in the format of {@link JsonLinesCodec} led by
+ * the task's ID; export writes to standard output when no file is given.
+ * Errors are a JSON object on standard error, with exit code 2 for wrong
+ * usage and 1 for anything else.
+ *
+ * While an app instance holds the data directory, changes are sent to it
+ * through its {@link WorkspaceCoordinator} and it saves them shortly after;
+ * otherwise they are written straight to the event files. The modification
+ * sequence numbers used by delta exports and the completion history are
+ * left to the app.
+ * @author Apon
+ */
+public final class TodoCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    // A run adds a task or two; a larger range would be skipped on exit
+    private static final int ID_RESERVATION = 8;
+
+    /**
+     * A failure reported to the caller with an exit code
+     */
+    static final class CliException extends Exception {
+        final int exitCode;
+
+        CliException(int exitCode, String message) {
+            super(message);
+            this.exitCode = exitCode;
+        }
+    }
+
+    private final TaskStore store;
+    private final PrintStream out;
+    private final StringBuilder line = new StringBuilder(256);
+
+    TodoCli(TaskStore store, PrintStream out) {
+        this.store = store;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Run one command
+     * @param args the command line
+     * @param out receives the results
+     * @param err receives the error, if any
+     * @return the exit code
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        try {
+            List<String> rest = new ArrayList<>(Arrays.asList(args));
+            File directory = null;
+            if (rest.size() >= 2 && rest.get(0).equals("--data")) {
+                directory = new File(rest.get(1));
+                rest = rest.subList(2, rest.size());
+                if (!directory.isDirectory()) {
+                    throw new CliException(EXIT_FAILED, "Not a directory: " + directory);
+                }
+            }
+            if (rest.isEmpty()) {
+                throw new CliException(EXIT_USAGE, "Missing command");
+            }
+            TaskStore store = new TaskStore(directory != null ? directory : TaskStore.defaultDirectory());
+            TaskIds.open(new File(store.getDirectory(), TodoListApp.TASK_IDS_FILE), ID_RESERVATION);
+            TodoCli cli = new TodoCli(store, out);
+            Map<String, String> options = parseOptions(rest.subList(1, rest.size()));
+            switch (rest.get(0)) {
+                case "events": cli.events(); break;
+                case "list": cli.list(options); break;
+                case "add": cli.add(options); break;
+                case "complete": cli.complete(options); break;
+                case "export": cli.export(options); break;
+                default: throw new CliException(EXIT_USAGE, "Unknown command: " + rest.get(0));
+            }
+            out.flush();
+            return out.checkError() ? EXIT_FAILED : EXIT_OK;
+        } catch (CliException e) {
+            error(err, e.getMessage());
+            return e.exitCode;
+        } catch (IOException | RuntimeException e) {
+            error(err, e.getClass().getSimpleName() + ": " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    private void events() throws IOException {
+        for (String eventName : store.listEvents()) {
+            List<TodoListApp.Task> pending = store.load(eventName, false);
+            List<TodoListApp.Task> completed = store.load(eventName, true);
+            line.setLength(0);
+            line.append("{\"event\":");
+            JsonLinesCodec.string(line, eventName);
+            line.append(",\"pending\":").append(pending != null ? pending.size() : 0);
+            line.append(",\"completed\":").append(completed != null ? completed.size() : 0);
+            line.append("}\n");
+            out.append(line);
+        }
+    }
+
+    private void list(Map<String, String> options) throws IOException, CliException {
+        TaskQuery query = new TaskQuery(status(options.getOrDefault("status", "pending")),
+            options.containsKey("priority") ? priority(options.get("priority")) : null,
+            options.get("category"), options.get("tag"), options.get("search"),
+            options.containsKey("due-before") ? date(options.get("due-before")) : null,
+            options.containsKey("due-after") ? date(options.get("due-after")) : null);
+        long limit = options.containsKey("limit") ? number(options.get("limit")) : Long.MAX_VALUE;
+
+        long listed = 0;
+        for (String eventName : events(options.get("event"))) {
+            for (boolean completed : new boolean[] { false, true }) {
+                if (!query.includes(completed)) continue;
+                List<TodoListApp.Task> tasks = store.load(eventName, completed);
+                if (tasks == null) continue;
+                for (TodoListApp.Task task : tasks) {
+                    if (listed >= limit) return;
+                    if (!query.matches(task.getState(), completed)) continue;
+                    print(eventName, task);
+                    listed++;
+                }
+            }
+        }
+    }
+
+    private void add(Map<String, String> options) throws IOException, CliException {
+        String eventName = eventName(required(options, "event"));
+        String text = required(options, "text").trim();
+        if (text.isEmpty()) {
+            throw new CliException(EXIT_USAGE, "Task text is empty");
+        }
+        TodoListApp.Task task = new TodoListApp.Task(text);
+        TaskState state = task.getState();
+        if (options.containsKey("priority")) state = state.withPriority(priority(options.get("priority")));
+        if (options.containsKey("due")) state = state.withDueDate(date(options.get("due")));
+        if (options.containsKey("category")) state = state.withCategory(options.get("category"));
+        if (options.containsKey("tags")) {
+            List<String> tags = new ArrayList<>();
+            for (String tag : options.get("tags").split(",")) {
+                if (!tag.trim().isEmpty()) tags.add(tag.trim());
+            }
+            state = state.withTags(tags);
+        }
+        if (options.containsKey("repeat")) {
+            String pattern = options.get("repeat");
+            if (RecurrenceRule.parse(pattern) == null) {
+                throw new CliException(EXIT_USAGE, "Not a recurrence pattern: " + pattern);
+            }
+            state = state.withRecurring(true).withRecurrencePattern(pattern);
+        }
+        task.setState(state);
+
+        List<TodoListApp.Task> pending = orEmpty(store.load(eventName, false));
+        List<TodoListApp.Task> completed = orEmpty(store.load(eventName, true));
+        pending.add(task);
+        save(eventName, pending, completed, task);
+        print(eventName, task);
+    }
+
+    /**
+     * Send the changed tasks to a running app, or write the event
+     * @param changed the tasks added or changed; nulls are skipped
+     */
+    private void save(String eventName, List<TodoListApp.Task> pending, List<TodoListApp.Task> completed,
+            TodoListApp.Task... changed) throws IOException {
+        List<String> messages = new ArrayList<>();
+        for (TodoListApp.Task task : changed) {
+            if (task != null) messages.add(WorkspaceCoordinator.upsert(eventName, task));
+        }
+        if (!WorkspaceCoordinator.forward(store.getDirectory(), messages)) {
+            store.save(eventName, pending, completed);
+        }
+    }
+
+    private void complete(Map<String, String> options) throws IOException, CliException {
+        String eventName = required(options, "event");
+        if (!store.exists(eventName)) {
+            throw new CliException(EXIT_FAILED, "No such event: " + eventName);
+        }
+        long id = options.containsKey("id") ? number(options.get("id")) : 0;
+        String text = id == 0 ? required(options, "text") : null;
+
+        List<TodoListApp.Task> pending = orEmpty(store.load(eventName, false));
+        List<TodoListApp.Task> completed = orEmpty(store.load(eventName, true));
+        TodoListApp.Task found = null;
+        for (Iterator<TodoListApp.Task> it = pending.iterator(); it.hasNext(); ) {
+            TodoListApp.Task task = it.next();
+            if (id != 0 ? task.getId() == id : task.getText().equals(text)) {
+                found = task;
+                it.remove();
+                break;
+            }
+        }
+        if (found == null) {
+            throw new CliException(EXIT_FAILED, "No pending task " + (id != 0 ? "with ID " + id : "\"" + text + "\"")
+                + " in " + eventName);
+        }
+        found.setCompleted(true);
+        completed.add(found);
+        TodoListApp.Task next = RecurrenceRule.nextOccurrence(found, new Date());
+        if (next != null) {
+            pending.add(next);
+        }
+        save(eventName, pending, completed, found, next);
+        print(eventName, found);
+        if (next != null) {
+            print(eventName, next);
+        }
+    }
+
+    private void export(Map<String, String> options) throws IOException, CliException {
+        String format = required(options, "format");
+        String eventName = options.get("event");
+        BlockExporter exporter;
+        switch (format) {
+            case "jsonl": exporter = new JsonLinesCodec(); break;
+            case "csv": exporter = new CsvExporter(); break;
+            case "ics": exporter = new IcsExporter(IcsExporter.Component.VTODO, eventName != null ? eventName : "To Do List"); break;
+            default: throw new CliException(EXIT_USAGE, "Unknown format: " + format);
+        }
+        List<EventSnapshot> snapshots = new ArrayList<>();
+        for (String name : events(eventName)) {
+            snapshots.add(EventSnapshot.capture(name, orEmpty(store.load(name, false)), orEmpty(store.load(name, true))));
+        }
+        BlockExporter.Progress silent = new BlockExporter.Progress() {
+            @Override
+            public void update(long tasksWritten, long totalTasks) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+        String file = options.getOrDefault("out", "-");
+        if (!file.equals("-")) {
+            exporter.export(snapshots, new File(file).toPath(), silent);
+            return;
+        }
+        // The exporters write files, so standard output gets a copy of one
+        Path temp = Files.createTempFile("todo-export", "." + format);
+        try {
+            exporter.export(snapshots, temp, silent);
+            Files.copy(temp, out);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private List<String> events(String eventName) throws IOException, CliException {
+        if (eventName == null) {
+            return store.listEvents();
+        }
+        if (!store.exists(eventName)) {
+            throw new CliException(EXIT_FAILED, "No such event: " + eventName);
+        }
+        return Collections.singletonList(eventName);
+    }
+
+    private void print(String eventName, TodoListApp.Task task) {
+        line.setLength(0);
+        JsonLinesCodec.encodeTask(line, eventName, task.getId(), task.getState(), task.isCompleted());
+        out.append(line.append('\n'));
+    }
+
+    private static String eventName(String name) throws CliException {
+        String trimmed = name.trim();
+        if (trimmed.isEmpty()) {
+            throw new CliException(EXIT_USAGE, "Invalid event name: " + name);
+        }
+        return trimmed;
+    }
+
+    private static Map<String, String> parseOptions(List<String> args) throws CliException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.size(); i += 2) {
+            String name = args.get(i);
+            if (!name.startsWith("--") || i + 1 >= args.size()) {
+                throw new CliException(EXIT_USAGE, "Expected --option value, got: " + name);
+            }
+            options.put(name.substring(2), args.get(i + 1));
+        }
+        return options;
+    }
+
+    private static String required(Map<String, String> options, String name) throws CliException {
+        String value = options.get(name);
+        if (value == null) {
+            throw new CliException(EXIT_USAGE, "Missing --" + name);
+        }
+        return value;
+    }
+
+    private static TaskQuery.Status status(String value) throws CliException {
+        try {
+            return TaskQuery.Status.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException(EXIT_USAGE, "Unknown status: " + value);
+        }
+    }
+
+    private static TodoListApp.TaskPriority priority(String value) throws CliException {
+        try {
+            return TodoListApp.TaskPriority.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException(EXIT_USAGE, "Unknown priority: " + value);
+        }
+    }
+
+    private static Date date(String value) throws CliException {
+        try {
+            LocalDateTime time = value.contains("T") ? LocalDateTime.parse(value) : LocalDate.parse(value).atStartOfDay();
+            return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new CliException(EXIT_USAGE, "Not a date: " + value);
+        }
+    }
+
+    private static long number(String value) throws CliException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new CliException(EXIT_USAGE, "Not a number: " + value);
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list != null ? list : new ArrayList<>();
+    }
+
+    private static void error(PrintStream err, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        JsonLinesCodec.string(json, message);
+        err.println(json.append('}'));
+    }
+}
@@ -12,9 +12,14 @@ import java.nio.file.Files;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.text.SimpleDateFormat;
 
@@ -26,104 +31,198 @@ public class TodoListApp extends javax.swing.JFrame {
     
     // Task priority levels
     public enum TaskPriority {
-        LOW("Low", new Color(46, 125, 50)),      // Green
-        MEDIUM("Medium", new Color(255, 152, 0)), // Orange
-        HIGH("High", new Color(244, 67, 54)),     // Red
-        URGENT("Urgent", new Color(156, 39, 176)); // Purple
+        LOW("Low"),
+        MEDIUM("Medium"),
+        HIGH("High"),
+        URGENT("Urgent");
         
         private final String name;
-        private final Color color;
         
-        TaskPriority(String name, Color color) {
+        TaskPriority(String name) {
             this.name = name;
-            this.color = color;
         }
         
         public String getName() { return name; }
-        public Color getColor() { return color; }
+    }
+    
+    /**
+     * Colours live here rather than in the enum, so headless tools that
+     * use priorities never load AWT
+     * @param priority the priority
+     * @return the colour the priority is shown in
+     */
+    static Color colorOf(TaskPriority priority) {
+        switch (priority) {
+            case LOW: return new Color(0x2E7D32);    // Green
+            case HIGH: return new Color(0xF44336);   // Red
+            case URGENT: return new Color(0x9C27B0); // Purple
+            default: return new Color(0xFF9800);     // Orange
+        }
     }
     
     // Enhanced Task class with all new features
     public static class Task {
-        private String text;
-        private boolean completed;
-        private TaskPriority priority;
-        private java.util.Date dueDate;
-        private String category;
-        private List<String> tags;
-        private long timeSpent; // in milliseconds
-        private java.util.Date createdDate;
-        private boolean recurring;
-        private String recurrencePattern;
+        // Immutable field values; setters swap in a new state, which is
+        // volatile so readers on other threads see whole states
+        private volatile TaskState state;
+        // Stable identity, saved with the task and never reused
+        private long id;
+        // Sequence number of the last change, stamped by the ChangeTracker
+        private long modSeq;
+        // Position kept by the TaskList holding the task, and the last one it left
+        TaskList list;
+        int slot;
+        TaskList formerList;
+        int formerSlot;
         
         public Task(String text) {
-            this.text = text;
-            this.completed = false;
-            this.priority = TaskPriority.MEDIUM;
-            this.dueDate = null;
-            this.category = "General";
-            this.tags = new ArrayList<>();
-            this.timeSpent = 0;
-            this.createdDate = new java.util.Date();
-            this.recurring = false;
-            this.recurrencePattern = "";
+            this.state = TaskState.create(text);
+            this.id = TaskIds.next();
+        }
+        
+        /**
+         * Copy constructor, used to keep the state of a task before it is
+         * changed. The copy shares the immutable state, so this is constant time.
+         * @param other the task to copy
+         */
+        public Task(Task other) {
+            this.state = other.state;
+            this.id = other.id;
+            this.modSeq = other.modSeq;
+        }
+        
+        /**
+         * Overwrite every field with those of another task, keeping this
+         * instance so lists and indexes that hold it stay valid. The ID and
+         * modification sequence number stay with this instance.
+         * @param other the task to copy from
+         */
+        public void copyFrom(Task other) {
+            swap(other.state);
+        }
+        
+        public TaskState getState() { return state; }
+        public void setState(TaskState state) { swap(state); }
+        public long getId() { return id; }
+        public long getModSeq() { return modSeq; }
+        public void setModSeq(long modSeq) { this.modSeq = modSeq; }
+        
+        /**
+         * Take over an ID read from disk instead of the new one
+         * @param id the stored ID
+         */
+        void restoreId(long id) {
+            this.id = id;
+            TaskIds.observe(id);
         }
         
         // Getters and setters
-        public String getText() { return text; }
-        public void setText(String text) { this.text = text; }
-        public boolean isCompleted() { return completed; }
-        public void setCompleted(boolean completed) { this.completed = completed; }
-        public TaskPriority getPriority() { return priority; }
-        public void setPriority(TaskPriority priority) { this.priority = priority; }
-        public java.util.Date getDueDate() { return dueDate; }
-        public void setDueDate(java.util.Date dueDate) { this.dueDate = dueDate; }
-        public String getCategory() { return category; }
-        public void setCategory(String category) { this.category = category; }
-        public List<String> getTags() { return tags; }
-        public void setTags(List<String> tags) { this.tags = tags; }
-        public long getTimeSpent() { return timeSpent; }
-        public void setTimeSpent(long timeSpent) { this.timeSpent = timeSpent; }
-        public java.util.Date getCreatedDate() { return createdDate; }
-        public void setCreatedDate(java.util.Date createdDate) { this.createdDate = createdDate; }
-        public boolean isRecurring() { return recurring; }
-        public void setRecurring(boolean recurring) { this.recurring = recurring; }
-        public String getRecurrencePattern() { return recurrencePattern; }
-        public void setRecurrencePattern(String recurrencePattern) { this.recurrencePattern = recurrencePattern; }
+        public String getText() { return state.getText(); }
+        public void setText(String text) { swap(state.withText(text)); }
+        public boolean isCompleted() { return state.isCompleted(); }
+        public void setCompleted(boolean completed) { swap(state.withCompleted(completed)); }
+        public TaskPriority getPriority() { return state.getPriority(); }
+        public void setPriority(TaskPriority priority) { swap(state.withPriority(priority)); }
+        public java.util.Date getDueDate() { return state.getDueDate(); }
+        public void setDueDate(java.util.Date dueDate) { swap(state.withDueDate(dueDate)); }
+        public String getCategory() { return state.getCategory(); }
+        public void setCategory(String category) { swap(state.withCategory(category)); }
+        public List<String> getTags() { return state.getTags(); }
+        public void setTags(List<String> tags) { swap(state.withTags(tags)); }
+        public long getTimeSpent() { return state.getTimeSpent(); }
+        public void setTimeSpent(long timeSpent) { swap(state.withTimeSpent(timeSpent)); }
+        public java.util.Date getCreatedDate() { return state.getCreatedDate(); }
+        public void setCreatedDate(java.util.Date createdDate) { swap(state.withCreatedDate(createdDate)); }
+        public boolean isRecurring() { return state.isRecurring(); }
+        public void setRecurring(boolean recurring) { swap(state.withRecurring(recurring)); }
+        public String getRecurrencePattern() { return state.getRecurrencePattern(); }
+        public void setRecurrencePattern(String recurrencePattern) { swap(state.withRecurrencePattern(recurrencePattern)); }
+        
+        // Every change goes through here so the holding list can tell readers
+        private void swap(TaskState next) {
+            state = next;
+            if (list != null) list.changed(slot);
+        }
         
         public boolean isOverdue() {
-            if (dueDate == null || completed) return false;
+            java.util.Date dueDate = state.getDueDate();
+            if (dueDate == null || state.isCompleted()) return false;
             return new java.util.Date().after(dueDate);
         }
         
         public boolean isDueSoon() {
-            if (dueDate == null || completed) return false;
+            java.util.Date dueDate = state.getDueDate();
+            if (dueDate == null || state.isCompleted()) return false;
             long dayInMillis = 24 * 60 * 60 * 1000;
             return dueDate.getTime() - System.currentTimeMillis() <= dayInMillis;
         }
     }
     
-    // Undo/Redo system
-    private static class UndoRedoAction {
-        String type;
-        Object data;
-        
-        UndoRedoAction(String type, Object data) {
-            this.type = type;
-            this.data = data;
-        }
-    }
-    
     // Data structures to hold enhanced tasks
-    private final Map<String, List<Task>> eventTasks;
-    private final Map<String, List<Task>> eventCompletedTasks;
-    private final Map<String, String> eventDates;
-    private final Map<String, String> eventCategories;
+    private final TaskRepository repository;
     private DefaultListModel<String> eventListModel;
     private java.util.Date selectedDate;
     
+    // Events whose task files have already been read into memory
+    private final Set<String> loadedEvents;
+    
+    // Derived data kept current from task mutations
+    private final List<TaskChangeListener> taskChangeListeners;
+    private final TagIndex tagIndex;
+    private final SavedViews savedViews;
+    private final TaskSorter taskSorter;
+    private final TaskStatistics taskStatistics;
+    private final CompletionHistory completionHistory;
+    private final TimeTracker timeTracker;
+    private final ChangeTracker changeTracker;
+    private final TaskRegistry taskRegistry;
+    private final ToastReminderSink toasts;
+    private final ReminderService reminderService;
+    // Keeps other instances on the same data directory in step
+    private final WorkspaceCoordinator coordinator;
+    
+    // Time labels of the task rows whose timers run or are paused, refreshed while tracking
+    private final Map<Task, JLabel> trackedTimeLabels;
+    
+    // Tasks picked with Ctrl/Shift-click for bulk actions, task -> event
+    private final Map<Task, String> selectedTasks;
+    private Task selectionAnchor;
+    
+    // Saved view currently shown in the task panels, null when showing an event
+    private String openViewName;
+    private boolean savedViewRefreshPending;
+    private TaskApi taskApi;
+    // Events changed through the API or by other instances since the last save; saved once per batch
+    private final Set<String> unsavedEvents = new HashSet<>();
+    
     // Data storage directory
     private final File dataDirectory;
+    // Where a follower keeps its logs, or null on the leader and once promoted
+    private File followerDirectory;
+    private final TaskStore store;
+    
+    // Saved view definitions, kept apart from the per-event .txt files
+    private static final String SAVED_VIEWS_FILE = "saved-views.dat";
+    private static final String COMPLETION_HISTORY_FILE = "completion-history.log";
+    private static final String TIME_TRACKING_FILE = "time-tracking.chk";
+    private static final String UNDO_HISTORY_FILE = "undo-history.log";
+    private static final String EXPORT_WATERMARK_FILE = "delta-export.watermark";
+    private static final String EXPORT_TOMBSTONES_FILE = "delta-tombstones.log";
+    // Files a follower keeps in its own directory
+    private static final String[] STATE_FILES = {
+        COMPLETION_HISTORY_FILE, TIME_TRACKING_FILE, UNDO_HISTORY_FILE, EXPORT_WATERMARK_FILE, EXPORT_TOMBSTONES_FILE
+    };
+    static final String TASK_IDS_FILE = "task-ids.seq";
+    
+    // How long before a task is due its reminder is shown
+    private static final long REMINDER_LEAD_MILLIS = 15 * 60 * 1000;
+    // Port of the local HTTP API, which only runs when this system property is set
+    private static final String API_PORT_PROPERTY = "todo.api.port";
+    
+    // Client properties of task rows
+    private static final String TASK_PROPERTY = "todo.task";
+    private static final String EVENT_PROPERTY = "todo.event";
+    private static final String ROW_COLOR_PROPERTY = "todo.rowColor";
     
     // New UI enhancement fields
     private boolean isDarkMode = false;
@@ -132,8 +231,8 @@ public class TodoListApp extends javax.swing.JFrame {
     private JProgressBar overallProgressBar;
     private JLabel statsLabel;
     private Timer autoSaveTimer;
-    private Stack<UndoRedoAction> undoStack;
-    private Stack<UndoRedoAction> redoStack;
+    private final CommandLog commandLog;
+    private final CommandTarget commandTarget;
     private ScheduledExecutorService notificationScheduler;
     
     // Quick action components
@@ -147,6 +246,7 @@ public class TodoListApp extends javax.swing.JFrame {
     private JButton statsButton;
     private JButton exportButton;
     private JButton importButton;
+    private JButton tagsButton;
     private JToolBar toolbar;
     private JPanel searchPanel;
     private JPanel progressPanel;
@@ -154,56 +254,340 @@ public class TodoListApp extends javax.swing.JFrame {
     private JLabel searchLabel;
     private JLabel filterLabel;
     private JLabel progressLabel;
+    private JButton saveViewButton;
+    private JComboBox<String> sortComboBox;
+    private JComboBox<String> thenSortComboBox;
+    private JLabel sortLabel;
+    private JPanel savedViewsPanel;
+    private DefaultListModel<String> savedViewListModel;
+    private JList<String> savedViewList;
+    private List<String> savedViewNames;
+    private Timer savedViewTimer;
 
     /**
      * Creates new form TodoListApp with enhanced features
      */
     public TodoListApp() {
-        eventTasks = new HashMap<>();
-        eventCompletedTasks = new HashMap<>();
-        eventDates = new HashMap<>();
-        eventCategories = new HashMap<>();
+        // All changes are made on the EDT; other threads read under the repository's locks
+        repository = new TaskRepository(new TaskRepository.Writer() {
+            @Override
+            public boolean isWriterThread() {
+                return SwingUtilities.isEventDispatchThread();
+            }
+            
+            @Override
+            public void execute(Runnable task) {
+                SwingUtilities.invokeLater(task);
+            }
+        });
         selectedDate = new java.util.Date(); // Initialize with current date
+        loadedEvents = new HashSet<>();
+        
+        // Indexes are registered before any task is loaded
+        taskChangeListeners = new ArrayList<>();
+        taskRegistry = new TaskRegistry();
+        taskChangeListeners.add(taskRegistry);
+        tagIndex = new TagIndex();
+        taskChangeListeners.add(tagIndex);
+        savedViews = new SavedViews();
+        taskChangeListeners.add(savedViews);
+        taskSorter = new TaskSorter();
+        taskChangeListeners.add(taskSorter);
+        taskStatistics = new TaskStatistics();
+        taskChangeListeners.add(taskStatistics);
         
         // Initialize data directory
-        dataDirectory = initializeDataDirectory();
-        
-        // Initialize new UI enhancement components
-        undoStack = new Stack<>();
-        redoStack = new Stack<>();
+        dataDirectory = TaskStore.defaultDirectory();
+        store = new TaskStore(dataDirectory);
+        store.setTagInterner(tagIndex::internAll);
+        TaskIds.open(new File(dataDirectory, TASK_IDS_FILE));
+        loadSavedViews();
+        
+        // The first instance on the data directory owns its files; later ones
+        // follow it and keep their own logs apart, as they see the same changes
+        coordinator = new WorkspaceCoordinator(dataDirectory, repository);
+        followerDirectory = coordinator.acquire() ? null : followerStateDirectory();
+        File stateDirectory = followerDirectory != null ? followerDirectory : dataDirectory;
+        completionHistory = new CompletionHistory(new File(stateDirectory, COMPLETION_HISTORY_FILE),
+            SwingUtilities::invokeLater);
+        taskChangeListeners.add(completionHistory);
+        timeTracker = new TimeTracker(new File(stateDirectory, TIME_TRACKING_FILE));
+        taskChangeListeners.add(timeTracker);
+        changeTracker = new ChangeTracker(new File(stateDirectory, EXPORT_WATERMARK_FILE),
+            new File(stateDirectory, EXPORT_TOMBSTONES_FILE));
+        taskChangeListeners.add(changeTracker);
+        // The toasts get this window as their owner once it is constructed
+        toasts = new ToastReminderSink();
+        reminderService = new ReminderService(SystemTray.isSupported()
+            ? new TrayReminderSink(trayImage(), toasts) : toasts, REMINDER_LEAD_MILLIS);
+        taskChangeListeners.add(reminderService);
+        taskChangeListeners.add(coordinator);
+        trackedTimeLabels = new IdentityHashMap<>();
+        selectedTasks = new IdentityHashMap<>();
+        
+        // Undo history is kept on disk so it survives a restart
+        commandLog = new CommandLog(new File(stateDirectory, UNDO_HISTORY_FILE));
+        commandTarget = new CommandTarget();
         
         initComponents();
         setupCustomComponents();
         setupEventListeners();
-        loadEventsFromFiles();
+        // A follower receives the events from the leader instead
+        if (coordinator.isLeader()) {
+            loadEventsFromFiles();
+        }
+        coordinator.start(new WorkspaceApplier());
+        
+        // Credit time left open by a previous run, then start the shared ticker
+        recoverTrackedTime(timeTracker.recover());
+        timeTracker.start(() -> SwingUtilities.invokeLater(this::refreshTrackedTimes));
+        
+        // Reminders for every loaded task are queued; deliver them from one daemon thread
+        notificationScheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reminderService.start(notificationScheduler);
+        startTaskApi();
     }
     
     /**
-     * Initialize and create the data directory for storing todo list files
-     * @return File object representing the data directory
+     * Applies changes made in other instances on the EDT like local ones:
+     * through the listeners, saved by the leader and redrawn once per batch
      */
-    private File initializeDataDirectory() {
-        // Get user's Documents folder
-        String userHome = System.getProperty("user.home");
-        File documentsDir = new File(userHome, "Documents");
-        File todoDataDir = new File(documentsDir, "To Do List");
-        
-        // Create directory if it doesn't exist
-        if (!todoDataDir.exists()) {
-            boolean created = todoDataDir.mkdirs();
-            if (created) {
-                System.out.println("Created data directory: " + todoDataDir.getAbsolutePath());
+    private class WorkspaceApplier implements WorkspaceCoordinator.Applier {
+        @Override
+        public void eventAdded(String eventName, String date) {
+            if (repository.containsEvent(eventName)) return;
+            eventListModel.addElement(eventName);
+            repository.addEvent(eventName, date);
+            loadedEvents.add(eventName);
+            saveLater(Collections.singletonList(eventName));
+        }
+        
+        @Override
+        public void eventRemoved(String eventName) {
+            if (!repository.containsEvent(eventName)) return;
+            removeEvent(eventName, true);
+            clearPanelsIfShowing(eventName);
+        }
+        
+        @Override
+        public void taskUpserted(String eventName, boolean completed, Task incoming) {
+            eventAdded(eventName, "");
+            incoming.setTags(tagIndex.internAll(incoming.getTags()));
+            Task task = taskRegistry.find(incoming.getId());
+            if (task == null) {
+                repository.getTasks(eventName, completed).add(incoming);
+                fireTaskAdded(eventName, incoming);
+            } else if (!task.list.getEventName().equals(eventName)) {
+                // Moved to another event
+                String fromEvent = task.list.getEventName();
+                task.list.remove(task);
+                fireTaskRemoved(fromEvent, task);
+                task.setState(incoming.getState());
+                repository.getTasks(eventName, completed).add(task);
+                fireTaskAdded(eventName, task);
+                saveLater(Collections.singletonList(fromEvent));
             } else {
-                System.err.println("Failed to create data directory: " + todoDataDir.getAbsolutePath());
-                // Fallback to user home directory
-                todoDataDir = new File(userHome, "To Do List");
-                todoDataDir.mkdirs();
+                Task before = new Task(task);
+                repository.writeLock(eventName).lock();
+                try {
+                    task.setState(incoming.getState());
+                    if (before.isCompleted() != completed) {
+                        repository.getTasks(eventName, completed).addBack(task);
+                    }
+                } finally {
+                    repository.writeLock(eventName).unlock();
+                }
+                fireTaskUpdated(eventName, before, task);
             }
+            saveLater(Collections.singletonList(eventName));
         }
         
-        return todoDataDir;
+        @Override
+        public void taskDeleted(long id) {
+            Task task = taskRegistry.find(id);
+            if (task == null || task.list == null) return;
+            String eventName = task.list.getEventName();
+            task.list.remove(task);
+            fireTaskRemoved(eventName, task);
+            saveLater(Collections.singletonList(eventName));
+        }
+        
+        @Override
+        public void clear() {
+            for (String eventName : repository.getEventNames()) {
+                removeEvent(eventName, false);
+            }
+            clearPanelsIfShowing(null);
+        }
+        
+        @Override
+        public void promoted() {
+            // The old leader may not have saved its last changes
+            saveLater(repository.getEventNames());
+            if (followerDirectory == null) return;
+            
+            // The logs in the data directory are now this instance's to write
+            completionHistory.moveTo(new File(dataDirectory, COMPLETION_HISTORY_FILE));
+            commandLog.moveTo(new File(dataDirectory, UNDO_HISTORY_FILE));
+            changeTracker.moveTo(new File(dataDirectory, EXPORT_WATERMARK_FILE),
+                new File(dataDirectory, EXPORT_TOMBSTONES_FILE));
+            // Sequence numbers handed out here mean nothing against the old
+            // leader's watermark, so every task counts as changed once
+            for (String eventName : repository.getEventNames()) {
+                for (boolean completed : new boolean[] { false, true }) {
+                    for (Task task : repository.getTasks(eventName, completed)) {
+                        changeTracker.taskAdded(eventName, task);
+                    }
+                }
+            }
+            recoverTrackedTime(timeTracker.moveTo(new File(dataDirectory, TIME_TRACKING_FILE)));
+            deleteFollowerStateDirectory(followerDirectory);
+            followerDirectory = null;
+        }
     }
-
+    
+    /**
+     * @return a private directory for the logs of an instance that follows
+     *         another, removed again on exit
+     */
+    private static File followerStateDirectory() {
+        try {
+            File directory = Files.createTempDirectory("todo-follower").toFile();
+            // Deleted in reverse order of registration: the files, then the directory
+            directory.deleteOnExit();
+            for (String name : STATE_FILES) {
+                new File(directory, name).deleteOnExit();
+                new File(directory, name + ".tmp").deleteOnExit();
+            }
+            return directory;
+        } catch (IOException e) {
+            System.err.println("Error creating follower state directory: " + e.getMessage());
+            return new File(System.getProperty("java.io.tmpdir"));
+        }
+    }
+    
+    /**
+     * Remove a follower's logs once they have moved to the data directory
+     * @param directory the follower's directory
+     */
+    private static void deleteFollowerStateDirectory(File directory) {
+        try {
+            for (String name : STATE_FILES) {
+                Files.deleteIfExists(new File(directory, name).toPath());
+                Files.deleteIfExists(new File(directory, name + ".tmp").toPath());
+            }
+            // Not the shared temporary directory used when none could be created
+            if (directory.getName().startsWith("todo-follower")) {
+                Files.deleteIfExists(directory.toPath());
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting follower state directory: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Serve the local HTTP API if a port is configured
+     */
+    private void startTaskApi() {
+        String port = System.getProperty(API_PORT_PROPERTY);
+        if (port == null) return;
+        taskApi = new TaskApi(repository, new TaskApi.Backend() {
+            @Override
+            public CommandLog.Transaction begin() {
+                return commandLog.begin(commandTarget);
+            }
+            
+            @Override
+            public Task findTask(long id) {
+                return taskRegistry.find(id);
+            }
+            
+            @Override
+            public boolean addEvent(String eventName) {
+                if (repository.containsEvent(eventName)) return false;
+                eventListModel.addElement(eventName);
+                String date = new java.text.SimpleDateFormat("dd/MM/yyyy").format(new java.util.Date());
+                repository.addEvent(eventName, date);
+                loadedEvents.add(eventName);
+                coordinator.eventAdded(eventName, date);
+                // Written at once, as an event without files is not found again
+                autoSaveCurrentEvent(eventName);
+                return true;
+            }
+            
+            @Override
+            public long stopTracking(Task task) {
+                return timeTracker.stop(task);
+            }
+            
+            @Override
+            public void changed(Collection<String> eventNames) {
+                saveLater(eventNames);
+            }
+        });
+        try {
+            taskApi.start(Integer.parseInt(port));
+            System.out.println("Task API listening on http://localhost:" + taskApi.getPort() + "/api/");
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error starting task API on port " + port + ": " + e.getMessage());
+            taskApi = null;
+        }
+    }
+    
+    /**
+     * Pending tasks due on each day of a month, counting every occurrence of
+     * recurring tasks in the month without expanding their whole series
+     * @param year the year
+     * @param month the month, 0-based
+     * @return counts indexed by day of month, from 1
+     */
+    private int[] dueCounts(int year, int month) {
+        java.util.Calendar cal = java.util.Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, 1);
+        java.util.Date from = cal.getTime();
+        int[] counts = new int[cal.getActualMaximum(java.util.Calendar.DAY_OF_MONTH) + 1];
+        cal.add(java.util.Calendar.MONTH, 1);
+        java.util.Date to = cal.getTime();
+        java.util.Calendar day = java.util.Calendar.getInstance();
+        for (EventSnapshot event : repository.current().getEvents()) {
+            for (TaskState task : event.getPending()) {
+                java.util.Date due = task.getDueDate();
+                RecurrenceRule rule = task.isRecurring() ? RecurrenceRule.parse(task.getRecurrencePattern()) : null;
+                if (rule != null) {
+                    for (java.util.Date occurrence : rule.between(due != null ? due : task.getCreatedDate(), from, to)) {
+                        day.setTime(occurrence);
+                        counts[day.get(java.util.Calendar.DAY_OF_MONTH)]++;
+                    }
+                } else if (due != null && !due.before(from) && due.before(to)) {
+                    day.setTime(due);
+                    counts[day.get(java.util.Calendar.DAY_OF_MONTH)]++;
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * @return a small check mark icon for the system tray
+     */
+    private static Image trayImage() {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(16, 16, java.awt.image.BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(46, 125, 50));
+        g.fillRoundRect(0, 0, 16, 16, 4, 4);
+        g.setColor(Color.WHITE);
+        g.setStroke(new BasicStroke(2f));
+        g.drawPolyline(new int[] {4, 7, 12}, new int[] {8, 11, 5}, 3);
+        g.dispose();
+        return image;
+    }
+    
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -593,7 +977,9 @@ public class TodoListApp extends javax.swing.JFrame {
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new TodoListApp().setVisible(true);
+                TodoListApp app = new TodoListApp();
+                app.toasts.setOwner(app);
+                app.setVisible(true);
             }
         });
     }
@@ -736,6 +1122,11 @@ public class TodoListApp extends javax.swing.JFrame {
         importButton.setToolTipText("Import data");
         importButton.addActionListener(e -> importData());
         
+        // Tags button
+        tagsButton = new JButton("🏷 Tags");
+        tagsButton.setToolTipText("Browse tasks by tag");
+        tagsButton.addActionListener(e -> showTagBrowser());
+        
         toolbar.add(newEventButton);
         toolbar.add(newTaskButton);
         toolbar.addSeparator();
@@ -745,6 +1136,7 @@ public class TodoListApp extends javax.swing.JFrame {
         toolbar.add(statsButton);
         toolbar.add(exportButton);
         toolbar.add(importButton);
+        toolbar.add(tagsButton);
         toolbar.addSeparator();
         toolbar.add(darkModeToggle);
         
@@ -766,6 +1158,29 @@ public class TodoListApp extends javax.swing.JFrame {
         searchPanel.add(filterLabel);
         searchPanel.add(filterComboBox);
         
+        // Sort order, with an optional second key for ties
+        String[] sortOptions = new String[TaskSorter.SortKey.values().length + 1];
+        sortOptions[0] = "Manual";
+        for (TaskSorter.SortKey key : TaskSorter.SortKey.values()) {
+            sortOptions[key.ordinal() + 1] = key.getName();
+        }
+        sortComboBox = new JComboBox<>(sortOptions);
+        sortComboBox.setToolTipText("Sort tasks");
+        sortComboBox.addActionListener(e -> applySortOrder());
+        thenSortComboBox = new JComboBox<>(sortOptions);
+        thenSortComboBox.setToolTipText("Then sort by");
+        thenSortComboBox.addActionListener(e -> applySortOrder());
+        
+        sortLabel = new JLabel("Sort:");
+        searchPanel.add(sortLabel);
+        searchPanel.add(sortComboBox);
+        searchPanel.add(thenSortComboBox);
+        
+        saveViewButton = new JButton("⭐ Save View");
+        saveViewButton.setToolTipText("Save the current search and filter as a named view");
+        saveViewButton.addActionListener(e -> showSaveViewDialog());
+        searchPanel.add(saveViewButton);
+        
         // Add progress bar
         overallProgressBar = new JProgressBar(0, 100);
         overallProgressBar.setStringPainted(true);
@@ -791,10 +1206,50 @@ public class TodoListApp extends javax.swing.JFrame {
         bottomPanel.add(progressPanel, BorderLayout.CENTER);
         contentPane.add(bottomPanel, BorderLayout.SOUTH);
         
+        // Saved views below the event list
+        setupSavedViewsPanel();
+        
         // Update layout
         pack();
     }
     
+    private void setupSavedViewsPanel() {
+        savedViewListModel = new DefaultListModel<>();
+        savedViewNames = new ArrayList<>();
+        savedViewList = new JList<>(savedViewListModel);
+        savedViewList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        savedViewList.setVisibleRowCount(5);
+        savedViewList.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        savedViewList.addListSelectionListener(e -> {
+            int index = savedViewList.getSelectedIndex();
+            if (!e.getValueIsAdjusting() && index >= 0) {
+                openSavedView(savedViewNames.get(index));
+            }
+        });
+        
+        // Right click offers to delete a view
+        JPopupMenu viewMenu = new JPopupMenu();
+        JMenuItem deleteViewItem = new JMenuItem("Delete View");
+        deleteViewItem.addActionListener(e -> deleteSavedView());
+        viewMenu.add(deleteViewItem);
+        savedViewList.setComponentPopupMenu(viewMenu);
+        
+        savedViewsPanel = new JPanel(new BorderLayout());
+        savedViewsPanel.setBorder(BorderFactory.createTitledBorder("Saved Views"));
+        savedViewsPanel.add(new JScrollPane(savedViewList), BorderLayout.CENTER);
+        
+        JPanel sidebar = new JPanel(new BorderLayout());
+        sidebar.add(eventPanel, BorderLayout.CENTER);
+        sidebar.add(savedViewsPanel, BorderLayout.SOUTH);
+        jSplitPane1.setLeftComponent(sidebar);
+        
+        // Counts change on every mutation, and for due windows as time passes
+        savedViews.setChangeCallback(this::scheduleSavedViewRefresh);
+        savedViewTimer = new Timer(60 * 1000, e -> refreshSavedViewList());
+        savedViewTimer.start();
+        refreshSavedViewList();
+    }
+    
     private void applyBasicFonts() {
         // Simple font application that won't conflict with NetBeans
         try {
@@ -872,9 +1327,9 @@ public class TodoListApp extends javax.swing.JFrame {
         if (!eventName.isEmpty()) {
             if (!eventListModel.contains(eventName)) {
                 eventListModel.addElement(eventName);
-                eventTasks.put(eventName, new ArrayList<>());
-                eventCompletedTasks.put(eventName, new ArrayList<>());
-                eventDates.put(eventName, eventDate);
+                repository.addEvent(eventName, eventDate);
+                loadedEvents.add(eventName);
+                coordinator.eventAdded(eventName, eventDate);
 
                 // Clear the event name field
                 eventNameField.setText("");
@@ -911,28 +1366,7 @@ public class TodoListApp extends javax.swing.JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (result == JOptionPane.YES_OPTION) {
-            // Remove from UI
-            eventListModel.removeElement(selectedEvent);
-            
-            // Remove from data structures
-            eventTasks.remove(selectedEvent);
-            eventCompletedTasks.remove(selectedEvent);
-            eventDates.remove(selectedEvent);
-            
-            // Delete files
-            try {
-                File taskFile = new File(dataDirectory, selectedEvent + ".txt");
-                File completedFile = new File(dataDirectory, "COMPLETED_" + selectedEvent + ".txt");
-                
-                if (taskFile.exists()) {
-                    taskFile.delete();
-                }
-                if (completedFile.exists()) {
-                    completedFile.delete();
-                }
-            } catch (Exception e) {
-                System.err.println("Error deleting files for " + selectedEvent + ": " + e.getMessage());
-            }
+            removeEvent(selectedEvent, true);
             
             // Clear task panels
             todoPanel.removeAll();
@@ -956,43 +1390,58 @@ public class TodoListApp extends javax.swing.JFrame {
             Task newTask = new Task(taskText);
             
             // Add task immediately with default settings
-            eventTasks.get(selectedEvent).add(newTask);
+            repository.getTasks(selectedEvent, false).add(newTask);
+            fireTaskAdded(selectedEvent, newTask);
             taskField.setText("");
             
             // Auto-save after adding task
             autoSaveCurrentEvent(selectedEvent);
             
-            // Add to undo stack
-            addToUndoStack("ADD_TASK", new Object[]{selectedEvent, newTask});
-            
             // Refresh display
             loadTasksForEvent(selectedEvent);
             
             // Show task details dialog for setting priority, due date, etc. (optional)
             // This allows editing but doesn't prevent the task from being added
             SwingUtilities.invokeLater(() -> {
+                Task before = new Task(newTask);
                 if (showTaskDetailsDialog(newTask)) {
                     // If user made changes, save again and refresh
+                    fireTaskUpdated(selectedEvent, before, newTask);
                     autoSaveCurrentEvent(selectedEvent);
                     loadTasksForEvent(selectedEvent);
                 }
+                
+                // Record the add with the details chosen in the dialog, as one undo step
+                List<Task> tasks = repository.getTasks(selectedEvent, false);
+                int index = tasks != null ? tasks.indexOf(newTask) : -1;
+                if (index >= 0) {
+                    commandLog.record(new CommandLog.AddTask(selectedEvent, false, index, taskToString(newTask)));
+                }
             });
         }
     }
 
     private void loadTasksForEvent(String eventName) {
         selectedEventTitle.setText("Event: " + eventName);
-        selectedEventDate.setText("Date: " + eventDates.getOrDefault(eventName, ""));
+        selectedEventDate.setText("Date: " + java.util.Objects.toString(repository.getDate(eventName), ""));
+
+        // Load tasks from files the first time the event is shown
+        if (!loadedEvents.contains(eventName)) {
+            loadTasksFromFile(eventName);
+        }
 
-        // Load tasks from files
-        loadTasksFromFile(eventName);
+        // Showing an event closes any open saved view
+        openViewName = null;
+        if (savedViewList != null) {
+            savedViewList.clearSelection();
+        }
 
         // Clear panels
         todoPanel.removeAll();
         completedPanel.removeAll();
 
         // Add pending tasks with zebra striping
-        List<Task> tasks = eventTasks.get(eventName);
+        List<Task> tasks = taskSorter.sorted(eventName, false, repository.getTasks(eventName, false));
         if (tasks != null) {
             for (int i = 0; i < tasks.size(); i++) {
                 Task task = tasks.get(i);
@@ -1002,7 +1451,7 @@ public class TodoListApp extends javax.swing.JFrame {
         }
 
         // Add completed tasks with zebra striping
-        List<Task> completedTasks = eventCompletedTasks.get(eventName);
+        List<Task> completedTasks = taskSorter.sorted(eventName, true, repository.getTasks(eventName, true));
         if (completedTasks != null) {
             for (int i = 0; i < completedTasks.size(); i++) {
                 Task task = completedTasks.get(i);
@@ -1046,6 +1495,14 @@ public class TodoListApp extends javax.swing.JFrame {
             panel.setBackground(darkColor);
         }
         panel.setOpaque(true);
+        
+        // Rows carry their task so selection can walk the panels in display order
+        panel.putClientProperty(TASK_PROPERTY, task);
+        panel.putClientProperty(EVENT_PROPERTY, eventName);
+        panel.putClientProperty(ROW_COLOR_PROPERTY, panel.getBackground());
+        if (selectedTasks.containsKey(task)) {
+            panel.setBackground(selectionColor());
+        }
 
         // Create main content panel
         JPanel contentPanel = new JPanel(new BorderLayout());
@@ -1063,8 +1520,29 @@ public class TodoListApp extends javax.swing.JFrame {
             taskText += " (Due: " + sdf.format(task.getDueDate()) + ")";
         }
 
-        JCheckBox checkBox = new JCheckBox(taskText);
+        JCheckBox checkBox = new JCheckBox(taskText) {
+            @Override
+            protected void processMouseEvent(java.awt.event.MouseEvent e) {
+                // Ctrl/Shift-click and right-click select instead of toggling completion
+                if (e.isControlDown() || e.isShiftDown() || e.isMetaDown() || e.isPopupTrigger()) {
+                    handleRowMouse(e, panel, eventName, task);
+                    return;
+                }
+                super.processMouseEvent(e);
+            }
+        };
         checkBox.setSelected(isCompleted);
+        panel.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mousePressed(java.awt.event.MouseEvent e) {
+                handleRowMouse(e, panel, eventName, task);
+            }
+            
+            @Override
+            public void mouseReleased(java.awt.event.MouseEvent e) {
+                handleRowMouse(e, panel, eventName, task);
+            }
+        });
         
         // Apply dark mode styling to checkbox
         if (isDarkMode) {
@@ -1083,20 +1561,20 @@ public class TodoListApp extends javax.swing.JFrame {
             checkBox.setForeground(isDarkMode ? new Color(255, 180, 100) : new Color(255, 140, 0)); // Orange
         } else {
             // Use priority colors but adjust for dark mode if needed
-            Color priorityColor = task.getPriority().getColor();
+            TaskPriority priority = task.getPriority();
             if (isDarkMode) {
                 // Lighten priority colors for dark mode visibility
-                if (priorityColor.equals(TaskPriority.LOW.getColor())) {
+                if (priority == TaskPriority.LOW) {
                     checkBox.setForeground(new Color(100, 200, 100)); // Lighter green
-                } else if (priorityColor.equals(TaskPriority.HIGH.getColor())) {
+                } else if (priority == TaskPriority.HIGH) {
                     checkBox.setForeground(new Color(255, 120, 120)); // Lighter red
-                } else if (priorityColor.equals(TaskPriority.URGENT.getColor())) {
+                } else if (priority == TaskPriority.URGENT) {
                     checkBox.setForeground(new Color(200, 120, 255)); // Lighter purple
                 } else {
                     checkBox.setForeground(new Color(255, 180, 100)); // Lighter orange for medium
                 }
             } else {
-                checkBox.setForeground(priorityColor);
+                checkBox.setForeground(colorOf(priority));
             }
         }
         
@@ -1123,6 +1601,35 @@ public class TodoListApp extends javax.swing.JFrame {
         JButton deleteButton = createDeleteButton();
         deleteButton.addActionListener(evt -> deleteTask(eventName, task, isCompleted));
 
+        // Time spent, with start/pause and stop for pending tasks
+        TimeTracker.State trackingState = timeTracker.getState(task);
+        long timeSpent = timeTracker.getTimeSpent(task);
+        if (timeSpent > 0 || trackingState != TimeTracker.State.STOPPED) {
+            JLabel timeLabel = new JLabel(TimeTracker.format(timeSpent));
+            timeLabel.setForeground(isDarkMode ? new Color(180, 180, 180) : Color.GRAY);
+            timeLabel.setToolTipText("Time spent");
+            buttonPanel.add(timeLabel);
+            // Only running or paused timers are refreshed; starting or stopping one redraws the panel
+            if (trackingState != TimeTracker.State.STOPPED) {
+                trackedTimeLabels.put(task, timeLabel);
+            }
+        }
+        if (trackingState == TimeTracker.State.STOPPED) {
+            trackedTimeLabels.remove(task);
+        }
+        if (!isCompleted) {
+            boolean running = trackingState == TimeTracker.State.RUNNING;
+            JButton trackButton = createTrackingButton(running ? "⏸" : "▶",
+                running ? "Pause timer" : "Start timer");
+            trackButton.addActionListener(evt -> toggleTracking(eventName, task));
+            buttonPanel.add(trackButton);
+            if (trackingState != TimeTracker.State.STOPPED) {
+                JButton stopButton = createTrackingButton("⏹", "Stop timer");
+                stopButton.addActionListener(evt -> stopTracking(eventName, task));
+                buttonPanel.add(stopButton);
+            }
+        }
+
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
 
@@ -1320,20 +1827,19 @@ public class TodoListApp extends javax.swing.JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (result == JOptionPane.YES_OPTION) {
-            if (isCompleted) {
-                eventCompletedTasks.get(eventName).remove(task);
-            } else {
-                eventTasks.get(eventName).remove(task);
-            }
+            List<Task> tasks = isCompleted ? repository.getTasks(eventName, true) : repository.getTasks(eventName, false);
+            int index = tasks.indexOf(task);
+            tasks.remove(index);
+            fireTaskRemoved(eventName, task);
             
             // Auto-save after deleting task
             autoSaveCurrentEvent(eventName);
             
-            // Add to undo stack
-            addToUndoStack("DELETE_TASK", new Object[]{eventName, task, isCompleted});
+            // Add to undo history
+            commandLog.record(new CommandLog.DeleteTask(eventName, isCompleted, index, taskToString(task)));
             
             // Refresh the display
-            loadTasksForEvent(eventName);
+            refreshDisplay(eventName);
         }
     }
 
@@ -1350,27 +1856,62 @@ public class TodoListApp extends javax.swing.JFrame {
 
         @Override
         public void itemStateChanged(ItemEvent e) {
-            if (e.getStateChange() == ItemEvent.SELECTED) {
-                // Task completed - move from todo to completed
-                if (!wasCompleted) {
-                    eventTasks.get(eventName).remove(task);
-                    task.setCompleted(true);
-                    eventCompletedTasks.get(eventName).add(task);
+            Task before = new Task(task);
+            int fromIndex = repository.getTasks(eventName, wasCompleted).indexOf(task);
+            // Readers never see the task in neither list or in both
+            repository.writeLock(eventName).lock();
+            try {
+                if (e.getStateChange() == ItemEvent.SELECTED) {
+                    // Task completed - move from todo to completed
+                    if (!wasCompleted) {
+                        repository.getTasks(eventName, false).remove(task);
+                        task.setCompleted(true);
+                        // Completing a task stops its timer
+                        task.setTimeSpent(task.getTimeSpent() + timeTracker.stop(task));
+                        repository.getTasks(eventName, true).add(task);
+                    }
+                } else {
+                    // Task unchecked - move from completed to todo
+                    if (wasCompleted) {
+                        repository.getTasks(eventName, true).remove(task);
+                        task.setCompleted(false);
+                        // Back to its old place among the pending tasks
+                        repository.getTasks(eventName, false).addBack(task);
+                    }
                 }
-            } else {
-                // Task unchecked - move from completed to todo
-                if (wasCompleted) {
-                    eventCompletedTasks.get(eventName).remove(task);
-                    task.setCompleted(false);
-                    eventTasks.get(eventName).add(task);
+            } finally {
+                repository.writeLock(eventName).unlock();
+            }
+            if (before.isCompleted() != task.isCompleted() || before.getTimeSpent() != task.getTimeSpent()) {
+                fireTaskUpdated(eventName, before, task);
+            }
+            // Completing a recurring task brings up its next occurrence
+            Task next = !before.isCompleted() && task.isCompleted() ? RecurrenceRule.nextOccurrence(task, new java.util.Date()) : null;
+            if (next != null) {
+                repository.getTasks(eventName, false).add(next);
+                fireTaskAdded(eventName, next);
+            }
+            if (before.isCompleted() != task.isCompleted()) {
+                int toIndex = repository.getTasks(eventName, task.isCompleted()).indexOf(task);
+                CommandLog.UpdateTask command = CommandLog.UpdateTask.between(eventName, taskToString(before),
+                    before.isCompleted(), fromIndex, taskToString(task), task.isCompleted(), toIndex);
+                CommandLog.Command recorded = command != null ? command.withStates(before.getState(), task.getState()) : null;
+                if (next != null) {
+                    // Undone together, so undoing the completion takes the next occurrence away
+                    List<CommandLog.Command> steps = new ArrayList<>();
+                    if (recorded != null) steps.add(recorded);
+                    steps.add(new CommandLog.AddTask(eventName, false,
+                        repository.getTasks(eventName, false).indexOf(next), taskToString(next)));
+                    recorded = new CommandLog.Batch(steps);
                 }
+                commandLog.record(recorded);
             }
 
             // Auto-save after task state change
             autoSaveCurrentEvent(eventName);
             
             // Refresh the display
-            SwingUtilities.invokeLater(() -> loadTasksForEvent(eventName));
+            SwingUtilities.invokeLater(() -> refreshDisplay(eventName));
         }
     }
     
@@ -1419,62 +1960,68 @@ public class TodoListApp extends javax.swing.JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (result == JOptionPane.YES_OPTION) {
-            // Remove from UI
-            eventListModel.removeElement(eventName);
-            
-            // Remove from data structures
-            eventTasks.remove(eventName);
-            eventCompletedTasks.remove(eventName);
-            eventDates.remove(eventName);
-            
-            // Delete files
+            removeEvent(eventName, true);
+            clearPanelsIfShowing(eventName);
+        }
+    }
+    
+    /**
+     * Drop an event and its tasks, and tell other instances
+     * @param eventName the event
+     * @param deleteFiles true to delete its files too, when this instance owns them
+     */
+    private void removeEvent(String eventName, boolean deleteFiles) {
+        // Remove from UI
+        eventListModel.removeElement(eventName);
+        
+        // Remove from data structures; the event going away is sent as one message
+        coordinator.setRecording(false);
+        fireEventTasksRemoved(eventName);
+        coordinator.setRecording(true);
+        coordinator.eventRemoved(eventName);
+        loadedEvents.remove(eventName);
+        repository.removeEvent(eventName);
+        
+        // Delete files
+        if (deleteFiles && coordinator.isLeader()) {
             try {
-                File taskFile = new File(dataDirectory, eventName + ".txt");
-                File completedFile = new File(dataDirectory, "COMPLETED_" + eventName + ".txt");
-                
-                if (taskFile.exists()) {
-                    taskFile.delete();
-                }
-                if (completedFile.exists()) {
-                    completedFile.delete();
-                }
+                store.delete(eventName);
             } catch (Exception e) {
                 System.err.println("Error deleting files for " + eventName + ": " + e.getMessage());
             }
+        }
+    }
+    
+    /**
+     * Clear the task panels if they show an event that was removed
+     * @param eventName the removed event
+     */
+    private void clearPanelsIfShowing(String eventName) {
+        String selectedEvent = eventList.getSelectedValue();
+        if (openViewName == null && (selectedEvent == null || selectedEvent.equals(eventName))) {
+            todoPanel.removeAll();
+            completedPanel.removeAll();
+            selectedEventTitle.setText("Event: No event selected");
+            selectedEventDate.setText("Date:");
             
-            // Clear task panels if this was the selected event
-            String selectedEvent = eventList.getSelectedValue();
-            if (selectedEvent == null || selectedEvent.equals(eventName)) {
-                todoPanel.removeAll();
-                completedPanel.removeAll();
-                selectedEventTitle.setText("Event: No event selected");
-                selectedEventDate.setText("Date:");
-                
-                todoPanel.revalidate();
-                todoPanel.repaint();
-                completedPanel.revalidate();
-                completedPanel.repaint();
-            }
+            todoPanel.revalidate();
+            todoPanel.repaint();
+            completedPanel.revalidate();
+            completedPanel.repaint();
         }
     }
 
     private void loadEventsFromFiles() {
         try {
             // Use the data directory instead of current working directory
-            try (var pathStream = Files.list(dataDirectory.toPath())) {
-                pathStream.filter(path -> path.toString().endsWith(".txt"))
-                    .filter(path -> !path.getFileName().toString().startsWith("COMPLETED_"))
-                    .forEach(path -> {
-                        String fileName = path.getFileName().toString();
-                        String eventName = fileName.substring(0, fileName.length() - 4); // Remove .txt
-
-                        if (!eventListModel.contains(eventName)) {
-                            eventListModel.addElement(eventName);
-                            eventTasks.put(eventName, new ArrayList<>());
-                            eventCompletedTasks.put(eventName, new ArrayList<>());
-                            eventDates.put(eventName, ""); // Date will be loaded if available
-                        }
-                    });
+            for (String eventName : store.listEvents()) {
+                if (!eventListModel.contains(eventName)) {
+                    eventListModel.addElement(eventName);
+                    repository.addEvent(eventName, ""); // Date will be loaded if available
+                    
+                    // Read tasks up front so indexes cover every event
+                    loadTasksFromFile(eventName);
+                }
             }
         } catch (IOException e) {
             System.err.println("Error loading events from files: " + e.getMessage());
@@ -1482,19 +2029,24 @@ public class TodoListApp extends javax.swing.JFrame {
     }
 
     private void loadTasksFromFile(String eventName) {
+        // Reading tasks back from disk is not recorded as history
+        completionHistory.setRecording(false);
+        changeTracker.setRecording(false);
+        coordinator.setRecording(false);
+        
+        // Drop whatever was held in memory for this event from the indexes
+        fireEventTasksRemoved(eventName);
+        loadedEvents.add(eventName);
+        
         // Load pending tasks
         try {
-            File taskFile = new File(dataDirectory, eventName + ".txt");
-            if (taskFile.exists()) {
-                List<String> taskLines = Files.readAllLines(taskFile.toPath());
-                List<Task> tasks = new ArrayList<>();
-                for (String line : taskLines) {
-                    if (!line.trim().isEmpty()) {
-                        Task task = parseTaskFromString(line);
-                        tasks.add(task);
-                    }
+            List<Task> loaded = store.load(eventName, false);
+            if (loaded != null) {
+                TaskList tasks = repository.getTasks(eventName, false);
+                tasks.clear();
+                for (Task task : loaded) {
+                    tasks.add(task);
                 }
-                eventTasks.put(eventName, tasks);
             }
         } catch (IOException e) {
             System.err.println("Error loading tasks for " + eventName + ": " + e.getMessage());
@@ -1502,33 +2054,47 @@ public class TodoListApp extends javax.swing.JFrame {
 
         // Load completed tasks
         try {
-            File completedFile = new File(dataDirectory, "COMPLETED_" + eventName + ".txt");
-            if (completedFile.exists()) {
-                List<String> taskLines = Files.readAllLines(completedFile.toPath());
-                List<Task> completedTasks = new ArrayList<>();
-                for (String line : taskLines) {
-                    if (!line.trim().isEmpty()) {
-                        Task task = parseTaskFromString(line);
-                        task.setCompleted(true);
-                        completedTasks.add(task);
-                    }
+            List<Task> loaded = store.load(eventName, true);
+            if (loaded != null) {
+                TaskList completedTasks = repository.getTasks(eventName, true);
+                completedTasks.clear();
+                for (Task task : loaded) {
+                    completedTasks.add(task);
                 }
-                eventCompletedTasks.put(eventName, completedTasks);
             }
         } catch (IOException e) {
             System.err.println("Error loading completed tasks for " + eventName + ": " + e.getMessage());
         }
+        
+        // Index the tasks that are now held in memory
+        for (Task task : repository.getTasks(eventName, false)) {
+            fireTaskAdded(eventName, task);
+        }
+        for (Task task : repository.getTasks(eventName, true)) {
+            fireTaskAdded(eventName, task);
+        }
+        completionHistory.setRecording(true);
+        changeTracker.setRecording(true);
+        coordinator.setRecording(true);
     }
     
+    /**
+     * Parse one line of an event file or undo history
+     * @param taskString the stored line
+     * @return the parsed task
+     */
     private Task parseTaskFromString(String taskString) {
-        // Simple parsing - in a real application, you might use JSON or XML
-        // For now, just create a task with the text
-        return new Task(taskString);
+        return TaskCodec.parse(taskString, tagIndex::internAll);
     }
     
+    /**
+     * Serialize a task to a single line holding every field and its ID, as
+     * kept in undo history
+     * @param task the task to store
+     * @return tab separated fields with tabs, newlines and backslashes escaped
+     */
     private String taskToString(Task task) {
-        // Simple serialization - in a real application, you might use JSON
-        return task.getText();
+        return TaskCodec.format(task, false);
     }
 
     private void saveCurrentEvent() {
@@ -1539,26 +2105,9 @@ public class TodoListApp extends javax.swing.JFrame {
         }
 
         try {
-            // Save pending tasks
-            File taskFile = new File(dataDirectory, selectedEvent + ".txt");
-            try (PrintWriter writer = new PrintWriter(new FileWriter(taskFile))) {
-                List<Task> tasks = eventTasks.get(selectedEvent);
-                if (tasks != null) {
-                    for (Task task : tasks) {
-                        writer.println(taskToString(task));
-                    }
-                }
-            }
-
-            // Save completed tasks
-            File completedFile = new File(dataDirectory, "COMPLETED_" + selectedEvent + ".txt");
-            try (PrintWriter writer = new PrintWriter(new FileWriter(completedFile))) {
-                List<Task> completedTasks = eventCompletedTasks.get(selectedEvent);
-                if (completedTasks != null) {
-                    for (Task task : completedTasks) {
-                        writer.println(taskToString(task));
-                    }
-                }
+            // A follower's changes are already with the leader, which writes the files
+            if (coordinator.isLeader()) {
+                store.save(selectedEvent, repository.getTasks(selectedEvent, false), repository.getTasks(selectedEvent, true));
             }
 
             JOptionPane.showMessageDialog(this, "Saved successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -1573,39 +2122,58 @@ public class TodoListApp extends javax.swing.JFrame {
      * @param eventName the event to save
      */
     private void autoSaveCurrentEvent(String eventName) {
+        if (!coordinator.isLeader()) return;
         try {
-            // Save pending tasks
-            File taskFile = new File(dataDirectory, eventName + ".txt");
-            try (PrintWriter writer = new PrintWriter(new FileWriter(taskFile))) {
-                List<Task> tasks = eventTasks.get(eventName);
-                if (tasks != null) {
-                    for (Task task : tasks) {
-                        writer.println(taskToString(task));
-                    }
-                }
-            }
-
-            // Save completed tasks
-            File completedFile = new File(dataDirectory, "COMPLETED_" + eventName + ".txt");
-            try (PrintWriter writer = new PrintWriter(new FileWriter(completedFile))) {
-                List<Task> completedTasks = eventCompletedTasks.get(eventName);
-                if (completedTasks != null) {
-                    for (Task task : completedTasks) {
-                        writer.println(taskToString(task));
-                    }
-                }
-            }
+            store.save(eventName, repository.getTasks(eventName, false), repository.getTasks(eventName, true));
 
         } catch (IOException e) {
             System.err.println("Auto-save error for " + eventName + ": " + e.getMessage());
         }
     }
     
+    private void fireTaskAdded(String eventName, Task task) {
+        for (TaskChangeListener listener : taskChangeListeners) {
+            listener.taskAdded(eventName, task);
+        }
+    }
+    
+    private void fireTaskRemoved(String eventName, Task task) {
+        trackedTimeLabels.remove(task);
+        for (TaskChangeListener listener : taskChangeListeners) {
+            listener.taskRemoved(eventName, task);
+        }
+    }
+    
+    private void fireTaskUpdated(String eventName, Task before, Task task) {
+        for (TaskChangeListener listener : taskChangeListeners) {
+            listener.taskUpdated(eventName, before, task);
+        }
+    }
+    
+    /**
+     * Notify listeners that every task currently held for an event is going away
+     * @param eventName the event being deleted or reloaded
+     */
+    private void fireEventTasksRemoved(String eventName) {
+        List<Task> tasks = repository.getTasks(eventName, false);
+        if (tasks != null) {
+            for (Task task : tasks) {
+                fireTaskRemoved(eventName, task);
+            }
+        }
+        List<Task> completed = repository.getTasks(eventName, true);
+        if (completed != null) {
+            for (Task task : completed) {
+                fireTaskRemoved(eventName, task);
+            }
+        }
+    }
+    
     // ============= NEW ENHANCED METHODS =============
     
     private boolean showTaskDetailsDialog(Task task) {
         JDialog dialog = new JDialog(this, "Task Details", true);
-        dialog.setSize(400, 300);
+        dialog.setSize(400, 340);
         dialog.setLocationRelativeTo(this);
         
         JPanel panel = new JPanel(new GridBagLayout());
@@ -1632,10 +2200,12 @@ public class TodoListApp extends javax.swing.JFrame {
             dueDateButton.setText(sdf.format(task.getDueDate()));
         }
         
+        // The due date is only applied to the task when OK is pressed
+        final java.util.Date[] pendingDueDate = {task.getDueDate()};
         dueDateButton.addActionListener(e -> {
-            java.util.Date selectedDueDate = showCalendarDialog(task.getDueDate());
+            java.util.Date selectedDueDate = showCalendarDialog(pendingDueDate[0]);
             if (selectedDueDate != null) {
-                task.setDueDate(selectedDueDate);
+                pendingDueDate[0] = selectedDueDate;
                 SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
                 dueDateButton.setText(sdf.format(selectedDueDate));
             }
@@ -1658,8 +2228,19 @@ public class TodoListApp extends javax.swing.JFrame {
         JTextField tagsField = new JTextField(String.join(", ", task.getTags()), 15);
         panel.add(tagsField, gbc);
         
+        // Recurrence: a common pattern or RRULE text such as FREQ=WEEKLY;BYDAY=MO,TH
+        gbc.gridx = 0; gbc.gridy = 4;
+        panel.add(new JLabel("Repeat:"), gbc);
+        
+        gbc.gridx = 1;
+        JComboBox<String> repeatCombo = new JComboBox<>(new String[] {
+            "", "Daily", "Weekdays", "Weekly", "Biweekly", "Monthly", "Yearly"});
+        repeatCombo.setEditable(true);
+        repeatCombo.setSelectedItem(task.isRecurring() ? task.getRecurrencePattern() : "");
+        panel.add(repeatCombo, gbc);
+        
         // Buttons
-        gbc.gridx = 0; gbc.gridy = 4; gbc.gridwidth = 2;
+        gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2;
         JPanel buttonPanel = new JPanel();
         JButton okButton = new JButton("OK");
         JButton cancelButton = new JButton("Cancel");
@@ -1667,18 +2248,25 @@ public class TodoListApp extends javax.swing.JFrame {
         final boolean[] result = {false};
         
         okButton.addActionListener(e -> {
+            String repeat = String.valueOf(repeatCombo.getEditor().getItem()).trim();
+            if (!repeat.isEmpty() && RecurrenceRule.parse(repeat) == null) {
+                JOptionPane.showMessageDialog(dialog, "Unknown repeat pattern: " + repeat
+                    + "\nUse Daily, Weekly, Every 3 days, or RRULE text like FREQ=MONTHLY;BYMONTHDAY=1",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            task.setRecurring(!repeat.isEmpty());
+            task.setRecurrencePattern(repeat);
             task.setPriority((TaskPriority) priorityCombo.getSelectedItem());
+            task.setDueDate(pendingDueDate[0]);
             task.setCategory(categoryField.getText().trim());
             
-            // Parse tags
-            String tagsText = tagsField.getText().trim();
-            if (!tagsText.isEmpty()) {
-                List<String> tags = new ArrayList<>();
-                for (String tag : tagsText.split(",")) {
-                    tags.add(tag.trim());
-                }
-                task.setTags(tags);
+            // Parse tags, sharing one string instance per distinct tag
+            List<String> tags = new ArrayList<>();
+            for (String tag : tagsField.getText().split(",")) {
+                tags.add(tag);
             }
+            task.setTags(tagIndex.internAll(tags));
             
             result[0] = true;
             dialog.dispose();
@@ -1810,6 +2398,7 @@ public class TodoListApp extends javax.swing.JFrame {
             
             int startDay = cal.get(java.util.Calendar.DAY_OF_WEEK) - 1;
             int daysInMonth = cal.getActualMaximum(java.util.Calendar.DAY_OF_MONTH);
+            int[] dueCounts = dueCounts(year, month);
             
             // Add empty cells for days before month starts
             for (int i = 0; i < startDay; i++) {
@@ -1821,6 +2410,12 @@ public class TodoListApp extends javax.swing.JFrame {
                 JButton dayButton = new JButton(String.valueOf(day));
                 dayButton.setPreferredSize(new Dimension(40, 30));
                 
+                // Days that already have tasks due are shown in bold
+                if (dueCounts[day] > 0) {
+                    dayButton.setFont(dayButton.getFont().deriveFont(Font.BOLD));
+                    dayButton.setToolTipText(dueCounts[day] + " task(s) due");
+                }
+                
                 // Highlight selected date
                 if (selectedDueDate[0] != null) {
                     java.util.Calendar selectedCal = java.util.Calendar.getInstance();
@@ -1889,21 +2484,24 @@ public class TodoListApp extends javax.swing.JFrame {
     }
     
     private void editTask(String eventName, Task task) {
+        Task before = new Task(task);
         if (showTaskDetailsDialog(task)) {
-            loadTasksForEvent(eventName);
-            addToUndoStack("EDIT_TASK", new Object[]{eventName, task});
+            fireTaskUpdated(eventName, before, task);
+            autoSaveCurrentEvent(eventName);
+            refreshDisplay(eventName);
+            int index = repository.getTasks(eventName, task.isCompleted()).indexOf(task);
+            CommandLog.UpdateTask command = CommandLog.UpdateTask.between(eventName, taskToString(before),
+                task.isCompleted(), index, taskToString(task), task.isCompleted(), index);
+            commandLog.record(command != null ? command.withStates(before.getState(), task.getState()) : null);
         }
     }
     
     private void updateProgressBar() {
         String selectedEvent = eventList.getSelectedValue();
         if (selectedEvent != null && overallProgressBar != null) {
-            List<Task> allTasks = eventTasks.get(selectedEvent);
-            List<Task> completedTasks = eventCompletedTasks.get(selectedEvent);
-            
-            int total = (allTasks != null ? allTasks.size() : 0) + 
-                       (completedTasks != null ? completedTasks.size() : 0);
-            int completed = completedTasks != null ? completedTasks.size() : 0;
+            TaskStatistics.Counts counts = taskStatistics.getEvent(selectedEvent);
+            int total = counts.getTotal();
+            int completed = counts.getCompleted();
             
             if (total > 0) {
                 int progress = (int) ((completed * 100.0) / total);
@@ -1916,80 +2514,68 @@ public class TodoListApp extends javax.swing.JFrame {
         }
     }
     
-    private void addToUndoStack(String actionType, Object data) {
-        if (undoStack != null) {
-            undoStack.push(new UndoRedoAction(actionType, data));
-            // Limit undo stack size
-            if (undoStack.size() > 50) {
-                undoStack.remove(0);
-            }
-            redoStack.clear(); // Clear redo stack when new action is performed
-        }
-    }
-    
     // ============= ADDITIONAL ENHANCED METHODS =============
     
     private void performUndo() {
-        if (!undoStack.isEmpty()) {
-            UndoRedoAction action = undoStack.pop();
-            redoStack.push(action);
-            
-            // Perform undo based on action type
-            switch (action.type) {
-                case "ADD_TASK":
-                    Object[] addData = (Object[]) action.data;
-                    String eventName = (String) addData[0];
-                    Task task = (Task) addData[1];
-                    eventTasks.get(eventName).remove(task);
-                    loadTasksForEvent(eventName);
-                    break;
-                case "DELETE_TASK":
-                    Object[] deleteData = (Object[]) action.data;
-                    String delEventName = (String) deleteData[0];
-                    Task delTask = (Task) deleteData[1];
-                    boolean wasCompleted = (Boolean) deleteData[2];
-                    if (wasCompleted) {
-                        eventCompletedTasks.get(delEventName).add(delTask);
-                    } else {
-                        eventTasks.get(delEventName).add(delTask);
-                    }
-                    loadTasksForEvent(delEventName);
-                    break;
-            }
-            
+        if (!commandLog.canUndo()) return;
+        Collection<String> eventNames = commandLog.undo(commandTarget);
+        if (eventNames != null) {
+            saveAndRefresh(eventNames);
             statsLabel.setText("Undo performed");
+        } else {
+            statsLabel.setText("Undo skipped: the task has changed since");
         }
     }
     
     private void performRedo() {
-        if (!redoStack.isEmpty()) {
-            UndoRedoAction action = redoStack.pop();
-            undoStack.push(action);
-            
-            // Perform redo (opposite of undo)
-            switch (action.type) {
-                case "ADD_TASK":
-                    Object[] addData = (Object[]) action.data;
-                    String eventName = (String) addData[0];
-                    Task task = (Task) addData[1];
-                    eventTasks.get(eventName).add(task);
-                    loadTasksForEvent(eventName);
-                    break;
-                case "DELETE_TASK":
-                    Object[] deleteData = (Object[]) action.data;
-                    String delEventName = (String) deleteData[0];
-                    Task delTask = (Task) deleteData[1];
-                    boolean wasCompleted = (Boolean) deleteData[2];
-                    if (wasCompleted) {
-                        eventCompletedTasks.get(delEventName).remove(delTask);
-                    } else {
-                        eventTasks.get(delEventName).remove(delTask);
-                    }
-                    loadTasksForEvent(delEventName);
-                    break;
-            }
-            
+        if (!commandLog.canRedo()) return;
+        Collection<String> eventNames = commandLog.redo(commandTarget);
+        if (eventNames != null) {
+            saveAndRefresh(eventNames);
             statsLabel.setText("Redo performed");
+        } else {
+            statsLabel.setText("Redo skipped: the task has changed since");
+        }
+    }
+    
+    /**
+     * Gives undo/redo commands access to the task lists; every change goes
+     * through the listeners like any other edit
+     */
+    private class CommandTarget implements CommandLog.Target {
+        @Override
+        public List<Task> getTasks(String eventName, boolean completed) {
+            return completed ? repository.getTasks(eventName, true) : repository.getTasks(eventName, false);
+        }
+        
+        @Override
+        public Task parseTask(String line) {
+            return parseTaskFromString(line);
+        }
+        
+        @Override
+        public String formatTask(Task task) {
+            return taskToString(task);
+        }
+        
+        @Override
+        public Task findTask(long id) {
+            return taskRegistry.find(id);
+        }
+        
+        @Override
+        public void taskAdded(String eventName, Task task) {
+            fireTaskAdded(eventName, task);
+        }
+        
+        @Override
+        public void taskRemoved(String eventName, Task task) {
+            fireTaskRemoved(eventName, task);
+        }
+        
+        @Override
+        public void taskUpdated(String eventName, Task before, Task task) {
+            fireTaskUpdated(eventName, before, task);
         }
     }
     
@@ -2007,7 +2593,9 @@ public class TodoListApp extends javax.swing.JFrame {
         
         // Refresh the display
         String selectedEvent = eventList.getSelectedValue();
-        if (selectedEvent != null) {
+        if (openViewName != null) {
+            openSavedView(openViewName);
+        } else if (selectedEvent != null) {
             loadTasksForEvent(selectedEvent);
         }
         
@@ -2040,6 +2628,26 @@ public class TodoListApp extends javax.swing.JFrame {
         todoScrollPane.getViewport().setBackground(bgColor);
         completedScrollPane.getViewport().setBackground(bgColor);
         
+        // Saved views list
+        if (savedViewList != null) {
+            savedViewList.setBackground(fieldBgColor);
+            savedViewList.setForeground(fgColor);
+            savedViewList.setSelectionBackground(selectedColor);
+            savedViewList.setSelectionForeground(isDarkMode ? Color.WHITE : Color.BLACK);
+            savedViewsPanel.setBackground(bgColor);
+            savedViewsPanel.setBorder(javax.swing.BorderFactory.createTitledBorder(
+                javax.swing.BorderFactory.createLineBorder(borderColor), 
+                "Saved Views", 
+                javax.swing.border.TitledBorder.DEFAULT_JUSTIFICATION, 
+                javax.swing.border.TitledBorder.DEFAULT_POSITION, 
+                null, 
+                fgColor));
+        }
+        if (saveViewButton != null) {
+            saveViewButton.setBackground(buttonBgColor);
+            saveViewButton.setForeground(fgColor);
+        }
+        
         // Event list
         eventList.setBackground(fieldBgColor);
         eventList.setForeground(fgColor);
@@ -2068,6 +2676,13 @@ public class TodoListApp extends javax.swing.JFrame {
             filterComboBox.setBackground(fieldBgColor);
             filterComboBox.setForeground(fgColor);
         }
+        if (sortComboBox != null) {
+            sortComboBox.setBackground(fieldBgColor);
+            sortComboBox.setForeground(fgColor);
+            thenSortComboBox.setBackground(fieldBgColor);
+            thenSortComboBox.setForeground(fgColor);
+            sortLabel.setForeground(fgColor);
+        }
         
         // Progress bar
         if (overallProgressBar != null) {
@@ -2114,6 +2729,10 @@ public class TodoListApp extends javax.swing.JFrame {
             importButton.setBackground(buttonBgColor);
             importButton.setForeground(fgColor);
         }
+        if (tagsButton != null) {
+            tagsButton.setBackground(buttonBgColor);
+            tagsButton.setForeground(fgColor);
+        }
         if (darkModeToggle != null) {
             darkModeToggle.setBackground(buttonBgColor);
             darkModeToggle.setForeground(fgColor);
@@ -2197,44 +2816,24 @@ public class TodoListApp extends javax.swing.JFrame {
         StringBuilder stats = new StringBuilder();
         stats.append("=== TODO LIST STATISTICS ===\n\n");
         
-        int totalEvents = eventListModel.getSize();
-        int totalTasks = 0;
-        int totalCompleted = 0;
-        int highPriorityTasks = 0;
-        int overdueTasks = 0;
+        // Running aggregates, no task list is scanned here
+        long now = System.currentTimeMillis();
+        String selectedEvent = eventList.getSelectedValue();
+        taskStatistics.appendReport(stats, eventListModel.getSize(), selectedEvent, now);
         
-        for (int i = 0; i < eventListModel.getSize(); i++) {
-            String eventName = eventListModel.getElementAt(i);
-            List<Task> tasks = eventTasks.get(eventName);
-            List<Task> completed = eventCompletedTasks.get(eventName);
-            
-            if (tasks != null) {
-                totalTasks += tasks.size();
-                for (Task task : tasks) {
-                    if (task.getPriority() == TaskPriority.HIGH || task.getPriority() == TaskPriority.URGENT) {
-                        highPriorityTasks++;
-                    }
-                    if (task.isOverdue()) {
-                        overdueTasks++;
-                    }
-                }
-            }
-            
-            if (completed != null) {
-                totalCompleted += completed.size();
-            }
+        // Tracked time, including timers that are still running
+        stats.append("\n--- Time Spent ---\n");
+        if (selectedEvent != null) {
+            stats.append(String.format("%-14s %10s%n", selectedEvent, TimeTracker.format(timeTracker.getEventTime(selectedEvent))));
+        }
+        for (Map.Entry<String, Long> category : timeTracker.getCategoryTimes().entrySet()) {
+            stats.append(String.format("%-14s %10s%n", category.getKey(), TimeTracker.format(category.getValue())));
         }
         
-        stats.append("Total Events: ").append(totalEvents).append("\n");
-        stats.append("Total Tasks: ").append(totalTasks + totalCompleted).append("\n");
-        stats.append("Pending Tasks: ").append(totalTasks).append("\n");
-        stats.append("Completed Tasks: ").append(totalCompleted).append("\n");
-        stats.append("High Priority Tasks: ").append(highPriorityTasks).append("\n");
-        stats.append("Overdue Tasks: ").append(overdueTasks).append("\n\n");
-        
-        if (totalTasks + totalCompleted > 0) {
-            double completionRate = (totalCompleted * 100.0) / (totalTasks + totalCompleted);
-            stats.append("Completion Rate: ").append(String.format("%.1f%%", completionRate)).append("\n");
+        // Completion trend from the history rollups
+        appendCompletionTrend(stats, null, now);
+        if (selectedEvent != null) {
+            appendCompletionTrend(stats, selectedEvent, now);
         }
         
         JTextArea textArea = new JTextArea(stats.toString());
@@ -2242,61 +2841,274 @@ public class TodoListApp extends javax.swing.JFrame {
         textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
         
         JScrollPane scrollPane = new JScrollPane(textArea);
-        scrollPane.setPreferredSize(new Dimension(300, 250));
+        scrollPane.setPreferredSize(new Dimension(360, 400));
         
         JOptionPane.showMessageDialog(this, scrollPane, "Statistics", JOptionPane.INFORMATION_MESSAGE);
     }
     
+    /**
+     * Append completions per day for the last week and per week for the last
+     * month, read from the pre-aggregated history rollups
+     */
+    private void appendCompletionTrend(StringBuilder stats, String eventName, long now) {
+        stats.append("\n--- Completed per Day").append(eventName != null ? " (" + eventName + ")" : "").append(" ---\n");
+        long dayMillis = CompletionHistory.Granularity.DAY.getMillis();
+        long firstDay = now - 6 * dayMillis;
+        int[] days = completionHistory.series(eventName, CompletionHistory.Transition.COMPLETED,
+            CompletionHistory.Granularity.DAY, firstDay, 7);
+        SimpleDateFormat dayFormat = new SimpleDateFormat("EEE dd/MM");
+        for (int i = 0; i < days.length; i++) {
+            String day = dayFormat.format(new java.util.Date(firstDay + i * dayMillis));
+            stats.append(String.format("%-14s %6d %s%n", day, days[i], "#".repeat(Math.min(days[i], 30))));
+        }
+        
+        long weekMillis = CompletionHistory.Granularity.WEEK.getMillis();
+        long firstWeek = now - 3 * weekMillis;
+        int[] weeks = completionHistory.series(eventName, CompletionHistory.Transition.COMPLETED,
+            CompletionHistory.Granularity.WEEK, firstWeek, 4);
+        SimpleDateFormat weekFormat = new SimpleDateFormat("dd/MM");
+        for (int i = 0; i < weeks.length; i++) {
+            long weekStart = CompletionHistory.bucketStart(firstWeek + i * weekMillis, CompletionHistory.Granularity.WEEK);
+            String week = "Week " + weekFormat.format(new java.util.Date(weekStart));
+            stats.append(String.format("%-14s %6d %s%n", week, weeks[i], "#".repeat(Math.min(weeks[i], 30))));
+        }
+    }
+    
     private void exportData() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Export Todo Data");
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv"));
+        javax.swing.filechooser.FileNameExtensionFilter csvFilter = new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv");
+        javax.swing.filechooser.FileNameExtensionFilter jsonLinesFilter = new javax.swing.filechooser.FileNameExtensionFilter("JSON Lines (jsonl, ndjson)", "jsonl", "ndjson");
+        javax.swing.filechooser.FileNameExtensionFilter icsTodoFilter = new javax.swing.filechooser.FileNameExtensionFilter("iCalendar to-dos (ics)", "ics");
+        javax.swing.filechooser.FileNameExtensionFilter icsEventFilter = new javax.swing.filechooser.FileNameExtensionFilter("iCalendar events (ics)", "ics");
+        fileChooser.addChoosableFileFilter(csvFilter);
+        fileChooser.addChoosableFileFilter(jsonLinesFilter);
+        fileChooser.addChoosableFileFilter(icsTodoFilter);
+        fileChooser.addChoosableFileFilter(icsEventFilter);
+        fileChooser.setFileFilter(csvFilter);
+        
+        String selectedEvent = eventList.getSelectedValue();
+        JCheckBox selectedOnly = new JCheckBox("<html>Only the selected<br>event</html>");
+        selectedOnly.setEnabled(selectedEvent != null);
+        JCheckBox changesOnly = new JCheckBox("<html>Only changes since<br>the last delta export</html>");
+        changesOnly.setToolTipText("Write tasks added, edited or deleted since the last delta export, as JSON Lines");
+        changesOnly.addActionListener(e -> {
+            if (changesOnly.isSelected()) {
+                fileChooser.setFileFilter(jsonLinesFilter);
+                selectedOnly.setSelected(false);
+            }
+            selectedOnly.setEnabled(selectedEvent != null && !changesOnly.isSelected());
+        });
+        JPanel options = new JPanel(new GridLayout(0, 1));
+        options.add(selectedOnly);
+        options.add(changesOnly);
+        fileChooser.setAccessory(options);
         
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
-            if (!file.getName().toLowerCase().endsWith(".csv")) {
-                file = new File(file.getAbsolutePath() + ".csv");
+            // An explicit extension wins over the selected filter; deltas are always JSON Lines
+            javax.swing.filechooser.FileFilter filter = changesOnly.isSelected() ? jsonLinesFilter : fileChooser.getFileFilter();
+            String name = file.getName().toLowerCase();
+            if (!changesOnly.isSelected()) {
+                if (name.endsWith(".csv")) {
+                    filter = csvFilter;
+                } else if (isJsonLines(file)) {
+                    filter = jsonLinesFilter;
+                } else if (name.endsWith(".ics") && filter != icsEventFilter) {
+                    filter = icsTodoFilter;
+                }
+            }
+            javax.swing.filechooser.FileNameExtensionFilter format = filter instanceof javax.swing.filechooser.FileNameExtensionFilter
+                ? (javax.swing.filechooser.FileNameExtensionFilter) filter : csvFilter;
+            if (!format.accept(file)) {
+                file = new File(file.getAbsolutePath() + "." + format.getExtensions()[0]);
             }
             
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("Event,Task,Priority,Status,Due Date,Category");
-                
-                for (int i = 0; i < eventListModel.getSize(); i++) {
-                    String eventName = eventListModel.getElementAt(i);
-                    
-                    // Export pending tasks
-                    List<Task> tasks = eventTasks.get(eventName);
-                    if (tasks != null) {
-                        for (Task task : tasks) {
-                            writer.printf("\"%s\",\"%s\",\"%s\",\"Pending\",\"%s\",\"%s\"\n",
-                                eventName,
-                                task.getText().replace("\"", "\"\""),
-                                task.getPriority().getName(),
-                                task.getDueDate() != null ? new SimpleDateFormat("yyyy-MM-dd").format(task.getDueDate()) : "",
-                                task.getCategory());
-                        }
-                    }
-                    
-                    // Export completed tasks
-                    List<Task> completed = eventCompletedTasks.get(eventName);
-                    if (completed != null) {
-                        for (Task task : completed) {
-                            writer.printf("\"%s\",\"%s\",\"%s\",\"Completed\",\"%s\",\"%s\"\n",
-                                eventName,
-                                task.getText().replace("\"", "\"\""),
-                                task.getPriority().getName(),
-                                task.getDueDate() != null ? new SimpleDateFormat("yyyy-MM-dd").format(task.getDueDate()) : "",
-                                task.getCategory());
-                        }
-                    }
+            if (changesOnly.isSelected() && changeTracker.hasWatermark()) {
+                exportChanges(file);
+                return;
+            }
+            
+            // Snapshot on the EDT; encoding and writing run in the background.
+            // A first delta export is a full export that sets the watermark.
+            List<EventSnapshot> snapshots = selectedOnly.isSelected()
+                ? java.util.Collections.singletonList(repository.current().getEvent(selectedEvent))
+                : captureEvents();
+            long watermark = changesOnly.isSelected() ? changeTracker.startTracking() : -1;
+            ProgressMonitor monitor = new ProgressMonitor(this, "Exporting to " + file.getName(), "", 0, 100);
+            monitor.setMillisToDecideToPopup(200);
+            BlockExporter exporter;
+            if (format == jsonLinesFilter) {
+                exporter = new JsonLinesCodec();
+            } else if (format == csvFilter) {
+                exporter = new CsvExporter();
+            } else {
+                exporter = new IcsExporter(format == icsEventFilter ? IcsExporter.Component.VEVENT : IcsExporter.Component.VTODO,
+                    selectedOnly.isSelected() ? selectedEvent : "To Do List");
+            }
+            ExportWorker worker = new ExportWorker(exporter, snapshots, file, monitor, watermark);
+            worker.addPropertyChangeListener(evt -> {
+                if ("progress".equals(evt.getPropertyName())) {
+                    monitor.setProgress((Integer) evt.getNewValue());
+                }
+            });
+            exportButton.setEnabled(false);
+            statsLabel.setText("Exporting to " + file.getName() + "...");
+            worker.execute();
+        }
+    }
+    
+    /**
+     * Write the tasks changed and deleted since the last delta export. The
+     * changes are captured on the EDT, which costs time in proportion to their
+     * number only, and written in the background.
+     * @param file the JSON Lines file to write
+     */
+    private void exportChanges(File file) {
+        ChangeTracker.Delta delta = changeTracker.capture();
+        exportButton.setEnabled(false);
+        statsLabel.setText("Exporting " + delta.getChanges().size() + " changes to " + file.getName() + "...");
+        long start = System.nanoTime();
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                return JsonLinesCodec.writeChanges(delta.getChanges(), file.toPath());
+            }
+            
+            @Override
+            protected void done() {
+                exportButton.setEnabled(true);
+                try {
+                    long written = get();
+                    commitWatermark(delta.getToSeq());
+                    JOptionPane.showMessageDialog(TodoListApp.this, "Exported " + written + " changes (sequence "
+                        + delta.getFromSeq() + " to " + delta.getToSeq() + ") to " + file.getName()
+                        + "\n" + formatThroughput(file.length(), System.nanoTime() - start));
+                    statsLabel.setText("Changes exported");
+                } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(TodoListApp.this, "Error exporting changes: " + cause.getMessage(),
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                    statsLabel.setText("Export failed");
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Move the delta export watermark after a successful export
+     * @param toSeq the last sequence number the export covered
+     */
+    private void commitWatermark(long toSeq) {
+        try {
+            changeTracker.commit(toSeq);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "The export was written, but its watermark could not be saved: "
+                + e.getMessage() + "\nThe next delta export will repeat these changes.",
+                "Export Warning", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
+    /**
+     * @return immutable snapshots of every event, in event list order
+     */
+    private List<EventSnapshot> captureEvents() {
+        // Only events changed since the last published version are copied
+        WorkspaceSnapshot workspace = repository.current();
+        List<EventSnapshot> snapshots = new ArrayList<>(eventListModel.getSize());
+        for (int i = 0; i < eventListModel.getSize(); i++) {
+            EventSnapshot snapshot = workspace.getEvent(eventListModel.getElementAt(i));
+            if (snapshot != null) snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+    
+    /**
+     * @return true if the file name marks a JSON Lines file
+     */
+    private static boolean isJsonLines(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+    
+    /**
+     * Format throughput for the import and export summaries
+     * @param bytes bytes read or written
+     * @param nanos elapsed time from System.nanoTime
+     * @return e.g. "52.3 MB in 1.2 s (43.6 MB/s)"
+     */
+    private static String formatThroughput(long bytes, long nanos) {
+        double megabytes = bytes / 1_000_000.0;
+        double seconds = Math.max(1, nanos) / 1_000_000_000.0;
+        return String.format("%.1f MB in %.1f s (%.1f MB/s)", megabytes, seconds, megabytes / seconds);
+    }
+    
+    /**
+     * Runs a {@link BlockExporter} off the EDT. The progress monitor's cancel
+     * button stops the export and removes the partial file. A full export that
+     * starts delta exports moves the watermark once the file is complete.
+     */
+    private class ExportWorker extends SwingWorker<Long, Void> {
+        private final BlockExporter exporter;
+        private final List<EventSnapshot> snapshots;
+        private final File file;
+        private final ProgressMonitor monitor;
+        private final long watermark;
+        private long elapsedNanos;
+        
+        /**
+         * @param watermark sequence number the snapshots were captured at, or -1 for a plain export
+         */
+        ExportWorker(BlockExporter exporter, List<EventSnapshot> snapshots, File file, ProgressMonitor monitor,
+                     long watermark) {
+            this.exporter = exporter;
+            this.snapshots = snapshots;
+            this.file = file;
+            this.monitor = monitor;
+            this.watermark = watermark;
+        }
+        
+        @Override
+        protected Long doInBackground() throws IOException {
+            long start = System.nanoTime();
+            long exported = exporter.export(snapshots, file.toPath(), new BlockExporter.Progress() {
+                @Override
+                public void update(long tasksWritten, long totalTasks) {
+                    setProgress((int) (tasksWritten * 100 / Math.max(1, totalTasks)));
                 }
                 
-                JOptionPane.showMessageDialog(this, "Data exported successfully to " + file.getName());
+                @Override
+                public boolean isCancelled() {
+                    return monitor.isCanceled() || ExportWorker.this.isCancelled();
+                }
+            });
+            elapsedNanos = System.nanoTime() - start;
+            return exported;
+        }
+        
+        @Override
+        protected void done() {
+            monitor.close();
+            exportButton.setEnabled(true);
+            try {
+                long exported = get();
+                if (watermark >= 0) {
+                    commitWatermark(watermark);
+                }
+                JOptionPane.showMessageDialog(TodoListApp.this, "Exported " + exported + " tasks to " + file.getName()
+                    + "\n" + formatThroughput(file.length(), elapsedNanos));
                 statsLabel.setText("Data exported");
-                
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Error exporting data: " + e.getMessage(), 
+            } catch (java.util.concurrent.CancellationException e) {
+                statsLabel.setText("Export cancelled");
+            } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof java.util.concurrent.CancellationException) {
+                    statsLabel.setText("Export cancelled");
+                    return;
+                }
+                JOptionPane.showMessageDialog(TodoListApp.this, "Error exporting data: " + cause.getMessage(), 
                     "Export Error", JOptionPane.ERROR_MESSAGE);
+                statsLabel.setText("Export failed");
             }
         }
     }
@@ -2304,66 +3116,345 @@ public class TodoListApp extends javax.swing.JFrame {
     private void importData() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Import Todo Data");
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv"));
+        javax.swing.filechooser.FileNameExtensionFilter csvFilter = new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv");
+        fileChooser.addChoosableFileFilter(csvFilter);
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("JSON Lines (jsonl, ndjson)", "jsonl", "ndjson"));
+        fileChooser.setFileFilter(csvFilter);
+        JComboBox<DuplicatePolicy> duplicateCombo = new JComboBox<>(DuplicatePolicy.values());
+        duplicateCombo.setToolTipText("Tasks with the same event, text, due date and category as an existing task");
+        JPanel options = new JPanel(new BorderLayout());
+        options.add(new JLabel("Duplicates:"), BorderLayout.NORTH);
+        options.add(duplicateCombo, BorderLayout.CENTER);
+        fileChooser.setAccessory(options);
         
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
+            DuplicatePolicy policy = (DuplicatePolicy) duplicateCombo.getSelectedItem();
             
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line = reader.readLine(); // Skip header
-                int importedCount = 0;
-                
-                while ((line = reader.readLine()) != null) {
-                    String[] parts = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-                    if (parts.length >= 4) {
-                        String eventName = parts[0].replace("\"", "");
-                        String taskText = parts[1].replace("\"", "").replace("\"\"", "\"");
-                        String priority = parts[2].replace("\"", "");
-                        String status = parts[3].replace("\"", "");
-                        
-                        // Create event if it doesn't exist
-                        if (!eventListModel.contains(eventName)) {
-                            eventListModel.addElement(eventName);
-                            eventTasks.put(eventName, new ArrayList<>());
-                            eventCompletedTasks.put(eventName, new ArrayList<>());
-                            eventDates.put(eventName, new SimpleDateFormat("dd/MM/yyyy").format(new java.util.Date()));
-                        }
-                        
-                        // Create task
-                        Task task = new Task(taskText);
-                        try {
-                            task.setPriority(TaskPriority.valueOf(priority.toUpperCase()));
-                        } catch (Exception e) {
-                            task.setPriority(TaskPriority.MEDIUM);
+            // Existing tasks are fingerprinted in the background from a snapshot
+            List<EventSnapshot> existing = policy != DuplicatePolicy.KEEP ? captureEvents() : java.util.Collections.emptyList();
+            ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + file.getName(), "", 0, 100);
+            monitor.setMillisToDecideToPopup(200);
+            ImportWorker worker = new ImportWorker(file, monitor, policy, existing);
+            worker.addPropertyChangeListener(evt -> {
+                if ("progress".equals(evt.getPropertyName())) {
+                    monitor.setProgress((Integer) evt.getNewValue());
+                    monitor.setNote(worker.imported + " tasks imported, " + worker.skipped + " duplicates skipped");
+                    if (monitor.isCanceled()) {
+                        worker.cancel(false);
+                    }
+                }
+            });
+            importButton.setEnabled(false);
+            statsLabel.setText("Importing " + file.getName() + "...");
+            worker.execute();
+        }
+    }
+    
+    /**
+     * What an import does with a row that matches an existing task
+     */
+    private enum DuplicatePolicy {
+        SKIP("Skip"),
+        MERGE("Merge into existing task"),
+        KEEP("Import anyway");
+        
+        private final String label;
+        
+        DuplicatePolicy(String label) {
+            this.label = label;
+        }
+        
+        @Override
+        public String toString() { return label; }
+    }
+    
+    /**
+     * A parsed CSV row or JSON line waiting to be inserted on the EDT
+     */
+    private static class ImportedTask {
+        final String eventName;
+        final Task task;
+        final List<String> tags;
+        final long fingerprint;
+        // Set when the row matches a task that existed or was imported earlier
+        boolean duplicate;
+        
+        ImportedTask(String eventName, Task task, List<String> tags) {
+            this.eventName = eventName;
+            this.task = task;
+            this.tags = tags;
+            this.fingerprint = TaskFingerprint.of(eventName, task.getState());
+        }
+    }
+    
+    /**
+     * Reads a CSV or JSON Lines file on a background thread and inserts the
+     * tasks on the EDT in batches. CSV columns are found by header name, so
+     * files written by older versions (without tags, time spent or created
+     * date) still import. Cancelling keeps the batches already inserted.
+     *
+     * Each row's fingerprint is checked against a hash set holding those of
+     * the existing tasks and of the rows read so far, so duplicates, also
+     * within the file, are found in constant time per row.
+     */
+    private class ImportWorker extends SwingWorker<Void, List<ImportedTask>> {
+        private static final int BATCH_SIZE = 10000;
+        
+        private final File file;
+        private final ProgressMonitor monitor;
+        private final Set<String> touchedEvents = new HashSet<>();
+        private final DuplicatePolicy policy;
+        private final List<EventSnapshot> existing;
+        // Only used on the worker thread
+        private LongHashSet fingerprints;
+        // Written on the worker thread
+        private volatile int skipped;
+        // Only read and written on the EDT
+        private int imported;
+        private int merged;
+        private Map<String, Map<Long, Task>> mergeTargets;
+        private long elapsedNanos;
+        
+        ImportWorker(File file, ProgressMonitor monitor, DuplicatePolicy policy, List<EventSnapshot> existing) {
+            this.file = file;
+            this.monitor = monitor;
+            this.policy = policy;
+            this.existing = existing;
+        }
+        
+        @Override
+        protected Void doInBackground() throws IOException {
+            long start = System.nanoTime();
+            try {
+                if (policy != DuplicatePolicy.KEEP) {
+                    long tasks = 0;
+                    for (EventSnapshot snapshot : existing) {
+                        tasks += snapshot.size();
+                    }
+                    // Room for the existing tasks and a guess at the rows of the file
+                    fingerprints = new LongHashSet((int) Math.min(Integer.MAX_VALUE / 2, tasks + file.length() / 100));
+                    for (EventSnapshot snapshot : existing) {
+                        for (TaskState task : snapshot.getPending()) {
+                            fingerprints.add(TaskFingerprint.of(snapshot.getEventName(), task));
                         }
-                        
-                        if (parts.length > 5) {
-                            task.setCategory(parts[5].replace("\"", ""));
+                        for (TaskState task : snapshot.getCompleted()) {
+                            fingerprints.add(TaskFingerprint.of(snapshot.getEventName(), task));
                         }
-                        
-                        // Add to appropriate list
-                        if ("Completed".equals(status)) {
-                            task.setCompleted(true);
-                            eventCompletedTasks.get(eventName).add(task);
-                        } else {
-                            eventTasks.get(eventName).add(task);
+                    }
+                }
+                if (isJsonLines(file)) {
+                    readJsonLines();
+                } else {
+                    readCsv();
+                }
+            } finally {
+                elapsedNanos = System.nanoTime() - start;
+            }
+            return null;
+        }
+        
+        private void readJsonLines() throws IOException {
+            long length = Math.max(1, file.length());
+            try (JsonLinesCodec.Reader reader = new JsonLinesCodec.Reader(new InputStreamReader(new FileInputStream(file), java.nio.charset.StandardCharsets.UTF_8))) {
+                List<ImportedTask> batch = new ArrayList<>(BATCH_SIZE);
+                JsonLinesCodec.Record record;
+                while ((record = reader.next()) != null && !isCancelled()) {
+                    // Deletions in a delta export have nothing to import
+                    if (record.isDeletion() || record.getEventName() == null || record.getEventName().isEmpty()) {
+                        continue;
+                    }
+                    ImportedTask parsed = new ImportedTask(record.getEventName(), record.toTask(), record.getTags());
+                    if (admit(parsed)) {
+                        batch.add(parsed);
+                    }
+                    
+                    if (batch.size() == BATCH_SIZE) {
+                        publish(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                        setProgress((int) Math.min(99, reader.getCharsRead() * 100 / length));
+                    }
+                }
+                if (!batch.isEmpty() && !isCancelled()) {
+                    publish(batch);
+                }
+            }
+        }
+        
+        private void readCsv() throws IOException {
+            long length = Math.max(1, file.length());
+            try (CsvTaskReader reader = new CsvTaskReader(new InputStreamReader(new FileInputStream(file), java.nio.charset.StandardCharsets.UTF_8))) {
+                List<ImportedTask> batch = new ArrayList<>(BATCH_SIZE);
+                CsvTaskReader.Row row;
+                while ((row = reader.next()) != null && !isCancelled()) {
+                    ImportedTask parsed = new ImportedTask(row.getEventName(), row.getTask(), row.getTags());
+                    if (admit(parsed)) {
+                        batch.add(parsed);
+                    }
+                    
+                    if (batch.size() == BATCH_SIZE) {
+                        publish(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                        setProgress((int) Math.min(99, reader.getCharsRead() * 100 / length));
+                    }
+                }
+                if (!batch.isEmpty() && !isCancelled()) {
+                    publish(batch);
+                }
+            }
+        }
+        
+        /**
+         * Check a parsed row against the fingerprints seen so far
+         * @return false if the row is a duplicate to skip
+         */
+        private boolean admit(ImportedTask row) {
+            if (policy == DuplicatePolicy.KEEP || fingerprints.add(row.fingerprint)) {
+                return true;
+            }
+            if (policy == DuplicatePolicy.SKIP) {
+                skipped++;
+                return false;
+            }
+            row.duplicate = true;
+            return true;
+        }
+        
+        @Override
+        protected void process(List<List<ImportedTask>> batches) {
+            // Loading from a file is not task creation history
+            completionHistory.setRecording(false);
+            for (List<ImportedTask> batch : batches) {
+                for (ImportedTask row : batch) {
+                    if (row.duplicate) {
+                        Task target = mergeTarget(row);
+                        if (target != null) {
+                            mergeInto(row, target);
+                            merged++;
+                            continue;
                         }
-                        
-                        importedCount++;
+                    }
+                    if (!repository.containsEvent(row.eventName)) {
+                        eventListModel.addElement(row.eventName);
+                        repository.addEvent(row.eventName, new SimpleDateFormat("dd/MM/yyyy").format(new java.util.Date()));
+                        loadedEvents.add(row.eventName);
+                    }
+                    if (!row.tags.isEmpty()) {
+                        row.task.setTags(tagIndex.internAll(row.tags));
+                    }
+                    repository.getTasks(row.eventName, row.task.isCompleted()).add(row.task);
+                    fireTaskAdded(row.eventName, row.task);
+                    touchedEvents.add(row.eventName);
+                    imported++;
+                    if (mergeTargets != null && mergeTargets.containsKey(row.eventName)) {
+                        mergeTargets.get(row.eventName).putIfAbsent(row.fingerprint, row.task);
                     }
                 }
-                
-                JOptionPane.showMessageDialog(this, "Successfully imported " + importedCount + " tasks");
-                statsLabel.setText("Data imported: " + importedCount + " tasks");
-                
-                // Refresh display
-                if (!eventListModel.isEmpty()) {
-                    eventList.setSelectedIndex(0);
+            }
+            completionHistory.setRecording(true);
+        }
+        
+        /**
+         * Find the task a duplicate row matches. An event's tasks are indexed
+         * by fingerprint the first time one of its rows needs merging.
+         * @return the task, or null if it has been removed since
+         */
+        private Task mergeTarget(ImportedTask row) {
+            if (mergeTargets == null) {
+                mergeTargets = new HashMap<>();
+            }
+            Map<Long, Task> byFingerprint = mergeTargets.get(row.eventName);
+            if (byFingerprint == null) {
+                byFingerprint = new HashMap<>();
+                TaskRepository.Event event = repository.getEvent(row.eventName);
+                for (TaskList tasks : event != null ? event.getLists() : java.util.Collections.<TaskList>emptyList()) {
+                    for (Task task : tasks) {
+                        byFingerprint.putIfAbsent(TaskFingerprint.of(row.eventName, task.getState()), task);
+                    }
                 }
-                
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Error importing data: " + e.getMessage(), 
-                    "Import Error", JOptionPane.ERROR_MESSAGE);
+                mergeTargets.put(row.eventName, byFingerprint);
+            }
+            return byFingerprint.get(row.fingerprint);
+        }
+        
+        /**
+         * Update a matching task from a row. Status, priority and recurrence
+         * come from the row; tags only if the row has any; tracked time keeps
+         * the larger value.
+         */
+        private void mergeInto(ImportedTask row, Task target) {
+            Task before = new Task(target);
+            target.setPriority(row.task.getPriority());
+            if (!row.tags.isEmpty()) {
+                target.setTags(tagIndex.internAll(row.tags));
+            }
+            target.setTimeSpent(Math.max(target.getTimeSpent(), row.task.getTimeSpent()));
+            target.setRecurring(row.task.isRecurring());
+            target.setRecurrencePattern(row.task.getRecurrencePattern());
+            if (target.isCompleted() != row.task.isCompleted()) {
+                repository.writeLock(row.eventName).lock();
+                try {
+                    repository.getTasks(row.eventName, target.isCompleted()).remove(target);
+                    target.setCompleted(row.task.isCompleted());
+                    repository.getTasks(row.eventName, target.isCompleted()).addBack(target);
+                } finally {
+                    repository.writeLock(row.eventName).unlock();
+                }
+            }
+            if (target.getState() != before.getState()) {
+                fireTaskUpdated(row.eventName, before, target);
+                touchedEvents.add(row.eventName);
+            }
+        }
+        
+        @Override
+        protected void done() {
+            monitor.close();
+            importButton.setEnabled(true);
+            for (String eventName : touchedEvents) {
+                autoSaveCurrentEvent(eventName);
+            }
+            
+            String message;
+            if (isCancelled()) {
+                message = "Import cancelled after " + imported + " tasks" + duplicateSummary();
+            } else {
+                try {
+                    get();
+                    message = "Successfully imported " + imported + " tasks" + duplicateSummary()
+                        + "\n" + formatThroughput(file.length(), elapsedNanos);
+                } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(TodoListApp.this, "Error importing data: " + cause.getMessage() 
+                        + "\n" + imported + " tasks were imported before the error.",
+                        "Import Error", JOptionPane.ERROR_MESSAGE);
+                    statsLabel.setText("Import failed");
+                    refreshAfterImport();
+                    return;
+                }
+            }
+            JOptionPane.showMessageDialog(TodoListApp.this, message);
+            statsLabel.setText("Data imported: " + imported + " tasks");
+            refreshAfterImport();
+        }
+        
+        private String duplicateSummary() {
+            StringBuilder summary = new StringBuilder();
+            if (skipped > 0) {
+                summary.append("\nSkipped ").append(skipped).append(" duplicates");
+            }
+            if (merged > 0) {
+                summary.append("\nMerged ").append(merged).append(" duplicates into existing tasks");
+            }
+            return summary.toString();
+        }
+        
+        private void refreshAfterImport() {
+            String selectedEvent = eventList.getSelectedValue();
+            if (selectedEvent != null) {
+                refreshDisplay(selectedEvent);
+            } else if (!eventListModel.isEmpty()) {
+                eventList.setSelectedIndex(0);
             }
         }
     }
@@ -2379,6 +3470,9 @@ public class TodoListApp extends javax.swing.JFrame {
             return;
         }
         
+        // Words starting with '#' are answered from the tag index
+        TaskSearch search = new TaskSearch(searchText, tagIndex);
+        
         // Search in current event's tasks
         String selectedEvent = eventList.getSelectedValue();
         if (selectedEvent != null) {
@@ -2387,13 +3481,11 @@ public class TodoListApp extends javax.swing.JFrame {
             completedPanel.removeAll();
             
             // Search in pending tasks
-            List<Task> tasks = eventTasks.get(selectedEvent);
+            List<Task> tasks = taskSorter.sorted(selectedEvent, false, repository.getTasks(selectedEvent, false));
             if (tasks != null) {
                 int rowIndex = 0;
                 for (Task task : tasks) {
-                    if (task.getText().toLowerCase().contains(searchText) ||
-                        task.getCategory().toLowerCase().contains(searchText) ||
-                        task.getPriority().getName().toLowerCase().contains(searchText)) {
+                    if (search.matches(task)) {
                         JPanel taskPanel = createTaskPanel(selectedEvent, task, false, rowIndex++);
                         todoPanel.add(taskPanel);
                     }
@@ -2401,13 +3493,11 @@ public class TodoListApp extends javax.swing.JFrame {
             }
             
             // Search in completed tasks
-            List<Task> completed = eventCompletedTasks.get(selectedEvent);
+            List<Task> completed = taskSorter.sorted(selectedEvent, true, repository.getTasks(selectedEvent, true));
             if (completed != null) {
                 int rowIndex = 0;
                 for (Task task : completed) {
-                    if (task.getText().toLowerCase().contains(searchText) ||
-                        task.getCategory().toLowerCase().contains(searchText) ||
-                        task.getPriority().getName().toLowerCase().contains(searchText)) {
+                    if (search.matches(task)) {
                         JPanel taskPanel = createTaskPanel(selectedEvent, task, true, rowIndex++);
                         completedPanel.add(taskPanel);
                     }
@@ -2433,31 +3523,11 @@ public class TodoListApp extends javax.swing.JFrame {
         completedPanel.removeAll();
         
         // Apply filter to pending tasks
-        List<Task> tasks = eventTasks.get(selectedEvent);
+        List<Task> tasks = taskSorter.sorted(selectedEvent, false, repository.getTasks(selectedEvent, false));
         if (tasks != null) {
             int rowIndex = 0;
             for (Task task : tasks) {
-                boolean showTask = false;
-                
-                switch (filter) {
-                    case "All":
-                        showTask = true;
-                        break;
-                    case "High Priority":
-                        showTask = task.getPriority() == TaskPriority.HIGH || task.getPriority() == TaskPriority.URGENT;
-                        break;
-                    case "Overdue":
-                        showTask = task.isOverdue();
-                        break;
-                    case "Due Soon":
-                        showTask = task.isDueSoon();
-                        break;
-                    case "Completed":
-                        showTask = false; // Don't show pending tasks when filtering for completed
-                        break;
-                }
-                
-                if (showTask) {
+                if (TaskSearch.showsPending(filter, task)) {
                     JPanel taskPanel = createTaskPanel(selectedEvent, task, false, rowIndex++);
                     todoPanel.add(taskPanel);
                 }
@@ -2465,8 +3535,8 @@ public class TodoListApp extends javax.swing.JFrame {
         }
         
         // Apply filter to completed tasks
-        if ("All".equals(filter) || "Completed".equals(filter)) {
-            List<Task> completed = eventCompletedTasks.get(selectedEvent);
+        if (TaskSearch.showsCompleted(filter)) {
+            List<Task> completed = taskSorter.sorted(selectedEvent, true, repository.getTasks(selectedEvent, true));
             if (completed != null) {
                 int rowIndex = 0;
                 for (Task task : completed) {
@@ -2483,4 +3553,676 @@ public class TodoListApp extends javax.swing.JFrame {
         
         statsLabel.setText("Filter: " + filter);
     }
+    
+    private void showTagBrowser() {
+        JDialog dialog = new JDialog(this, "Browse by Tag", true);
+        dialog.setSize(600, 400);
+        dialog.setLocationRelativeTo(this);
+        
+        // Tag cloud on the left, selecting several tags narrows the results
+        DefaultListModel<String> facetModel = new DefaultListModel<>();
+        JList<String> facetList = new JList<>(facetModel);
+        facetList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        
+        DefaultListModel<String> resultModel = new DefaultListModel<>();
+        JList<String> resultList = new JList<>(resultModel);
+        List<String> resultEvents = new ArrayList<>();
+        
+        Map<String, Integer> facets = tagIndex.facetCounts();
+        List<String> facetTags = new ArrayList<>(facets.keySet());
+        for (Map.Entry<String, Integer> facet : facets.entrySet()) {
+            facetModel.addElement(facet.getKey() + " (" + facet.getValue() + ")");
+        }
+        
+        JLabel summaryLabel = new JLabel(facets.isEmpty() ? "No tagged tasks" : "Select one or more tags");
+        
+        facetList.addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            List<String> selectedTags = new ArrayList<>();
+            for (int index : facetList.getSelectedIndices()) {
+                selectedTags.add(facetTags.get(index));
+            }
+            resultModel.clear();
+            resultEvents.clear();
+            if (selectedTags.isEmpty()) {
+                summaryLabel.setText("Select one or more tags");
+                return;
+            }
+            
+            BitSet matches = tagIndex.select(selectedTags);
+            for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+                Task task = tagIndex.taskAt(id);
+                String eventName = tagIndex.eventAt(id);
+                resultModel.addElement(eventName + " › " + task.getText() + (task.isCompleted() ? " ✔" : ""));
+                resultEvents.add(eventName);
+            }
+            summaryLabel.setText(matches.cardinality() + " tasks tagged " + String.join(" + ", selectedTags));
+        });
+        
+        // Double click jumps to the task's event
+        resultList.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int index = resultList.locationToIndex(e.getPoint());
+                if (e.getClickCount() == 2 && index >= 0) {
+                    eventList.setSelectedValue(resultEvents.get(index), true);
+                    dialog.dispose();
+                }
+            }
+        });
+        
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+            new JScrollPane(facetList), new JScrollPane(resultList));
+        splitPane.setDividerLocation(180);
+        
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dialog.dispose());
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        bottomPanel.add(summaryLabel, BorderLayout.CENTER);
+        bottomPanel.add(closeButton, BorderLayout.EAST);
+        
+        dialog.setLayout(new BorderLayout());
+        dialog.add(splitPane, BorderLayout.CENTER);
+        dialog.add(bottomPanel, BorderLayout.SOUTH);
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * Redraw the task panels after a row action, keeping an open saved view on screen
+     * @param eventName the event the action applied to
+     */
+    private void refreshDisplay(String eventName) {
+        if (openViewName != null) {
+            openSavedView(openViewName);
+        } else {
+            loadTasksForEvent(eventName);
+        }
+    }
+    
+    private void openSavedView(String viewName) {
+        if (!savedViews.contains(viewName)) return;
+        openViewName = viewName;
+        eventList.clearSelection();
+        
+        selectedEventTitle.setText("View: " + viewName);
+        selectedEventDate.setText("Date:");
+        todoPanel.removeAll();
+        completedPanel.removeAll();
+        
+        // Materialized results, rows keep their own event for row actions
+        List<SavedViews.Member> members = savedViews.results(viewName, System.currentTimeMillis());
+        int pendingRow = 0;
+        int completedRow = 0;
+        for (SavedViews.Member member : members) {
+            Task task = member.getTask();
+            if (task.isCompleted()) {
+                completedPanel.add(createTaskPanel(member.getEventName(), task, true, completedRow++));
+            } else {
+                todoPanel.add(createTaskPanel(member.getEventName(), task, false, pendingRow++));
+            }
+        }
+        
+        todoPanel.revalidate();
+        todoPanel.repaint();
+        completedPanel.revalidate();
+        completedPanel.repaint();
+        
+        statsLabel.setText("View: " + viewName + " (" + members.size() + " tasks)");
+    }
+    
+    private void scheduleSavedViewRefresh() {
+        // Coalesce the many changes of a load or import into one repaint
+        if (savedViewListModel == null || savedViewRefreshPending) return;
+        savedViewRefreshPending = true;
+        SwingUtilities.invokeLater(() -> {
+            savedViewRefreshPending = false;
+            refreshSavedViewList();
+        });
+    }
+    
+    private void refreshSavedViewList() {
+        long now = System.currentTimeMillis();
+        List<String> names = new ArrayList<>();
+        for (SavedViews.View view : savedViews.getViews()) {
+            names.add(view.getName());
+        }
+        
+        if (!names.equals(savedViewNames)) {
+            String selected = openViewName;
+            savedViewNames.clear();
+            savedViewNames.addAll(names);
+            savedViewListModel.clear();
+            for (String name : names) {
+                savedViewListModel.addElement(name + " (" + savedViews.count(name, now) + ")");
+            }
+            if (selected != null && names.contains(selected)) {
+                savedViewList.setSelectedIndex(names.indexOf(selected));
+            }
+        } else {
+            for (int i = 0; i < names.size(); i++) {
+                String label = names.get(i) + " (" + savedViews.count(names.get(i), now) + ")";
+                if (!label.equals(savedViewListModel.get(i))) {
+                    savedViewListModel.set(i, label);
+                }
+            }
+        }
+    }
+    
+    private void showSaveViewDialog() {
+        JDialog dialog = new JDialog(this, "Save View", true);
+        dialog.setSize(420, 360);
+        dialog.setLocationRelativeTo(this);
+        
+        // Start from the current search and filter
+        String searchText = searchField.getText().trim();
+        List<String> searchTags = new ArrayList<>();
+        StringBuilder searchWords = new StringBuilder();
+        for (String word : searchText.split("\\s+")) {
+            if (word.startsWith("#") && word.length() > 1) {
+                searchTags.add(word.substring(1));
+            } else if (!word.isEmpty()) {
+                if (searchWords.length() > 0) searchWords.append(' ');
+                searchWords.append(word);
+            }
+        }
+        String filter = (String) filterComboBox.getSelectedItem();
+        
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.WEST;
+        
+        JTextField nameField = new JTextField(15);
+        JComboBox<String> priorityCombo = new JComboBox<>(new String[]{"Any", "Low", "Medium", "High", "Urgent"});
+        JComboBox<SavedViews.Status> statusCombo = new JComboBox<>(SavedViews.Status.values());
+        JComboBox<SavedViews.DueWindow> dueCombo = new JComboBox<>(SavedViews.DueWindow.values());
+        JTextField textField = new JTextField(searchWords.toString(), 15);
+        JTextField categoryField = new JTextField(15);
+        JTextField tagsField = new JTextField(String.join(", ", searchTags), 15);
+        
+        if ("High Priority".equals(filter)) {
+            priorityCombo.setSelectedItem("High");
+        } else if ("Overdue".equals(filter)) {
+            dueCombo.setSelectedItem(SavedViews.DueWindow.OVERDUE);
+        } else if ("Due Soon".equals(filter)) {
+            dueCombo.setSelectedItem(SavedViews.DueWindow.DUE_SOON);
+        } else if ("Completed".equals(filter)) {
+            statusCombo.setSelectedItem(SavedViews.Status.COMPLETED);
+        }
+        
+        String[] labels = {"Name:", "Minimum Priority:", "Status:", "Due:", "Text contains:", "Category:", "Tags:"};
+        JComponent[] fields = {nameField, priorityCombo, statusCombo, dueCombo, textField, categoryField, tagsField};
+        for (int i = 0; i < labels.length; i++) {
+            gbc.gridx = 0; gbc.gridy = i;
+            panel.add(new JLabel(labels[i]), gbc);
+            gbc.gridx = 1;
+            panel.add(fields[i], gbc);
+        }
+        
+        JPanel buttonPanel = new JPanel();
+        JButton okButton = new JButton("Save");
+        JButton cancelButton = new JButton("Cancel");
+        
+        okButton.addActionListener(e -> {
+            String name = nameField.getText().trim();
+            if (name.isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Please enter a name for the view", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (savedViews.contains(name)) {
+                int overwrite = JOptionPane.showConfirmDialog(dialog,
+                    "A view named '" + name + "' already exists. Replace it?",
+                    "Confirm Replace",
+                    JOptionPane.YES_NO_OPTION);
+                if (overwrite != JOptionPane.YES_OPTION) return;
+            }
+            
+            TaskPriority minPriority = null;
+            for (TaskPriority priority : TaskPriority.values()) {
+                if (priority.getName().equals(priorityCombo.getSelectedItem())) {
+                    minPriority = priority;
+                }
+            }
+            List<String> tags = new ArrayList<>();
+            for (String tag : tagsField.getText().split(",")) {
+                tags.add(tag);
+            }
+            
+            SavedViews.View view = new SavedViews.View(name, minPriority,
+                (SavedViews.Status) statusCombo.getSelectedItem(),
+                (SavedViews.DueWindow) dueCombo.getSelectedItem(),
+                textField.getText(), categoryField.getText(), tagIndex.internAll(tags));
+            addSavedView(view);
+            saveSavedViews();
+            statsLabel.setText("View saved: " + name);
+            dialog.dispose();
+        });
+        cancelButton.addActionListener(e -> dialog.dispose());
+        
+        buttonPanel.add(okButton);
+        buttonPanel.add(cancelButton);
+        gbc.gridx = 0; gbc.gridy = labels.length; gbc.gridwidth = 2;
+        gbc.anchor = GridBagConstraints.CENTER;
+        panel.add(buttonPanel, gbc);
+        
+        dialog.add(panel);
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * Register a view and materialize it with a single pass over loaded tasks.
+     * From then on it is only updated from task change events.
+     * @param view the view to add
+     */
+    private void addSavedView(SavedViews.View view) {
+        savedViews.add(view);
+        for (String eventName : repository.getEventNames()) {
+            for (TaskList tasks : repository.getEvent(eventName).getLists()) {
+                for (Task task : tasks) {
+                    savedViews.populate(view.getName(), eventName, task);
+                }
+            }
+        }
+    }
+    
+    private void deleteSavedView() {
+        int index = savedViewList.getSelectedIndex();
+        if (index < 0) return;
+        String viewName = savedViewNames.get(index);
+        
+        int result = JOptionPane.showConfirmDialog(this, 
+            "Are you sure you want to delete view '" + viewName + "'?", 
+            "Confirm Delete", 
+            JOptionPane.YES_NO_OPTION);
+        
+        if (result == JOptionPane.YES_OPTION) {
+            savedViews.remove(viewName);
+            saveSavedViews();
+            if (viewName.equals(openViewName)) {
+                openViewName = null;
+                todoPanel.removeAll();
+                completedPanel.removeAll();
+                selectedEventTitle.setText("Event: No event selected");
+                todoPanel.revalidate();
+                todoPanel.repaint();
+                completedPanel.revalidate();
+                completedPanel.repaint();
+            }
+        }
+    }
+    
+    private void loadSavedViews() {
+        File viewsFile = new File(dataDirectory, SAVED_VIEWS_FILE);
+        if (!viewsFile.exists()) return;
+        try {
+            for (String line : Files.readAllLines(viewsFile.toPath())) {
+                SavedViews.View view = SavedViews.View.fromLine(line);
+                if (view != null) {
+                    savedViews.add(view);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading saved views: " + e.getMessage());
+        }
+    }
+    
+    private void saveSavedViews() {
+        File viewsFile = new File(dataDirectory, SAVED_VIEWS_FILE);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(viewsFile))) {
+            for (SavedViews.View view : savedViews.getViews()) {
+                writer.println(view.toLine());
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving views: " + e.getMessage());
+        }
+    }
+    
+    private void applySortOrder() {
+        List<TaskSorter.SortKey> order = new ArrayList<>();
+        for (JComboBox<String> combo : java.util.Arrays.asList(sortComboBox, thenSortComboBox)) {
+            int index = combo.getSelectedIndex();
+            if (index > 0) {
+                order.add(TaskSorter.SortKey.values()[index - 1]);
+            }
+        }
+        taskSorter.setOrder(order);
+        
+        String selectedEvent = eventList.getSelectedValue();
+        if (selectedEvent != null) {
+            loadTasksForEvent(selectedEvent);
+        }
+        statsLabel.setText(order.isEmpty() ? "Manual order" : "Sorted by " + sortComboBox.getSelectedItem());
+    }
+    
+    private JButton createTrackingButton(String symbol, String toolTip) {
+        JButton button = new JButton(symbol);
+        button.setFont(new java.awt.Font("Segoe UI Emoji", java.awt.Font.PLAIN, 12));
+        button.setPreferredSize(new java.awt.Dimension(26, 26));
+        button.setMargin(new java.awt.Insets(2, 2, 2, 2));
+        button.setToolTipText(toolTip);
+        button.setBorderPainted(false);
+        button.setContentAreaFilled(false);
+        button.setFocusPainted(false);
+        if (isDarkMode) {
+            button.setForeground(Color.WHITE);
+        }
+        return button;
+    }
+    
+    /**
+     * Start the task's timer, or pause it if it is running
+     */
+    private void toggleTracking(String eventName, Task task) {
+        if (timeTracker.getState(task) == TimeTracker.State.RUNNING) {
+            addTrackedTime(eventName, task, timeTracker.pause(task));
+        } else {
+            timeTracker.startTracking(eventName, task);
+        }
+        refreshDisplay(eventName);
+    }
+    
+    private void stopTracking(String eventName, Task task) {
+        addTrackedTime(eventName, task, timeTracker.stop(task));
+        refreshDisplay(eventName);
+    }
+    
+    /**
+     * Fold time from a paused or stopped timer into the task and save it
+     */
+    private void addTrackedTime(String eventName, Task task, long millis) {
+        if (millis <= 0) return;
+        Task before = new Task(task);
+        task.setTimeSpent(task.getTimeSpent() + millis);
+        fireTaskUpdated(eventName, before, task);
+        autoSaveCurrentEvent(eventName);
+    }
+    
+    /**
+     * Update the time labels of running timers. Called once a second from the
+     * time tracker's ticker.
+     */
+    private void refreshTrackedTimes() {
+        for (Task task : timeTracker.getTrackedTasks()) {
+            JLabel label = trackedTimeLabels.get(task);
+            if (label != null && label.isShowing()) {
+                label.setText(TimeTracker.format(timeTracker.getTimeSpent(task)));
+            }
+        }
+    }
+    
+    /**
+     * Add time checkpointed by timers that were still running when the
+     * application, or the leader this instance took over from, last exited
+     * @param recoveredTime the time read from the checkpoint
+     */
+    private void recoverTrackedTime(List<TimeTracker.Recovered> recoveredTime) {
+        Set<String> touched = new HashSet<>();
+        for (TimeTracker.Recovered recovered : recoveredTime) {
+            Task task = findTrackedTask(recovered);
+            if (task != null) {
+                String eventName = task.list.getEventName();
+                Task before = new Task(task);
+                task.setTimeSpent(task.getTimeSpent() + recovered.getMillis());
+                fireTaskUpdated(eventName, before, task);
+                touched.add(eventName);
+            }
+        }
+        for (String eventName : touched) {
+            autoSaveCurrentEvent(eventName);
+        }
+    }
+    
+    /**
+     * @return the task a checkpoint entry refers to, or null if it is gone
+     */
+    private Task findTrackedTask(TimeTracker.Recovered recovered) {
+        try {
+            Task task = taskRegistry.find(Long.parseLong(recovered.getTaskKey()));
+            return task != null && task.list != null ? task : null;
+        } catch (NumberFormatException e) {
+            // Checkpoint written before task IDs: match on creation time and text
+            TaskRepository.Event event = repository.getEvent(recovered.getEventName());
+            for (TaskList tasks : event != null ? event.getLists() : java.util.Collections.<TaskList>emptyList()) {
+                for (Task task : tasks) {
+                    if ((task.getCreatedDate().getTime() + ":" + task.getText()).equals(recovered.getTaskKey())) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Save events changed from outside the UI, through the API or by other
+     * instances. Changes queued on the EDT behind this one are saved together,
+     * and the panels are redrawn only if they show a changed event.
+     * @param eventNames the events that were changed
+     */
+    private void saveLater(Collection<String> eventNames) {
+        if (eventNames.isEmpty()) return;
+        boolean scheduled = !unsavedEvents.isEmpty();
+        unsavedEvents.addAll(eventNames);
+        if (scheduled) return;
+        SwingUtilities.invokeLater(() -> {
+            List<String> changed = new ArrayList<>(unsavedEvents);
+            unsavedEvents.clear();
+            for (String eventName : changed) {
+                if (repository.containsEvent(eventName)) autoSaveCurrentEvent(eventName);
+            }
+            String selectedEvent = eventList.getSelectedValue();
+            if (openViewName != null || (selectedEvent != null && changed.contains(selectedEvent))) {
+                refreshDisplay(selectedEvent);
+            }
+        });
+    }
+    
+    /**
+     * Save each changed event once and redraw the task panels once
+     * @param eventNames the events that were changed
+     */
+    private void saveAndRefresh(Collection<String> eventNames) {
+        for (String eventName : eventNames) {
+            autoSaveCurrentEvent(eventName);
+        }
+        String selectedEvent = eventList.getSelectedValue();
+        if (openViewName != null || (selectedEvent != null && eventNames.contains(selectedEvent))) {
+            refreshDisplay(selectedEvent);
+        } else if (!eventNames.isEmpty()) {
+            refreshDisplay(eventNames.iterator().next());
+        }
+    }
+    
+    /**
+     * Selection gestures on a task row: Ctrl-click toggles, Shift-click
+     * extends from the last clicked row, right-click opens the bulk menu
+     */
+    private void handleRowMouse(java.awt.event.MouseEvent e, JPanel row, String eventName, Task task) {
+        if (e.isPopupTrigger()) {
+            if (!selectedTasks.containsKey(task)) {
+                selectedTasks.clear();
+                selectedTasks.put(task, eventName);
+                selectionAnchor = task;
+                repaintSelection();
+            }
+            showBulkMenu(row, e.getX(), e.getY());
+            return;
+        }
+        if (e.getID() != java.awt.event.MouseEvent.MOUSE_PRESSED || !SwingUtilities.isLeftMouseButton(e)) return;
+        
+        if (e.isShiftDown() && selectionAnchor != null) {
+            // Select the rows between the anchor and this row in display order
+            boolean inRange = false;
+            for (JPanel panel : visibleTaskRows()) {
+                Task rowTask = (Task) panel.getClientProperty(TASK_PROPERTY);
+                boolean edge = rowTask == selectionAnchor || rowTask == task;
+                if (inRange || edge) {
+                    selectedTasks.put(rowTask, (String) panel.getClientProperty(EVENT_PROPERTY));
+                }
+                if (edge && (inRange || selectionAnchor == task)) break;
+                if (edge) inRange = true;
+            }
+        } else if (e.isControlDown() || e.isMetaDown()) {
+            if (selectedTasks.remove(task) == null) {
+                selectedTasks.put(task, eventName);
+            }
+            selectionAnchor = task;
+        } else {
+            selectedTasks.clear();
+            selectionAnchor = null;
+        }
+        repaintSelection();
+    }
+    
+    /**
+     * @return task rows of the pending and completed panels, in display order
+     */
+    private List<JPanel> visibleTaskRows() {
+        List<JPanel> rows = new ArrayList<>();
+        for (JPanel container : new JPanel[]{todoPanel, completedPanel}) {
+            for (Component component : container.getComponents()) {
+                if (component instanceof JPanel && ((JPanel) component).getClientProperty(TASK_PROPERTY) != null) {
+                    rows.add((JPanel) component);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    private Color selectionColor() {
+        return isDarkMode ? new Color(40, 70, 110) : new Color(200, 225, 255);
+    }
+    
+    /**
+     * Recolour the visible rows after the selection changed
+     */
+    private void repaintSelection() {
+        for (JPanel row : visibleTaskRows()) {
+            boolean selected = selectedTasks.containsKey((Task) row.getClientProperty(TASK_PROPERTY));
+            row.setBackground(selected ? selectionColor() : (Color) row.getClientProperty(ROW_COLOR_PROPERTY));
+        }
+        if (!selectedTasks.isEmpty()) {
+            statsLabel.setText(selectedTasks.size() + " task(s) selected");
+        }
+    }
+    
+    private void showBulkMenu(Component invoker, int x, int y) {
+        JPopupMenu menu = new JPopupMenu();
+        int count = selectedTasks.size();
+        
+        JMenuItem complete = new JMenuItem("Complete " + count + " task(s)");
+        complete.addActionListener(e -> runBulk("completed", (transaction, task, eventName) -> {
+            boolean wasCompleted = task.isCompleted();
+            boolean changed = transaction.update(eventName, task, t -> {
+                // Completing a task stops its timer
+                t.setTimeSpent(t.getTimeSpent() + timeTracker.stop(t));
+                t.setCompleted(true);
+            });
+            Task next = changed && !wasCompleted ? RecurrenceRule.nextOccurrence(task, new java.util.Date()) : null;
+            if (next != null) {
+                transaction.add(eventName, next);
+            }
+            return changed;
+        }));
+        menu.add(complete);
+        
+        JMenuItem reopen = new JMenuItem("Mark " + count + " task(s) pending");
+        reopen.addActionListener(e -> bulkUpdate("reopened", task -> task.setCompleted(false)));
+        menu.add(reopen);
+        
+        JMenu priorityMenu = new JMenu("Set priority");
+        for (TaskPriority priority : TaskPriority.values()) {
+            JMenuItem item = new JMenuItem(priority.getName());
+            item.addActionListener(e -> bulkUpdate("set to " + priority.getName(), task -> task.setPriority(priority)));
+            priorityMenu.add(item);
+        }
+        menu.add(priorityMenu);
+        
+        JMenu moveMenu = new JMenu("Move to event");
+        for (int i = 0; i < eventListModel.size(); i++) {
+            String toEvent = eventListModel.get(i);
+            JMenuItem item = new JMenuItem(toEvent);
+            item.addActionListener(e -> bulkMove(toEvent));
+            moveMenu.add(item);
+        }
+        menu.add(moveMenu);
+        
+        JMenuItem delete = new JMenuItem("Delete " + count + " task(s)");
+        delete.addActionListener(e -> bulkDelete());
+        menu.add(delete);
+        
+        menu.addSeparator();
+        JMenuItem selectAll = new JMenuItem("Select all shown");
+        selectAll.addActionListener(e -> {
+            for (JPanel row : visibleTaskRows()) {
+                selectedTasks.put((Task) row.getClientProperty(TASK_PROPERTY), (String) row.getClientProperty(EVENT_PROPERTY));
+            }
+            repaintSelection();
+        });
+        menu.add(selectAll);
+        
+        JMenuItem clear = new JMenuItem("Clear selection");
+        clear.addActionListener(e -> {
+            selectedTasks.clear();
+            selectionAnchor = null;
+            repaintSelection();
+        });
+        menu.add(clear);
+        
+        menu.show(invoker, x, y);
+    }
+    
+    private void bulkUpdate(String description, java.util.function.Consumer<Task> change) {
+        runBulk(description, (transaction, task, eventName) -> transaction.update(eventName, task, change));
+    }
+    
+    private void bulkMove(String toEvent) {
+        if (!loadedEvents.contains(toEvent)) {
+            loadTasksFromFile(toEvent);
+        }
+        runBulk("moved to " + toEvent, (transaction, task, eventName) -> {
+            if (eventName.equals(toEvent)) return false;
+            // A moved task keeps the time from its stopped timer
+            transaction.update(eventName, task, t -> t.setTimeSpent(t.getTimeSpent() + timeTracker.stop(t)));
+            return transaction.move(eventName, task, toEvent);
+        });
+    }
+    
+    private void bulkDelete() {
+        int result = JOptionPane.showConfirmDialog(this,
+            "Are you sure you want to delete " + selectedTasks.size() + " task(s)?",
+            "Confirm Delete",
+            JOptionPane.YES_NO_OPTION);
+        if (result == JOptionPane.YES_OPTION) {
+            runBulk("deleted", (transaction, task, eventName) -> transaction.remove(eventName, task));
+        }
+    }
+    
+    private interface BulkAction {
+        boolean apply(CommandLog.Transaction transaction, Task task, String eventName);
+    }
+    
+    /**
+     * Apply an action to every selected task in one transaction: all tasks
+     * change or none do, each touched event is saved once, the panels are
+     * redrawn once and the batch is a single undo step
+     */
+    private void runBulk(String description, BulkAction action) {
+        CommandLog.Transaction transaction = commandLog.begin(commandTarget);
+        int changed = 0;
+        try {
+            for (Map.Entry<Task, String> selected : new ArrayList<>(selectedTasks.entrySet())) {
+                if (action.apply(transaction, selected.getKey(), selected.getValue())) changed++;
+            }
+        } catch (RuntimeException e) {
+            saveAndRefresh(transaction.rollback());
+            JOptionPane.showMessageDialog(this, "Bulk change failed: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        selectedTasks.clear();
+        selectionAnchor = null;
+        saveAndRefresh(transaction.commit());
+        statsLabel.setText(changed + " task(s) " + description);
+    }
 }
@@ -0,0 +1,50 @@
+import java.awt.AWTException;
+import java.awt.Image;
+import java.awt.SystemTray;
+import java.awt.TrayIcon;
+import java.text.SimpleDateFormat;
+import javax.swing.SwingUtilities;
+
+/**
+ * Shows reminders as system tray notifications. The tray icon is added with
+ * the first reminder; where the tray is missing, reminders go to a fallback.
+ * @author Apon
+ */
+public class TrayReminderSink implements ReminderSink {
+
+    private final Image image;
+    private final ReminderSink fallback;
+    // EDT only
+    private TrayIcon trayIcon;
+
+    /**
+     * @param image the tray icon
+     * @param fallback used when the system tray is not supported
+     */
+    public TrayReminderSink(Image image, ReminderSink fallback) {
+        this.image = image;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void remind(ReminderService.Reminder reminder) {
+        if (!SystemTray.isSupported()) {
+            fallback.remind(reminder);
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            try {
+                if (trayIcon == null) {
+                    trayIcon = new TrayIcon(image, "To-Do List");
+                    trayIcon.setImageAutoSize(true);
+                    SystemTray.getSystemTray().add(trayIcon);
+                }
+                trayIcon.displayMessage(reminder.getText(), reminder.getEventName() + " - due "
+                    + new SimpleDateFormat("dd/MM/yyyy HH:mm").format(reminder.getDueDate()),
+                    TrayIcon.MessageType.INFO);
+            } catch (AWTException e) {
+                fallback.remind(reminder);
+            }
+        });
+    }
+}
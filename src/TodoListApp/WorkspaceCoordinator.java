@@ -0,0 +1,506 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Keeps several app instances on one data directory consistent. The first
+ * instance takes a lock on the workspace and becomes the leader: the only
+ * one that writes event files. It listens on a Unix domain socket in the
+ * data directory; later instances connect as followers, receive the whole
+ * workspace on connecting instead of reading the files, and then forward
+ * every change they make to the leader.
+ *
+ * The leader applies each forwarded change and broadcasts it, like its own
+ * changes, to every follower, the sender included. Messages carry a task's
+ * complete state rather than the edit, so applying the leader's stream in
+ * order brings every instance to the leader's state even when two of them
+ * edit the same task at once. When the leader goes away a follower takes
+ * the lock over and the others reconnect to it. A follower queues the
+ * changes it makes while it has no leader, or is receiving the workspace,
+ * and applies and sends them again once the whole workspace has arrived, so
+ * a reconnect does not lose them.
+ *
+ * Messages are lines of tab separated, {@link TaskCodec}-escaped fields:
+ * <pre>
+ *   E event date             event added
+ *   X event                  event removed
+ *   U event completed line   task added or changed, with its TaskCodec line
+ *   D id                     task removed
+ *   S / R                    start and end of the whole workspace
+ * </pre>
+ * A connection to the leader starts with F from a follower, or H from a
+ * one-off sender like the command line tool, which gets nothing back.
+ * Local changes are picked up as task change events. Everything except the
+ * socket I/O runs on the repository's writer.
+ * @author Apon
+ */
+public class WorkspaceCoordinator implements TaskChangeListener {
+
+    static final String LOCK_FILE = "workspace.lock";
+    static final String SOCKET_FILE = "workspace.sock";
+    private static final long RECONNECT_MILLIS = 500;
+    // First line on a connection to the leader: a follower, or a one-off sender
+    private static final String FOLLOWER_HELLO = "F";
+    private static final String SENDER_HELLO = "H";
+
+    /**
+     * Applies changes received from other instances; called on the writer
+     */
+    public interface Applier {
+        void eventAdded(String eventName, String date);
+        void eventRemoved(String eventName);
+        /**
+         * @param task the task's state and ID, to add or to copy into the task with that ID
+         */
+        void taskUpserted(String eventName, boolean completed, TodoListApp.Task task);
+        void taskDeleted(long id);
+        /**
+         * Drop every event before the whole workspace is received again
+         */
+        void clear();
+        /**
+         * This instance became the leader and now owns the event files
+         */
+        void promoted();
+    }
+
+    /**
+     * A socket to another instance with its own sending thread, so the
+     * writer never blocks on I/O. Socket threads are platform threads: a
+     * virtual thread blocked reading through the channel's stream adapter
+     * keeps the other direction from writing.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final BlockingQueue<String> outbox = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            Thread.ofPlatform().daemon().name("workspace-send").start(this::sendLoop);
+        }
+
+        void send(String message) {
+            if (!closed) outbox.add(message);
+        }
+
+        private void sendLoop() {
+            try (Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+                while (true) {
+                    String message = outbox.take();
+                    if (message.isEmpty()) break;
+                    out.write(message);
+                    out.write('\n');
+                    // Write whatever queued up in one go
+                    while ((message = outbox.poll()) != null && !message.isEmpty()) {
+                        out.write(message);
+                        out.write('\n');
+                    }
+                    out.flush();
+                    if (message != null) break;
+                }
+            } catch (IOException | InterruptedException e) {
+                // The reading side notices the closed socket
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            outbox.add("");
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private final File directory;
+    private final TaskRepository repository;
+    private Applier applier;
+    private volatile FileChannel lockChannel;
+    private FileLock lock;
+    private ServerSocketChannel server;
+    private volatile boolean stopped;
+
+    // Writer only
+    private final List<Connection> followers = new ArrayList<>();
+    private Connection leader;
+    // Follower: whether the leader's whole workspace has arrived, and the
+    // changes made since the leader was lost or until then
+    private boolean synced;
+    private final List<String> unsent = new ArrayList<>();
+    private boolean applying;
+    private boolean recording = true;
+
+    /**
+     * @param directory the data directory
+     * @param repository the workspace, whose writer applies all changes
+     */
+    public WorkspaceCoordinator(File directory, TaskRepository repository) {
+        this.directory = directory;
+        this.repository = repository;
+    }
+
+    /**
+     * Try to become the leader. Called once at startup, before the events are
+     * loaded, to know whether this instance may read and write event files.
+     * @return true if this instance is the leader
+     */
+    public boolean acquire() {
+        try {
+            lockChannel = openLockFile();
+            lock = lockChannel.tryLock();
+        } catch (IOException e) {
+            System.err.println("Error locking workspace: " + e.getMessage());
+        }
+        return lock != null;
+    }
+
+    /**
+     * @return true if this instance holds the workspace and owns its files
+     */
+    public boolean isLeader() {
+        return lock != null;
+    }
+
+    /**
+     * Start listening for followers, or connect to the leader. Writer only.
+     * @param applier applies changes from other instances
+     */
+    public void start(Applier applier) {
+        this.applier = applier;
+        if (isLeader()) {
+            listen();
+        } else {
+            Thread.ofPlatform().daemon().name("workspace-connect").start(this::connectLoop);
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        try {
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(socketPath());
+            }
+            if (lockChannel != null) lockChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing workspace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Turn sending of local changes on or off, as while loading from disk
+     * @param recording false to stop sending
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Send an event added in this instance. Writer only.
+     */
+    public void eventAdded(String eventName, String date) {
+        send(join("E", TaskCodec.escape(eventName), TaskCodec.escape(date)));
+    }
+
+    /**
+     * Send an event removed in this instance. Writer only.
+     */
+    public void eventRemoved(String eventName) {
+        send(join("X", TaskCodec.escape(eventName)));
+    }
+
+    @Override
+    public void taskAdded(String eventName, TodoListApp.Task task) {
+        send(upsert(eventName, task));
+    }
+
+    @Override
+    public void taskRemoved(String eventName, TodoListApp.Task task) {
+        send(join("D", Long.toString(task.getId())));
+    }
+
+    @Override
+    public void taskUpdated(String eventName, TodoListApp.Task before, TodoListApp.Task task) {
+        send(upsert(eventName, task));
+    }
+
+    /**
+     * Forward messages from a process that is no app instance, like the
+     * command line tool, to a running leader
+     * @param directory the data directory
+     * @param messages the messages
+     * @return false if no instance holds the workspace
+     * @throws IOException if the leader cannot be reached
+     */
+    static boolean forward(File directory, List<String> messages) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock probe = channel.tryLock();
+            if (probe != null) {
+                probe.release();
+                return false;
+            }
+        }
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(new File(directory, SOCKET_FILE).toPath()));
+             Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+            out.write(SENDER_HELLO);
+            out.write('\n');
+            for (String message : messages) {
+                out.write(message);
+                out.write('\n');
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the message adding or changing a task
+     */
+    static String upsert(String eventName, TodoListApp.Task task) {
+        return join("U", TaskCodec.escape(eventName), Boolean.toString(task.isCompleted()), TaskCodec.format(task, false));
+    }
+
+    private void send(String message) {
+        if (applying || !recording) return;
+        if (isLeader()) {
+            broadcast(message);
+        } else if (leader != null && synced) {
+            leader.send(message);
+        } else {
+            unsent.add(message);
+        }
+    }
+
+    private void broadcast(String message) {
+        for (Connection follower : followers) {
+            follower.send(message);
+        }
+    }
+
+    // Leader: accept followers until stopped
+    private void listen() {
+        try {
+            Path path = socketPath();
+            // Holding the lock, a socket file left behind is stale
+            Files.deleteIfExists(path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Error opening workspace socket: " + e.getMessage());
+            return;
+        }
+        Thread.ofPlatform().daemon().name("workspace-accept").start(() -> {
+            while (!stopped) {
+                try {
+                    SocketChannel channel = server.accept();
+                    Thread.ofPlatform().daemon().name("workspace-receive").start(() -> receive(channel));
+                } catch (IOException e) {
+                    if (!stopped) System.err.println("Error accepting instance: " + e.getMessage());
+                    return;
+                }
+            }
+        });
+    }
+
+    // Leader: read one follower's messages
+    private void receive(SocketChannel channel) {
+        Connection connection = new Connection(channel);
+        try (BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8))) {
+            // A follower gets the workspace and then every change, queued in
+            // one writer turn so nothing falls in between; a one-off sender
+            // only sends
+            if (FOLLOWER_HELLO.equals(in.readLine())) {
+                repository.execute(() -> welcome(connection));
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                String message = line;
+                repository.execute(() -> apply(message, true));
+            }
+        } catch (IOException e) {
+            // The follower went away
+        } finally {
+            repository.execute(() -> {
+                followers.remove(connection);
+                connection.close();
+            });
+        }
+    }
+
+    // Leader, writer only
+    private void welcome(Connection connection) {
+        connection.send("S");
+        for (String eventName : repository.getEventNames()) {
+            TaskRepository.Event event = repository.getEvent(eventName);
+            connection.send(join("E", TaskCodec.escape(eventName), TaskCodec.escape(event.getDate())));
+            for (TaskList tasks : event.getLists()) {
+                for (TodoListApp.Task task : tasks) {
+                    connection.send(upsert(eventName, task));
+                }
+            }
+        }
+        connection.send("R");
+        followers.add(connection);
+    }
+
+    // Follower: stay connected to the leader, or become it when it is gone
+    private void connectLoop() {
+        while (!stopped) {
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath()));
+            } catch (IOException e) {
+                // No leader listening yet or any more: try to take over
+                if (tryPromote()) return;
+            }
+            if (channel != null) {
+                follow(channel);
+                if (tryPromote()) return;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Follower: read the leader's stream until it closes
+    private void follow(SocketChannel channel) {
+        Connection connection = new Connection(channel);
+        repository.execute(() -> {
+            leader = connection;
+            synced = false;
+        });
+        connection.send(FOLLOWER_HELLO);
+        try (BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String message = line;
+                repository.execute(() -> apply(message, false));
+            }
+        } catch (IOException e) {
+            // The leader went away
+        } finally {
+            connection.close();
+            repository.execute(() -> {
+                if (leader == connection) leader = null;
+            });
+        }
+    }
+
+    private boolean tryPromote() {
+        try {
+            // The lock file could not be opened at startup: try again
+            if (lockChannel == null) lockChannel = openLockFile();
+            FileLock acquired = lockChannel.tryLock();
+            if (acquired == null) return false;
+            repository.execute(() -> {
+                lock = acquired;
+                leader = null;
+                // The queued changes are in this instance's workspace, which followers now receive
+                unsent.clear();
+                applier.promoted();
+                listen();
+            });
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private FileChannel openLockFile() throws IOException {
+        return FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    // Writer only: apply a message from another instance, and on the leader pass it on
+    private void apply(String message, boolean fromFollower) {
+        String[] fields = message.split("\t", 4);
+        boolean received = false;
+        applying = true;
+        try {
+            switch (fields[0]) {
+                case "E":
+                    applier.eventAdded(TaskCodec.unescape(fields[1]), TaskCodec.unescape(fields[2]));
+                    break;
+                case "X":
+                    applier.eventRemoved(TaskCodec.unescape(fields[1]));
+                    break;
+                case "U":
+                    TodoListApp.Task task = TaskCodec.parse(fields[3], null);
+                    task.setCompleted(Boolean.parseBoolean(fields[2]));
+                    applier.taskUpserted(TaskCodec.unescape(fields[1]), task.isCompleted(), task);
+                    break;
+                case "D":
+                    applier.taskDeleted(Long.parseLong(fields[1]));
+                    break;
+                case "S":
+                    synced = false;
+                    applier.clear();
+                    break;
+                case "R":
+                    received = true;
+                    break;
+                default:
+                    System.err.println("Unknown workspace message: " + fields[0]);
+                    return;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error applying workspace message: " + e.getMessage());
+            return;
+        } finally {
+            applying = false;
+        }
+        if (fromFollower && isLeader()) {
+            broadcast(message);
+        }
+        if (received) resend();
+    }
+
+    // Follower, writer only: the workspace has arrived; apply the queued
+    // changes to it again and send them on
+    private void resend() {
+        synced = true;
+        List<String> messages = new ArrayList<>(unsent);
+        unsent.clear();
+        for (String message : messages) {
+            apply(message, false);
+            if (leader != null) {
+                leader.send(message);
+            } else {
+                unsent.add(message);
+            }
+        }
+    }
+
+    private Path socketPath() {
+        return new File(directory, SOCKET_FILE).toPath();
+    }
+
+    private static String join(String... fields) {
+        return String.join("\t", fields);
+    }
+}
@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of every event's tasks, published by the
+ * {@link TaskRepository} after changes. Taking one is a single volatile
+ * read; it can then be iterated from any thread without locks while the
+ * live lists keep changing. Events that did not change between two
+ * versions share the same {@link EventSnapshot}.
+ *
+ * Events by name and tasks by ID are held in {@link PersistentLongMap}s, so
+ * a new version copies only the paths to the events and tasks that changed
+ * and shares the rest of both maps with the version before it. The list of
+ * events in the order they were added is built on first use.
+ * @author Apon
+ */
+public final class WorkspaceSnapshot {
+
+    static final WorkspaceSnapshot EMPTY = new WorkspaceSnapshot(0, PersistentLongMap.empty(),
+        PersistentLongMap.empty(), 0);
+
+    /**
+     * Where a task is, and its state, at one version
+     */
+    public static final class Location {
+        private final String eventName;
+        private final boolean completed;
+        private final TaskState state;
+
+        Location(String eventName, boolean completed, TaskState state) {
+            this.eventName = eventName;
+            this.completed = completed;
+            this.state = state;
+        }
+
+        public String getEventName() { return eventName; }
+        public boolean isCompleted() { return completed; }
+        public TaskState getState() { return state; }
+    }
+
+    /**
+     * An event and the order it was added in. Events whose names hash alike
+     * are chained.
+     */
+    private static final class Slot {
+        final long order;
+        final EventSnapshot event;
+        final Slot next;
+
+        Slot(long order, EventSnapshot event, Slot next) {
+            this.order = order;
+            this.event = event;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Makes the next version from this one. The writer hands it the events
+     * that were removed or changed; everything else is shared. Tasks without
+     * an ID are not indexed.
+     */
+    static final class Builder implements EventSnapshot.Changes {
+        private final long version;
+        private final PersistentLongMap.Editor<Slot> events;
+        private final PersistentLongMap.Editor<Location> tasks;
+        private int size;
+        // IDs in the blocks that changed, and IDs of the blocks they replaced
+        private final LongHashSet present = new LongHashSet();
+        private long[] gone = new long[16];
+        private int goneCount;
+        private String eventName; // being compared
+
+        private Builder(WorkspaceSnapshot previous) {
+            this.version = previous.version + 1;
+            this.events = previous.events.edit();
+            this.tasks = previous.tasks.edit();
+            this.size = previous.size;
+        }
+
+        /**
+         * @return the event as of the previous version or the changes made since
+         */
+        EventSnapshot get(String eventName) {
+            Slot slot = find(events.get(hash(eventName)), eventName);
+            return slot != null ? slot.event : null;
+        }
+
+        /**
+         * @param eventName an event to leave out of the next version
+         */
+        void remove(String eventName) {
+            long hash = hash(eventName);
+            Slot chain = events.get(hash);
+            Slot slot = find(chain, eventName);
+            if (slot == null) return;
+            this.eventName = eventName;
+            EventSnapshot.diff(slot.event, null, this);
+            size -= slot.event.size();
+            Slot rest = without(chain, slot);
+            if (rest != null) {
+                events.put(hash, rest);
+            } else {
+                events.remove(hash);
+            }
+        }
+
+        /**
+         * @param order the order the event was added in
+         * @param event the event's new snapshot
+         */
+        void put(long order, EventSnapshot event) {
+            long hash = hash(event.getEventName());
+            Slot chain = events.get(hash);
+            Slot slot = find(chain, event.getEventName());
+            this.eventName = event.getEventName();
+            EventSnapshot.diff(slot != null ? slot.event : null, event, this);
+            size += event.size() - (slot != null ? slot.event.size() : 0);
+            events.put(hash, new Slot(order, event, slot != null ? without(chain, slot) : chain));
+        }
+
+        @Override
+        public void present(long id, TaskState state, boolean completed) {
+            if (id == 0) return;
+            present.add(id);
+            Location location = tasks.get(id);
+            if (location == null || location.state != state || location.completed != completed
+                    || !location.eventName.equals(eventName)) {
+                tasks.put(id, new Location(eventName, completed, state));
+            }
+        }
+
+        @Override
+        public void gone(long id) {
+            if (id == 0) return;
+            if (goneCount == gone.length) gone = Arrays.copyOf(gone, goneCount * 2);
+            gone[goneCount++] = id;
+        }
+
+        /**
+         * @return the next version; the builder cannot be used any more
+         */
+        WorkspaceSnapshot build() {
+            // A task gone from one block may have moved to another, in any event
+            for (int i = 0; i < goneCount; i++) {
+                if (!present.contains(gone[i])) tasks.remove(gone[i]);
+            }
+            return new WorkspaceSnapshot(version, events.done(), tasks.done(), size);
+        }
+    }
+
+    private final long version;
+    private final PersistentLongMap<Slot> events; // by name hash
+    private final PersistentLongMap<Location> tasks; // by ID
+    private final int size;
+    private volatile List<EventSnapshot> ordered; // built on first use
+
+    private WorkspaceSnapshot(long version, PersistentLongMap<Slot> events, PersistentLongMap<Location> tasks,
+                              int size) {
+        this.version = version;
+        this.events = events;
+        this.tasks = tasks;
+        this.size = size;
+    }
+
+    /**
+     * @return a builder for the next version
+     */
+    Builder edit() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return the version, which increases with every publication
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return every event, in the order the events were added
+     */
+    public List<EventSnapshot> getEvents() {
+        List<EventSnapshot> list = ordered;
+        if (list == null) {
+            // Built at most a few times if threads race; every result is the same
+            List<Slot> slots = new ArrayList<>(events.size());
+            events.forEachValue(chain -> {
+                for (Slot slot = chain; slot != null; slot = slot.next) {
+                    slots.add(slot);
+                }
+            });
+            slots.sort(Comparator.comparingLong(slot -> slot.order));
+            List<EventSnapshot> sorted = new ArrayList<>(slots.size());
+            for (Slot slot : slots) {
+                sorted.add(slot.event);
+            }
+            list = Collections.unmodifiableList(sorted);
+            ordered = list;
+        }
+        return list;
+    }
+
+    /**
+     * @param eventName the event
+     * @return the event, or null if it did not exist at this version
+     */
+    public EventSnapshot getEvent(String eventName) {
+        Slot slot = find(events.get(hash(eventName)), eventName);
+        return slot != null ? slot.event : null;
+    }
+
+    /**
+     * @param id a task ID
+     * @return the task's event, list and state, or null if it is in none
+     */
+    public Location find(long id) {
+        return tasks.get(id);
+    }
+
+    /**
+     * @return the number of tasks in all events
+     */
+    public int size() {
+        return size;
+    }
+
+    private static Slot find(Slot chain, String eventName) {
+        for (Slot slot = chain; slot != null; slot = slot.next) {
+            if (slot.event.getEventName().equals(eventName)) return slot;
+        }
+        return null;
+    }
+
+    private static Slot without(Slot chain, Slot slot) {
+        if (chain == slot) return slot.next;
+        return new Slot(chain.order, chain.event, without(chain.next, slot));
+    }
+
+    private static long hash(String eventName) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < eventName.length(); i++) {
+            hash = 31 * hash + eventName.charAt(i);
+        }
+        // Spread the high bits into the low ones the trie looks at first
+        return hash ^ (hash >>> 29) ^ (hash >>> 47);
+    }
+}